@@ -33,6 +33,11 @@ public interface GraphicFactory {
 
 	Paint createPaint();
 
+	/**
+	 * @return a new paint with the same properties as the given paint, which must have been created by this factory.
+	 */
+	Paint createPaint(Paint paint);
+
 	Path createPath();
 
 	ResourceBitmap createResourceBitmap(InputStream inputStream, int hash) throws IOException;
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+/**
+ * A {@link Metrics} implementation which discards all values. It is the default of all instrumented components.
+ */
+public final class DisabledMetrics implements Metrics {
+	public static final DisabledMetrics INSTANCE = new DisabledMetrics();
+
+	private DisabledMetrics() {
+		// do nothing
+	}
+
+	@Override
+	public void increment(String name, long delta) {
+		// do nothing
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public void recordLatency(String name, long nanoseconds) {
+		// do nothing
+	}
+
+	@Override
+	public void setGauge(String name, long value) {
+		// do nothing
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache with a fixed number of entries whose eviction order is decided by an exchangeable {@link EvictionPolicy}.
+ * This class is not thread-safe.
+ * 
+ * @param <K>
+ *            the type of the cache keys.
+ * @param <V>
+ *            the type of the cache values.
+ */
+public class EvictingCache<K, V> {
+	private static int checkCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+		return capacity;
+	}
+
+	private int capacity;
+	private final EvictionPolicy<K> evictionPolicy;
+	private final Map<K, V> map;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param evictionPolicy
+	 *            the policy which selects the entries to evict, it must not be shared with other caches.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative or the eviction policy is null.
+	 */
+	public EvictingCache(int capacity, EvictionPolicy<K> evictionPolicy) {
+		if (evictionPolicy == null) {
+			throw new IllegalArgumentException("evictionPolicy must not be null");
+		}
+		this.capacity = checkCapacity(capacity);
+		this.evictionPolicy = evictionPolicy;
+		this.evictionPolicy.clear();
+		this.evictionPolicy.setCapacity(capacity);
+		this.map = new HashMap<K, V>();
+	}
+
+	/**
+	 * Removes all entries from this cache without evicting them.
+	 */
+	public void clear() {
+		this.map.clear();
+		this.evictionPolicy.clear();
+	}
+
+	public boolean containsKey(K key) {
+		return this.map.containsKey(key);
+	}
+
+	/**
+	 * @return the value for the given key or null if this cache does not contain it.
+	 */
+	public V get(K key) {
+		V value = this.map.get(key);
+		if (value != null) {
+			this.evictionPolicy.recordAccess(key);
+		}
+		return value;
+	}
+
+	/**
+	 * @return the maximum number of entries in this cache.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return all keys of this cache, approximately ordered from the one which would be evicted first.
+	 */
+	public Collection<K> getKeys() {
+		return this.evictionPolicy.getKeys();
+	}
+
+	/**
+	 * Adds the given entry to this cache and evicts other entries if the capacity is exceeded.
+	 * 
+	 * @return the previous value for the given key or null if there was none.
+	 */
+	public V put(K key, V value) {
+		V previousValue = this.map.put(key, value);
+		if (previousValue != null) {
+			this.evictionPolicy.recordAccess(key);
+		} else {
+			this.evictionPolicy.recordInsertion(key);
+			trimToCapacity();
+		}
+		return previousValue;
+	}
+
+	/**
+	 * Removes the given entry from this cache without evicting it.
+	 * 
+	 * @return the removed value or null if this cache did not contain the key.
+	 */
+	public V remove(K key) {
+		V value = this.map.remove(key);
+		if (value != null) {
+			this.evictionPolicy.recordRemoval(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Sets the new maximum number of entries. If this cache contains more entries, they are evicted.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = checkCapacity(capacity);
+		this.evictionPolicy.setCapacity(capacity);
+		trimToCapacity();
+	}
+
+	/**
+	 * @return the number of entries in this cache.
+	 */
+	public int size() {
+		return this.map.size();
+	}
+
+	/**
+	 * @return all values of this cache, the collection must not be modified.
+	 */
+	public Collection<V> values() {
+		return this.map.values();
+	}
+
+	/**
+	 * Called after an entry has been evicted to release its resources. The default implementation does nothing.
+	 * 
+	 * @param key
+	 *            the key of the evicted entry.
+	 * @param value
+	 *            the value of the evicted entry.
+	 */
+	protected void onEviction(K key, V value) {
+		// do nothing
+	}
+
+	private void trimToCapacity() {
+		while (this.map.size() > this.capacity) {
+			K key = this.evictionPolicy.evict();
+			if (key == null) {
+				throw new IllegalStateException("eviction policy has no keys, but cache has " + this.map.size());
+			}
+			V value = this.map.remove(key);
+			if (value != null) {
+				onEviction(key, value);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.Collection;
+
+/**
+ * Decides which entry of an {@link EvictingCache} is removed when the cache is full. Implementations keep track of
+ * the keys in the cache only, they do not need to be thread-safe.
+ * 
+ * @param <K>
+ *            the type of the cache keys.
+ */
+public interface EvictionPolicy<K> {
+	/**
+	 * Forgets all keys.
+	 */
+	void clear();
+
+	/**
+	 * Selects the key which should be removed from the cache next and forgets it.
+	 * 
+	 * @return the key of the entry to remove or null if there are no keys.
+	 */
+	K evict();
+
+	/**
+	 * @return all keys, approximately ordered from the one which would be evicted first to the one which would be
+	 *         evicted last.
+	 */
+	Collection<K> getKeys();
+
+	/**
+	 * Records that the entry with the given key has been read or replaced.
+	 */
+	void recordAccess(K key);
+
+	/**
+	 * Records that an entry with the given key has been added to the cache.
+	 */
+	void recordInsertion(K key);
+
+	/**
+	 * Records that the entry with the given key has been removed from the cache for another reason than eviction.
+	 */
+	void recordRemoval(K key);
+
+	/**
+	 * Informs this policy about the maximum number of entries in the cache.
+	 */
+	void setCapacity(int capacity);
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Metrics} implementation which keeps all values in memory, so that they can be inspected, logged or exported
+ * at any time.
+ */
+public class InMemoryMetrics implements Metrics {
+	private static AtomicLong getValue(ConcurrentMap<String, AtomicLong> values, String name) {
+		AtomicLong value = values.get(name);
+		if (value == null) {
+			AtomicLong newValue = new AtomicLong();
+			value = values.putIfAbsent(name, newValue);
+			if (value == null) {
+				value = newValue;
+			}
+		}
+		return value;
+	}
+
+	private final ConcurrentMap<String, AtomicLong> counters;
+	private final ConcurrentMap<String, AtomicLong> gauges;
+	private final ConcurrentMap<String, LatencyHistogram> histograms;
+
+	public InMemoryMetrics() {
+		this.counters = new ConcurrentHashMap<String, AtomicLong>();
+		this.gauges = new ConcurrentHashMap<String, AtomicLong>();
+		this.histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	}
+
+	/**
+	 * @return the value of the counter with the given name or zero if it has never been incremented.
+	 */
+	public long getCounter(String name) {
+		AtomicLong value = this.counters.get(name);
+		return value == null ? 0 : value.get();
+	}
+
+	/**
+	 * @return the sorted names of all counters.
+	 */
+	public Set<String> getCounterNames() {
+		return new TreeSet<String>(this.counters.keySet());
+	}
+
+	/**
+	 * @return the last value of the gauge with the given name or zero if it has never been set.
+	 */
+	public long getGauge(String name) {
+		AtomicLong value = this.gauges.get(name);
+		return value == null ? 0 : value.get();
+	}
+
+	/**
+	 * @return the sorted names of all gauges.
+	 */
+	public Set<String> getGaugeNames() {
+		return new TreeSet<String>(this.gauges.keySet());
+	}
+
+	/**
+	 * @return the histogram with the given name or null if no latency has been recorded for it.
+	 */
+	public LatencyHistogram getHistogram(String name) {
+		return this.histograms.get(name);
+	}
+
+	/**
+	 * @return the sorted names of all histograms.
+	 */
+	public Set<String> getHistogramNames() {
+		return new TreeSet<String>(this.histograms.keySet());
+	}
+
+	@Override
+	public void increment(String name, long delta) {
+		getValue(this.counters, name).addAndGet(delta);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void recordLatency(String name, long nanoseconds) {
+		LatencyHistogram histogram = this.histograms.get(name);
+		if (histogram == null) {
+			LatencyHistogram newHistogram = new LatencyHistogram();
+			histogram = this.histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		histogram.record(nanoseconds);
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void reset() {
+		this.counters.clear();
+		this.gauges.clear();
+		this.histograms.clear();
+	}
+
+	@Override
+	public void setGauge(String name, long value) {
+		getValue(this.gauges, name).set(value);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		for (String name : getCounterNames()) {
+			stringBuilder.append(name).append(": ").append(getCounter(name)).append('\n');
+		}
+		for (String name : getGaugeNames()) {
+			stringBuilder.append(name).append(": ").append(getGauge(name)).append('\n');
+		}
+		for (String name : getHistogramNames()) {
+			stringBuilder.append(name).append(": ").append(getHistogram(name)).append('\n');
+		}
+		return stringBuilder.toString();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of durations with exponentially growing buckets. Each bucket covers the durations from one
+ * power of two nanoseconds to the next, so percentiles are accurate to a factor of two.
+ */
+public class LatencyHistogram {
+	private static final int NUMBER_OF_BUCKETS = 64;
+
+	private static int getBucket(long nanoseconds) {
+		return nanoseconds <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanoseconds);
+	}
+
+	private final AtomicLongArray buckets;
+	private final AtomicLong count;
+	private final AtomicLong maximum;
+	private final AtomicLong total;
+
+	public LatencyHistogram() {
+		this.buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+		this.count = new AtomicLong();
+		this.maximum = new AtomicLong();
+		this.total = new AtomicLong();
+	}
+
+	/**
+	 * @return the number of recorded durations.
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * @return the longest recorded duration in nanoseconds.
+	 */
+	public long getMaximum() {
+		return this.maximum.get();
+	}
+
+	/**
+	 * @return the average of the recorded durations in nanoseconds or zero if there are none.
+	 */
+	public double getMean() {
+		long currentCount = this.count.get();
+		return currentCount == 0 ? 0 : (double) this.total.get() / currentCount;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile, which is at most twice the exact value.
+	 * 
+	 * @param percentile
+	 *            the percentile between 0 and 100.
+	 * @return the upper bound of the percentile in nanoseconds or zero if there are no recorded durations.
+	 * @throws IllegalArgumentException
+	 *             if the percentile is not between 0 and 100.
+	 */
+	public long getPercentile(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("invalid percentile: " + percentile);
+		}
+
+		long currentCount = this.count.get();
+		long threshold = (long) Math.ceil(currentCount * percentile / 100);
+		long sum = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS; ++i) {
+			sum += this.buckets.get(i);
+			if (sum >= threshold && sum > 0) {
+				// the upper end of the bucket, but never more than the longest recorded duration
+				return Math.min(i == NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMaximum());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Records the given duration.
+	 * 
+	 * @param nanoseconds
+	 *            the duration in nanoseconds, negative values are recorded as zero.
+	 */
+	public void record(long nanoseconds) {
+		long duration = Math.max(0, nanoseconds);
+		this.buckets.incrementAndGet(getBucket(duration));
+		this.count.incrementAndGet();
+		this.total.addAndGet(duration);
+
+		long currentMaximum = this.maximum.get();
+		while (duration > currentMaximum && !this.maximum.compareAndSet(currentMaximum, duration)) {
+			currentMaximum = this.maximum.get();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("count=");
+		stringBuilder.append(getCount());
+		stringBuilder.append(", mean=");
+		stringBuilder.append(String.format("%.3fms", Double.valueOf(getMean() / 1000000d)));
+		stringBuilder.append(", p50=");
+		stringBuilder.append(String.format("%.3fms", Double.valueOf(getPercentile(50) / 1000000d)));
+		stringBuilder.append(", p99=");
+		stringBuilder.append(String.format("%.3fms", Double.valueOf(getPercentile(99) / 1000000d)));
+		stringBuilder.append(", max=");
+		stringBuilder.append(String.format("%.3fms", Double.valueOf(getMaximum() / 1000000d)));
+		return stringBuilder.toString();
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An {@link EvictionPolicy} which evicts the least recently used entry.
+ * 
+ * @param <K>
+ *            the type of the cache keys.
+ */
+public class LruEvictionPolicy<K> implements EvictionPolicy<K> {
+	private final Map<K, Boolean> keys = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+
+	@Override
+	public void clear() {
+		this.keys.clear();
+	}
+
+	@Override
+	public K evict() {
+		Iterator<K> iterator = this.keys.keySet().iterator();
+		if (!iterator.hasNext()) {
+			return null;
+		}
+		K key = iterator.next();
+		iterator.remove();
+		return key;
+	}
+
+	@Override
+	public Collection<K> getKeys() {
+		return new ArrayList<K>(this.keys.keySet());
+	}
+
+	@Override
+	public void recordAccess(K key) {
+		this.keys.get(key);
+	}
+
+	@Override
+	public void recordInsertion(K key) {
+		this.keys.put(key, Boolean.TRUE);
+	}
+
+	@Override
+	public void recordRemoval(K key) {
+		this.keys.remove(key);
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		// the order of the keys does not depend on the capacity
+	}
+}
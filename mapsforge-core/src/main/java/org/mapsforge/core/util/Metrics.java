@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+/**
+ * Receives counters, gauges and latencies from instrumented components such as tile caches and job queues.
+ * <p>
+ * Components check {@link #isEnabled()} before they measure anything, so that {@link DisabledMetrics} costs no more
+ * than a field access. Implementations must be thread-safe.
+ */
+public interface Metrics {
+	/**
+	 * Adds the given value to the counter with the given name.
+	 */
+	void increment(String name, long delta);
+
+	/**
+	 * @return true if the values passed to this instance are used, false if they may be discarded.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Records the duration of an operation in the histogram with the given name.
+	 */
+	void recordLatency(String name, long nanoseconds);
+
+	/**
+	 * Sets the current value of the gauge with the given name, e.g. a queue depth.
+	 */
+	void setGauge(String name, long value);
+}
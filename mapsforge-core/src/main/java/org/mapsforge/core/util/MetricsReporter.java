@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+/**
+ * Implemented by components which can report their activity to {@link Metrics}. Reporting is optional, components
+ * which do not implement this interface simply report nothing.
+ */
+public interface MetricsReporter {
+	/**
+	 * Sets the metrics which this component reports its activity to. Components which consist of other components
+	 * report them under the given name with a suffix.
+	 * 
+	 * @param metrics
+	 *            the metrics to report to, {@link DisabledMetrics#INSTANCE} stops the reporting.
+	 * @param name
+	 *            the prefix of all metric names of this component.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	void setMetrics(Metrics metrics, String name);
+}
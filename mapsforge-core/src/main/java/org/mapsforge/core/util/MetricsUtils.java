@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+/**
+ * A utility class with helper methods for {@link Metrics}.
+ */
+public final class MetricsUtils {
+	/**
+	 * Checks the parameters of {@link MetricsReporter#setMetrics}.
+	 * 
+	 * @param metrics
+	 *            the metrics to report to.
+	 * @param name
+	 *            the prefix of all metric names.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	public static void checkMetrics(Metrics metrics, String name) {
+		if (metrics == null) {
+			throw new IllegalArgumentException("metrics must not be null");
+		} else if (name == null) {
+			throw new IllegalArgumentException("name must not be null");
+		}
+	}
+
+	private MetricsUtils() {
+		throw new IllegalStateException();
+	}
+}
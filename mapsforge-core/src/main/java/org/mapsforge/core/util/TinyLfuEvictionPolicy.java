@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A scan-resistant {@link EvictionPolicy} based on W-TinyLFU by Einziger, Friedman and Manes.
+ * <p>
+ * New keys enter a small LRU window. A key which leaves the window only replaces an entry of the main cache if it has
+ * been used more often recently, as estimated by a compact frequency sketch whose counters are halved periodically.
+ * The main cache is a segmented LRU with a probation and a protected part. Keys which are used only once, e.g. the
+ * tiles of a fast fling across the map, therefore do not replace frequently used keys, even if the scan is much
+ * longer than the capacity.
+ * 
+ * @param <K>
+ *            the type of the cache keys.
+ */
+public class TinyLfuEvictionPolicy<K> implements EvictionPolicy<K> {
+	/**
+	 * Estimates how often keys have been used recently with four rows of small counters.
+	 */
+	private static final class FrequencySketch {
+		private static final int MAXIMUM_COUNT = 15;
+		private static final int NUMBER_OF_ROWS = 4;
+		private static final int[] SEEDS = { 0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f };
+
+		private static int indexOf(int hash, int row, int mask) {
+			int index = hash * SEEDS[row];
+			index ^= index >>> 16;
+			return index & mask;
+		}
+
+		private int additions;
+		private final byte[][] counters;
+		private final int mask;
+		private final int sampleSize;
+
+		FrequencySketch(int capacity) {
+			int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+			this.counters = new byte[NUMBER_OF_ROWS][width];
+			this.mask = width - 1;
+			this.sampleSize = 10 * Math.max(16, capacity);
+		}
+
+		int frequency(Object key) {
+			int hash = key.hashCode();
+			int frequency = MAXIMUM_COUNT;
+			for (int row = 0; row < NUMBER_OF_ROWS; ++row) {
+				frequency = Math.min(frequency, this.counters[row][indexOf(hash, row, this.mask)]);
+			}
+			return frequency;
+		}
+
+		void increment(Object key) {
+			int hash = key.hashCode();
+			for (int row = 0; row < NUMBER_OF_ROWS; ++row) {
+				int index = indexOf(hash, row, this.mask);
+				if (this.counters[row][index] < MAXIMUM_COUNT) {
+					++this.counters[row][index];
+				}
+			}
+
+			if (++this.additions >= this.sampleSize) {
+				// age all counters, so that old popularity fades away
+				for (byte[] row : this.counters) {
+					for (int i = 0; i < row.length; ++i) {
+						row[i] >>= 1;
+					}
+				}
+				this.additions /= 2;
+			}
+		}
+	}
+
+	/**
+	 * Share of the main cache which is protected from eviction.
+	 */
+	private static final float PROTECTED_RATIO = 0.8f;
+
+	/**
+	 * Share of the capacity which is used for the window of new keys. It is larger than in the original algorithm,
+	 * since the tiles of a viewport are typically requested again a few moves later.
+	 */
+	private static final float WINDOW_RATIO = 0.2f;
+
+	private static <T> T first(Map<T, Boolean> map) {
+		Iterator<T> iterator = map.keySet().iterator();
+		return iterator.hasNext() ? iterator.next() : null;
+	}
+
+	private static <T> T removeFirst(Map<T, Boolean> map) {
+		Iterator<T> iterator = map.keySet().iterator();
+		T first = iterator.next();
+		iterator.remove();
+		return first;
+	}
+
+	private K candidate;
+	private FrequencySketch frequencySketch;
+	private final Map<K, Boolean> probation;
+	private final Map<K, Boolean> protectedKeys;
+	private int protectedSize;
+	private final Map<K, Boolean> window;
+	private int windowSize;
+
+	public TinyLfuEvictionPolicy() {
+		this.probation = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+		this.protectedKeys = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+		this.window = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+		setCapacity(0);
+	}
+
+	@Override
+	public void clear() {
+		this.candidate = null;
+		this.probation.clear();
+		this.protectedKeys.clear();
+		this.window.clear();
+	}
+
+	@Override
+	public K evict() {
+		K candidate = this.candidate;
+		this.candidate = null;
+		K victim = first(this.probation);
+		if (candidate != null && victim != null && !candidate.equals(victim) && this.probation.containsKey(candidate)
+				&& this.frequencySketch.frequency(candidate) <= this.frequencySketch.frequency(victim)) {
+			// the candidate from the window is not used more often than the victim, it is rejected
+			this.probation.remove(candidate);
+			return candidate;
+		}
+
+		if (!this.probation.isEmpty()) {
+			return removeFirst(this.probation);
+		} else if (!this.protectedKeys.isEmpty()) {
+			return removeFirst(this.protectedKeys);
+		} else if (!this.window.isEmpty()) {
+			return removeFirst(this.window);
+		}
+		return null;
+	}
+
+	@Override
+	public Collection<K> getKeys() {
+		List<K> keys = new ArrayList<K>(this.probation.size() + this.window.size() + this.protectedKeys.size());
+		keys.addAll(this.probation.keySet());
+		keys.addAll(this.window.keySet());
+		keys.addAll(this.protectedKeys.keySet());
+		return keys;
+	}
+
+	@Override
+	public void recordAccess(K key) {
+		this.frequencySketch.increment(key);
+		if (this.window.get(key) != null || this.protectedKeys.get(key) != null) {
+			return;
+		}
+
+		if (this.probation.remove(key) != null) {
+			if (key.equals(this.candidate)) {
+				// a protected key must not be rejected by the next eviction
+				this.candidate = null;
+			}
+			// a key which is used again in the main cache is protected
+			this.protectedKeys.put(key, Boolean.TRUE);
+			if (this.protectedKeys.size() > this.protectedSize) {
+				this.probation.put(removeFirst(this.protectedKeys), Boolean.TRUE);
+			}
+		}
+	}
+
+	@Override
+	public void recordInsertion(K key) {
+		this.frequencySketch.increment(key);
+		this.window.put(key, Boolean.TRUE);
+		if (this.window.size() > this.windowSize) {
+			// the oldest key of the window becomes the candidate for the main cache
+			this.candidate = removeFirst(this.window);
+			this.probation.put(this.candidate, Boolean.TRUE);
+		}
+	}
+
+	@Override
+	public void recordRemoval(K key) {
+		if (key.equals(this.candidate)) {
+			this.candidate = null;
+		}
+		if (this.window.remove(key) == null && this.probation.remove(key) == null) {
+			this.protectedKeys.remove(key);
+		}
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		this.windowSize = Math.max(1, (int) (capacity * WINDOW_RATIO));
+		this.protectedSize = (int) ((capacity - this.windowSize) * PROTECTED_RATIO);
+		while (this.protectedKeys.size() > this.protectedSize) {
+			this.probation.put(removeFirst(this.protectedKeys), Boolean.TRUE);
+		}
+		this.frequencySketch = new FrequencySketch(capacity);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A scan-resistant {@link EvictionPolicy} based on the 2Q algorithm by Johnson and Shasha.
+ * <p>
+ * New keys enter a small FIFO queue. Keys which are evicted from it are remembered for a while without their values,
+ * only a key which is inserted again during that time is promoted to the main LRU queue. A burst of keys which are
+ * used only once, e.g. the tiles of a fast fling across the map, therefore cannot push the frequently used keys out of
+ * the main queue.
+ * 
+ * @param <K>
+ *            the type of the cache keys.
+ */
+public class TwoQueueEvictionPolicy<K> implements EvictionPolicy<K> {
+	/**
+	 * Default share of the capacity for new keys.
+	 */
+	private static final float DEFAULT_IN_RATIO = 0.25f;
+
+	/**
+	 * Default number of remembered evicted keys, relative to the capacity.
+	 */
+	private static final float DEFAULT_OUT_RATIO = 0.5f;
+
+	private static <T> T removeFirst(Collection<T> collection) {
+		Iterator<T> iterator = collection.iterator();
+		T first = iterator.next();
+		iterator.remove();
+		return first;
+	}
+
+	private final Set<K> inQueue;
+	private final float inRatio;
+	private int inSize;
+	private final Map<K, Boolean> mainQueue;
+	private final Set<K> outQueue;
+	private final float outRatio;
+	private int outSize;
+
+	/**
+	 * Creates a policy with the default queue sizes.
+	 */
+	public TwoQueueEvictionPolicy() {
+		this(DEFAULT_IN_RATIO, DEFAULT_OUT_RATIO);
+	}
+
+	/**
+	 * @param inRatio
+	 *            the share of the capacity which is used for new keys.
+	 * @param outRatio
+	 *            the number of remembered evicted keys, relative to the capacity.
+	 * @throws IllegalArgumentException
+	 *             if a ratio is not positive or the in ratio is larger than one.
+	 */
+	public TwoQueueEvictionPolicy(float inRatio, float outRatio) {
+		if (!(inRatio > 0 && inRatio <= 1)) {
+			throw new IllegalArgumentException("invalid inRatio: " + inRatio);
+		} else if (!(outRatio > 0)) {
+			throw new IllegalArgumentException("invalid outRatio: " + outRatio);
+		}
+
+		this.inRatio = inRatio;
+		this.outRatio = outRatio;
+		this.inQueue = new LinkedHashSet<K>();
+		this.mainQueue = new LinkedHashMap<K, Boolean>(16, 0.75f, true);
+		this.outQueue = new LinkedHashSet<K>();
+		setCapacity(0);
+	}
+
+	@Override
+	public void clear() {
+		this.inQueue.clear();
+		this.mainQueue.clear();
+		this.outQueue.clear();
+	}
+
+	@Override
+	public K evict() {
+		if (!this.inQueue.isEmpty() && (this.inQueue.size() > this.inSize || this.mainQueue.isEmpty())) {
+			K key = removeFirst(this.inQueue);
+			// remember the key, it is promoted if it comes back soon
+			this.outQueue.add(key);
+			if (this.outQueue.size() > this.outSize) {
+				removeFirst(this.outQueue);
+			}
+			return key;
+		} else if (!this.mainQueue.isEmpty()) {
+			return removeFirst(this.mainQueue.keySet());
+		}
+		return null;
+	}
+
+	@Override
+	public Collection<K> getKeys() {
+		List<K> keys = new ArrayList<K>(this.inQueue.size() + this.mainQueue.size());
+		keys.addAll(this.inQueue);
+		keys.addAll(this.mainQueue.keySet());
+		return keys;
+	}
+
+	@Override
+	public void recordAccess(K key) {
+		// keys in the FIFO queue are not reordered, so that a burst of accesses does not promote them
+		this.mainQueue.get(key);
+	}
+
+	@Override
+	public void recordInsertion(K key) {
+		if (this.outQueue.remove(key)) {
+			this.mainQueue.put(key, Boolean.TRUE);
+		} else {
+			this.inQueue.add(key);
+		}
+	}
+
+	@Override
+	public void recordRemoval(K key) {
+		if (!this.inQueue.remove(key)) {
+			this.mainQueue.remove(key);
+		}
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		this.inSize = Math.max(1, (int) (capacity * this.inRatio));
+		this.outSize = Math.max(1, (int) (capacity * this.outRatio));
+		while (this.outQueue.size() > this.outSize) {
+			removeFirst(this.outQueue);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EvictingCacheTest {
+	private static final class RecordingCache extends EvictingCache<Integer, String> {
+		final List<Integer> evictedKeys = new ArrayList<Integer>();
+
+		RecordingCache(int capacity, EvictionPolicy<Integer> evictionPolicy) {
+			super(capacity, evictionPolicy);
+		}
+
+		@Override
+		protected void onEviction(Integer key, String value) {
+			Assert.assertEquals(String.valueOf(key), value);
+			this.evictedKeys.add(key);
+		}
+	}
+
+	/**
+	 * Reads the given key from the cache and adds it on a miss.
+	 */
+	private static void access(EvictingCache<Integer, String> evictingCache, int key) {
+		if (evictingCache.get(Integer.valueOf(key)) == null) {
+			put(evictingCache, key);
+		}
+	}
+
+	private static void put(EvictingCache<Integer, String> evictingCache, int key) {
+		evictingCache.put(Integer.valueOf(key), String.valueOf(key));
+	}
+
+	private static void verifyInvalidConstructor(int capacity, EvictionPolicy<Integer> evictionPolicy) {
+		try {
+			new EvictingCache<Integer, String>(capacity, evictionPolicy);
+			Assert.fail("capacity: " + capacity + ", evictionPolicy: " + evictionPolicy);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void invalidConstructorTest() {
+		verifyInvalidConstructor(-1, new LruEvictionPolicy<Integer>());
+		verifyInvalidConstructor(1, null);
+	}
+
+	@Test
+	public void lruEvictionTest() {
+		RecordingCache evictingCache = new RecordingCache(2, new LruEvictionPolicy<Integer>());
+		put(evictingCache, 1);
+		put(evictingCache, 2);
+		Assert.assertEquals("1", evictingCache.get(Integer.valueOf(1)));
+		put(evictingCache, 3);
+
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(2)), evictingCache.evictedKeys);
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1), Integer.valueOf(3)), evictingCache.getKeys());
+
+		// explicit removals are not evictions
+		Assert.assertEquals("1", evictingCache.remove(Integer.valueOf(1)));
+		Assert.assertEquals(1, evictingCache.size());
+		Assert.assertEquals(1, evictingCache.evictedKeys.size());
+
+		evictingCache.setCapacity(0);
+		Assert.assertEquals(0, evictingCache.size());
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(2), Integer.valueOf(3)), evictingCache.evictedKeys);
+
+		put(evictingCache, 4);
+		Assert.assertFalse(evictingCache.containsKey(Integer.valueOf(4)));
+	}
+
+	@Test
+	public void scanResistanceTest() {
+		int capacity = 100;
+		EvictingCache<Integer, String> lruCache = new EvictingCache<>(capacity, new LruEvictionPolicy<Integer>());
+		EvictingCache<Integer, String> twoQueueCache = new EvictingCache<>(capacity,
+				new TwoQueueEvictionPolicy<Integer>());
+		EvictingCache<Integer, String> tinyLfuCache = new EvictingCache<>(capacity,
+				new TinyLfuEvictionPolicy<Integer>());
+
+		// a small working set which is used repeatedly, mixed with a few other keys
+		int otherKey = 1000;
+		for (int round = 0; round < 3; ++round) {
+			for (int key = 0; key < 20; ++key) {
+				access(lruCache, key);
+				access(twoQueueCache, key);
+				access(tinyLfuCache, key);
+			}
+			for (int i = 0; i < 60; ++i, ++otherKey) {
+				access(lruCache, otherKey);
+				access(twoQueueCache, otherKey);
+				access(tinyLfuCache, otherKey);
+			}
+		}
+
+		// a long scan of keys which are used only once
+		for (int i = 0; i < 500; ++i, ++otherKey) {
+			access(lruCache, otherKey);
+			access(twoQueueCache, otherKey);
+		}
+
+		int lruHits = 0;
+		int twoQueueHits = 0;
+		int tinyLfuHits = 0;
+		for (int key = 0; key < 20; ++key) {
+			if (lruCache.containsKey(Integer.valueOf(key))) {
+				++lruHits;
+			}
+			if (twoQueueCache.containsKey(Integer.valueOf(key))) {
+				++twoQueueHits;
+			}
+			if (tinyLfuCache.containsKey(Integer.valueOf(key))) {
+				++tinyLfuHits;
+			}
+		}
+		Assert.assertEquals(0, lruHits);
+		Assert.assertEquals(20, twoQueueHits);
+		Assert.assertEquals(20, tinyLfuHits);
+		Assert.assertTrue(twoQueueCache.size() <= capacity);
+		Assert.assertTrue(tinyLfuCache.size() <= capacity);
+	}
+
+	@Test
+	public void tinyLfuProtectedCandidateTest() {
+		RecordingCache evictingCache = new RecordingCache(10, new TinyLfuEvictionPolicy<Integer>());
+		for (int key = 1; key <= 4; ++key) {
+			put(evictingCache, key);
+		}
+
+		// key 2 has left the window as the last candidate and becomes protected by this access
+		Assert.assertEquals("2", evictingCache.get(Integer.valueOf(2)));
+		evictingCache.setCapacity(3);
+
+		Assert.assertEquals(Arrays.asList(Integer.valueOf(1)), evictingCache.evictedKeys);
+		Assert.assertTrue(evictingCache.containsKey(Integer.valueOf(2)));
+		Assert.assertEquals(3, evictingCache.getKeys().size());
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.mapsforge.core.model.Tile;
+
+/**
+ * Replays a trace of tile requests against caches with different eviction policies and prints their hit ratios.
+ * <p>
+ * The trace file contains one request per line in the format {@code zoomLevel tileX tileY}, lines starting with
+ * {@code #} are ignored. Without a trace file, a synthetic trace is generated which alternates between browsing
+ * around a home position, fast flings across the map and zooming out to an overview.
+ * <p>
+ * Usage: {@code EvictionPolicyBenchmark [traceFile]}
+ */
+public final class EvictionPolicyBenchmark {
+	private static final int[] CAPACITIES = { 32, 64, 128, 256, 512 };
+	private static final int VIEWPORT_HEIGHT = 4;
+	private static final int VIEWPORT_WIDTH = 5;
+
+	public static void main(String[] args) throws IOException {
+		List<Tile> trace = args.length > 0 ? readTrace(args[0]) : createSyntheticTrace(new Random(42));
+		System.out.println("requests: " + trace.size());
+		System.out.println(String.format("%10s %10s %10s %10s", "capacity", "LRU", "2Q", "TinyLFU"));
+
+		for (int capacity : CAPACITIES) {
+			double lruHitRatio = replay(trace, capacity, new LruEvictionPolicy<Tile>());
+			double twoQueueHitRatio = replay(trace, capacity, new TwoQueueEvictionPolicy<Tile>());
+			double tinyLfuHitRatio = replay(trace, capacity, new TinyLfuEvictionPolicy<Tile>());
+			System.out.println(String.format("%10d %9.2f%% %9.2f%% %9.2f%%", Integer.valueOf(capacity),
+					Double.valueOf(lruHitRatio * 100), Double.valueOf(twoQueueHitRatio * 100),
+					Double.valueOf(tinyLfuHitRatio * 100)));
+		}
+	}
+
+	private static void addViewport(List<Tile> trace, long centerX, long centerY, byte zoomLevel) {
+		long maximumTileNumber = (1L << zoomLevel) - 1;
+		for (long tileY = centerY - VIEWPORT_HEIGHT / 2; tileY < centerY + (VIEWPORT_HEIGHT + 1) / 2; ++tileY) {
+			for (long tileX = centerX - VIEWPORT_WIDTH / 2; tileX < centerX + (VIEWPORT_WIDTH + 1) / 2; ++tileX) {
+				if (tileX >= 0 && tileY >= 0 && tileX <= maximumTileNumber && tileY <= maximumTileNumber) {
+					trace.add(new Tile(tileX, tileY, zoomLevel));
+				}
+			}
+		}
+	}
+
+	private static List<Tile> createSyntheticTrace(Random random) {
+		List<Tile> trace = new ArrayList<Tile>();
+		byte homeZoomLevel = 15;
+		long homeX = 17_600;
+		long homeY = 10_750;
+
+		for (int session = 0; session < 200; ++session) {
+			// browse around the home position
+			long x = homeX;
+			long y = homeY;
+			for (int step = 0; step < 20; ++step) {
+				x += random.nextInt(3) - 1;
+				y += random.nextInt(3) - 1;
+				addViewport(trace, x, y, homeZoomLevel);
+			}
+
+			// zoom out to an overview and back
+			for (byte zoomLevel = (byte) (homeZoomLevel - 1); zoomLevel >= 10; --zoomLevel) {
+				int shift = homeZoomLevel - zoomLevel;
+				addViewport(trace, homeX >> shift, homeY >> shift, zoomLevel);
+			}
+
+			// a fast fling in a random direction, the tiles are seen only once
+			int directionX = random.nextInt(3) - 1;
+			int directionY = random.nextInt(3) - 1;
+			long offset = 100 + random.nextInt(10_000);
+			x = homeX + offset * (random.nextBoolean() ? 1 : -1);
+			y = homeY + offset * (random.nextBoolean() ? 1 : -1);
+			for (int step = 0; step < 60; ++step) {
+				x += directionX * VIEWPORT_WIDTH;
+				y += directionY * VIEWPORT_HEIGHT;
+				addViewport(trace, x, y, homeZoomLevel);
+			}
+		}
+		return trace;
+	}
+
+	private static List<Tile> readTrace(String fileName) throws IOException {
+		List<Tile> trace = new ArrayList<Tile>();
+		BufferedReader bufferedReader = null;
+		try {
+			bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+			String line;
+			while ((line = bufferedReader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\\s+");
+				trace.add(new Tile(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Byte.parseByte(fields[0])));
+			}
+		} finally {
+			IOUtils.closeQuietly(bufferedReader);
+		}
+		return trace;
+	}
+
+	private static double replay(List<Tile> trace, int capacity, EvictionPolicy<Tile> evictionPolicy) {
+		EvictingCache<Tile, Boolean> evictingCache = new EvictingCache<Tile, Boolean>(capacity, evictionPolicy);
+		long hits = 0;
+		for (Tile tile : trace) {
+			if (evictingCache.get(tile) != null) {
+				++hits;
+			} else {
+				evictingCache.put(tile, Boolean.TRUE);
+			}
+		}
+		return (double) hits / trace.size();
+	}
+
+	private EvictionPolicyBenchmark() {
+		throw new IllegalStateException();
+	}
+}
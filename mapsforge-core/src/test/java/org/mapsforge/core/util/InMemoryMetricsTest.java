@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InMemoryMetricsTest {
+	@Test
+	public void disabledMetricsTest() {
+		Assert.assertFalse(DisabledMetrics.INSTANCE.isEnabled());
+		DisabledMetrics.INSTANCE.increment("counter", 1);
+		DisabledMetrics.INSTANCE.recordLatency("latency", 1);
+		DisabledMetrics.INSTANCE.setGauge("gauge", 1);
+	}
+
+	@Test
+	public void inMemoryMetricsTest() {
+		InMemoryMetrics inMemoryMetrics = new InMemoryMetrics();
+		Assert.assertTrue(inMemoryMetrics.isEnabled());
+		Assert.assertEquals(0, inMemoryMetrics.getCounter("counter"));
+		Assert.assertEquals(0, inMemoryMetrics.getGauge("gauge"));
+		Assert.assertNull(inMemoryMetrics.getHistogram("latency"));
+
+		inMemoryMetrics.increment("counter", 2);
+		inMemoryMetrics.increment("counter", 3);
+		inMemoryMetrics.setGauge("gauge", 7);
+		inMemoryMetrics.setGauge("gauge", 4);
+		inMemoryMetrics.recordLatency("latency", 100);
+		inMemoryMetrics.recordLatency("latency", 300);
+
+		Assert.assertEquals(5, inMemoryMetrics.getCounter("counter"));
+		Assert.assertEquals(4, inMemoryMetrics.getGauge("gauge"));
+		Assert.assertEquals(2, inMemoryMetrics.getHistogram("latency").getCount());
+		Assert.assertEquals(200, inMemoryMetrics.getHistogram("latency").getMean(), 0);
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("counter")), inMemoryMetrics.getCounterNames());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("gauge")), inMemoryMetrics.getGaugeNames());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("latency")), inMemoryMetrics.getHistogramNames());
+		Assert.assertTrue(inMemoryMetrics.toString().contains("counter: 5"));
+
+		inMemoryMetrics.reset();
+		Assert.assertEquals(0, inMemoryMetrics.getCounter("counter"));
+		Assert.assertTrue(inMemoryMetrics.getHistogramNames().isEmpty());
+	}
+}
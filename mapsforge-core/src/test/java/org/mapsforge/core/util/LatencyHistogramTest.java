@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	private static void verifyInvalidPercentile(LatencyHistogram latencyHistogram, double percentile) {
+		try {
+			latencyHistogram.getPercentile(percentile);
+			Assert.fail("percentile: " + percentile);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void invalidPercentileTest() {
+		LatencyHistogram latencyHistogram = new LatencyHistogram();
+		verifyInvalidPercentile(latencyHistogram, -1);
+		verifyInvalidPercentile(latencyHistogram, 101);
+		verifyInvalidPercentile(latencyHistogram, Double.NaN);
+	}
+
+	@Test
+	public void latencyHistogramTest() {
+		LatencyHistogram latencyHistogram = new LatencyHistogram();
+		Assert.assertEquals(0, latencyHistogram.getCount());
+		Assert.assertEquals(0, latencyHistogram.getMean(), 0);
+		Assert.assertEquals(0, latencyHistogram.getPercentile(50));
+
+		for (int i = 0; i < 99; ++i) {
+			latencyHistogram.record(1000);
+		}
+		latencyHistogram.record(1000000);
+
+		Assert.assertEquals(100, latencyHistogram.getCount());
+		Assert.assertEquals(1000000, latencyHistogram.getMaximum());
+		Assert.assertEquals(10990, latencyHistogram.getMean(), 0);
+
+		// the percentiles are upper bounds which are at most twice the exact value
+		long median = latencyHistogram.getPercentile(50);
+		Assert.assertTrue(median >= 1000 && median < 2000);
+		long p99 = latencyHistogram.getPercentile(99);
+		Assert.assertTrue(p99 >= 1000 && p99 < 2000);
+		Assert.assertEquals(1000000, latencyHistogram.getPercentile(100));
+
+		latencyHistogram.record(-1);
+		Assert.assertTrue(latencyHistogram.getPercentile(0) <= 1);
+	}
+}
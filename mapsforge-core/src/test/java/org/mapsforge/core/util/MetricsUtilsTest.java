@@ -12,16 +12,26 @@
  * You should have received a copy of the GNU Lesser General Public License along with
  * this program. If not, see <http://www.gnu.org/licenses/>.
  */
-package org.mapsforge.map.reader;
+package org.mapsforge.core.util;
 
-import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
 
-class PoiWayBundle {
-	final List<PointOfInterest> pois;
-	final List<Way> ways;
+public class MetricsUtilsTest {
+	private static void verifyInvalidMetrics(Metrics metrics, String name) {
+		try {
+			MetricsUtils.checkMetrics(metrics, name);
+			Assert.fail("metrics: " + metrics + ", name: " + name);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void checkMetricsTest() {
+		MetricsUtils.checkMetrics(DisabledMetrics.INSTANCE, "");
 
-	PoiWayBundle(List<PointOfInterest> pois, List<Way> ways) {
-		this.pois = pois;
-		this.ways = ways;
+		verifyInvalidMetrics(null, "");
+		verifyInvalidMetrics(DisabledMetrics.INSTANCE, null);
 	}
 }
@@ -111,6 +111,21 @@ class AwtPaint implements Paint {
 		this.join = getJoin(Join.ROUND);
 	}
 
+	AwtPaint(AwtPaint paint) {
+		this.cap = paint.cap;
+		this.color = paint.color;
+		this.font = paint.font;
+		this.fontName = paint.fontName;
+		this.fontStyle = paint.fontStyle;
+		this.join = paint.join;
+		this.stroke = paint.stroke;
+		this.strokeDasharray = paint.strokeDasharray;
+		this.strokeWidth = paint.strokeWidth;
+		this.style = paint.style;
+		this.textSize = paint.textSize;
+		this.texturePaint = paint.texturePaint;
+	}
+
 	@Override
 	public int getTextHeight(String text) {
 		BufferedImage bufferedImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
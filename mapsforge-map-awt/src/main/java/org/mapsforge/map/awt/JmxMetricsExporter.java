@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.mapsforge.core.util.InMemoryMetrics;
+import org.mapsforge.core.util.LatencyHistogram;
+
+/**
+ * Publishes {@link InMemoryMetrics} as a JMX MBean, so that they can be watched with tools like JConsole or VisualVM.
+ * <p>
+ * Every counter and gauge is an attribute with its own name. Every histogram is published as the attributes
+ * {@code <name>.count} and {@code <name>.meanMillis}, {@code <name>.p50Millis}, {@code <name>.p99Millis} and
+ * {@code <name>.maxMillis}. The operation {@code reset} removes all values.
+ */
+public class JmxMetricsExporter implements DynamicMBean {
+	private static final String COUNT_SUFFIX = ".count";
+	private static final String MAX_SUFFIX = ".maxMillis";
+	private static final String MEAN_SUFFIX = ".meanMillis";
+	private static final double NANOSECONDS_PER_MILLISECOND = 1000000;
+	private static final String P50_SUFFIX = ".p50Millis";
+	private static final String P99_SUFFIX = ".p99Millis";
+	private static final String RESET_OPERATION = "reset";
+
+	private static MBeanAttributeInfo createAttributeInfo(String name, Class<?> type, String description) {
+		return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+	}
+
+	private final InMemoryMetrics metrics;
+	private final ObjectName objectName;
+
+	/**
+	 * @param metrics
+	 *            the metrics to publish.
+	 * @param name
+	 *            the name of the MBean, which is registered as {@code org.mapsforge:type=Metrics,name=<name>}.
+	 * @throws IllegalArgumentException
+	 *             if the metrics are null or the name is not valid in an object name.
+	 */
+	public JmxMetricsExporter(InMemoryMetrics metrics, String name) {
+		if (metrics == null) {
+			throw new IllegalArgumentException("metrics must not be null");
+		}
+
+		this.metrics = metrics;
+		try {
+			this.objectName = new ObjectName("org.mapsforge:type=Metrics,name=" + name);
+		} catch (JMException e) {
+			throw new IllegalArgumentException("invalid name: " + name, e);
+		}
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		if (this.metrics.getCounterNames().contains(attribute)) {
+			return Long.valueOf(this.metrics.getCounter(attribute));
+		} else if (this.metrics.getGaugeNames().contains(attribute)) {
+			return Long.valueOf(this.metrics.getGauge(attribute));
+		}
+
+		int index = attribute.lastIndexOf('.');
+		if (index > 0) {
+			LatencyHistogram histogram = this.metrics.getHistogram(attribute.substring(0, index));
+			if (histogram != null) {
+				String suffix = attribute.substring(index);
+				if (COUNT_SUFFIX.equals(suffix)) {
+					return Long.valueOf(histogram.getCount());
+				} else if (MAX_SUFFIX.equals(suffix)) {
+					return Double.valueOf(histogram.getMaximum() / NANOSECONDS_PER_MILLISECOND);
+				} else if (MEAN_SUFFIX.equals(suffix)) {
+					return Double.valueOf(histogram.getMean() / NANOSECONDS_PER_MILLISECOND);
+				} else if (P50_SUFFIX.equals(suffix)) {
+					return Double.valueOf(histogram.getPercentile(50) / NANOSECONDS_PER_MILLISECOND);
+				} else if (P99_SUFFIX.equals(suffix)) {
+					return Double.valueOf(histogram.getPercentile(99) / NANOSECONDS_PER_MILLISECOND);
+				}
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList attributeList = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				attributeList.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// attributes which cannot be read are omitted
+			}
+		}
+		return attributeList;
+	}
+
+	/**
+	 * Describes the currently known metrics, new metrics appear when the description is requested again.
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributeInfos = new ArrayList<MBeanAttributeInfo>();
+		for (String name : this.metrics.getCounterNames()) {
+			attributeInfos.add(createAttributeInfo(name, Long.class, "counter"));
+		}
+		for (String name : this.metrics.getGaugeNames()) {
+			attributeInfos.add(createAttributeInfo(name, Long.class, "gauge"));
+		}
+		for (String name : this.metrics.getHistogramNames()) {
+			attributeInfos.add(createAttributeInfo(name + COUNT_SUFFIX, Long.class, "number of measurements"));
+			attributeInfos.add(createAttributeInfo(name + MEAN_SUFFIX, Double.class, "mean duration"));
+			attributeInfos.add(createAttributeInfo(name + P50_SUFFIX, Double.class, "median duration"));
+			attributeInfos.add(createAttributeInfo(name + P99_SUFFIX, Double.class, "99th percentile duration"));
+			attributeInfos.add(createAttributeInfo(name + MAX_SUFFIX, Double.class, "longest duration"));
+		}
+
+		MBeanOperationInfo resetOperationInfo = new MBeanOperationInfo(RESET_OPERATION, "removes all values",
+				new MBeanParameterInfo[0], void.class.getName(), MBeanOperationInfo.ACTION);
+		return new MBeanInfo(getClass().getName(), "mapsforge metrics",
+				attributeInfos.toArray(new MBeanAttributeInfo[attributeInfos.size()]), null,
+				new MBeanOperationInfo[] { resetOperationInfo }, null);
+	}
+
+	/**
+	 * @return the name under which this MBean is registered.
+	 */
+	public ObjectName getObjectName() {
+		return this.objectName;
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		if (RESET_OPERATION.equals(actionName)) {
+			this.metrics.reset();
+			return null;
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	/**
+	 * Registers this MBean with the platform MBean server.
+	 * 
+	 * @throws JMException
+	 *             if the registration fails, e.g. because the name is already in use.
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("read-only attribute: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	/**
+	 * Removes this MBean from the platform MBean server if it is registered.
+	 * 
+	 * @throws JMException
+	 *             if the removal fails.
+	 */
+	public void unregister() throws JMException {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		if (mBeanServer.isRegistered(this.objectName)) {
+			mBeanServer.unregisterMBean(this.objectName);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.awt;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.util.InMemoryMetrics;
+
+public class JmxMetricsExporterTest {
+	@Test
+	public void jmxMetricsExporterTest() throws JMException {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		metrics.increment("cache.hits", 3);
+		metrics.recordLatency("cache.get", 2000000);
+
+		JmxMetricsExporter jmxMetricsExporter = new JmxMetricsExporter(metrics, "test");
+		jmxMetricsExporter.register();
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			Assert.assertEquals(Long.valueOf(3),
+					mBeanServer.getAttribute(jmxMetricsExporter.getObjectName(), "cache.hits"));
+			Assert.assertEquals(Long.valueOf(1),
+					mBeanServer.getAttribute(jmxMetricsExporter.getObjectName(), "cache.get.count"));
+			Assert.assertEquals(2, ((Double) mBeanServer.getAttribute(jmxMetricsExporter.getObjectName(),
+					"cache.get.maxMillis")).doubleValue(), 0);
+			Assert.assertEquals(6, mBeanServer.getMBeanInfo(jmxMetricsExporter.getObjectName()).getAttributes().length);
+
+			try {
+				jmxMetricsExporter.getAttribute("unknown");
+				Assert.fail();
+			} catch (AttributeNotFoundException e) {
+				Assert.assertTrue(true);
+			}
+
+			mBeanServer.invoke(jmxMetricsExporter.getObjectName(), "reset", null, null);
+			Assert.assertEquals(0, metrics.getCounter("cache.hits"));
+		} finally {
+			jmxMetricsExporter.unregister();
+		}
+		Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(jmxMetricsExporter.getObjectName()));
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.List;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Distributes the elements of a decoded block to all tiles of a batch read which cover the block.
+ */
+class BatchCollector implements MapDataCollector {
+	private List<BatchTile> batchTiles;
+
+	@Override
+	public void addPointOfInterest(byte layer, List<Tag> tags, int[] tagIds, double latitude, double longitude) {
+		PointOfInterest pointOfInterest = new PointOfInterest(layer, tags, tagIds, new LatLong(latitude, longitude));
+		for (BatchTile batchTile : this.batchTiles) {
+			batchTile.mapReadResultBuilder.addPointOfInterest(pointOfInterest);
+		}
+	}
+
+	@Override
+	public void addWay(byte layer, List<Tag> tags, int[] tagIds, WayNodesBuffer wayNodes, double labelLatitude,
+			double labelLongitude, int tileBitmask) {
+		Way way = null;
+		for (BatchTile batchTile : this.batchTiles) {
+			QueryParameters queryParameters = batchTile.queryParameters;
+			if (queryParameters.useTileBitmask && (queryParameters.queryTileBitmask & tileBitmask) == 0) {
+				// the way is not inside this tile
+				continue;
+			}
+
+			if (way == null) {
+				LatLong labelPosition = null;
+				if (!Double.isNaN(labelLatitude)) {
+					labelPosition = new LatLong(labelLatitude, labelLongitude);
+				}
+				way = new Way(layer, tags, tagIds, wayNodes.toLatLongs(), labelPosition);
+			}
+			batchTile.mapReadResultBuilder.addWay(way);
+		}
+	}
+
+	@Override
+	public void setWater(boolean isWater) {
+		// the water flag is calculated separately for each tile
+	}
+
+	/**
+	 * Sets the tiles which receive the elements of the next block and prepares the query parameters of the block.
+	 * 
+	 * @param blockBatchTiles
+	 *            all tiles which cover the next block.
+	 * @param blockQueryParameters
+	 *            the query parameters of the next block, its tile bitmask covers all given tiles.
+	 */
+	void setBatchTiles(List<BatchTile> blockBatchTiles, QueryParameters blockQueryParameters) {
+		this.batchTiles = blockBatchTiles;
+
+		blockQueryParameters.useTileBitmask = true;
+		blockQueryParameters.queryTileBitmask = 0;
+		for (BatchTile batchTile : blockBatchTiles) {
+			QueryParameters queryParameters = batchTile.queryParameters;
+			blockQueryParameters.useTileBitmask &= queryParameters.useTileBitmask;
+			blockQueryParameters.queryTileBitmask |= queryParameters.queryTileBitmask;
+		}
+	}
+}
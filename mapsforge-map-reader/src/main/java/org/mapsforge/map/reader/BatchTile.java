@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tile;
+
+/**
+ * The state of a single tile during a batch read.
+ */
+final class BatchTile {
+	boolean failed;
+	boolean isWater;
+	final MapReadResultBuilder mapReadResultBuilder;
+	final QueryParameters queryParameters;
+	boolean readWaterInfo;
+	final Tile tile;
+
+	BatchTile(Tile tile) {
+		this.tile = tile;
+		this.isWater = true;
+		this.mapReadResultBuilder = new MapReadResultBuilder();
+		this.queryParameters = new QueryParameters();
+	}
+
+	/**
+	 * @return the read map data of this tile or null, if reading has failed.
+	 */
+	MapReadResult build() {
+		if (this.failed) {
+			return null;
+		}
+		this.mapReadResultBuilder.setWater(this.isWater && this.readWaterInfo);
+		return this.mapReadResultBuilder.build();
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+/**
+ * A thread-safe LRU cache for decoded map blocks with a maximum size in bytes.
+ * <p>
+ * A block is decoded once for all zoom levels of its sub-file and keeps the tile bitmasks of its ways. Subsequent
+ * queries for neighbouring tiles or tiles with a higher zoom level which are located in the same block only select the
+ * elements of their zoom level and apply the tile bitmask. The size of a decoded block is estimated from the number of
+ * its elements and way nodes. One instance can be shared by any number of {@link MapDatabase} instances.
+ * 
+ * @see MapDatabase#setBlockCache(BlockCache)
+ */
+public class BlockCache {
+	/**
+	 * Number of bits of a cache key which are used for the block number.
+	 */
+	private static final int KEY_BITS_BLOCK = 40;
+
+	/**
+	 * Number of bits of a cache key which are used for the sub-file.
+	 */
+	private static final int KEY_BITS_SUB_FILE = 8;
+
+	/**
+	 * Maximum number of distinct map files which can be registered.
+	 */
+	private static final int MAXIMUM_FILE_IDS = 1 << (63 - KEY_BITS_SUB_FILE - KEY_BITS_BLOCK);
+
+	static long createKey(int fileId, SubFileParameter subFileParameter, long blockNumber) {
+		return ((long) fileId << (KEY_BITS_SUB_FILE + KEY_BITS_BLOCK))
+				| ((long) (subFileParameter.baseZoomLevel & 0xff) << KEY_BITS_BLOCK) | blockNumber;
+	}
+
+	private final Map<Long, DecodedBlock> blocks;
+	private final long capacity;
+	private long evictionCount;
+	private final Map<String, Integer> fileIds;
+	private long hitCount;
+	private long missCount;
+	private long size;
+
+	/**
+	 * @param capacity
+	 *            the maximum estimated number of bytes which this cache may use for decoded blocks.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public BlockCache(long capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+
+		this.capacity = capacity;
+		this.blocks = new LinkedHashMap<Long, DecodedBlock>(16, 0.75f, true);
+		this.fileIds = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Removes all blocks from this cache. The hit, miss and eviction counters are not reset.
+	 */
+	public synchronized void clear() {
+		this.blocks.clear();
+		this.size = 0;
+	}
+
+	/**
+	 * @return the maximum estimated number of bytes which this cache may use for decoded blocks.
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of blocks which have been evicted to make room for other blocks.
+	 */
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * @return the number of lookups which have found a cached block.
+	 */
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * @return the number of lookups which have not found a cached block.
+	 */
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * @return the estimated number of bytes which are currently used by the cached blocks.
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of currently cached blocks.
+	 */
+	public synchronized int size() {
+		return this.blocks.size();
+	}
+
+	synchronized DecodedBlock get(long key) {
+		DecodedBlock decodedBlock = this.blocks.get(Long.valueOf(key));
+		if (decodedBlock == null) {
+			++this.missCount;
+		} else {
+			++this.hitCount;
+		}
+		return decodedBlock;
+	}
+
+	/**
+	 * Returns a small number which identifies the given map file in the keys of this cache.
+	 * 
+	 * @param fileIdentity
+	 *            a string which uniquely identifies the content of a map file.
+	 * @return the ID of the map file.
+	 */
+	synchronized int getFileId(String fileIdentity) {
+		Integer fileId = this.fileIds.get(fileIdentity);
+		if (fileId == null) {
+			if (this.fileIds.size() >= MAXIMUM_FILE_IDS) {
+				throw new IllegalStateException("too many map files: " + this.fileIds.size());
+			}
+			fileId = Integer.valueOf(this.fileIds.size());
+			this.fileIds.put(fileIdentity, fileId);
+		}
+		return fileId.intValue();
+	}
+
+	synchronized void put(long key, DecodedBlock decodedBlock) {
+		if (decodedBlock.getSize() > this.capacity) {
+			// the block would evict all others and still not fit
+			return;
+		}
+
+		DecodedBlock previousBlock = this.blocks.put(Long.valueOf(key), decodedBlock);
+		if (previousBlock != null) {
+			this.size -= previousBlock.getSize();
+		}
+		this.size += decodedBlock.getSize();
+
+		// evict the least recently used blocks until the cache fits into its capacity again
+		Iterator<DecodedBlock> iterator = this.blocks.values().iterator();
+		while (this.size > this.capacity) {
+			DecodedBlock eldestBlock = iterator.next();
+			iterator.remove();
+			this.size -= eldestBlock.getSize();
+			++this.evictionCount;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * All decoded POIs and ways of a single block for all zoom levels of its sub-file. Instances are immutable after
+ * construction and may be shared between threads.
+ */
+final class DecodedBlock {
+	/**
+	 * Estimated memory overhead of a single object in bytes.
+	 */
+	private static final int OBJECT_OVERHEAD = 16;
+
+	/**
+	 * Estimated memory size of a single decoded POI or way without its coordinates in bytes.
+	 */
+	private static final int ELEMENT_SIZE = 64;
+
+	/**
+	 * A block without any elements.
+	 */
+	static final DecodedBlock EMPTY = new DecodedBlock(new FlatMapReadResult(), new int[0], null);
+
+	private final int[] blockNodeOffsets;
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final int numberOfPois;
+	private final int numberOfWays;
+	private final double[] poiLatitudes;
+	private final byte[] poiLayers;
+	private final double[] poiLongitudes;
+	private final List<int[]> poiTagIds;
+	private final List<List<Tag>> poiTags;
+	private final long size;
+	private final int[] wayBlockOffsets;
+	private final double[] wayLabelLatitudes;
+	private final double[] wayLabelLongitudes;
+	private final byte[] wayLayers;
+	private final List<int[]> wayTagIds;
+	private final List<List<Tag>> wayTags;
+	private final int[] wayTileBitmasks;
+	private final int[][] zoomTable;
+
+	/**
+	 * @param elements
+	 *            the decoded elements in geographical coordinates, their arrays are copied.
+	 * @param wayTileBitmasks
+	 *            the tile bitmasks of the decoded ways.
+	 * @param zoomTable
+	 *            the cumulated number of POIs and ways for each zoom level of the sub-file, may be null if there are
+	 *            no elements.
+	 */
+	DecodedBlock(FlatMapReadResult elements, int[] wayTileBitmasks, int[][] zoomTable) {
+		this.numberOfPois = elements.numberOfPois;
+		this.poiLayers = Arrays.copyOf(elements.poiLayers, this.numberOfPois);
+		this.poiTagIds = new ArrayList<int[]>(elements.poiTagIds);
+		this.poiTags = new ArrayList<List<Tag>>(elements.poiTags);
+		this.poiLatitudes = Arrays.copyOf(elements.poiY, this.numberOfPois);
+		this.poiLongitudes = Arrays.copyOf(elements.poiX, this.numberOfPois);
+
+		this.numberOfWays = elements.numberOfWays;
+		this.wayLayers = Arrays.copyOf(elements.wayLayers, this.numberOfWays);
+		this.wayTagIds = new ArrayList<int[]>(elements.wayTagIds);
+		this.wayTags = new ArrayList<List<Tag>>(elements.wayTags);
+		this.wayLabelLatitudes = Arrays.copyOf(elements.wayLabelY, this.numberOfWays);
+		this.wayLabelLongitudes = Arrays.copyOf(elements.wayLabelX, this.numberOfWays);
+		this.wayTileBitmasks = Arrays.copyOf(wayTileBitmasks, this.numberOfWays);
+		this.wayBlockOffsets = Arrays.copyOf(elements.wayBlockOffsets, this.numberOfWays + 1);
+
+		this.blockNodeOffsets = Arrays.copyOf(elements.blockNodeOffsets, elements.numberOfBlocks + 1);
+		this.latitudes = Arrays.copyOf(elements.nodeY, elements.numberOfNodes);
+		this.longitudes = Arrays.copyOf(elements.nodeX, elements.numberOfNodes);
+
+		this.zoomTable = zoomTable;
+
+		this.size = 16L * elements.numberOfNodes + 4L * elements.numberOfBlocks + (long) ELEMENT_SIZE
+				* (this.numberOfPois + this.numberOfWays) + 16L * OBJECT_OVERHEAD;
+	}
+
+	/**
+	 * @return the estimated memory size of this block in bytes.
+	 */
+	long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Passes all elements of this block which belong to the given query to the given collector.
+	 * 
+	 * @param queryParameters
+	 *            the parameters of the query.
+	 * @param zoomTableRow
+	 *            the row of the zoom table for the query zoom level.
+	 * @param mapDataCollector
+	 *            the collector which receives the elements.
+	 * @param wayNodesBuffer
+	 *            the buffer which is used to pass the way nodes.
+	 */
+	void replay(QueryParameters queryParameters, int zoomTableRow, MapDataCollector mapDataCollector,
+			WayNodesBuffer wayNodesBuffer) {
+		if (this.zoomTable == null) {
+			return;
+		}
+
+		// the elements are ordered by zoom level, so the query zoom level needs a prefix of them
+		int pois = Math.min(this.zoomTable[zoomTableRow][0], this.numberOfPois);
+		for (int i = 0; i < pois; ++i) {
+			mapDataCollector.addPointOfInterest(this.poiLayers[i], this.poiTags.get(i), this.poiTagIds.get(i),
+					this.poiLatitudes[i], this.poiLongitudes[i]);
+		}
+
+		int ways = Math.min(this.zoomTable[zoomTableRow][1], this.numberOfWays);
+		for (int i = 0; i < ways; ++i) {
+			int tileBitmask = this.wayTileBitmasks[i];
+			if (queryParameters.useTileBitmask && (queryParameters.queryTileBitmask & tileBitmask) == 0) {
+				// the way is not inside the requested tile
+				continue;
+			}
+
+			wayNodesBuffer.clear();
+			for (int block = this.wayBlockOffsets[i]; block < this.wayBlockOffsets[i + 1]; ++block) {
+				int firstNode = this.blockNodeOffsets[block];
+				int blockSize = this.blockNodeOffsets[block + 1] - firstNode;
+				if (blockSize == 0) {
+					// valid coordinate blocks have at least two nodes
+					wayNodesBuffer.addBlock(-1);
+					continue;
+				}
+
+				int targetNode = wayNodesBuffer.addBlock(blockSize);
+				System.arraycopy(this.latitudes, firstNode, wayNodesBuffer.latitudes, targetNode, blockSize);
+				System.arraycopy(this.longitudes, firstNode, wayNodesBuffer.longitudes, targetNode, blockSize);
+			}
+
+			mapDataCollector.addWay(this.wayLayers[i], this.wayTags.get(i), this.wayTagIds.get(i), wayNodesBuffer,
+					this.wayLabelLatitudes[i], this.wayLabelLongitudes[i], tileBitmask);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Collects all elements of a block for a {@link DecodedBlock}.
+ */
+class DecodedBlockBuilder implements MapDataCollector {
+	private final FlatMapReadResult elements;
+	private final FlatMapReadResultBuilder flatMapReadResultBuilder;
+	private int[] wayTileBitmasks;
+
+	DecodedBlockBuilder() {
+		this.elements = new FlatMapReadResult();
+		this.flatMapReadResultBuilder = new FlatMapReadResultBuilder(this.elements, null);
+		this.wayTileBitmasks = new int[this.elements.wayLayers.length];
+	}
+
+	@Override
+	public void addPointOfInterest(byte layer, List<Tag> tags, int[] tagIds, double latitude, double longitude) {
+		this.flatMapReadResultBuilder.addPointOfInterest(layer, tags, tagIds, latitude, longitude);
+	}
+
+	@Override
+	public void addWay(byte layer, List<Tag> tags, int[] tagIds, WayNodesBuffer wayNodes, double labelLatitude,
+			double labelLongitude, int tileBitmask) {
+		int index = this.elements.numberOfWays;
+		if (index == this.wayTileBitmasks.length) {
+			this.wayTileBitmasks = Arrays.copyOf(this.wayTileBitmasks, index * 2);
+		}
+		this.wayTileBitmasks[index] = tileBitmask;
+		this.flatMapReadResultBuilder.addWay(layer, tags, tagIds, wayNodes, labelLatitude, labelLongitude, tileBitmask);
+	}
+
+	@Override
+	public void setWater(boolean isWater) {
+		// the water flag is stored in the index, not in the block
+	}
+
+	DecodedBlock build(int[][] zoomTable) {
+		return new DecodedBlock(this.elements, this.wayTileBitmasks, zoomTable);
+	}
+}
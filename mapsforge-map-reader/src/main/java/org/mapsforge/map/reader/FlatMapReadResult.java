@@ -0,0 +1,197 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A reusable container for the data returned by the {@link MapDatabase}, which stores all coordinates in flat
+ * primitive arrays instead of {@link org.mapsforge.core.model.LatLong} objects.
+ * <p>
+ * The coordinates of way {@code i} are stored in the coordinate blocks {@code wayBlockOffsets[i]} (inclusive) to
+ * {@code wayBlockOffsets[i + 1]} (exclusive), the nodes of coordinate block {@code j} are stored at the indices
+ * {@code blockNodeOffsets[j]} (inclusive) to {@code blockNodeOffsets[j + 1]} (exclusive) of {@link #nodeX} and
+ * {@link #nodeY}. A coordinate block without nodes was invalid in the map file.
+ * <p>
+ * If this result has been created with a tile size, all X and Y coordinates are pixel coordinates relative to the
+ * top-left corner of the read tile. Otherwise X coordinates are longitudes and Y coordinates are latitudes.
+ * <p>
+ * The arrays grow on demand and are replaced in that case, they are usually larger than the stored data. All data are
+ * overwritten by the next read operation. This class is not thread-safe.
+ * 
+ * @see MapDatabase#readMapData(org.mapsforge.core.model.Tile, FlatMapReadResult)
+ */
+public class FlatMapReadResult {
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The index of the first node of each coordinate block, the last entry is the total number of nodes.
+	 */
+	public int[] blockNodeOffsets;
+
+	/**
+	 * True if the read area is completely covered by water, false otherwise.
+	 */
+	public boolean isWater;
+
+	/**
+	 * The X coordinates of all way nodes.
+	 */
+	public double[] nodeX;
+
+	/**
+	 * The Y coordinates of all way nodes.
+	 */
+	public double[] nodeY;
+
+	/**
+	 * The number of read coordinate blocks.
+	 */
+	public int numberOfBlocks;
+
+	/**
+	 * The number of read way nodes.
+	 */
+	public int numberOfNodes;
+
+	/**
+	 * The number of read POIs.
+	 */
+	public int numberOfPois;
+
+	/**
+	 * The number of read ways.
+	 */
+	public int numberOfWays;
+
+	/**
+	 * The layers of the POIs.
+	 */
+	public byte[] poiLayers;
+
+	/**
+	 * The sorted tag IDs of the POIs, see {@link PointOfInterest#tagIds}.
+	 */
+	public final List<int[]> poiTagIds;
+
+	/**
+	 * The tags of the POIs, only the first {@link #numberOfPois} entries are valid.
+	 */
+	public final List<List<Tag>> poiTags;
+
+	/**
+	 * The X coordinates of the POIs.
+	 */
+	public double[] poiX;
+
+	/**
+	 * The Y coordinates of the POIs.
+	 */
+	public double[] poiY;
+
+	/**
+	 * The size of a tile in pixels or zero, if the coordinates are not projected.
+	 */
+	public final int tileSize;
+
+	/**
+	 * The index of the first coordinate block of each way, the last entry is the total number of coordinate blocks.
+	 */
+	public int[] wayBlockOffsets;
+
+	/**
+	 * The X coordinates of the way label positions, {@link Double#NaN} if a way has no label position.
+	 */
+	public double[] wayLabelX;
+
+	/**
+	 * The Y coordinates of the way label positions, {@link Double#NaN} if a way has no label position.
+	 */
+	public double[] wayLabelY;
+
+	/**
+	 * The layers of the ways.
+	 */
+	public byte[] wayLayers;
+
+	/**
+	 * The sorted tag IDs of the ways, see {@link Way#tagIds}.
+	 */
+	public final List<int[]> wayTagIds;
+
+	/**
+	 * The tags of the ways, only the first {@link #numberOfWays} entries are valid.
+	 */
+	public final List<List<Tag>> wayTags;
+
+	/**
+	 * Creates a result which stores geographical coordinates.
+	 */
+	public FlatMapReadResult() {
+		this(0);
+	}
+
+	/**
+	 * Creates a result which stores pixel coordinates relative to the top-left corner of the read tile.
+	 * 
+	 * @param tileSize
+	 *            the size of a tile in pixels, zero for geographical coordinates.
+	 * @throws IllegalArgumentException
+	 *             if the tile size is negative.
+	 */
+	public FlatMapReadResult(int tileSize) {
+		if (tileSize < 0) {
+			throw new IllegalArgumentException("tileSize must not be negative: " + tileSize);
+		}
+		this.tileSize = tileSize;
+
+		this.poiLayers = new byte[INITIAL_CAPACITY];
+		this.poiTagIds = new ArrayList<int[]>(INITIAL_CAPACITY);
+		this.poiTags = new ArrayList<List<Tag>>(INITIAL_CAPACITY);
+		this.poiX = new double[INITIAL_CAPACITY];
+		this.poiY = new double[INITIAL_CAPACITY];
+
+		this.wayBlockOffsets = new int[INITIAL_CAPACITY + 1];
+		this.wayLabelX = new double[INITIAL_CAPACITY];
+		this.wayLabelY = new double[INITIAL_CAPACITY];
+		this.wayLayers = new byte[INITIAL_CAPACITY];
+		this.wayTagIds = new ArrayList<int[]>(INITIAL_CAPACITY);
+		this.wayTags = new ArrayList<List<Tag>>(INITIAL_CAPACITY);
+
+		this.blockNodeOffsets = new int[INITIAL_CAPACITY + 1];
+		this.nodeX = new double[INITIAL_CAPACITY * 16];
+		this.nodeY = new double[INITIAL_CAPACITY * 16];
+	}
+
+	/**
+	 * Removes all data from this result but keeps the allocated arrays.
+	 */
+	public void clear() {
+		this.isWater = false;
+		this.numberOfBlocks = 0;
+		this.numberOfNodes = 0;
+		this.numberOfPois = 0;
+		this.numberOfWays = 0;
+		this.poiTagIds.clear();
+		this.poiTags.clear();
+		this.wayTagIds.clear();
+		this.wayTags.clear();
+		this.wayBlockOffsets[0] = 0;
+		this.blockNodeOffsets[0] = 0;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * Appends decoded map elements to a {@link FlatMapReadResult} and projects their coordinates if required.
+ */
+class FlatMapReadResultBuilder implements MapDataCollector {
+	private static byte[] grow(byte[] array, int minimumLength) {
+		byte[] newArray = new byte[Math.max(minimumLength, array.length * 2)];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	private static double[] grow(double[] array, int minimumLength) {
+		double[] newArray = new double[Math.max(minimumLength, array.length * 2)];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	private static int[] grow(int[] array, int minimumLength) {
+		int[] newArray = new int[Math.max(minimumLength, array.length * 2)];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+	private final FlatMapReadResult flatMapReadResult;
+	private final double originX;
+	private final double originY;
+	private final boolean project;
+	private final int tileSize;
+	private final byte zoomLevel;
+
+	/**
+	 * @param flatMapReadResult
+	 *            the result to be filled.
+	 * @param tile
+	 *            the read tile, may be null if the result stores geographical coordinates.
+	 */
+	FlatMapReadResultBuilder(FlatMapReadResult flatMapReadResult, Tile tile) {
+		this.flatMapReadResult = flatMapReadResult;
+		this.tileSize = flatMapReadResult.tileSize;
+		this.project = this.tileSize > 0;
+		if (this.project) {
+			this.zoomLevel = tile.zoomLevel;
+			this.originX = MercatorProjection.tileToPixel(tile.tileX, this.tileSize);
+			this.originY = MercatorProjection.tileToPixel(tile.tileY, this.tileSize);
+		} else {
+			this.zoomLevel = 0;
+			this.originX = 0;
+			this.originY = 0;
+		}
+
+		flatMapReadResult.clear();
+	}
+
+	@Override
+	public void addPointOfInterest(byte layer, List<Tag> tags, int[] tagIds, double latitude, double longitude) {
+		FlatMapReadResult result = this.flatMapReadResult;
+		int index = result.numberOfPois;
+		if (index == result.poiLayers.length) {
+			result.poiLayers = grow(result.poiLayers, index + 1);
+			result.poiX = grow(result.poiX, index + 1);
+			result.poiY = grow(result.poiY, index + 1);
+		}
+
+		result.poiLayers[index] = layer;
+		result.poiTags.add(tags);
+		result.poiTagIds.add(tagIds);
+		result.poiX[index] = toX(longitude);
+		result.poiY[index] = toY(latitude);
+		result.numberOfPois = index + 1;
+	}
+
+	@Override
+	public void addWay(byte layer, List<Tag> tags, int[] tagIds, WayNodesBuffer wayNodes, double labelLatitude,
+			double labelLongitude, int tileBitmask) {
+		FlatMapReadResult result = this.flatMapReadResult;
+		int index = result.numberOfWays;
+		if (index == result.wayLayers.length) {
+			result.wayLayers = grow(result.wayLayers, index + 1);
+			result.wayLabelX = grow(result.wayLabelX, index + 1);
+			result.wayLabelY = grow(result.wayLabelY, index + 1);
+		}
+		if (index + 2 > result.wayBlockOffsets.length) {
+			result.wayBlockOffsets = grow(result.wayBlockOffsets, index + 2);
+		}
+
+		result.wayLayers[index] = layer;
+		result.wayTags.add(tags);
+		result.wayTagIds.add(tagIds);
+		if (Double.isNaN(labelLatitude)) {
+			result.wayLabelX[index] = Double.NaN;
+			result.wayLabelY[index] = Double.NaN;
+		} else {
+			result.wayLabelX[index] = toX(labelLongitude);
+			result.wayLabelY[index] = toY(labelLatitude);
+		}
+
+		addNodes(wayNodes);
+		result.wayBlockOffsets[index + 1] = result.numberOfBlocks;
+		result.numberOfWays = index + 1;
+	}
+
+	@Override
+	public void setWater(boolean isWater) {
+		this.flatMapReadResult.isWater = isWater;
+	}
+
+	private void addNodes(WayNodesBuffer wayNodes) {
+		FlatMapReadResult result = this.flatMapReadResult;
+
+		int requiredBlocks = result.numberOfBlocks + wayNodes.numberOfBlocks + 1;
+		if (requiredBlocks > result.blockNodeOffsets.length) {
+			result.blockNodeOffsets = grow(result.blockNodeOffsets, requiredBlocks);
+		}
+		int requiredNodes = result.numberOfNodes + wayNodes.numberOfNodes;
+		if (requiredNodes > result.nodeX.length) {
+			result.nodeX = grow(result.nodeX, requiredNodes);
+			result.nodeY = grow(result.nodeY, requiredNodes);
+		}
+
+		double[] latitudes = wayNodes.latitudes;
+		double[] longitudes = wayNodes.longitudes;
+		double[] nodeX = result.nodeX;
+		double[] nodeY = result.nodeY;
+		int node = result.numberOfNodes;
+		int sourceNode = 0;
+		for (int block = 0; block < wayNodes.numberOfBlocks; ++block) {
+			for (int i = wayNodes.blockSizes[block]; i > 0; --i, ++node, ++sourceNode) {
+				nodeX[node] = toX(longitudes[sourceNode]);
+				nodeY[node] = toY(latitudes[sourceNode]);
+			}
+			result.blockNodeOffsets[++result.numberOfBlocks] = node;
+		}
+		result.numberOfNodes = node;
+	}
+
+	private double toX(double longitude) {
+		if (this.project) {
+			return MercatorProjection.longitudeToPixelX(longitude, this.zoomLevel, this.tileSize) - this.originX;
+		}
+		return longitude;
+	}
+
+	private double toY(double latitude) {
+		if (this.project) {
+			return MercatorProjection.latitudeToPixelY(latitude, this.zoomLevel, this.tileSize) - this.originY;
+		}
+		return latitude;
+	}
+}
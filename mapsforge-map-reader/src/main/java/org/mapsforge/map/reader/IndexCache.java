@@ -16,61 +16,223 @@ package org.mapsforge.map.reader;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.HashMap;
 import java.util.Map;
 
-import org.mapsforge.core.util.LRUCache;
 import org.mapsforge.map.reader.header.SubFileParameter;
 
 /**
- * A cache for database index blocks with a fixed size and LRU policy.
+ * A thread-safe cache for database index blocks with a fixed size in bytes.
+ * <p>
+ * One instance can be shared by any number of {@link MapDatabase} instances, also across threads. Index blocks are
+ * identified by the map file, the sub-file and the index block number, so all readers of the same map file share the
+ * same cached blocks. The cache is split into independently locked segments and evicts blocks with the CLOCK
+ * (second chance) approximation of LRU. A lookup of a cached block does not allocate any objects.
+ *
+ * @see MapDatabase#setIndexCache(IndexCache)
  */
-class IndexCache {
+public class IndexCache {
 	/**
 	 * Number of index entries that one index block consists of.
 	 */
 	private static final int INDEX_ENTRIES_PER_BLOCK = 128;
 
+	/**
+	 * Number of bits of a cache key which are used for the index block number.
+	 */
+	private static final int KEY_BITS_INDEX_BLOCK = 36;
+
+	/**
+	 * Number of bits of a cache key which are used for the sub-file.
+	 */
+	private static final int KEY_BITS_SUB_FILE = 8;
+
+	/**
+	 * Maximum number of distinct map files which can be registered.
+	 */
+	private static final int MAXIMUM_FILE_IDS = 1 << (63 - KEY_BITS_SUB_FILE - KEY_BITS_INDEX_BLOCK);
+
+	/**
+	 * Number of independently locked segments, must be a power of two.
+	 */
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * Number of bits which select the segment of a hash value.
+	 */
+	private static final int SEGMENT_BITS = Integer.numberOfTrailingZeros(SEGMENTS);
+
 	/**
 	 * Maximum size in bytes of one index block.
 	 */
 	private static final int SIZE_OF_INDEX_BLOCK = INDEX_ENTRIES_PER_BLOCK * SubFileParameter.BYTES_PER_INDEX_ENTRY;
 
-	private final Map<IndexCacheEntryKey, byte[]> map;
-	private final RandomAccessFile randomAccessFile;
+	/**
+	 * Spreads the bits of a cache key to a well distributed hash value.
+	 */
+	static int hash(long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	private static long createKey(int fileId, SubFileParameter subFileParameter, long indexBlockNumber)
+			throws IOException {
+		if (indexBlockNumber < 0 || indexBlockNumber >= 1L << KEY_BITS_INDEX_BLOCK) {
+			throw new IOException("invalid index block number: " + indexBlockNumber);
+		}
+		return ((long) fileId << (KEY_BITS_SUB_FILE + KEY_BITS_INDEX_BLOCK))
+				| ((long) (subFileParameter.baseZoomLevel & 0xff) << KEY_BITS_INDEX_BLOCK) | indexBlockNumber;
+	}
+
+	private final long capacity;
+	private final Map<String, Integer> fileIds;
+	private final Segment[] segments;
 
 	/**
-	 * @param randomAccessFile
-	 *            the map file from which the index should be read and cached.
 	 * @param capacity
-	 *            the maximum number of entries in the cache.
+	 *            the maximum number of bytes which this cache may use for index blocks.
 	 * @throws IllegalArgumentException
 	 *             if the capacity is negative.
 	 */
-	IndexCache(RandomAccessFile randomAccessFile, int capacity) {
-		this.randomAccessFile = randomAccessFile;
-		this.map = new LRUCache<IndexCacheEntryKey, byte[]>(capacity);
+	public IndexCache(long capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+
+		this.capacity = capacity;
+		this.fileIds = new HashMap<String, Integer>();
+
+		long blocks = capacity / SIZE_OF_INDEX_BLOCK;
+		int blocksPerSegment = (int) Math.min((blocks + SEGMENTS - 1) / SEGMENTS, Integer.MAX_VALUE / 4);
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; ++i) {
+			this.segments[i] = new Segment(blocksPerSegment);
+		}
+	}
+
+	/**
+	 * Removes all index blocks from this cache. The hit and miss counters are not reset.
+	 */
+	public void clear() {
+		for (int i = 0; i < SEGMENTS; ++i) {
+			this.segments[i].clear();
+		}
+	}
+
+	/**
+	 * @return the maximum number of bytes which this cache may use for index blocks.
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of index blocks which have been evicted to make room for other blocks.
+	 */
+	public long getEvictionCount() {
+		long evictions = 0;
+		for (int i = 0; i < SEGMENTS; ++i) {
+			synchronized (this.segments[i]) {
+				evictions += this.segments[i].evictions;
+			}
+		}
+		return evictions;
+	}
+
+	/**
+	 * @return the number of index block lookups which were answered from this cache.
+	 */
+	public long getHitCount() {
+		long hits = 0;
+		for (int i = 0; i < SEGMENTS; ++i) {
+			synchronized (this.segments[i]) {
+				hits += this.segments[i].hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @return the number of index block lookups which had to read the block from the map file.
+	 */
+	public long getMissCount() {
+		long misses = 0;
+		for (int i = 0; i < SEGMENTS; ++i) {
+			synchronized (this.segments[i]) {
+				misses += this.segments[i].misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * @return the number of index blocks which are currently cached.
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < SEGMENTS; ++i) {
+			synchronized (this.segments[i]) {
+				size += this.segments[i].size;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the cached index block for the given key or null, if the block is not cached.
+	 */
+	byte[] get(long key) {
+		int hash = hash(key);
+		return this.segments[hash >>> (32 - SEGMENT_BITS)].get(key, hash);
 	}
 
 	/**
-	 * Destroy the cache at the end of its lifetime.
+	 * Returns the ID which identifies the given map file in the keys of this cache. Equal identities always get the
+	 * same ID.
+	 *
+	 * @param fileIdentity
+	 *            a string which uniquely identifies the content of a map file.
+	 * @return the ID of the map file.
+	 * @throws IllegalStateException
+	 *             if too many different map files have been registered.
 	 */
-	void destroy() {
-		this.map.clear();
+	int getFileId(String fileIdentity) {
+		synchronized (this.fileIds) {
+			Integer fileId = this.fileIds.get(fileIdentity);
+			if (fileId == null) {
+				if (this.fileIds.size() >= MAXIMUM_FILE_IDS) {
+					throw new IllegalStateException("too many map files: " + this.fileIds.size());
+				}
+				fileId = Integer.valueOf(this.fileIds.size());
+				this.fileIds.put(fileIdentity, fileId);
+			}
+			return fileId.intValue();
+		}
 	}
 
 	/**
-	 * Returns the index entry of a block in the given map file. If the required index entry is not cached, it will be
+	 * Returns the index entry of a block in the given map file. If the required index block is not cached, it will be
 	 * read from the map file index and put in the cache.
-	 * 
+	 *
+	 * @param fileId
+	 *            the ID of the map file, see {@link #getFileId(String)}.
 	 * @param subFileParameter
 	 *            the parameters of the map file for which the index entry is needed.
 	 * @param blockNumber
 	 *            the number of the block in the map file.
+	 * @param randomAccessFile
+	 *            the map file from which the index block is read in case of a cache miss.
 	 * @return the index entry.
 	 * @throws IOException
 	 *             if an I/O error occurs during reading.
 	 */
-	long getIndexEntry(SubFileParameter subFileParameter, long blockNumber) throws IOException {
+	long getIndexEntry(int fileId, SubFileParameter subFileParameter, long blockNumber,
+			RandomAccessFile randomAccessFile) throws IOException {
 		// check if the block number is out of bounds
 		if (blockNumber >= subFileParameter.numberOfBlocks) {
 			throw new IOException("invalid block number: " + blockNumber);
@@ -78,12 +240,10 @@ class IndexCache {
 
 		// calculate the index block number
 		long indexBlockNumber = blockNumber / INDEX_ENTRIES_PER_BLOCK;
-
-		// create the cache entry key for this request
-		IndexCacheEntryKey indexCacheEntryKey = new IndexCacheEntryKey(subFileParameter, indexBlockNumber);
+		long key = createKey(fileId, subFileParameter, indexBlockNumber);
 
 		// check for cached index block
-		byte[] indexBlock = this.map.get(indexCacheEntryKey);
+		byte[] indexBlock = get(key);
 		if (indexBlock == null) {
 			// cache miss, seek to the correct index block in the file and read it
 			long indexBlockPosition = subFileParameter.indexStartAddress + indexBlockNumber * SIZE_OF_INDEX_BLOCK;
@@ -92,13 +252,13 @@ class IndexCache {
 			int indexBlockSize = Math.min(SIZE_OF_INDEX_BLOCK, remainingIndexSize);
 			indexBlock = new byte[indexBlockSize];
 
-			this.randomAccessFile.seek(indexBlockPosition);
-			if (this.randomAccessFile.read(indexBlock, 0, indexBlockSize) != indexBlockSize) {
+			randomAccessFile.seek(indexBlockPosition);
+			if (randomAccessFile.read(indexBlock, 0, indexBlockSize) != indexBlockSize) {
 				throw new IOException("could not read index block with size: " + indexBlockSize);
 			}
 
-			// put the index block in the map
-			this.map.put(indexCacheEntryKey, indexBlock);
+			// put the index block in the cache
+			put(key, indexBlock);
 		}
 
 		// calculate the address of the index entry inside the index block
@@ -108,4 +268,163 @@ class IndexCache {
 		// return the real index entry
 		return Deserializer.getFiveBytesLong(indexBlock, addressInIndexBlock);
 	}
+
+	/**
+	 * Adds the given index block to this cache, evicting another block if the segment of the key is full.
+	 */
+	void put(long key, byte[] indexBlock) {
+		int hash = hash(key);
+		this.segments[hash >>> (32 - SEGMENT_BITS)].put(key, hash, indexBlock);
+	}
+
+	/**
+	 * One independently locked part of the cache. Entries are stored in fixed slots which are found via an open
+	 * addressing hash table with linear probing.
+	 */
+	private static final class Segment {
+		long evictions;
+		long hits;
+		long misses;
+		int size;
+
+		private int clockHand;
+		private final long[] keys;
+		private final boolean[] referenced;
+		private final int[] table;
+		private final int tableMask;
+		private final byte[][] values;
+
+		Segment(int slots) {
+			this.keys = new long[slots];
+			this.referenced = new boolean[slots];
+			this.values = new byte[slots][];
+
+			// keep the load factor of the hash table at or below 0.5
+			int tableSize = Integer.highestOneBit(Math.max(slots, 1) * 2 - 1) << 1;
+			this.table = new int[tableSize];
+			this.tableMask = tableSize - 1;
+		}
+
+		synchronized void clear() {
+			for (int i = 0; i < this.table.length; ++i) {
+				this.table[i] = 0;
+			}
+			for (int i = 0; i < this.values.length; ++i) {
+				this.values[i] = null;
+				this.referenced[i] = false;
+			}
+			this.size = 0;
+			this.clockHand = 0;
+		}
+
+		synchronized byte[] get(long key, int hash) {
+			int slot = findSlot(key, hash);
+			if (slot < 0) {
+				++this.misses;
+				return null;
+			}
+			++this.hits;
+			this.referenced[slot] = true;
+			return this.values[slot];
+		}
+
+		synchronized void put(long key, int hash, byte[] value) {
+			if (this.keys.length == 0) {
+				return;
+			}
+
+			int slot = findSlot(key, hash);
+			if (slot >= 0) {
+				// another thread has already read the same block
+				this.values[slot] = value;
+				return;
+			}
+
+			if (this.size < this.keys.length) {
+				slot = this.size++;
+			} else {
+				slot = evict();
+			}
+
+			this.keys[slot] = key;
+			this.values[slot] = value;
+			this.referenced[slot] = false;
+
+			int position = hash & this.tableMask;
+			while (this.table[position] != 0) {
+				position = (position + 1) & this.tableMask;
+			}
+			this.table[position] = slot + 1;
+		}
+
+		/**
+		 * Chooses a victim slot with the CLOCK algorithm and removes its entry from the hash table.
+		 *
+		 * @return the now unused slot.
+		 */
+		private int evict() {
+			while (this.referenced[this.clockHand]) {
+				this.referenced[this.clockHand] = false;
+				this.clockHand = (this.clockHand + 1) % this.keys.length;
+			}
+			int victim = this.clockHand;
+			this.clockHand = (this.clockHand + 1) % this.keys.length;
+
+			removeFromTable(this.keys[victim]);
+			this.values[victim] = null;
+			++this.evictions;
+			return victim;
+		}
+
+		/**
+		 * @return the slot which holds the given key or -1, if the key is not in this segment.
+		 */
+		private int findSlot(long key, int hash) {
+			int position = hash & this.tableMask;
+			while (true) {
+				int slot = this.table[position] - 1;
+				if (slot < 0) {
+					return -1;
+				} else if (this.keys[slot] == key) {
+					return slot;
+				}
+				position = (position + 1) & this.tableMask;
+			}
+		}
+
+		/**
+		 * Removes the given key from the hash table and shifts following entries back, so that no probe sequence is
+		 * interrupted by the freed position.
+		 */
+		private void removeFromTable(long key) {
+			int free = hash(key) & this.tableMask;
+			while (this.keys[this.table[free] - 1] != key) {
+				free = (free + 1) & this.tableMask;
+			}
+			this.table[free] = 0;
+
+			int position = free;
+			while (true) {
+				position = (position + 1) & this.tableMask;
+				int slot = this.table[position] - 1;
+				if (slot < 0) {
+					return;
+				}
+
+				int home = hash(this.keys[slot]) & this.tableMask;
+				boolean canMove;
+				if (free <= position) {
+					canMove = home <= free || home > position;
+				} else {
+					canMove = home <= free && home > position;
+				}
+
+				if (canMove) {
+					this.table[free] = this.table[position];
+					this.table[position] = 0;
+					free = position;
+				}
+			}
+		}
+	}
 }
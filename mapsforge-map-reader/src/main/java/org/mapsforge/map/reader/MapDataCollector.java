@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Receives the map elements in the order in which a {@link MapDatabase} decodes them.
+ */
+interface MapDataCollector {
+	/**
+	 * @param layer
+	 *            the layer of the POI.
+	 * @param tags
+	 *            the tags of the POI.
+	 * @param tagIds
+	 *            the sorted IDs of the tags of the POI, see {@link PointOfInterest#tagIds}.
+	 * @param latitude
+	 *            the latitude of the POI.
+	 * @param longitude
+	 *            the longitude of the POI.
+	 */
+	void addPointOfInterest(byte layer, List<Tag> tags, int[] tagIds, double latitude, double longitude);
+
+	/**
+	 * @param layer
+	 *            the layer of the way.
+	 * @param tags
+	 *            the tags of the way.
+	 * @param tagIds
+	 *            the sorted IDs of the tags of the way, see {@link Way#tagIds}.
+	 * @param wayNodes
+	 *            the decoded nodes of the way, only valid during this call.
+	 * @param labelLatitude
+	 *            the latitude of the label position or {@link Double#NaN}, if the way has none.
+	 * @param labelLongitude
+	 *            the longitude of the label position or {@link Double#NaN}, if the way has none.
+	 * @param tileBitmask
+	 *            the tile bitmask of the way.
+	 */
+	void addWay(byte layer, List<Tag> tags, int[] tagIds, WayNodesBuffer wayNodes, double labelLatitude,
+			double labelLongitude, int tileBitmask);
+
+	/**
+	 * @param isWater
+	 *            true if the read area is completely covered by water, false otherwise.
+	 */
+	void setWater(boolean isWater);
+}
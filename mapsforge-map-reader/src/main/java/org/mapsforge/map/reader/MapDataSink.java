@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Callback interface for streaming map data reads.
+ * <p>
+ * Each element is passed to the sink as soon as it has been decoded, so the whole map data of a tile never needs to be
+ * held in memory at the same time. The elements are delivered block by block in the order in which they are stored in
+ * the map file, POIs of a block before its ways.
+ * 
+ * @see MapDatabase#readMapData(org.mapsforge.core.model.Tile, MapDataSink)
+ */
+public interface MapDataSink {
+	/**
+	 * Called for each read POI.
+	 * 
+	 * @param pointOfInterest
+	 *            the read POI.
+	 */
+	void addPointOfInterest(PointOfInterest pointOfInterest);
+
+	/**
+	 * Called for each read way.
+	 * 
+	 * @param way
+	 *            the read way.
+	 */
+	void addWay(Way way);
+
+	/**
+	 * Called once after all elements have been read.
+	 * 
+	 * @param isWater
+	 *            true if the read area is completely covered by water, false otherwise.
+	 */
+	void setWater(boolean isWater);
+}
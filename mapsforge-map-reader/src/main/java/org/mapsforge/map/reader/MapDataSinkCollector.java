@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.List;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Forwards each decoded map element to a {@link MapDataSink}.
+ */
+class MapDataSinkCollector implements MapDataCollector {
+	private final MapDataSink mapDataSink;
+
+	MapDataSinkCollector(MapDataSink mapDataSink) {
+		this.mapDataSink = mapDataSink;
+	}
+
+	@Override
+	public void addPointOfInterest(byte layer, List<Tag> tags, int[] tagIds, double latitude, double longitude) {
+		this.mapDataSink.addPointOfInterest(new PointOfInterest(layer, tags, tagIds, new LatLong(latitude, longitude)));
+	}
+
+	@Override
+	public void addWay(byte layer, List<Tag> tags, int[] tagIds, WayNodesBuffer wayNodes, double labelLatitude,
+			double labelLongitude, int tileBitmask) {
+		LatLong labelPosition = null;
+		if (!Double.isNaN(labelLatitude)) {
+			labelPosition = new LatLong(labelLatitude, labelLongitude);
+		}
+		this.mapDataSink.addWay(new Way(layer, tags, tagIds, wayNodes.toLatLongs(), labelPosition));
+	}
+
+	@Override
+	public void setWater(boolean isWater) {
+		this.mapDataSink.setWater(isWater);
+	}
+}
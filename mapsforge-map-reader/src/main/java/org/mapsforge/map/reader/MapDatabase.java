@@ -18,11 +18,16 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.core.util.LatLongUtils;
@@ -35,7 +40,9 @@ import org.mapsforge.map.reader.header.SubFileParameter;
 /**
  * A class for reading binary map files.
  * <p>
- * This class is not thread-safe. Each thread should use its own instance.
+ * This class is not thread-safe. Each thread should use its own instance, unless the map file has been opened
+ * memory-mapped via {@link #openFile(File, boolean)}. In that mode the whole file is mapped into memory once and any
+ * number of threads may call {@link #readMapData(Tile)} concurrently on the same instance.
  * 
  * @see <a href="https://code.google.com/p/mapsforge/wiki/SpecificationBinaryMapFile">Specification</a>
  */
@@ -66,9 +73,9 @@ public class MapDatabase {
 	private static final String DEBUG_SIGNATURE_WAY = "way signature: ";
 
 	/**
-	 * Amount of cache blocks that the index cache should store.
+	 * Default capacity in bytes of the index cache which is shared by all instances.
 	 */
-	private static final int INDEX_CACHE_SIZE = 64;
+	private static final long INDEX_CACHE_CAPACITY = 1024 * 1024;
 
 	/**
 	 * Error message for an invalid first way offset.
@@ -77,6 +84,11 @@ public class MapDatabase {
 
 	private static final Logger LOGGER = Logger.getLogger(MapDatabase.class.getName());
 
+	/**
+	 * Maximum number of tag IDs of a single POI or way.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_TAGS = 15;
+
 	/**
 	 * Maximum way nodes sequence length which is considered as valid.
 	 */
@@ -194,16 +206,77 @@ public class MapDatabase {
 	 */
 	private static final int WAY_NUMBER_OF_TAGS_BITMASK = 0x0f;
 
+	private static volatile IndexCache indexCache = new IndexCache(INDEX_CACHE_CAPACITY);
+
+	private static void failBatchTiles(List<BatchTile> batchTiles) {
+		for (BatchTile batchTile : batchTiles) {
+			batchTile.failed = true;
+		}
+	}
+
+	/**
+	 * @return the index cache which is shared by all MapDatabase instances.
+	 */
+	public static IndexCache getIndexCache() {
+		return indexCache;
+	}
+
+	/**
+	 * Replaces the index cache which is shared by all MapDatabase instances. Map files which are already open keep
+	 * using the previous cache until they are opened again.
+	 * 
+	 * @param indexCache
+	 *            the new index cache.
+	 * @throws IllegalArgumentException
+	 *             if the given index cache is null.
+	 */
+	public static void setIndexCache(IndexCache indexCache) {
+		if (indexCache == null) {
+			throw new IllegalArgumentException("indexCache must not be null");
+		}
+		MapDatabase.indexCache = indexCache;
+	}
+
+	private volatile BlockCache blockCache;
+	private int[][] blockZoomTable;
+	private BlockCache databaseBlockCache;
+	private int databaseBlockCacheFileId;
 	private IndexCache databaseIndexCache;
+	private int databaseIndexCacheFileId;
+	private String fileIdentity;
 	private long fileSize;
 	private RandomAccessFile inputFile;
 	private MapFileHeader mapFileHeader;
+	private MappedMapFile mappedMapFile;
 	private ReadBuffer readBuffer;
 	private String signatureBlock;
 	private String signaturePoi;
 	private String signatureWay;
+	private final int[] tagIds;
+	private volatile TagIdFilter tagIdFilter;
 	private double tileLatitude;
 	private double tileLongitude;
+	private final WayNodesBuffer wayNodesBuffer;
+
+	public MapDatabase() {
+		this.tagIds = new int[MAXIMUM_NUMBER_OF_TAGS];
+		this.wayNodesBuffer = new WayNodesBuffer();
+	}
+
+	/**
+	 * Creates a view on a memory-mapped MapDatabase for a single query. The view shares the immutable header and
+	 * mapping with the given instance but owns all state which changes while decoding.
+	 */
+	private MapDatabase(MapDatabase mapDatabase) {
+		this.blockCache = mapDatabase.blockCache;
+		this.fileIdentity = mapDatabase.fileIdentity;
+		this.fileSize = mapDatabase.fileSize;
+		this.mapFileHeader = mapDatabase.mapFileHeader;
+		this.mappedMapFile = mapDatabase.mappedMapFile;
+		this.readBuffer = new ReadBuffer(null);
+		this.tagIds = new int[MAXIMUM_NUMBER_OF_TAGS];
+		this.wayNodesBuffer = new WayNodesBuffer();
+	}
 
 	/**
 	 * Closes the map file and destroys all internal caches. Has no effect if no map file is currently opened.
@@ -211,11 +284,13 @@ public class MapDatabase {
 	public void closeFile() {
 		try {
 			this.mapFileHeader = null;
+			this.mappedMapFile = null;
+			this.tagIdFilter = null;
 
-			if (this.databaseIndexCache != null) {
-				this.databaseIndexCache.destroy();
-				this.databaseIndexCache = null;
-			}
+			// the index cache is shared with other instances and must not be cleared here
+			this.databaseIndexCache = null;
+			this.databaseBlockCache = null;
+			this.fileIdentity = null;
 
 			if (this.inputFile != null) {
 				this.inputFile.close();
@@ -247,6 +322,20 @@ public class MapDatabase {
 		return this.inputFile != null;
 	}
 
+	/**
+	 * @return the cache for decoded blocks which is used by this instance (may be null).
+	 */
+	public BlockCache getBlockCache() {
+		return this.blockCache;
+	}
+
+	/**
+	 * @return true if the currently opened map file is memory-mapped, false otherwise.
+	 */
+	public boolean isMemoryMapped() {
+		return this.mappedMapFile != null;
+	}
+
 	/**
 	 * Opens the given map file, reads its header data and validates them.
 	 * 
@@ -257,6 +346,25 @@ public class MapDatabase {
 	 *             if the given map file is null.
 	 */
 	public FileOpenResult openFile(File mapFile) {
+		return openFile(mapFile, false);
+	}
+
+	/**
+	 * Opens the given map file, reads its header data and validates them.
+	 * <p>
+	 * If memoryMapped is true, the file is mapped into memory and all map data are decoded directly from the mapping.
+	 * This avoids all seek and copy operations and makes {@link #readMapData(Tile)} safe for concurrent use, at the
+	 * cost of reserving virtual address space for the whole file.
+	 * 
+	 * @param mapFile
+	 *            the map file.
+	 * @param memoryMapped
+	 *            true if the file should be memory-mapped, false otherwise.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map file is null.
+	 */
+	public FileOpenResult openFile(File mapFile, boolean memoryMapped) {
 		try {
 			if (mapFile == null) {
 				throw new IllegalArgumentException("mapFile must not be null");
@@ -277,6 +385,7 @@ public class MapDatabase {
 			// open the file in read only mode
 			this.inputFile = new RandomAccessFile(mapFile, READ_ONLY_MODE);
 			this.fileSize = this.inputFile.length();
+			this.fileIdentity = mapFile.getCanonicalPath() + ':' + this.fileSize + ':' + mapFile.lastModified();
 
 			this.readBuffer = new ReadBuffer(this.inputFile);
 			this.mapFileHeader = new MapFileHeader();
@@ -286,6 +395,10 @@ public class MapDatabase {
 				return fileOpenResult;
 			}
 
+			if (memoryMapped) {
+				this.mappedMapFile = new MappedMapFile(this.inputFile.getChannel());
+			}
+
 			return FileOpenResult.SUCCESS;
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
@@ -303,29 +416,205 @@ public class MapDatabase {
 	 * @return the read map data.
 	 */
 	public MapReadResult readMapData(Tile tile) {
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		if (!readMapData(tile, mapReadResultBuilder)) {
+			return null;
+		}
+		return mapReadResultBuilder.build();
+	}
+
+	/**
+	 * Reads all map data for the areas covered by the given tiles at their tile zoom levels.
+	 * <p>
+	 * Neighbouring tiles often share blocks of the map file, especially if their zoom level is higher than the base
+	 * zoom level of the sub-file. This method reads and decodes each required block only once and adds its elements to
+	 * the result of every tile which covers it. The blocks are read in the order of their file offsets, adjacent blocks
+	 * are read with a single I/O operation.
+	 * 
+	 * @param tiles
+	 *            define areas and zoom levels of read map data, duplicates are ignored.
+	 * @return the read map data of each tile, a tile is mapped to null if reading its data has failed.
+	 */
+	public Map<Tile, MapReadResult> readMapData(Collection<Tile> tiles) {
+		if (this.mappedMapFile != null) {
+			return new MapDatabase(this).readMapDataInternal(tiles);
+		}
+		return readMapDataInternal(tiles);
+	}
+
+	/**
+	 * Reads all POIs and ways accepted by the given filter for the area covered by the given tile at the tile zoom
+	 * level. All other elements are skipped without decoding their strings and coordinates.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param tagFilter
+	 *            the filter which selects the read elements.
+	 * @return the read map data.
+	 */
+	public MapReadResult readMapData(Tile tile, TagFilter tagFilter) {
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		if (!readMapData(tile, tagFilter, mapReadResultBuilder)) {
+			return null;
+		}
+		return mapReadResultBuilder.build();
+	}
+
+	/**
+	 * Reads all POIs and ways accepted by the given filter for the area covered by the given tile at the tile zoom
+	 * level and passes each element to the given sink as soon as it has been decoded.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param tagFilter
+	 *            the filter which selects the read elements.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @return true if the map data have been read successfully, false otherwise.
+	 * @see #readMapData(Tile, TagFilter)
+	 */
+	public boolean readMapData(Tile tile, TagFilter tagFilter, MapDataSink mapDataSink) {
+		if (tagFilter == null) {
+			throw new IllegalArgumentException("tagFilter must not be null");
+		}
+		return executeQuery(tile, tagFilter, new MapDataSinkCollector(mapDataSink));
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level and passes each element to the
+	 * given sink as soon as it has been decoded.
+	 * <p>
+	 * If the map data are corrupt, some elements may already have been passed to the sink before this method fails.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @return true if the map data have been read successfully, false otherwise.
+	 */
+	public boolean readMapData(Tile tile, MapDataSink mapDataSink) {
+		return executeQuery(tile, null, new MapDataSinkCollector(mapDataSink));
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level into the given flat result.
+	 * <p>
+	 * In contrast to {@link #readMapData(Tile)} this method does not create any coordinate objects. All previous
+	 * content of the result is overwritten, its arrays are reused whenever they are large enough.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param flatMapReadResult
+	 *            the result to be filled, must not be shared between concurrent calls.
+	 * @return true if the map data have been read successfully, false otherwise.
+	 */
+	public boolean readMapData(Tile tile, FlatMapReadResult flatMapReadResult) {
+		return executeQuery(tile, null, new FlatMapReadResultBuilder(flatMapReadResult, tile));
+	}
+
+	/**
+	 * Sets the cache for decoded blocks which is used by all subsequent queries of this instance. The same cache may be
+	 * shared by several instances. Queries with a {@link TagFilter} do not use the cache.
+	 * 
+	 * @param blockCache
+	 *            the new block cache or null, if decoded blocks should not be cached.
+	 */
+	public void setBlockCache(BlockCache blockCache) {
+		this.blockCache = blockCache;
+	}
+
+	private boolean executeQuery(Tile tile, TagFilter tagFilter, MapDataCollector mapDataCollector) {
+		TagIdFilter queryTagIdFilter = null;
+		if (tagFilter != null) {
+			queryTagIdFilter = getTagIdFilter(tagFilter);
+		}
+
+		if (this.mappedMapFile != null) {
+			return new MapDatabase(this).readMapDataInternal(tile, queryTagIdFilter, mapDataCollector);
+		}
+		return readMapDataInternal(tile, queryTagIdFilter, mapDataCollector);
+	}
+
+	private Map<Tile, MapReadResult> readMapDataInternal(Collection<Tile> tiles) {
+		prepareExecution();
+
+		// group the tiles by their query zoom level, all tiles of a group read the same zoom table row
+		Map<Tile, BatchTile> batchTiles = new LinkedHashMap<Tile, BatchTile>();
+		Map<Byte, List<BatchTile>> groups = new TreeMap<Byte, List<BatchTile>>();
+		for (Tile tile : tiles) {
+			if (batchTiles.containsKey(tile)) {
+				continue;
+			}
+			BatchTile batchTile = new BatchTile(tile);
+			batchTiles.put(tile, batchTile);
+
+			QueryParameters queryParameters = batchTile.queryParameters;
+			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+			if (subFileParameter == null) {
+				LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+				batchTile.failed = true;
+				continue;
+			}
+
+			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+			Byte queryZoomLevel = Byte.valueOf((byte) queryParameters.queryZoomLevel);
+			List<BatchTile> group = groups.get(queryZoomLevel);
+			if (group == null) {
+				group = new ArrayList<BatchTile>();
+				groups.put(queryZoomLevel, group);
+			}
+			group.add(batchTile);
+		}
+
+		for (List<BatchTile> group : groups.values()) {
+			try {
+				processBatch(group);
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, null, e);
+				for (BatchTile batchTile : group) {
+					batchTile.failed = true;
+				}
+			}
+		}
+
+		Map<Tile, MapReadResult> mapReadResults = new HashMap<Tile, MapReadResult>();
+		for (BatchTile batchTile : batchTiles.values()) {
+			mapReadResults.put(batchTile.tile, batchTile.build());
+		}
+		return mapReadResults;
+	}
+
+	private boolean readMapDataInternal(Tile tile, TagIdFilter queryTagIdFilter, MapDataCollector mapDataCollector) {
 		try {
 			prepareExecution();
 			QueryParameters queryParameters = new QueryParameters();
+			queryParameters.tagIdFilter = queryTagIdFilter;
 			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
 
 			// get and check the sub-file for the query zoom level
 			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
 			if (subFileParameter == null) {
 				LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
-				return null;
+				return false;
 			}
 
 			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
 			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
 
-			return processBlocks(queryParameters, subFileParameter);
+			return processBlocks(queryParameters, subFileParameter, mapDataCollector);
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
-			return null;
+			return false;
 		}
 	}
 
-	private void decodeWayNodesDoubleDelta(LatLong[] waySegment) {
+	private void decodeWayNodesDoubleDelta(int firstNode, int numberOfWayNodes) {
+		double[] latitudes = this.wayNodesBuffer.latitudes;
+		double[] longitudes = this.wayNodesBuffer.longitudes;
+
 		// get the first way node latitude offset (VBE-S)
 		double wayNodeLatitude = this.tileLatitude
 				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
@@ -335,12 +624,13 @@ public class MapDatabase {
 				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
 
 		// store the first way node
-		waySegment[0] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+		latitudes[firstNode] = wayNodeLatitude;
+		longitudes[firstNode] = wayNodeLongitude;
 
 		double previousSingleDeltaLatitude = 0;
 		double previousSingleDeltaLongitude = 0;
 
-		for (int wayNodesIndex = 1; wayNodesIndex < waySegment.length; ++wayNodesIndex) {
+		for (int wayNodesIndex = 1; wayNodesIndex < numberOfWayNodes; ++wayNodesIndex) {
 			// get the way node latitude double-delta offset (VBE-S)
 			double doubleDeltaLatitude = LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
 
@@ -353,14 +643,18 @@ public class MapDatabase {
 			wayNodeLatitude = wayNodeLatitude + singleDeltaLatitude;
 			wayNodeLongitude = wayNodeLongitude + singleDeltaLongitude;
 
-			waySegment[wayNodesIndex] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+			latitudes[firstNode + wayNodesIndex] = wayNodeLatitude;
+			longitudes[firstNode + wayNodesIndex] = wayNodeLongitude;
 
 			previousSingleDeltaLatitude = singleDeltaLatitude;
 			previousSingleDeltaLongitude = singleDeltaLongitude;
 		}
 	}
 
-	private void decodeWayNodesSingleDelta(LatLong[] waySegment) {
+	private void decodeWayNodesSingleDelta(int firstNode, int numberOfWayNodes) {
+		double[] latitudes = this.wayNodesBuffer.latitudes;
+		double[] longitudes = this.wayNodesBuffer.longitudes;
+
 		// get the first way node latitude single-delta offset (VBE-S)
 		double wayNodeLatitude = this.tileLatitude
 				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
@@ -370,16 +664,39 @@ public class MapDatabase {
 				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
 
 		// store the first way node
-		waySegment[0] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+		latitudes[firstNode] = wayNodeLatitude;
+		longitudes[firstNode] = wayNodeLongitude;
 
-		for (int wayNodesIndex = 1; wayNodesIndex < waySegment.length; ++wayNodesIndex) {
+		for (int wayNodesIndex = 1; wayNodesIndex < numberOfWayNodes; ++wayNodesIndex) {
 			// get the way node latitude offset (VBE-S)
 			wayNodeLatitude = wayNodeLatitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
 
 			// get the way node longitude offset (VBE-S)
 			wayNodeLongitude = wayNodeLongitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
 
-			waySegment[wayNodesIndex] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+			latitudes[firstNode + wayNodesIndex] = wayNodeLatitude;
+			longitudes[firstNode + wayNodesIndex] = wayNodeLongitude;
+		}
+	}
+
+	/**
+	 * Decodes the block in the read buffer which is located in the given row and column of the sub-file.
+	 * 
+	 * @return true if the block has been decoded successfully, false otherwise.
+	 */
+	private boolean decodeBlock(QueryParameters queryParameters, SubFileParameter subFileParameter, long row,
+			long column, MapDataCollector mapDataCollector) {
+		// calculate the top-left coordinates of the underlying tile
+		this.tileLatitude = MercatorProjection.tileYToLatitude(subFileParameter.boundaryTileTop + row,
+				subFileParameter.baseZoomLevel);
+		this.tileLongitude = MercatorProjection.tileXToLongitude(subFileParameter.boundaryTileLeft + column,
+				subFileParameter.baseZoomLevel);
+
+		try {
+			return processBlock(queryParameters, subFileParameter, mapDataCollector);
+		} catch (IndexOutOfBoundsException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return false;
 		}
 	}
 
@@ -393,18 +710,111 @@ public class MapDatabase {
 		}
 	}
 
+	/**
+	 * Resolves the given filter against the tag tables of the current map file. The most recently used filter is
+	 * remembered, so repeated queries with the same filter do not evaluate it again.
+	 */
+	private TagIdFilter getTagIdFilter(TagFilter tagFilter) {
+		MapFileInfo mapFileInfo = this.mapFileHeader.getMapFileInfo();
+		TagIdFilter currentTagIdFilter = this.tagIdFilter;
+		if (currentTagIdFilter == null || !currentTagIdFilter.isResolvedFrom(tagFilter, mapFileInfo)) {
+			currentTagIdFilter = new TagIdFilter(tagFilter, mapFileInfo);
+			this.tagIdFilter = currentTagIdFilter;
+		}
+		return currentTagIdFilter;
+	}
+
+	/**
+	 * Calculates and checks the size of a block.
+	 * 
+	 * @return the size of the block in bytes, zero if the block is empty or too large to be read and -1 if the map
+	 *         file is invalid.
+	 */
+	private int getBlockSize(SubFileParameter subFileParameter, long blockNumber, long currentBlockPointer)
+			throws IOException {
+		if (currentBlockPointer < 1 || currentBlockPointer > subFileParameter.subFileSize) {
+			LOGGER.warning("invalid current block pointer: " + currentBlockPointer);
+			LOGGER.warning("subFileSize: " + subFileParameter.subFileSize);
+			return -1;
+		}
+
+		long nextBlockPointer;
+		// check if the current block is the last block in the file
+		if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
+			// set the next block pointer to the end of the file
+			nextBlockPointer = subFileParameter.subFileSize;
+		} else {
+			// get and check the next block pointer
+			nextBlockPointer = getIndexEntry(subFileParameter, blockNumber + 1) & BITMASK_INDEX_OFFSET;
+			if (nextBlockPointer > subFileParameter.subFileSize) {
+				LOGGER.warning("invalid next block pointer: " + nextBlockPointer);
+				LOGGER.warning("sub-file size: " + subFileParameter.subFileSize);
+				return -1;
+			}
+		}
+
+		// calculate the size of the current block
+		int currentBlockSize = (int) (nextBlockPointer - currentBlockPointer);
+		if (currentBlockSize < 0) {
+			LOGGER.warning("current block size must not be negative: " + currentBlockSize);
+			return -1;
+		} else if (currentBlockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
+			LOGGER.warning("current block size too large: " + currentBlockSize);
+			return 0;
+		} else if (currentBlockPointer + currentBlockSize > this.fileSize) {
+			LOGGER.warning("current block largher than file size: " + currentBlockSize);
+			return -1;
+		}
+		return currentBlockSize;
+	}
+
+	private long getIndexEntry(SubFileParameter subFileParameter, long blockNumber) throws IOException {
+		if (this.mappedMapFile == null) {
+			return this.databaseIndexCache.getIndexEntry(this.databaseIndexCacheFileId, subFileParameter, blockNumber,
+					this.inputFile);
+		}
+
+		// the mapped index needs no cache, read the entry directly from memory
+		if (blockNumber >= subFileParameter.numberOfBlocks) {
+			throw new IOException("invalid block number: " + blockNumber);
+		}
+		return this.mappedMapFile.getFiveBytesLong(subFileParameter.indexStartAddress + blockNumber
+				* SubFileParameter.BYTES_PER_INDEX_ENTRY);
+	}
+
+	/**
+	 * @return a sorted copy of the given number of tag IDs which have been read last, so that elements with the same
+	 *         tags get equal tag IDs regardless of the order of the tags in the map file.
+	 */
+	private int[] getSortedTagIds(int numberOfTags) {
+		int[] sortedTagIds = Arrays.copyOf(this.tagIds, numberOfTags);
+		Arrays.sort(sortedTagIds);
+		return sortedTagIds;
+	}
+
 	private void prepareExecution() {
-		if (this.databaseIndexCache == null) {
-			this.databaseIndexCache = new IndexCache(this.inputFile, INDEX_CACHE_SIZE);
+		if (this.mappedMapFile == null && this.databaseIndexCache == null) {
+			this.databaseIndexCache = indexCache;
+			this.databaseIndexCacheFileId = this.databaseIndexCache.getFileId(this.fileIdentity);
+		}
+
+		BlockCache currentBlockCache = this.blockCache;
+		if (currentBlockCache != this.databaseBlockCache) {
+			this.databaseBlockCache = currentBlockCache;
+			if (currentBlockCache != null) {
+				this.databaseBlockCacheFileId = currentBlockCache.getFileId(this.fileIdentity);
+			}
 		}
 	}
 
-	private PoiWayBundle processBlock(QueryParameters queryParameters, SubFileParameter subFileParameter) {
+	private boolean processBlock(QueryParameters queryParameters, SubFileParameter subFileParameter,
+			MapDataCollector mapDataCollector) {
 		if (!processBlockSignature()) {
-			return null;
+			return false;
 		}
 
 		int[][] zoomTable = readZoomTable(subFileParameter);
+		this.blockZoomTable = zoomTable;
 		int zoomTableRow = queryParameters.queryZoomLevel - subFileParameter.zoomLevelMin;
 		int poisOnQueryZoomLevel = zoomTable[zoomTableRow][0];
 		int waysOnQueryZoomLevel = zoomTable[zoomTableRow][1];
@@ -416,7 +826,7 @@ public class MapDatabase {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
 		// add the current buffer position to the relative first way offset
@@ -426,12 +836,15 @@ public class MapDatabase {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
-		List<PointOfInterest> pois = processPOIs(poisOnQueryZoomLevel);
-		if (pois == null) {
-			return null;
+		TagIdFilter queryTagIdFilter = queryParameters.tagIdFilter;
+		if (queryTagIdFilter != null && !queryTagIdFilter.acceptsAnyPoi) {
+			// no POI can match the filter, continue directly with the ways
+			this.readBuffer.setBufferPosition(firstWayOffset);
+		} else if (!processPOIs(poisOnQueryZoomLevel, queryTagIdFilter, mapDataCollector)) {
+			return false;
 		}
 
 		// finished reading POIs, check if the current buffer position is valid
@@ -440,27 +853,125 @@ public class MapDatabase {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 			}
-			return null;
+			return false;
+		}
+
+		if (queryTagIdFilter != null && !queryTagIdFilter.acceptsAnyWay) {
+			// no way can match the filter
+			return true;
 		}
 
 		// move the pointer to the first way
 		this.readBuffer.setBufferPosition(firstWayOffset);
 
-		List<Way> ways = processWays(queryParameters, waysOnQueryZoomLevel);
-		if (ways == null) {
-			return null;
+		return processWays(queryParameters, waysOnQueryZoomLevel, mapDataCollector);
+	}
+
+	/**
+	 * Reads the union of all blocks which are covered by the given tiles. All tiles must have the same query zoom
+	 * level.
+	 */
+	private void processBatch(List<BatchTile> batchTiles) throws IOException {
+		int queryZoomLevel = batchTiles.get(0).queryParameters.queryZoomLevel;
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryZoomLevel);
+
+		// collect the required blocks, the block numbers are in the same order as the block addresses
+		TreeMap<Long, List<BatchTile>> blocks = new TreeMap<Long, List<BatchTile>>();
+		for (BatchTile batchTile : batchTiles) {
+			QueryParameters queryParameters = batchTile.queryParameters;
+			for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
+				for (long column = queryParameters.fromBlockX; column <= queryParameters.toBlockX; ++column) {
+					Long blockNumber = Long.valueOf(row * subFileParameter.blocksWidth + column);
+					List<BatchTile> blockBatchTiles = blocks.get(blockNumber);
+					if (blockBatchTiles == null) {
+						blockBatchTiles = new ArrayList<BatchTile>();
+						blocks.put(blockNumber, blockBatchTiles);
+					}
+					blockBatchTiles.add(batchTile);
+				}
+			}
+		}
+
+		int numberOfBlocks = blocks.size();
+		long[] blockNumbers = new long[numberOfBlocks];
+		long[] blockPointers = new long[numberOfBlocks];
+		int[] blockSizes = new int[numberOfBlocks];
+		List<List<BatchTile>> blockBatchTiles = new ArrayList<List<BatchTile>>(blocks.values());
+
+		int block = 0;
+		for (Long blockNumber : blocks.keySet()) {
+			blockNumbers[block] = blockNumber.longValue();
+			long currentBlockIndexEntry = getIndexEntry(subFileParameter, blockNumbers[block]);
+
+			// update the water flag of all tiles which cover the current block
+			boolean blockIsWater = (currentBlockIndexEntry & BITMASK_INDEX_WATER) != 0;
+			for (BatchTile batchTile : blockBatchTiles.get(block)) {
+				batchTile.isWater &= blockIsWater;
+				batchTile.readWaterInfo = true;
+			}
+
+			blockPointers[block] = currentBlockIndexEntry & BITMASK_INDEX_OFFSET;
+			blockSizes[block] = getBlockSize(subFileParameter, blockNumbers[block], blockPointers[block]);
+			if (blockSizes[block] < 0) {
+				failBatchTiles(blockBatchTiles.get(block));
+				blockSizes[block] = 0;
+			}
+			++block;
 		}
 
-		return new PoiWayBundle(pois, ways);
+		BatchCollector batchCollector = new BatchCollector();
+		QueryParameters blockQueryParameters = new QueryParameters();
+		blockQueryParameters.queryZoomLevel = queryZoomLevel;
+
+		int firstBlock = 0;
+		while (firstBlock < numberOfBlocks) {
+			if (blockSizes[firstBlock] == 0) {
+				++firstBlock;
+				continue;
+			}
+
+			// merge all following blocks which are stored directly behind the current one into a single read
+			int lastBlock = firstBlock;
+			long endPointer = blockPointers[firstBlock] + blockSizes[firstBlock];
+			long maximumEndPointer = blockPointers[firstBlock] + ReadBuffer.MAXIMUM_BUFFER_SIZE;
+			while (lastBlock + 1 < numberOfBlocks && blockPointers[lastBlock + 1] == endPointer
+					&& endPointer + blockSizes[lastBlock + 1] <= maximumEndPointer) {
+				++lastBlock;
+				endPointer += blockSizes[lastBlock];
+			}
+
+			int readSize = (int) (endPointer - blockPointers[firstBlock]);
+			if (!readBlock(subFileParameter.startAddress + blockPointers[firstBlock], readSize)) {
+				LOGGER.warning("reading blocks has failed: " + readSize);
+				for (block = firstBlock; block <= lastBlock; ++block) {
+					failBatchTiles(blockBatchTiles.get(block));
+				}
+			} else {
+				for (block = firstBlock; block <= lastBlock; ++block) {
+					if (blockSizes[block] == 0) {
+						continue;
+					}
+
+					// restrict the read buffer to the current block
+					int blockOffset = (int) (blockPointers[block] - blockPointers[firstBlock]);
+					this.readBuffer.setBufferRange(blockOffset, blockOffset + blockSizes[block]);
+
+					batchCollector.setBatchTiles(blockBatchTiles.get(block), blockQueryParameters);
+					decodeBlock(blockQueryParameters, subFileParameter, blockNumbers[block]
+							/ subFileParameter.blocksWidth, blockNumbers[block] % subFileParameter.blocksWidth,
+							batchCollector);
+				}
+			}
+
+			firstBlock = lastBlock + 1;
+		}
 	}
 
-	private MapReadResult processBlocks(QueryParameters queryParameters, SubFileParameter subFileParameter)
-			throws IOException {
+	private boolean processBlocks(QueryParameters queryParameters, SubFileParameter subFileParameter,
+			MapDataCollector mapDataCollector) throws IOException {
 		boolean queryIsWater = true;
 		boolean queryReadWaterInfo = false;
 
-		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
-
 		// read and process all blocks from top to bottom and from left to right
 		for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
 			for (long column = queryParameters.fromBlockX; column <= queryParameters.toBlockX; ++column) {
@@ -468,7 +979,7 @@ public class MapDatabase {
 				long blockNumber = row * subFileParameter.blocksWidth + column;
 
 				// get the current index entry
-				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber);
+				long currentBlockIndexEntry = getIndexEntry(subFileParameter, blockNumber);
 
 				// check if the current query would still return a water tile
 				if (queryIsWater) {
@@ -477,80 +988,88 @@ public class MapDatabase {
 					queryReadWaterInfo = true;
 				}
 
-				// get and check the current block pointer
+				// get and check the current block pointer and size
 				long currentBlockPointer = currentBlockIndexEntry & BITMASK_INDEX_OFFSET;
-				if (currentBlockPointer < 1 || currentBlockPointer > subFileParameter.subFileSize) {
-					LOGGER.warning("invalid current block pointer: " + currentBlockPointer);
-					LOGGER.warning("subFileSize: " + subFileParameter.subFileSize);
-					return null;
-				}
-
-				long nextBlockPointer;
-				// check if the current block is the last block in the file
-				if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
-					// set the next block pointer to the end of the file
-					nextBlockPointer = subFileParameter.subFileSize;
-				} else {
-					// get and check the next block pointer
-					nextBlockPointer = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber + 1)
-							& BITMASK_INDEX_OFFSET;
-					if (nextBlockPointer > subFileParameter.subFileSize) {
-						LOGGER.warning("invalid next block pointer: " + nextBlockPointer);
-						LOGGER.warning("sub-file size: " + subFileParameter.subFileSize);
-						return null;
+				if (this.databaseBlockCache != null && queryParameters.tagIdFilter == null) {
+					if (!processCachedBlock(queryParameters, subFileParameter, blockNumber, row, column,
+							currentBlockPointer, mapDataCollector)) {
+						return false;
 					}
+					continue;
 				}
 
-				// calculate the size of the current block
-				int currentBlockSize = (int) (nextBlockPointer - currentBlockPointer);
+				int currentBlockSize = getBlockSize(subFileParameter, blockNumber, currentBlockPointer);
 				if (currentBlockSize < 0) {
-					LOGGER.warning("current block size must not be negative: " + currentBlockSize);
-					return null;
+					return false;
 				} else if (currentBlockSize == 0) {
-					// the current block is empty, continue with the next block
+					// the current block is empty or too large, continue with the next block
 					continue;
-				} else if (currentBlockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
-					// the current block is too large, continue with the next block
-					LOGGER.warning("current block size too large: " + currentBlockSize);
-					continue;
-				} else if (currentBlockPointer + currentBlockSize > this.fileSize) {
-					LOGGER.warning("current block largher than file size: " + currentBlockSize);
-					return null;
 				}
 
-				// seek to the current block in the map file
-				this.inputFile.seek(subFileParameter.startAddress + currentBlockPointer);
-
 				// read the current block into the buffer
-				if (!this.readBuffer.readFromFile(currentBlockSize)) {
+				if (!readBlock(subFileParameter.startAddress + currentBlockPointer, currentBlockSize)) {
 					// skip the current block
 					LOGGER.warning("reading current block has failed: " + currentBlockSize);
-					return null;
+					return false;
 				}
 
-				// calculate the top-left coordinates of the underlying tile
-				this.tileLatitude = MercatorProjection.tileYToLatitude(subFileParameter.boundaryTileTop + row,
-						subFileParameter.baseZoomLevel);
-				this.tileLongitude = MercatorProjection.tileXToLongitude(subFileParameter.boundaryTileLeft + column,
-						subFileParameter.baseZoomLevel);
-
-				try {
-					PoiWayBundle poiWayBundle = processBlock(queryParameters, subFileParameter);
-					if (poiWayBundle != null) {
-						mapReadResultBuilder.add(poiWayBundle);
-					}
-				} catch (ArrayIndexOutOfBoundsException e) {
-					LOGGER.log(Level.SEVERE, null, e);
-				}
+				decodeBlock(queryParameters, subFileParameter, row, column, mapDataCollector);
 			}
 		}
 
 		// the query is finished, was the water flag set for all blocks?
-		if (queryIsWater && queryReadWaterInfo) {
-			mapReadResultBuilder.isWater = true;
+		mapDataCollector.setWater(queryIsWater && queryReadWaterInfo);
+
+		return true;
+	}
+
+	/**
+	 * Passes the elements of a block to the collector. The block is read and decoded for all zoom levels of its
+	 * sub-file only if it is not in the block cache yet.
+	 * 
+	 * @return false if the map file is invalid, true otherwise.
+	 */
+	private boolean processCachedBlock(QueryParameters queryParameters, SubFileParameter subFileParameter,
+			long blockNumber, long row, long column, long currentBlockPointer, MapDataCollector mapDataCollector)
+			throws IOException {
+		long key = BlockCache.createKey(this.databaseBlockCacheFileId, subFileParameter, blockNumber);
+		DecodedBlock decodedBlock = this.databaseBlockCache.get(key);
+		if (decodedBlock == null) {
+			int currentBlockSize = getBlockSize(subFileParameter, blockNumber, currentBlockPointer);
+			if (currentBlockSize < 0) {
+				return false;
+			} else if (currentBlockSize == 0) {
+				// the current block is empty or too large, remember this to avoid further index lookups
+				this.databaseBlockCache.put(key, DecodedBlock.EMPTY);
+				return true;
+			}
+
+			if (!readBlock(subFileParameter.startAddress + currentBlockPointer, currentBlockSize)) {
+				LOGGER.warning("reading current block has failed: " + currentBlockSize);
+				return false;
+			}
+
+			// decode the elements of all zoom levels and keep the tile bitmasks of all ways
+			QueryParameters blockQueryParameters = new QueryParameters();
+			blockQueryParameters.queryZoomLevel = subFileParameter.zoomLevelMax;
+			DecodedBlockBuilder decodedBlockBuilder = new DecodedBlockBuilder();
+			this.blockZoomTable = null;
+			boolean decoded = decodeBlock(blockQueryParameters, subFileParameter, row, column, decodedBlockBuilder);
+			if (this.blockZoomTable == null) {
+				// not even the zoom table could be read
+				return true;
+			}
+
+			decodedBlock = decodedBlockBuilder.build(this.blockZoomTable);
+			if (decoded) {
+				// incomplete blocks are returned once but never cached
+				this.databaseBlockCache.put(key, decodedBlock);
+			}
 		}
 
-		return mapReadResultBuilder.build();
+		decodedBlock.replay(queryParameters, queryParameters.queryZoomLevel - subFileParameter.zoomLevelMin,
+				mapDataCollector, this.wayNodesBuffer);
+		return true;
 	}
 
 	/**
@@ -570,8 +1089,7 @@ public class MapDatabase {
 		return true;
 	}
 
-	private List<PointOfInterest> processPOIs(int numberOfPois) {
-		List<PointOfInterest> pois = new ArrayList<PointOfInterest>();
+	private boolean processPOIs(int numberOfPois, TagIdFilter queryTagIdFilter, MapDataCollector mapDataCollector) {
 		Tag[] poiTags = this.mapFileHeader.getMapFileInfo().poiTags;
 
 		for (int elementCounter = numberOfPois; elementCounter != 0; --elementCounter) {
@@ -581,7 +1099,7 @@ public class MapDatabase {
 				if (!this.signaturePoi.startsWith("***POIStart")) {
 					LOGGER.warning("invalid POI signature: " + this.signaturePoi);
 					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
-					return null;
+					return false;
 				}
 			}
 
@@ -599,10 +1117,10 @@ public class MapDatabase {
 			// bit 5-8 represent the number of tag IDs
 			byte numberOfTags = (byte) (specialByte & POI_NUMBER_OF_TAGS_BITMASK);
 
-			List<Tag> tags = new ArrayList<Tag>();
+			boolean accepted = queryTagIdFilter == null;
 
 			// get the tag IDs (VBE-U)
-			for (byte tagIndex = numberOfTags; tagIndex != 0; --tagIndex) {
+			for (byte tagIndex = 0; tagIndex < numberOfTags; ++tagIndex) {
 				int tagId = this.readBuffer.readUnsignedInt();
 				if (tagId < 0 || tagId >= poiTags.length) {
 					LOGGER.warning("invalid POI tag ID: " + tagId);
@@ -610,9 +1128,10 @@ public class MapDatabase {
 						LOGGER.warning(DEBUG_SIGNATURE_POI + this.signaturePoi);
 						LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 					}
-					return null;
+					return false;
 				}
-				tags.add(poiTags[tagId]);
+				this.tagIds[tagIndex] = tagId;
+				accepted = accepted || queryTagIdFilter.poiTagIds[tagId];
 			}
 
 			// get the feature bitmask (1 byte)
@@ -623,6 +1142,26 @@ public class MapDatabase {
 			boolean featureHouseNumber = (featureByte & POI_FEATURE_HOUSE_NUMBER) != 0;
 			boolean featureElevation = (featureByte & POI_FEATURE_ELEVATION) != 0;
 
+			if (!accepted) {
+				// skip the optional features of the filtered POI
+				if (featureName) {
+					this.readBuffer.skipUTF8EncodedString();
+				}
+				if (featureHouseNumber) {
+					this.readBuffer.skipUTF8EncodedString();
+				}
+				if (featureElevation) {
+					this.readBuffer.readSignedInt();
+				}
+				continue;
+			}
+
+			int[] sortedTagIds = getSortedTagIds(numberOfTags);
+			List<Tag> tags = new ArrayList<Tag>();
+			for (byte tagIndex = 0; tagIndex < numberOfTags; ++tagIndex) {
+				tags.add(poiTags[sortedTagIds[tagIndex]]);
+			}
+
 			// check if the POI has a name
 			if (featureName) {
 				tags.add(new Tag(TAG_KEY_NAME, this.readBuffer.readUTF8EncodedString()));
@@ -638,23 +1177,27 @@ public class MapDatabase {
 				tags.add(new Tag(TAG_KEY_ELE, Integer.toString(this.readBuffer.readSignedInt())));
 			}
 
-			pois.add(new PointOfInterest(layer, tags, new LatLong(latitude, longitude)));
+			mapDataCollector.addPointOfInterest(layer, tags, sortedTagIds, latitude, longitude);
 		}
 
-		return pois;
+		return true;
 	}
 
-	private LatLong[][] processWayDataBlock(boolean doubleDeltaEncoding) {
+	/**
+	 * Decodes all coordinate blocks of a way data block into the way nodes buffer.
+	 * 
+	 * @return true if the way data block could be processed successfully, false otherwise.
+	 */
+	private boolean processWayDataBlock(boolean doubleDeltaEncoding) {
 		// get and check the number of way coordinate blocks (VBE-U)
 		int numberOfWayCoordinateBlocks = this.readBuffer.readUnsignedInt();
 		if (numberOfWayCoordinateBlocks < 1 || numberOfWayCoordinateBlocks > Short.MAX_VALUE) {
 			LOGGER.warning("invalid number of way coordinate blocks: " + numberOfWayCoordinateBlocks);
 			logDebugSignatures();
-			return null;
+			return false;
 		}
 
-		// create the array which will store the different way coordinate blocks
-		LatLong[][] wayCoordinates = new LatLong[numberOfWayCoordinateBlocks][];
+		this.wayNodesBuffer.clear();
 
 		// read the way coordinate blocks
 		for (int coordinateBlock = 0; coordinateBlock < numberOfWayCoordinateBlocks; ++coordinateBlock) {
@@ -663,27 +1206,24 @@ public class MapDatabase {
 			if (numberOfWayNodes < 2 || numberOfWayNodes > MAXIMUM_WAY_NODES_SEQUENCE_LENGTH) {
 				LOGGER.warning("invalid number of way nodes: " + numberOfWayNodes);
 				logDebugSignatures();
-				wayCoordinates[coordinateBlock] = null;
+				this.wayNodesBuffer.addBlock(-1);
 				continue;
 			}
 
-			// create the array which will store the current way segment
-			LatLong[] waySegment = new LatLong[numberOfWayNodes];
+			// reserve the space for the current way segment
+			int firstNode = this.wayNodesBuffer.addBlock(numberOfWayNodes);
 
 			if (doubleDeltaEncoding) {
-				decodeWayNodesDoubleDelta(waySegment);
+				decodeWayNodesDoubleDelta(firstNode, numberOfWayNodes);
 			} else {
-				decodeWayNodesSingleDelta(waySegment);
+				decodeWayNodesSingleDelta(firstNode, numberOfWayNodes);
 			}
-
-			wayCoordinates[coordinateBlock] = waySegment;
 		}
 
-		return wayCoordinates;
+		return true;
 	}
 
-	private List<Way> processWays(QueryParameters queryParameters, int numberOfWays) {
-		List<Way> ways = new ArrayList<Way>();
+	private boolean processWays(QueryParameters queryParameters, int numberOfWays, MapDataCollector mapDataCollector) {
 		Tag[] wayTags = this.mapFileHeader.getMapFileInfo().wayTags;
 
 		for (int elementCounter = numberOfWays; elementCounter != 0; --elementCounter) {
@@ -693,7 +1233,7 @@ public class MapDatabase {
 				if (!this.signatureWay.startsWith("---WayStart")) {
 					LOGGER.warning("invalid way signature: " + this.signatureWay);
 					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
-					return null;
+					return false;
 				}
 			}
 
@@ -704,21 +1244,17 @@ public class MapDatabase {
 				if (this.mapFileHeader.getMapFileInfo().debugFile) {
 					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
 				}
-				return null;
+				return false;
 			}
-
-			if (queryParameters.useTileBitmask) {
-				// get the way tile bitmask (2 bytes)
-				int tileBitmask = this.readBuffer.readShort();
-				// check if the way is inside the requested tile
-				if ((queryParameters.queryTileBitmask & tileBitmask) == 0) {
-					// skip the rest of the way and continue with the next way
-					this.readBuffer.skipBytes(wayDataSize - 2);
-					continue;
-				}
-			} else {
-				// ignore the way tile bitmask (2 bytes)
-				this.readBuffer.skipBytes(2);
+			int wayEndPosition = this.readBuffer.getBufferPosition() + wayDataSize;
+
+			// get the way tile bitmask (2 bytes)
+			int tileBitmask = this.readBuffer.readShort();
+			// check if the way is inside the requested tile
+			if (queryParameters.useTileBitmask && (queryParameters.queryTileBitmask & tileBitmask) == 0) {
+				// skip the rest of the way and continue with the next way
+				this.readBuffer.skipBytes(wayDataSize - 2);
+				continue;
 			}
 
 			// get the special byte which encodes multiple flags
@@ -729,16 +1265,29 @@ public class MapDatabase {
 			// bit 5-8 represent the number of tag IDs
 			byte numberOfTags = (byte) (specialByte & WAY_NUMBER_OF_TAGS_BITMASK);
 
-			List<Tag> tags = new ArrayList<Tag>();
+			boolean accepted = queryParameters.tagIdFilter == null;
 
-			for (byte tagIndex = numberOfTags; tagIndex != 0; --tagIndex) {
+			for (byte tagIndex = 0; tagIndex < numberOfTags; ++tagIndex) {
 				int tagId = this.readBuffer.readUnsignedInt();
 				if (tagId < 0 || tagId >= wayTags.length) {
 					LOGGER.warning("invalid way tag ID: " + tagId);
 					logDebugSignatures();
-					return null;
+					return false;
 				}
-				tags.add(wayTags[tagId]);
+				this.tagIds[tagIndex] = tagId;
+				accepted = accepted || queryParameters.tagIdFilter.wayTagIds[tagId];
+			}
+
+			if (!accepted) {
+				// skip the rest of the filtered way and continue with the next way
+				this.readBuffer.setBufferPosition(wayEndPosition);
+				continue;
+			}
+
+			int[] sortedTagIds = getSortedTagIds(numberOfTags);
+			List<Tag> tags = new ArrayList<Tag>();
+			for (byte tagIndex = 0; tagIndex < numberOfTags; ++tagIndex) {
+				tags.add(wayTags[sortedTagIds[tagIndex]]);
 			}
 
 			// get the feature bitmask (1 byte)
@@ -767,40 +1316,50 @@ public class MapDatabase {
 				tags.add(new Tag(TAG_KEY_REF, this.readBuffer.readUTF8EncodedString()));
 			}
 
-			LatLong labelPosition = readOptionalLabelPosition(featureLabelPosition);
+			double labelLatitude = Double.NaN;
+			double labelLongitude = Double.NaN;
+			if (featureLabelPosition) {
+				// get the label position latitude offset (VBE-S)
+				labelLatitude = this.tileLatitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+
+				// get the label position longitude offset (VBE-S)
+				labelLongitude = this.tileLongitude
+						+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			}
 
 			int wayDataBlocks = readOptionalWayDataBlocksByte(featureWayDataBlocksByte);
 			if (wayDataBlocks < 1) {
 				LOGGER.warning("invalid number of way data blocks: " + wayDataBlocks);
 				logDebugSignatures();
-				return null;
+				return false;
 			}
 
 			for (int wayDataBlock = 0; wayDataBlock < wayDataBlocks; ++wayDataBlock) {
-				LatLong[][] wayNodes = processWayDataBlock(featureWayDoubleDeltaEncoding);
-				if (wayNodes == null) {
-					return null;
+				if (!processWayDataBlock(featureWayDoubleDeltaEncoding)) {
+					return false;
 				}
 
-				ways.add(new Way(layer, tags, wayNodes, labelPosition));
+				mapDataCollector.addWay(layer, tags, sortedTagIds, this.wayNodesBuffer, labelLatitude,
+						labelLongitude, tileBitmask);
 			}
 		}
 
-		return ways;
+		return true;
 	}
 
-	private LatLong readOptionalLabelPosition(boolean featureLabelPosition) {
-		if (featureLabelPosition) {
-			// get the label position latitude offset (VBE-S)
-			double latitude = this.tileLatitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
-
-			// get the label position longitude offset (VBE-S)
-			double longitude = this.tileLongitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
-
-			return new LatLong(latitude, longitude);
+	/**
+	 * Reads the given region of the map file into the read buffer.
+	 * 
+	 * @return true if the whole region was read successfully, false otherwise.
+	 */
+	private boolean readBlock(long blockAddress, int blockSize) throws IOException {
+		if (this.mappedMapFile != null) {
+			return this.readBuffer.readFromMappedFile(this.mappedMapFile, blockAddress, blockSize);
 		}
 
-		return null;
+		// seek to the block in the map file
+		this.inputFile.seek(blockAddress);
+		return this.readBuffer.readFromFile(blockSize);
 	}
 
 	private int readOptionalWayDataBlocksByte(boolean featureWayDataBlocksByte) {
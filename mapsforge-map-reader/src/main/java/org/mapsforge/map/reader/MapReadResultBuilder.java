@@ -17,7 +17,7 @@ package org.mapsforge.map.reader;
 import java.util.ArrayList;
 import java.util.List;
 
-class MapReadResultBuilder {
+class MapReadResultBuilder implements MapDataSink {
 	boolean isWater;
 	final List<PointOfInterest> pointOfInterests;
 	final List<Way> ways;
@@ -27,9 +27,19 @@ class MapReadResultBuilder {
 		this.ways = new ArrayList<Way>();
 	}
 
-	void add(PoiWayBundle poiWayBundle) {
-		this.pointOfInterests.addAll(poiWayBundle.pois);
-		this.ways.addAll(poiWayBundle.ways);
+	@Override
+	public void addPointOfInterest(PointOfInterest pointOfInterest) {
+		this.pointOfInterests.add(pointOfInterest);
+	}
+
+	@Override
+	public void addWay(Way way) {
+		this.ways.add(way);
+	}
+
+	@Override
+	public void setWater(boolean isWater) {
+		this.isWater = isWater;
 	}
 
 	MapReadResult build() {
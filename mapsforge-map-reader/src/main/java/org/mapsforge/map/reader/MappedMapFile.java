@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a whole map file.
+ * <p>
+ * A single {@link MappedByteBuffer} cannot be larger than 2 GB, so the file is mapped in chunks. Consecutive chunks
+ * overlap by {@link ReadBuffer#MAXIMUM_BUFFER_SIZE} bytes, which guarantees that every region of at most that size
+ * lies completely inside one chunk. This class is immutable and thread-safe, all returned buffers are independent
+ * views on the shared mapping.
+ */
+final class MappedMapFile {
+	/**
+	 * Distance in bytes between the start addresses of two consecutive chunks.
+	 */
+	private static final long CHUNK_STEP = 1L << 30;
+
+	private final ByteBuffer[] chunks;
+	private final long fileSize;
+
+	/**
+	 * @param fileChannel
+	 *            the channel of the map file, the mapping remains valid after the channel has been closed.
+	 * @throws IOException
+	 *             if the file could not be mapped.
+	 */
+	MappedMapFile(FileChannel fileChannel) throws IOException {
+		this.fileSize = fileChannel.size();
+
+		int numberOfChunks = (int) ((this.fileSize + CHUNK_STEP - 1) / CHUNK_STEP);
+		this.chunks = new ByteBuffer[numberOfChunks];
+		for (int i = 0; i < numberOfChunks; ++i) {
+			long chunkStart = i * CHUNK_STEP;
+			long chunkSize = Math.min(CHUNK_STEP + ReadBuffer.MAXIMUM_BUFFER_SIZE, this.fileSize - chunkStart);
+			this.chunks[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkSize);
+		}
+	}
+
+	/**
+	 * Returns a new buffer which shares its content with the given region of the file. The position of the returned
+	 * buffer is zero, its limit equals the requested length and its byte order is big-endian.
+	 *
+	 * @param position
+	 *            the absolute start address of the region in the file.
+	 * @param length
+	 *            the length of the region in bytes, must not exceed {@link ReadBuffer#MAXIMUM_BUFFER_SIZE}.
+	 * @return the buffer or null, if the region is not inside the file.
+	 */
+	ByteBuffer slice(long position, int length) {
+		if (position < 0 || length < 0 || length > ReadBuffer.MAXIMUM_BUFFER_SIZE || position + length > this.fileSize) {
+			return null;
+		}
+
+		ByteBuffer chunk = this.chunks[(int) (position / CHUNK_STEP)].duplicate();
+		int offset = (int) (position % CHUNK_STEP);
+		chunk.position(offset);
+		chunk.limit(offset + length);
+		return chunk.slice();
+	}
+
+	/**
+	 * Converts five bytes at the given address to an unsigned long without creating any intermediate buffer.
+	 * <p>
+	 * The byte order is big-endian.
+	 *
+	 * @param position
+	 *            the absolute address in the file.
+	 * @return the long value.
+	 * @throws IndexOutOfBoundsException
+	 *             if the address is not inside the file.
+	 */
+	long getFiveBytesLong(long position) {
+		if (position < 0 || position + 5 > this.fileSize) {
+			throw new IndexOutOfBoundsException("invalid position: " + position);
+		}
+
+		ByteBuffer chunk = this.chunks[(int) (position / CHUNK_STEP)];
+		int offset = (int) (position % CHUNK_STEP);
+		return (chunk.get(offset) & 0xffL) << 32 | (chunk.get(offset + 1) & 0xffL) << 24
+				| (chunk.get(offset + 2) & 0xffL) << 16 | (chunk.get(offset + 3) & 0xffL) << 8
+				| (chunk.get(offset + 4) & 0xffL);
+	}
+}
@@ -38,9 +38,17 @@ public class PointOfInterest {
 	 */
 	public final List<Tag> tags;
 
-	PointOfInterest(byte layer, List<Tag> tags, LatLong position) {
+	/**
+	 * The sorted IDs of the tags of this POI in the tag table of the map file. The first {@code tagIds.length} entries
+	 * of {@link #tags} are the tags with these IDs in the same order, they are followed by the tags which are stored
+	 * without ID, like the name. Two elements of the same map file with equal IDs share the same {@link Tag} objects.
+	 */
+	public final int[] tagIds;
+
+	PointOfInterest(byte layer, List<Tag> tags, int[] tagIds, LatLong position) {
 		this.layer = layer;
 		this.tags = tags;
+		this.tagIds = tagIds;
 		this.position = position;
 	}
 }
@@ -21,6 +21,7 @@ class QueryParameters {
 	long fromBlockY;
 	int queryTileBitmask;
 	int queryZoomLevel;
+	TagIdFilter tagIdFilter;
 	long toBaseTileX;
 	long toBaseTileY;
 	long toBlockX;
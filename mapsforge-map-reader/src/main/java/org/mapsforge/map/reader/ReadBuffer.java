@@ -17,10 +17,12 @@ package org.mapsforge.map.reader;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 /**
- * Reads from a {@link RandomAccessFile} into a buffer and decodes the data.
+ * Reads from a {@link RandomAccessFile} into a buffer and decodes the data. Alternatively, the data can be decoded
+ * directly from a region of a memory-mapped map file without copying it.
  */
 public class ReadBuffer {
 	/**
@@ -30,6 +32,7 @@ public class ReadBuffer {
 	private static final String CHARSET_UTF8 = "UTF-8";
 	private static final Logger LOGGER = Logger.getLogger(ReadBuffer.class.getName());
 
+	private ByteBuffer buffer;
 	private byte[] bufferData;
 	private int bufferPosition;
 	private final RandomAccessFile inputFile;
@@ -44,7 +47,7 @@ public class ReadBuffer {
 	 * @return the byte value.
 	 */
 	public byte readByte() {
-		return this.bufferData[this.bufferPosition++];
+		return this.buffer.get(this.bufferPosition++);
 	}
 
 	/**
@@ -66,13 +69,44 @@ public class ReadBuffer {
 				return false;
 			}
 			this.bufferData = new byte[length];
+			this.buffer = ByteBuffer.wrap(this.bufferData);
 		}
 
 		// reset the buffer position and read the data into the buffer
 		this.bufferPosition = 0;
+		this.buffer.limit(length);
 		return this.inputFile.read(this.bufferData, 0, length) == length;
 	}
 
+	/**
+	 * Uses the given region of a memory-mapped map file as read buffer and resets the internal buffer position. The
+	 * data is not copied.
+	 * 
+	 * @param mappedMapFile
+	 *            the memory-mapped map file.
+	 * @param position
+	 *            the absolute start address of the region in the file.
+	 * @param length
+	 *            the length of the region in bytes.
+	 * @return true if the region could be mapped successfully, false otherwise.
+	 */
+	boolean readFromMappedFile(MappedMapFile mappedMapFile, long position, int length) {
+		if (length > MAXIMUM_BUFFER_SIZE) {
+			LOGGER.warning("invalid read length: " + length);
+			return false;
+		}
+
+		ByteBuffer region = mappedMapFile.slice(position, length);
+		if (region == null) {
+			return false;
+		}
+
+		this.buffer = region;
+		this.bufferData = null;
+		this.bufferPosition = 0;
+		return true;
+	}
+
 	/**
 	 * Converts four bytes from the read buffer to a signed int.
 	 * <p>
@@ -82,7 +116,7 @@ public class ReadBuffer {
 	 */
 	public int readInt() {
 		this.bufferPosition += 4;
-		return Deserializer.getInt(this.bufferData, this.bufferPosition - 4);
+		return this.buffer.getInt(this.bufferPosition - 4);
 	}
 
 	/**
@@ -94,7 +128,7 @@ public class ReadBuffer {
 	 */
 	public long readLong() {
 		this.bufferPosition += 8;
-		return Deserializer.getLong(this.bufferData, this.bufferPosition - 8);
+		return this.buffer.getLong(this.bufferPosition - 8);
 	}
 
 	/**
@@ -106,7 +140,7 @@ public class ReadBuffer {
 	 */
 	public int readShort() {
 		this.bufferPosition += 2;
-		return Deserializer.getShort(this.bufferData, this.bufferPosition - 2);
+		return this.buffer.getShort(this.bufferPosition - 2);
 	}
 
 	/**
@@ -122,18 +156,18 @@ public class ReadBuffer {
 		byte variableByteShift = 0;
 
 		// check if the continuation bit is set
-		while ((this.bufferData[this.bufferPosition] & 0x80) != 0) {
-			variableByteDecode |= (this.bufferData[this.bufferPosition++] & 0x7f) << variableByteShift;
+		while ((this.buffer.get(this.bufferPosition) & 0x80) != 0) {
+			variableByteDecode |= (this.buffer.get(this.bufferPosition++) & 0x7f) << variableByteShift;
 			variableByteShift += 7;
 		}
 
 		// read the six data bits from the last byte
-		if ((this.bufferData[this.bufferPosition] & 0x40) != 0) {
+		if ((this.buffer.get(this.bufferPosition) & 0x40) != 0) {
 			// negative
-			return -(variableByteDecode | ((this.bufferData[this.bufferPosition++] & 0x3f) << variableByteShift));
+			return -(variableByteDecode | ((this.buffer.get(this.bufferPosition++) & 0x3f) << variableByteShift));
 		}
 		// positive
-		return variableByteDecode | ((this.bufferData[this.bufferPosition++] & 0x3f) << variableByteShift);
+		return variableByteDecode | ((this.buffer.get(this.bufferPosition++) & 0x3f) << variableByteShift);
 	}
 
 	/**
@@ -148,13 +182,13 @@ public class ReadBuffer {
 		byte variableByteShift = 0;
 
 		// check if the continuation bit is set
-		while ((this.bufferData[this.bufferPosition] & 0x80) != 0) {
-			variableByteDecode |= (this.bufferData[this.bufferPosition++] & 0x7f) << variableByteShift;
+		while ((this.buffer.get(this.bufferPosition) & 0x80) != 0) {
+			variableByteDecode |= (this.buffer.get(this.bufferPosition++) & 0x7f) << variableByteShift;
 			variableByteShift += 7;
 		}
 
 		// read the seven data bits from the last byte
-		return variableByteDecode | (this.bufferData[this.bufferPosition++] << variableByteShift);
+		return variableByteDecode | (this.buffer.get(this.bufferPosition++) << variableByteShift);
 	}
 
 	/**
@@ -174,10 +208,18 @@ public class ReadBuffer {
 	 * @return the UTF-8 decoded string (may be null).
 	 */
 	public String readUTF8EncodedString(int stringLength) {
-		if (stringLength > 0 && this.bufferPosition + stringLength <= this.bufferData.length) {
+		if (stringLength > 0 && this.bufferPosition + stringLength <= this.buffer.limit()) {
 			this.bufferPosition += stringLength;
 			try {
-				return new String(this.bufferData, this.bufferPosition - stringLength, stringLength, CHARSET_UTF8);
+				if (this.bufferData != null) {
+					return new String(this.bufferData, this.bufferPosition - stringLength, stringLength, CHARSET_UTF8);
+				}
+
+				// memory-mapped data has no backing array, copy the string bytes first
+				byte[] stringBytes = new byte[stringLength];
+				this.buffer.position(this.bufferPosition - stringLength);
+				this.buffer.get(stringBytes);
+				return new String(stringBytes, CHARSET_UTF8);
 			} catch (UnsupportedEncodingException e) {
 				throw new IllegalStateException(e);
 			}
@@ -197,7 +239,21 @@ public class ReadBuffer {
 	 * @return the current size of the read buffer.
 	 */
 	int getBufferSize() {
-		return this.bufferData.length;
+		return this.buffer.limit();
+	}
+
+	/**
+	 * Restricts the read buffer to the given part of the data which has been read last. This allows several
+	 * consecutive regions of the file to be read at once and decoded one after another.
+	 * 
+	 * @param start
+	 *            the new buffer position.
+	 * @param end
+	 *            the new buffer size.
+	 */
+	void setBufferRange(int start, int end) {
+		this.buffer.limit(end);
+		this.bufferPosition = start;
 	}
 
 	/**
@@ -219,4 +275,11 @@ public class ReadBuffer {
 	void skipBytes(int bytes) {
 		this.bufferPosition += bytes;
 	}
+
+	/**
+	 * Skips a variable amount of bytes which encode a string, without decoding it.
+	 */
+	void skipUTF8EncodedString() {
+		skipBytes(readUnsignedInt());
+	}
 }
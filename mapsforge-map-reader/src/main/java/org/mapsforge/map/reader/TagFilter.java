@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Selects the POIs and ways which are returned by a filtered read operation.
+ * <p>
+ * A filter is evaluated only once for each tag in the tag tables of a map file. An element is read if at least one of
+ * its tags is accepted, all other elements are skipped before any of their strings or coordinates are decoded. Elements
+ * without tags are never read. Implementations must be stateless and thread-safe.
+ * 
+ * @see MapDatabase#readMapData(org.mapsforge.core.model.Tile, TagFilter)
+ */
+public interface TagFilter {
+	/**
+	 * @param tag
+	 *            a tag from the POI tag table of the map file.
+	 * @return true if POIs with the given tag should be read, false otherwise.
+	 */
+	boolean acceptPointOfInterestTag(Tag tag);
+
+	/**
+	 * @param tag
+	 *            a tag from the way tag table of the map file.
+	 * @return true if ways with the given tag should be read, false otherwise.
+	 */
+	boolean acceptWayTag(Tag tag);
+}
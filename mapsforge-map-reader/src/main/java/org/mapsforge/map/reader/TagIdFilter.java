@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * A {@link TagFilter} which has been resolved against the tag tables of a map file. Instances are immutable.
+ */
+final class TagIdFilter {
+	private static boolean[] resolve(Tag[] tags, TagFilter tagFilter, boolean poiTags) {
+		boolean[] acceptedTagIds = new boolean[tags.length];
+		for (int tagId = 0; tagId < tags.length; ++tagId) {
+			if (poiTags) {
+				acceptedTagIds[tagId] = tagFilter.acceptPointOfInterestTag(tags[tagId]);
+			} else {
+				acceptedTagIds[tagId] = tagFilter.acceptWayTag(tags[tagId]);
+			}
+		}
+		return acceptedTagIds;
+	}
+
+	private static boolean containsTrue(boolean[] values) {
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	final boolean acceptsAnyPoi;
+	final boolean acceptsAnyWay;
+	final MapFileInfo mapFileInfo;
+	final boolean[] poiTagIds;
+	final TagFilter tagFilter;
+	final boolean[] wayTagIds;
+
+	TagIdFilter(TagFilter tagFilter, MapFileInfo mapFileInfo) {
+		this.tagFilter = tagFilter;
+		this.mapFileInfo = mapFileInfo;
+		this.poiTagIds = resolve(mapFileInfo.poiTags, tagFilter, true);
+		this.wayTagIds = resolve(mapFileInfo.wayTags, tagFilter, false);
+		this.acceptsAnyPoi = containsTrue(this.poiTagIds);
+		this.acceptsAnyWay = containsTrue(this.wayTagIds);
+	}
+
+	/**
+	 * @return true if this instance has been resolved from the given filter for the given map file, false otherwise.
+	 */
+	boolean isResolvedFrom(TagFilter otherTagFilter, MapFileInfo otherMapFileInfo) {
+		return this.tagFilter == otherTagFilter && this.mapFileInfo == otherMapFileInfo;
+	}
+}
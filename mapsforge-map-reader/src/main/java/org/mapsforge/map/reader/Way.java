@@ -43,9 +43,17 @@ public class Way {
 	 */
 	public final List<Tag> tags;
 
-	Way(byte layer, List<Tag> tags, LatLong[][] latLongs, LatLong labelPosition) {
+	/**
+	 * The sorted IDs of the tags of this way in the tag table of the map file. The first {@code tagIds.length} entries
+	 * of {@link #tags} are the tags with these IDs in the same order, they are followed by the tags which are stored
+	 * without ID, like the name. Two elements of the same map file with equal IDs share the same {@link Tag} objects.
+	 */
+	public final int[] tagIds;
+
+	Way(byte layer, List<Tag> tags, int[] tagIds, LatLong[][] latLongs, LatLong labelPosition) {
 		this.layer = layer;
 		this.tags = tags;
+		this.tagIds = tagIds;
 		this.latLongs = latLongs;
 		this.labelPosition = labelPosition;
 	}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.LatLong;
+
+/**
+ * A reusable buffer for the decoded nodes of a single way data block, which may consist of several coordinate blocks.
+ */
+final class WayNodesBuffer {
+	private static final int INITIAL_BLOCKS = 8;
+	private static final int INITIAL_NODES = 256;
+
+	/**
+	 * The number of nodes of each coordinate block, -1 marks an invalid coordinate block.
+	 */
+	int[] blockSizes;
+
+	/**
+	 * The latitudes of all nodes, ordered by coordinate block.
+	 */
+	double[] latitudes;
+
+	/**
+	 * The longitudes of all nodes, ordered by coordinate block.
+	 */
+	double[] longitudes;
+
+	int numberOfBlocks;
+	int numberOfNodes;
+
+	WayNodesBuffer() {
+		this.blockSizes = new int[INITIAL_BLOCKS];
+		this.latitudes = new double[INITIAL_NODES];
+		this.longitudes = new double[INITIAL_NODES];
+	}
+
+	/**
+	 * Appends a new coordinate block and makes room for its nodes.
+	 * 
+	 * @param blockSize
+	 *            the number of nodes in the block or -1, if the block is invalid.
+	 * @return the index of the first node of the new block.
+	 */
+	int addBlock(int blockSize) {
+		if (this.numberOfBlocks == this.blockSizes.length) {
+			int[] newBlockSizes = new int[this.blockSizes.length * 2];
+			System.arraycopy(this.blockSizes, 0, newBlockSizes, 0, this.numberOfBlocks);
+			this.blockSizes = newBlockSizes;
+		}
+		this.blockSizes[this.numberOfBlocks++] = blockSize;
+
+		int firstNode = this.numberOfNodes;
+		if (blockSize > 0) {
+			int requiredNodes = this.numberOfNodes + blockSize;
+			if (requiredNodes > this.latitudes.length) {
+				int newLength = Math.max(requiredNodes, this.latitudes.length * 2);
+				double[] newLatitudes = new double[newLength];
+				double[] newLongitudes = new double[newLength];
+				System.arraycopy(this.latitudes, 0, newLatitudes, 0, this.numberOfNodes);
+				System.arraycopy(this.longitudes, 0, newLongitudes, 0, this.numberOfNodes);
+				this.latitudes = newLatitudes;
+				this.longitudes = newLongitudes;
+			}
+			this.numberOfNodes = requiredNodes;
+		}
+		return firstNode;
+	}
+
+	void clear() {
+		this.numberOfBlocks = 0;
+		this.numberOfNodes = 0;
+	}
+
+	/**
+	 * @return the content of this buffer as new LatLong objects, invalid coordinate blocks are null.
+	 */
+	LatLong[][] toLatLongs() {
+		LatLong[][] latLongs = new LatLong[this.numberOfBlocks][];
+		int node = 0;
+		for (int block = 0; block < this.numberOfBlocks; ++block) {
+			int blockSize = this.blockSizes[block];
+			if (blockSize < 0) {
+				continue;
+			}
+
+			LatLong[] waySegment = new LatLong[blockSize];
+			for (int i = 0; i < blockSize; ++i, ++node) {
+				waySegment[i] = new LatLong(this.latitudes[node], this.longitudes[node]);
+			}
+			latLongs[block] = waySegment;
+		}
+		return latLongs;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class BlockCacheTest {
+	private static final File[] MAP_FILES = { new File("src/test/resources/with_data/output.map"),
+			new File("src/test/resources/single_delta_encoding/output.map"),
+			new File("src/test/resources/double_delta_encoding/output.map") };
+	private static final byte ZOOM_LEVEL_MAX = 16;
+	private static final int ZOOM_LEVEL_MIN = 4;
+
+	private static void assertReadResultEquals(MapReadResult expected, MapReadResult actual) {
+		Assert.assertEquals(expected.isWater, actual.isWater);
+		Assert.assertEquals(expected.pointOfInterests.size(), actual.pointOfInterests.size());
+		Assert.assertEquals(expected.ways.size(), actual.ways.size());
+
+		for (int i = 0; i < expected.pointOfInterests.size(); ++i) {
+			PointOfInterest poi1 = expected.pointOfInterests.get(i);
+			PointOfInterest poi2 = actual.pointOfInterests.get(i);
+			Assert.assertEquals(poi1.layer, poi2.layer);
+			Assert.assertEquals(poi1.position, poi2.position);
+			Assert.assertEquals(poi1.tags, poi2.tags);
+			Assert.assertArrayEquals(poi1.tagIds, poi2.tagIds);
+		}
+
+		for (int i = 0; i < expected.ways.size(); ++i) {
+			Way way1 = expected.ways.get(i);
+			Way way2 = actual.ways.get(i);
+			Assert.assertEquals(way1.layer, way2.layer);
+			Assert.assertEquals(way1.labelPosition, way2.labelPosition);
+			Assert.assertEquals(way1.tags, way2.tags);
+			Assert.assertArrayEquals(way1.tagIds, way2.tagIds);
+			Assert.assertArrayEquals(way1.latLongs, way2.latLongs);
+		}
+	}
+
+	private static Tile getTile(byte zoomLevel, int offsetX, int offsetY) {
+		long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+		long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+		return new Tile(Math.max(tileX + offsetX, 0), Math.max(tileY + offsetY, 0), zoomLevel);
+	}
+
+	private static MapDatabase openMapDatabase(File mapFile) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		return mapDatabase;
+	}
+
+	private static void verifyInvalidCapacity(long capacity) {
+		try {
+			new BlockCache(capacity);
+			Assert.fail("capacity: " + capacity);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void cachedReadTest() {
+		BlockCache blockCache = new BlockCache(1024 * 1024);
+
+		for (File mapFile : MAP_FILES) {
+			MapDatabase uncachedDatabase = openMapDatabase(mapFile);
+			MapDatabase cachedDatabase = openMapDatabase(mapFile);
+			cachedDatabase.setBlockCache(blockCache);
+			Assert.assertSame(blockCache, cachedDatabase.getBlockCache());
+
+			for (int pass = 0; pass < 2; ++pass) {
+				long misses = blockCache.getMissCount();
+				for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+					for (int offset = -1; offset <= 1; ++offset) {
+						Tile tile = getTile(zoomLevel, offset, offset);
+						assertReadResultEquals(uncachedDatabase.readMapData(tile), cachedDatabase.readMapData(tile));
+					}
+				}
+
+				if (pass > 0) {
+					// all blocks with data must have been cached during the first pass
+					Assert.assertEquals(misses, blockCache.getMissCount());
+				}
+			}
+
+			uncachedDatabase.closeFile();
+			cachedDatabase.closeFile();
+		}
+
+		Assert.assertTrue(blockCache.getHitCount() > 0);
+		Assert.assertTrue(blockCache.size() > 0);
+		Assert.assertTrue(blockCache.getSize() <= blockCache.getCapacity());
+		Assert.assertEquals(0, blockCache.getEvictionCount());
+
+		blockCache.clear();
+		Assert.assertEquals(0, blockCache.size());
+		Assert.assertEquals(0, blockCache.getSize());
+	}
+
+	@Test
+	public void evictionTest() {
+		BlockCache blockCache = new BlockCache(1024);
+		MapDatabase mapDatabase = openMapDatabase(MAP_FILES[0]);
+		mapDatabase.setBlockCache(blockCache);
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			Assert.assertNotNull(mapDatabase.readMapData(getTile(zoomLevel, 0, 0)));
+			Assert.assertTrue(blockCache.getSize() <= blockCache.getCapacity());
+		}
+		Assert.assertTrue(blockCache.getEvictionCount() > 0);
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void invalidCapacityTest() {
+		verifyInvalidCapacity(-1);
+	}
+}
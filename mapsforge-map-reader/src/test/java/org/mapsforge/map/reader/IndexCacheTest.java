@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+
+public class IndexCacheTest {
+	private static final int BLOCK_SIZE = 640;
+	private static final File MAP_FILE = new File("src/test/resources/with_data/output.map");
+
+	private static void verifyInvalidCapacity(long capacity) {
+		try {
+			new IndexCache(capacity);
+			Assert.fail("capacity: " + capacity);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void evictionTest() {
+		IndexCache indexCache = new IndexCache(16 * BLOCK_SIZE);
+		int blocks = 1000;
+
+		for (long key = 0; key < blocks; ++key) {
+			indexCache.put(key, new byte[] { (byte) key });
+		}
+		Assert.assertTrue(indexCache.size() <= 16);
+		Assert.assertEquals(blocks - indexCache.size(), indexCache.getEvictionCount());
+
+		int found = 0;
+		for (long key = 0; key < blocks; ++key) {
+			byte[] block = indexCache.get(key);
+			if (block != null) {
+				Assert.assertEquals((byte) key, block[0]);
+				++found;
+			}
+		}
+		Assert.assertEquals(indexCache.size(), found);
+		Assert.assertEquals(found, indexCache.getHitCount());
+		Assert.assertEquals(blocks - found, indexCache.getMissCount());
+
+		indexCache.clear();
+		Assert.assertEquals(0, indexCache.size());
+	}
+
+	@Test
+	public void fileIdTest() {
+		IndexCache indexCache = new IndexCache(0);
+		int fileId1 = indexCache.getFileId("foo");
+		int fileId2 = indexCache.getFileId("bar");
+
+		Assert.assertNotEquals(fileId1, fileId2);
+		Assert.assertEquals(fileId1, indexCache.getFileId("foo"));
+		Assert.assertEquals(fileId2, indexCache.getFileId("bar"));
+	}
+
+	@Test
+	public void invalidCapacityTest() {
+		verifyInvalidCapacity(-1);
+	}
+
+	@Test
+	public void sharedIndexCacheTest() {
+		IndexCache previousIndexCache = MapDatabase.getIndexCache();
+		IndexCache indexCache = new IndexCache(64 * BLOCK_SIZE);
+		MapDatabase.setIndexCache(indexCache);
+
+		try {
+			byte zoomLevel = 8;
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			MapDatabase mapDatabase1 = new MapDatabase();
+			Assert.assertTrue(mapDatabase1.openFile(MAP_FILE).isSuccess());
+			Assert.assertNotNull(mapDatabase1.readMapData(tile));
+			long misses = indexCache.getMissCount();
+			Assert.assertTrue(misses > 0);
+
+			MapDatabase mapDatabase2 = new MapDatabase();
+			Assert.assertTrue(mapDatabase2.openFile(MAP_FILE).isSuccess());
+			Assert.assertNotNull(mapDatabase2.readMapData(tile));
+
+			// the second instance must find all index blocks in the shared cache
+			Assert.assertEquals(misses, indexCache.getMissCount());
+			Assert.assertTrue(indexCache.getHitCount() > 0);
+
+			mapDatabase1.closeFile();
+			mapDatabase2.closeFile();
+		} finally {
+			MapDatabase.setIndexCache(previousIndexCache);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MapDatabaseBatchReadTest {
+	private static final File[] MAP_FILES = { new File("src/test/resources/with_data/output.map"),
+			new File("src/test/resources/single_delta_encoding/output.map"),
+			new File("src/test/resources/double_delta_encoding/output.map") };
+	private static final byte ZOOM_LEVEL_MAX = 16;
+	private static final int ZOOM_LEVEL_MIN = 4;
+
+	private static void assertReadResultEquals(MapReadResult expected, MapReadResult actual) {
+		Assert.assertEquals(expected.isWater, actual.isWater);
+		Assert.assertEquals(expected.pointOfInterests.size(), actual.pointOfInterests.size());
+		Assert.assertEquals(expected.ways.size(), actual.ways.size());
+
+		for (int i = 0; i < expected.pointOfInterests.size(); ++i) {
+			PointOfInterest poi1 = expected.pointOfInterests.get(i);
+			PointOfInterest poi2 = actual.pointOfInterests.get(i);
+			Assert.assertEquals(poi1.layer, poi2.layer);
+			Assert.assertEquals(poi1.position, poi2.position);
+			Assert.assertEquals(poi1.tags, poi2.tags);
+		}
+
+		for (int i = 0; i < expected.ways.size(); ++i) {
+			Way way1 = expected.ways.get(i);
+			Way way2 = actual.ways.get(i);
+			Assert.assertEquals(way1.layer, way2.layer);
+			Assert.assertEquals(way1.labelPosition, way2.labelPosition);
+			Assert.assertEquals(way1.tags, way2.tags);
+			Assert.assertArrayEquals(way1.latLongs, way2.latLongs);
+		}
+	}
+
+	private static List<Tile> getTiles() {
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			for (long y = Math.max(tileY - 2, 0); y <= tileY + 2; ++y) {
+				for (long x = Math.max(tileX - 2, 0); x <= tileX + 2; ++x) {
+					tiles.add(new Tile(x, y, zoomLevel));
+				}
+			}
+		}
+		return tiles;
+	}
+
+	private static void verifyBatchRead(boolean memoryMapped) {
+		List<Tile> tiles = getTiles();
+
+		for (File mapFile : MAP_FILES) {
+			MapDatabase mapDatabase = new MapDatabase();
+			FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile, memoryMapped);
+			Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+			Map<Tile, MapReadResult> mapReadResults = mapDatabase.readMapData(tiles);
+			Assert.assertEquals(tiles.size(), mapReadResults.size());
+			for (Tile tile : tiles) {
+				assertReadResultEquals(mapDatabase.readMapData(tile), mapReadResults.get(tile));
+			}
+
+			mapDatabase.closeFile();
+		}
+	}
+
+	@Test
+	public void batchReadTest() {
+		verifyBatchRead(false);
+	}
+
+	@Test
+	public void duplicateTilesTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILES[0]);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		Tile tile = getTiles().get(0);
+		List<Tile> tiles = new ArrayList<Tile>();
+		tiles.add(tile);
+		tiles.add(new Tile(tile.tileX, tile.tileY, tile.zoomLevel));
+
+		Map<Tile, MapReadResult> mapReadResults = mapDatabase.readMapData(tiles);
+		Assert.assertEquals(1, mapReadResults.size());
+		assertReadResultEquals(mapDatabase.readMapData(tile), mapReadResults.get(tile));
+
+		Assert.assertTrue(mapDatabase.readMapData(Collections.<Tile> emptyList()).isEmpty());
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void memoryMappedBatchReadTest() {
+		verifyBatchRead(true);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MapDatabaseFlatReadTest {
+	private static final File[] MAP_FILES = { new File("src/test/resources/with_data/output.map"),
+			new File("src/test/resources/single_delta_encoding/output.map"),
+			new File("src/test/resources/double_delta_encoding/output.map") };
+	private static final int TILE_SIZE = 256;
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static void assertFlatReadResultEquals(MapReadResult expected, FlatMapReadResult actual, Tile tile) {
+		Assert.assertEquals(expected.isWater, actual.isWater);
+		Assert.assertEquals(expected.pointOfInterests.size(), actual.numberOfPois);
+		Assert.assertEquals(expected.ways.size(), actual.numberOfWays);
+
+		for (int i = 0; i < actual.numberOfPois; ++i) {
+			PointOfInterest pointOfInterest = expected.pointOfInterests.get(i);
+			Assert.assertEquals(pointOfInterest.layer, actual.poiLayers[i]);
+			Assert.assertEquals(pointOfInterest.tags, actual.poiTags.get(i));
+			Assert.assertArrayEquals(pointOfInterest.tagIds, actual.poiTagIds.get(i));
+			assertPositionEquals(pointOfInterest.position, actual.poiX[i], actual.poiY[i], actual.tileSize, tile);
+		}
+
+		for (int i = 0; i < actual.numberOfWays; ++i) {
+			Way way = expected.ways.get(i);
+			Assert.assertEquals(way.layer, actual.wayLayers[i]);
+			Assert.assertEquals(way.tags, actual.wayTags.get(i));
+			Assert.assertArrayEquals(way.tagIds, actual.wayTagIds.get(i));
+			if (way.labelPosition == null) {
+				Assert.assertTrue(Double.isNaN(actual.wayLabelX[i]));
+				Assert.assertTrue(Double.isNaN(actual.wayLabelY[i]));
+			} else {
+				assertPositionEquals(way.labelPosition, actual.wayLabelX[i], actual.wayLabelY[i], actual.tileSize, tile);
+			}
+
+			int firstBlock = actual.wayBlockOffsets[i];
+			Assert.assertEquals(way.latLongs.length, actual.wayBlockOffsets[i + 1] - firstBlock);
+			for (int j = 0; j < way.latLongs.length; ++j) {
+				int firstNode = actual.blockNodeOffsets[firstBlock + j];
+				Assert.assertEquals(way.latLongs[j].length, actual.blockNodeOffsets[firstBlock + j + 1] - firstNode);
+				for (int k = 0; k < way.latLongs[j].length; ++k) {
+					assertPositionEquals(way.latLongs[j][k], actual.nodeX[firstNode + k], actual.nodeY[firstNode + k],
+							actual.tileSize, tile);
+				}
+			}
+		}
+
+		Assert.assertEquals(actual.wayBlockOffsets[actual.numberOfWays], actual.numberOfBlocks);
+		Assert.assertEquals(actual.blockNodeOffsets[actual.numberOfBlocks], actual.numberOfNodes);
+	}
+
+	private static void assertPositionEquals(LatLong expected, double x, double y, int tileSize, Tile tile) {
+		if (tileSize == 0) {
+			Assert.assertEquals(expected.longitude, x, 0);
+			Assert.assertEquals(expected.latitude, y, 0);
+		} else {
+			double pixelX = MercatorProjection.longitudeToPixelX(expected.longitude, tile.zoomLevel, tileSize)
+					- MercatorProjection.tileToPixel(tile.tileX, tileSize);
+			double pixelY = MercatorProjection.latitudeToPixelY(expected.latitude, tile.zoomLevel, tileSize)
+					- MercatorProjection.tileToPixel(tile.tileY, tileSize);
+			Assert.assertEquals(pixelX, x, 0.000001);
+			Assert.assertEquals(pixelY, y, 0.000001);
+		}
+	}
+
+	private static void verifyFlatRead(FlatMapReadResult flatMapReadResult) {
+		for (File mapFile : MAP_FILES) {
+			MapDatabase mapDatabase = new MapDatabase();
+			FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+			Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+				long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+				Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+				Assert.assertTrue(mapDatabase.readMapData(tile, flatMapReadResult));
+				assertFlatReadResultEquals(mapDatabase.readMapData(tile), flatMapReadResult, tile);
+			}
+
+			mapDatabase.closeFile();
+		}
+	}
+
+	@Test
+	public void geographicalCoordinatesTest() {
+		verifyFlatRead(new FlatMapReadResult());
+	}
+
+	@Test
+	public void invalidTileSizeTest() {
+		try {
+			new FlatMapReadResult(-1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void pixelCoordinatesTest() {
+		verifyFlatRead(new FlatMapReadResult(TILE_SIZE));
+	}
+}
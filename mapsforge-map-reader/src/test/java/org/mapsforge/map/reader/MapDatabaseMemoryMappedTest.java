@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MapDatabaseMemoryMappedTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/output.map");
+	private static final int NUMBER_OF_THREADS = 8;
+	private static final int QUERIES_PER_THREAD = 200;
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 6;
+
+	private static void assertReadResultEquals(MapReadResult expected, MapReadResult actual) {
+		Assert.assertEquals(expected.isWater, actual.isWater);
+		Assert.assertEquals(expected.pointOfInterests.size(), actual.pointOfInterests.size());
+		Assert.assertEquals(expected.ways.size(), actual.ways.size());
+
+		for (int i = 0; i < expected.pointOfInterests.size(); ++i) {
+			PointOfInterest poi1 = expected.pointOfInterests.get(i);
+			PointOfInterest poi2 = actual.pointOfInterests.get(i);
+			Assert.assertEquals(poi1.layer, poi2.layer);
+			Assert.assertEquals(poi1.position, poi2.position);
+			Assert.assertEquals(poi1.tags, poi2.tags);
+		}
+
+		for (int i = 0; i < expected.ways.size(); ++i) {
+			Way way1 = expected.ways.get(i);
+			Way way2 = actual.ways.get(i);
+			Assert.assertEquals(way1.layer, way2.layer);
+			Assert.assertEquals(way1.labelPosition, way2.labelPosition);
+			Assert.assertEquals(way1.tags, way2.tags);
+			Assert.assertArrayEquals(way1.latLongs, way2.latLongs);
+		}
+	}
+
+	private static Tile getTile(byte zoomLevel) {
+		long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+		long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+		return new Tile(tileX, tileY, zoomLevel);
+	}
+
+	private static MapDatabase openMapDatabase(boolean memoryMapped) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, memoryMapped);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		Assert.assertEquals(memoryMapped, mapDatabase.isMemoryMapped());
+		return mapDatabase;
+	}
+
+	@Test
+	public void concurrentReadTest() throws InterruptedException {
+		final MapDatabase mapDatabase = openMapDatabase(true);
+		final AtomicInteger failures = new AtomicInteger();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < NUMBER_OF_THREADS; ++i) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < QUERIES_PER_THREAD; ++j) {
+						byte zoomLevel = (byte) (ZOOM_LEVEL_MIN + j % (ZOOM_LEVEL_MAX - ZOOM_LEVEL_MIN + 1));
+						MapReadResult mapReadResult = mapDatabase.readMapData(getTile(zoomLevel));
+						if (mapReadResult == null || mapReadResult.pointOfInterests.size() != 1
+								|| mapReadResult.ways.size() != 1) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(0, failures.get());
+		mapDatabase.closeFile();
+		Assert.assertFalse(mapDatabase.hasOpenFile());
+		Assert.assertFalse(mapDatabase.isMemoryMapped());
+	}
+
+	@Test
+	public void memoryMappedReadTest() {
+		MapDatabase fileDatabase = openMapDatabase(false);
+		MapDatabase mappedDatabase = openMapDatabase(true);
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			Tile tile = getTile(zoomLevel);
+			assertReadResultEquals(fileDatabase.readMapData(tile), mappedDatabase.readMapData(tile));
+		}
+
+		fileDatabase.closeFile();
+		mappedDatabase.closeFile();
+	}
+}
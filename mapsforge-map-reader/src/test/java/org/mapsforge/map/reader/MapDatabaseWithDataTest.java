@@ -15,6 +15,8 @@
 package org.mapsforge.map.reader;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -73,6 +75,20 @@ public class MapDatabaseWithDataTest {
 		Assert.assertTrue(way.tags.contains(new Tag("ref=äöü")));
 	}
 
+	private static TagFilter createTagFilter(final String poiKey, final String wayKey) {
+		return new TagFilter() {
+			@Override
+			public boolean acceptPointOfInterestTag(Tag tag) {
+				return tag.key.equals(poiKey);
+			}
+
+			@Override
+			public boolean acceptWayTag(Tag tag) {
+				return tag.key.equals(wayKey);
+			}
+		};
+	}
+
 	@Test
 	public void executeQueryTest() {
 		MapDatabase mapDatabase = new MapDatabase();
@@ -95,9 +111,99 @@ public class MapDatabaseWithDataTest {
 
 			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
 			checkWay(mapReadResult.ways.get(0));
+
+			// the tags with ID come first and are shared with the tag tables
+			PointOfInterest pointOfInterest = mapReadResult.pointOfInterests.get(0);
+			Assert.assertEquals(1, pointOfInterest.tagIds.length);
+			Assert.assertSame(mapFileInfo.poiTags[pointOfInterest.tagIds[0]], pointOfInterest.tags.get(0));
+			Way way = mapReadResult.ways.get(0);
+			Assert.assertEquals(1, way.tagIds.length);
+			Assert.assertSame(mapFileInfo.wayTags[way.tagIds[0]], way.tags.get(0));
 		}
 
 		mapDatabase.closeFile();
 		Assert.assertFalse(mapDatabase.hasOpenFile());
 	}
+
+	@Test
+	public void streamingQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			final List<PointOfInterest> pointOfInterests = new ArrayList<PointOfInterest>();
+			final List<Way> ways = new ArrayList<Way>();
+			final List<Boolean> water = new ArrayList<Boolean>();
+			Assert.assertTrue(mapDatabase.readMapData(tile, new MapDataSink() {
+				@Override
+				public void addPointOfInterest(PointOfInterest pointOfInterest) {
+					Assert.assertTrue(water.isEmpty());
+					pointOfInterests.add(pointOfInterest);
+				}
+
+				@Override
+				public void addWay(Way way) {
+					Assert.assertTrue(water.isEmpty());
+					ways.add(way);
+				}
+
+				@Override
+				public void setWater(boolean isWater) {
+					water.add(Boolean.valueOf(isWater));
+				}
+			}));
+
+			Assert.assertEquals(1, pointOfInterests.size());
+			Assert.assertEquals(1, ways.size());
+			Assert.assertEquals(1, water.size());
+			Assert.assertEquals(mapDatabase.readMapData(tile).isWater, water.get(0).booleanValue());
+
+			checkPointOfInterest(pointOfInterests.get(0));
+			checkWay(ways.get(0));
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void filteredQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		TagFilter poiFilter = createTagFilter("place", "place");
+		TagFilter wayFilter = createTagFilter("highway", "highway");
+		TagFilter emptyFilter = createTagFilter("foo", "foo");
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile, poiFilter);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(0, mapReadResult.ways.size());
+			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+
+			mapReadResult = mapDatabase.readMapData(tile, wayFilter);
+			Assert.assertEquals(0, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			checkWay(mapReadResult.ways.get(0));
+
+			mapReadResult = mapDatabase.readMapData(tile, emptyFilter);
+			Assert.assertEquals(0, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(0, mapReadResult.ways.size());
+
+			mapReadResult = mapDatabase.readMapData(tile, createTagFilter("place", "highway"));
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+		}
+
+		mapDatabase.closeFile();
+	}
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.seeder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.cache.FileSystemTileCache;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.cache.TileDirectoryCache;
+import org.mapsforge.map.layer.renderer.TileSeeder;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+
+/**
+ * Pre-renders the tiles of a region from a map file without a map view, see {@link TileSeeder}.
+ * <p>
+ * Usage: {@code MapSeeder map=<mapFile> output=<directory> zoom=<min>[-<max>] [bbox=<minLat,minLon,maxLat,maxLon>]
+ * [theme=<renderThemeFile>] [tile-size=<pixels>] [threads=<threads>] [format=directory|cache]}
+ * <p>
+ * The format {@code directory} writes the tiles as {@code <zoom>/<x>/<y>.png}, the format {@code cache} writes a
+ * persistent {@link FileSystemTileCache} which can be used by a {@code TileRendererLayer} with the same map file,
+ * render theme and tile size. The bounding box defaults to the one of the map file. A seeding run which has been
+ * stopped with Ctrl-C continues where it has stopped when it is started again with the same parameters.
+ */
+public final class MapSeeder {
+	private static final String FORMAT_CACHE = "cache";
+	private static final String FORMAT_DIRECTORY = "directory";
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String USAGE = "usage: MapSeeder map=<mapFile> output=<directory> zoom=<min>[-<max>] "
+			+ "[bbox=<minLat,minLon,maxLat,maxLon>] [theme=<renderThemeFile>] [tile-size=<pixels>] "
+			+ "[threads=<threads>] [format=" + FORMAT_DIRECTORY + '|' + FORMAT_CACHE + ']';
+
+	/**
+	 * Starts the {@code MapSeeder}.
+	 * 
+	 * @param args
+	 *            command line args: the parameters as {@code key=value} pairs.
+	 */
+	public static void main(String[] args) throws FileNotFoundException, InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+
+		Map<String, String> parameters = parseParameters(args);
+		File mapFile = new File(getParameter(parameters, "map", null));
+		File outputDirectory = new File(getParameter(parameters, "output", null));
+		String[] zoomLevels = getParameter(parameters, "zoom", null).split("-");
+		byte zoomLevelMin = Byte.parseByte(zoomLevels[0]);
+		byte zoomLevelMax = zoomLevels.length > 1 ? Byte.parseByte(zoomLevels[1]) : zoomLevelMin;
+		String renderThemeFile = getParameter(parameters, "theme", "");
+		XmlRenderTheme xmlRenderTheme = renderThemeFile.isEmpty() ? InternalRenderTheme.OSMARENDER
+				: new ExternalRenderTheme(new File(renderThemeFile));
+		int tileSize = Integer.parseInt(getParameter(parameters, "tile-size", "256"));
+		int threads = Integer.parseInt(getParameter(parameters, "threads",
+				Integer.toString(Runtime.getRuntime().availableProcessors())));
+		String format = getParameter(parameters, "format", FORMAT_DIRECTORY);
+		String boundingBoxString = getParameter(parameters, "bbox", "");
+		BoundingBox boundingBox = boundingBoxString.isEmpty() ? getBoundingBox(mapFile) : BoundingBox
+				.fromString(boundingBoxString);
+
+		DisplayModel displayModel = new DisplayModel();
+		displayModel.setFixedTileSize(tileSize);
+		TileCache tileCache = createTileCache(format, outputDirectory);
+		final TileSeeder tileSeeder = new TileSeeder(mapFile, xmlRenderTheme, displayModel, tileCache,
+				GRAPHIC_FACTORY);
+
+		// on Ctrl-C, finish the tiles which are being rendered so that the next run can continue
+		final Thread mainThread = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				tileSeeder.stop();
+				try {
+					mainThread.join();
+				} catch (InterruptedException e) {
+					// restore the interrupted status
+					interrupt();
+				}
+			}
+		});
+
+		long startTime = System.currentTimeMillis();
+		boolean isComplete = tileSeeder.seed(boundingBox, zoomLevelMin, zoomLevelMax, threads);
+		long elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1);
+
+		System.out.println((isComplete ? "finished" : "stopped") + " after " + elapsedTime / 1000 + " s: "
+				+ tileSeeder.getRenderedTiles() + " tiles rendered, " + tileSeeder.getSkippedTiles()
+				+ " tiles skipped, " + tileSeeder.getFailedTiles() + " tiles failed, "
+				+ String.format("%.1f", Double.valueOf(tileSeeder.getRenderedTiles() * 1000.0 / elapsedTime))
+				+ " tiles/s");
+	}
+
+	private static TileCache createTileCache(String format, File outputDirectory) {
+		if (FORMAT_DIRECTORY.equals(format)) {
+			return new TileDirectoryCache(outputDirectory, GRAPHIC_FACTORY);
+		} else if (FORMAT_CACHE.equals(format)) {
+			return new FileSystemTileCache(Integer.MAX_VALUE, outputDirectory, GRAPHIC_FACTORY, true);
+		}
+		throw new IllegalArgumentException("invalid format: " + format + '\n' + USAGE);
+	}
+
+	private static BoundingBox getBoundingBox(File mapFile) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		if (!fileOpenResult.isSuccess()) {
+			throw new IllegalArgumentException("could not open map file: " + fileOpenResult.getErrorMessage());
+		}
+		BoundingBox boundingBox = mapDatabase.getMapFileInfo().boundingBox;
+		mapDatabase.closeFile();
+		return boundingBox;
+	}
+
+	private static String getParameter(Map<String, String> parameters, String key, String defaultValue) {
+		String value = parameters.get(key);
+		if (value != null) {
+			return value;
+		} else if (defaultValue == null) {
+			throw new IllegalArgumentException("missing parameter: " + key + '\n' + USAGE);
+		}
+		return defaultValue;
+	}
+
+	private static Map<String, String> parseParameters(String[] args) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator <= 0) {
+				throw new IllegalArgumentException("invalid parameter: " + arg + '\n' + USAGE);
+			}
+			parameters.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		return parameters;
+	}
+
+	private MapSeeder() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.seeder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.rendertheme.rule.PrecompiledRenderTheme;
+import org.xml.sax.SAXException;
+
+/**
+ * Writes the precompiled form of an XML render theme, see {@link PrecompiledRenderTheme}.
+ * <p>
+ * Usage: {@code RenderThemeCompiler <renderThemeFile> <outputFile>}
+ * <p>
+ * The internal render theme is precompiled with
+ * {@code RenderThemeCompiler mapsforge-map/src/main/resources/osmarender/osmarender.xml
+ * mapsforge-map/src/main/resources/osmarender/osmarender.bin}, which has to be repeated whenever the XML file changes.
+ * Otherwise the outdated precompiled render theme is ignored and the XML file is parsed again.
+ */
+public final class RenderThemeCompiler {
+	private static final String USAGE = "usage: RenderThemeCompiler <renderThemeFile> <outputFile>";
+
+	/**
+	 * Starts the {@code RenderThemeCompiler}.
+	 * 
+	 * @param args
+	 *            command line args: the XML render theme file and the output file.
+	 */
+	public static void main(String[] args) throws SAXException, ParserConfigurationException, IOException {
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length != 2) {
+			throw new IllegalArgumentException(USAGE);
+		}
+
+		File renderThemeFile = new File(args[0]);
+		File outputFile = new File(args[1]);
+		OutputStream outputStream = null;
+		try {
+			outputStream = new BufferedOutputStream(new FileOutputStream(outputFile));
+			PrecompiledRenderTheme.write(AwtGraphicFactory.INSTANCE, renderThemeFile, outputStream);
+		} finally {
+			IOUtils.closeQuietly(outputStream);
+		}
+		System.out.println("precompiled " + renderThemeFile + " to " + outputFile + " (" + outputFile.length()
+				+ " bytes)");
+	}
+
+	private RenderThemeCompiler() {
+		throw new IllegalStateException();
+	}
+}
@@ -15,6 +15,7 @@
  */
 package org.mapsforge.map.layer;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.mapsforge.core.graphics.Bitmap;
@@ -23,18 +24,26 @@ import org.mapsforge.core.graphics.Matrix;
 import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.DisabledMetrics;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.core.util.MetricsUtils;
 import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.layer.queue.Job;
 import org.mapsforge.map.layer.queue.JobQueue;
 import org.mapsforge.map.model.DisplayModel;
 import org.mapsforge.map.model.MapViewPosition;
 
-public abstract class TileLayer<T extends Job> extends Layer {
+public abstract class TileLayer<T extends Job> extends Layer implements MetricsReporter {
 	protected final boolean isTransparent;
 	protected JobQueue<T> jobQueue;
+	protected Metrics metrics;
+	protected String metricsName;
 	protected final TileCache tileCache;
 	private final MapViewPosition mapViewPosition;
 	private final Matrix matrix;
+	private volatile int prefetchBudget;
+	private final TilePrefetcher tilePrefetcher;
 
 	public TileLayer(TileCache tileCache, MapViewPosition mapViewPosition, Matrix matrix, boolean isTransparent) {
 		super();
@@ -49,12 +58,28 @@ public abstract class TileLayer<T extends Job> extends Layer {
 		this.mapViewPosition = mapViewPosition;
 		this.matrix = matrix;
 		this.isTransparent = isTransparent;
+		this.metrics = DisabledMetrics.INSTANCE;
+		this.metricsName = "";
+		this.tilePrefetcher = new TilePrefetcher(mapViewPosition);
 	}
 
 	@Override
 	public void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
 		List<TilePosition> tilePositions = LayerUtil.getTilePositions(boundingBox, zoomLevel, topLeftPoint,
 				this.displayModel.getTileSize());
+		if (!tilePositions.isEmpty()) {
+			Tile upperLeft = tilePositions.get(0).tile;
+			Tile lowerRight = tilePositions.get(tilePositions.size() - 1).tile;
+			int currentPrefetchBudget = this.prefetchBudget;
+			if (currentPrefetchBudget > 0) {
+				this.tilePrefetcher.update(this.displayModel.getTileSize(), System.currentTimeMillis());
+			}
+
+			// cancels the jobs for tiles which are no longer visible
+			if (this.jobQueue.setVisibleTiles(upperLeft, lowerRight) && currentPrefetchBudget > 0) {
+				prefetch(upperLeft, lowerRight, currentPrefetchBudget);
+			}
+		}
 
 		// In a rotation situation it is possible that drawParentTileBitmap sets the
 		// clipping bounds to portrait, while the device is just being rotated into
@@ -92,11 +117,56 @@ public abstract class TileLayer<T extends Job> extends Layer {
 		super.setDisplayModel(displayModel);
 		if (displayModel != null) {
 			this.jobQueue = new JobQueue<T>(this.mapViewPosition, this.displayModel);
+			this.jobQueue.setMetrics(this.metrics, this.metricsName + ".queue");
 		} else {
 			this.jobQueue = null;
 		}
 	}
 
+	/**
+	 * Sets the metrics which the job queue and the workers of this layer report to. The job queue reports with the
+	 * prefix {@code <name>.queue}. The tile cache is not affected, since it may be shared with other layers, caches
+	 * which implement {@link MetricsReporter} are configured separately.
+	 * 
+	 * @param metrics
+	 *            the metrics to report to, {@link DisabledMetrics#INSTANCE} stops the reporting.
+	 * @param name
+	 *            the prefix of all metric names of this layer.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	@Override
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		MetricsUtils.checkMetrics(metrics, name);
+
+		this.metrics = metrics;
+		this.metricsName = name;
+		if (this.jobQueue != null) {
+			this.jobQueue.setMetrics(metrics, name + ".queue");
+		}
+	}
+
+	/**
+	 * Sets the maximum number of tiles which are prefetched around the visible tiles, in the direction in which the map
+	 * moves and on the zoom level to which the map is likely zoomed next. Prefetched tiles are always processed after
+	 * the visible tiles, see {@link JobQueue#setPrefetchJobs}. Prefetching is disabled by default, it should only be
+	 * enabled for layers whose tile sources permit it.
+	 * 
+	 * @param prefetchBudget
+	 *            the maximum number of waiting prefetch jobs, 0 disables prefetching.
+	 * @throws IllegalArgumentException
+	 *             if the prefetch budget is negative.
+	 */
+	public synchronized void setPrefetchBudget(int prefetchBudget) {
+		if (prefetchBudget < 0) {
+			throw new IllegalArgumentException("prefetchBudget must not be negative: " + prefetchBudget);
+		}
+		this.prefetchBudget = prefetchBudget;
+		if (prefetchBudget == 0 && this.jobQueue != null) {
+			this.jobQueue.setPrefetchJobs(new ArrayList<T>(0));
+		}
+	}
+
 	protected abstract T createJob(Tile tile);
 
 	private void drawParentTileBitmap(Canvas canvas, Point point, Tile tile) {
@@ -142,4 +212,18 @@ public abstract class TileLayer<T extends Job> extends Layer {
 
 		return getCachedParentTile(parentTile, level - 1);
 	}
+
+	private void prefetch(Tile upperLeft, Tile lowerRight, int budget) {
+		List<T> jobs = new ArrayList<T>(budget);
+		for (Tile tile : this.tilePrefetcher.getPrefetchTiles(upperLeft, lowerRight, this.displayModel.getTileSize())) {
+			if (jobs.size() >= budget) {
+				break;
+			}
+			T job = createJob(tile);
+			if (!this.tileCache.containsKey(job)) {
+				jobs.add(job);
+			}
+		}
+		this.jobQueue.setPrefetchJobs(jobs);
+	}
 }
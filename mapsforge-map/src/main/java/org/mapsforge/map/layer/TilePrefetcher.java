@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.model.MapViewPosition;
+
+/**
+ * Predicts which tiles are likely to become visible soon from the movement of the map.
+ * <p>
+ * The velocity of the map center is measured between successive calls of {@link #update} and smoothed. The predicted
+ * tiles are, in this order: the tiles which become visible within {@link #LOOKAHEAD_TIME} milliseconds if the map
+ * keeps its velocity, the ring of tiles around the visible tiles and the tiles which become visible if the map is
+ * zoomed once more in the direction of the last zoom change.
+ */
+final class TilePrefetcher {
+	/**
+	 * The time in milliseconds for which the movement of the map is extrapolated.
+	 */
+	static final long LOOKAHEAD_TIME = 500;
+	/**
+	 * The maximum number of tiles by which the visible tiles are extrapolated in each direction.
+	 */
+	static final int MAXIMUM_LOOKAHEAD_TILES = 4;
+	private static final double SMOOTHING_FACTOR = 0.5;
+	/**
+	 * The time in milliseconds after which the map is considered to be at rest.
+	 */
+	private static final long VELOCITY_TIMEOUT = 250;
+
+	private static void addTiles(Set<Tile> tiles, long left, long top, long right, long bottom, byte zoomLevel,
+			Tile upperLeft, Tile lowerRight) {
+		long maxTileNumber = Tile.getMaxTileNumber(zoomLevel);
+		for (long tileY = Math.max(top, 0); tileY <= Math.min(bottom, maxTileNumber); ++tileY) {
+			for (long tileX = Math.max(left, 0); tileX <= Math.min(right, maxTileNumber); ++tileX) {
+				if (zoomLevel != upperLeft.zoomLevel || tileX < upperLeft.tileX || tileX > lowerRight.tileX
+						|| tileY < upperLeft.tileY || tileY > lowerRight.tileY) {
+					tiles.add(new Tile(tileX, tileY, zoomLevel));
+				}
+			}
+		}
+	}
+
+	private double lastPixelX;
+	private double lastPixelY;
+	private long lastTime;
+	private byte lastZoomLevel;
+	private final MapViewPosition mapViewPosition;
+	private double velocityX;
+	private double velocityY;
+	private int zoomDirection;
+
+	TilePrefetcher(MapViewPosition mapViewPosition) {
+		this.mapViewPosition = mapViewPosition;
+		this.lastZoomLevel = -1;
+		// zooming in is more common than zooming out
+		this.zoomDirection = 1;
+	}
+
+	/**
+	 * @param upperLeft
+	 *            the upper left visible tile.
+	 * @param lowerRight
+	 *            the lower right visible tile.
+	 * @param tileSize
+	 *            the tile size in pixels.
+	 * @return the tiles which are likely to become visible soon, ordered by their likelihood, without the visible
+	 *         tiles.
+	 */
+	List<Tile> getPrefetchTiles(Tile upperLeft, Tile lowerRight, int tileSize) {
+		Set<Tile> tiles = new LinkedHashSet<Tile>();
+		byte zoomLevel = upperLeft.zoomLevel;
+
+		// the tiles in the direction of the movement
+		double lookaheadX = this.velocityX * LOOKAHEAD_TIME / tileSize;
+		double lookaheadY = this.velocityY * LOOKAHEAD_TIME / tileSize;
+		double lookahead = Math.max(Math.abs(lookaheadX), Math.abs(lookaheadY));
+		if (lookahead > MAXIMUM_LOOKAHEAD_TILES) {
+			lookaheadX *= MAXIMUM_LOOKAHEAD_TILES / lookahead;
+			lookaheadY *= MAXIMUM_LOOKAHEAD_TILES / lookahead;
+			lookahead = MAXIMUM_LOOKAHEAD_TILES;
+		}
+		int steps = (int) Math.ceil(lookahead);
+		for (int step = 1; step <= steps; ++step) {
+			long shiftX = Math.round(lookaheadX * step / steps);
+			long shiftY = Math.round(lookaheadY * step / steps);
+			addTiles(tiles, upperLeft.tileX + shiftX, upperLeft.tileY + shiftY, lowerRight.tileX + shiftX,
+					lowerRight.tileY + shiftY, zoomLevel, upperLeft, lowerRight);
+		}
+
+		// the ring of tiles around the visible tiles
+		addTiles(tiles, upperLeft.tileX - 1, upperLeft.tileY - 1, lowerRight.tileX + 1, lowerRight.tileY + 1,
+				zoomLevel, upperLeft, lowerRight);
+
+		// the tiles around the map center on the adjacent zoom level
+		int nextZoomLevel = zoomLevel + this.zoomDirection;
+		if (zoomLevel == this.lastZoomLevel && nextZoomLevel >= this.mapViewPosition.getZoomLevelMin()
+				&& nextZoomLevel <= this.mapViewPosition.getZoomLevelMax()) {
+			double scaleFactor = Math.scalb(1d, this.zoomDirection);
+			long width = lowerRight.tileX - upperLeft.tileX + 1;
+			long height = lowerRight.tileY - upperLeft.tileY + 1;
+			long left = (long) Math.floor(this.lastPixelX * scaleFactor / tileSize - width / 2d);
+			long top = (long) Math.floor(this.lastPixelY * scaleFactor / tileSize - height / 2d);
+			addTiles(tiles, left, top, left + width - 1, top + height - 1, (byte) nextZoomLevel, upperLeft,
+					lowerRight);
+		}
+
+		return new ArrayList<Tile>(tiles);
+	}
+
+	/**
+	 * Measures the movement of the map since the last call of this method.
+	 * 
+	 * @param tileSize
+	 *            the tile size in pixels.
+	 * @param time
+	 *            the current time in milliseconds.
+	 */
+	void update(int tileSize, long time) {
+		MapPosition mapPosition = this.mapViewPosition.getMapPosition();
+		byte zoomLevel = mapPosition.zoomLevel;
+		double pixelX = MercatorProjection.longitudeToPixelX(mapPosition.latLong.longitude, zoomLevel, tileSize);
+		double pixelY = MercatorProjection.latitudeToPixelY(mapPosition.latLong.latitude, zoomLevel, tileSize);
+
+		long timeDifference = time - this.lastTime;
+		if (zoomLevel != this.lastZoomLevel) {
+			if (this.lastZoomLevel >= 0) {
+				this.zoomDirection = zoomLevel > this.lastZoomLevel ? 1 : -1;
+			}
+			this.velocityX = 0;
+			this.velocityY = 0;
+		} else if (timeDifference > VELOCITY_TIMEOUT) {
+			this.velocityX = 0;
+			this.velocityY = 0;
+		} else if (timeDifference > 0) {
+			this.velocityX = SMOOTHING_FACTOR * (pixelX - this.lastPixelX) / timeDifference + (1 - SMOOTHING_FACTOR)
+					* this.velocityX;
+			this.velocityY = SMOOTHING_FACTOR * (pixelY - this.lastPixelY) / timeDifference + (1 - SMOOTHING_FACTOR)
+					* this.velocityY;
+		}
+
+		this.lastPixelX = pixelX;
+		this.lastPixelY = pixelY;
+		this.lastTime = time;
+		this.lastZoomLevel = zoomLevel;
+	}
+}
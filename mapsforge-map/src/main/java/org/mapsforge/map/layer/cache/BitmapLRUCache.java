@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.EvictingCache;
+import org.mapsforge.core.util.EvictionPolicy;
+import org.mapsforge.core.util.LruEvictionPolicy;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * An {@link EvictingCache} for tile images which releases the bitmaps it evicts.
+ */
+class BitmapLRUCache extends EvictingCache<Job, TileBitmap> {
+	TileCacheMetrics metrics = TileCacheMetrics.DISABLED;
+
+	BitmapLRUCache(int capacity) {
+		this(capacity, new LruEvictionPolicy<Job>());
+	}
+
+	BitmapLRUCache(int capacity, EvictionPolicy<Job> evictionPolicy) {
+		super(capacity, evictionPolicy);
+	}
+
+	@Override
+	protected void onEviction(Job key, TileBitmap bitmap) {
+		bitmap.decrementRefCount();
+		this.metrics.recordEvictions(1);
+	}
+}
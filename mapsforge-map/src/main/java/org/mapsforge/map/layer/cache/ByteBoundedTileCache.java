@@ -0,0 +1,302 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.EvictionPolicy;
+import org.mapsforge.core.util.LruEvictionPolicy;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * A thread-safe cache for tile images with a fixed size in bytes and LRU policy, or any other {@link EvictionPolicy}.
+ * <p>
+ * Unlike {@link InMemoryTileCache}, which counts entries, the size of every tile is estimated from its width, height
+ * and the number of bytes per pixel, so that large and small tiles are accounted for correctly. The maximum size can
+ * be changed at any time, e.g. when the available memory becomes low.
+ */
+public class ByteBoundedTileCache implements MetricsReporter, TileCache {
+	private static final class CacheEntry {
+		final TileBitmap bitmap;
+		final long bytes;
+
+		CacheEntry(TileBitmap bitmap, long bytes) {
+			this.bitmap = bitmap;
+			this.bytes = bytes;
+		}
+	}
+
+	private static final int DEFAULT_BYTES_PER_PIXEL = 4;
+	private static final int DEFAULT_TILE_SIZE = 256;
+	private static final Logger LOGGER = Logger.getLogger(ByteBoundedTileCache.class.getName());
+
+	private static long checkMaximumBytes(long maximumBytes) {
+		if (maximumBytes < 0) {
+			throw new IllegalArgumentException("maximumBytes must not be negative: " + maximumBytes);
+		}
+		return maximumBytes;
+	}
+
+	private long bytes;
+	private final int bytesPerPixel;
+	private long evictionCount;
+	private final EvictionPolicy<Job> evictionPolicy;
+	private long hitCount;
+	private final Map<Job, CacheEntry> map;
+	private long maximumBytes;
+	private TileCacheMetrics metrics;
+	private long missCount;
+	private int policyCapacity;
+
+	/**
+	 * Creates a cache which assumes four bytes per pixel.
+	 * 
+	 * @param maximumBytes
+	 *            the maximum size of all tiles in this cache in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is negative.
+	 */
+	public ByteBoundedTileCache(long maximumBytes) {
+		this(maximumBytes, DEFAULT_BYTES_PER_PIXEL);
+	}
+
+	/**
+	 * @param maximumBytes
+	 *            the maximum size of all tiles in this cache in bytes.
+	 * @param bytesPerPixel
+	 *            the number of bytes which a tile bitmap uses per pixel.
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is negative or the number of bytes per pixel is not positive.
+	 */
+	public ByteBoundedTileCache(long maximumBytes, int bytesPerPixel) {
+		this(maximumBytes, bytesPerPixel, new LruEvictionPolicy<Job>());
+	}
+
+	/**
+	 * @param maximumBytes
+	 *            the maximum size of all tiles in this cache in bytes.
+	 * @param bytesPerPixel
+	 *            the number of bytes which a tile bitmap uses per pixel.
+	 * @param evictionPolicy
+	 *            the policy which selects the tiles to evict, it must not be shared with other caches. Its capacity is
+	 *            the approximate number of tiles which fit into this cache, see {@link #getCapacity()}.
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is negative, the number of bytes per pixel is not positive or the eviction
+	 *             policy is null.
+	 */
+	public ByteBoundedTileCache(long maximumBytes, int bytesPerPixel, EvictionPolicy<Job> evictionPolicy) {
+		if (bytesPerPixel <= 0) {
+			throw new IllegalArgumentException("bytesPerPixel must be positive: " + bytesPerPixel);
+		} else if (evictionPolicy == null) {
+			throw new IllegalArgumentException("evictionPolicy must not be null");
+		}
+		this.maximumBytes = checkMaximumBytes(maximumBytes);
+		this.bytesPerPixel = bytesPerPixel;
+		this.evictionPolicy = evictionPolicy;
+		this.map = new HashMap<Job, CacheEntry>();
+		this.metrics = TileCacheMetrics.DISABLED;
+
+		this.evictionPolicy.clear();
+		setPolicyCapacity(estimateCapacity());
+	}
+
+	@Override
+	public synchronized boolean containsKey(Job key) {
+		return this.map.containsKey(key);
+	}
+
+	@Override
+	public synchronized void destroy() {
+		for (CacheEntry cacheEntry : this.map.values()) {
+			cacheEntry.bitmap.decrementRefCount();
+		}
+		this.map.clear();
+		this.evictionPolicy.clear();
+		this.bytes = 0;
+	}
+
+	@Override
+	public synchronized TileBitmap get(Job key) {
+		long startTime = this.metrics.startTimer();
+		CacheEntry cacheEntry = this.map.get(key);
+		if (cacheEntry == null) {
+			++this.missCount;
+			this.metrics.recordGet(startTime, false);
+			return null;
+		}
+		++this.hitCount;
+		this.evictionPolicy.recordAccess(key);
+		cacheEntry.bitmap.incrementRefCount();
+		this.metrics.recordGet(startTime, true);
+		return cacheEntry.bitmap;
+	}
+
+	/**
+	 * @return the current size of all tiles in this cache in bytes.
+	 */
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Returns the approximate number of tiles which fit into this cache, based on the average size of the cached tiles
+	 * or, if the cache is empty, on the size of a 256x256 pixel tile.
+	 */
+	@Override
+	public synchronized int getCapacity() {
+		return estimateCapacity();
+	}
+
+	/**
+	 * @return the number of tiles which have been removed to stay within the maximum size.
+	 */
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * @return the number of requests which have been answered from this cache.
+	 */
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * @return the fraction of requests which have been answered from this cache, or 0 if there were none.
+	 */
+	public synchronized double getHitRatio() {
+		long requests = this.hitCount + this.missCount;
+		return requests == 0 ? 0 : (double) this.hitCount / requests;
+	}
+
+	/**
+	 * @return the maximum size of all tiles in this cache in bytes.
+	 */
+	public synchronized long getMaximumBytes() {
+		return this.maximumBytes;
+	}
+
+	/**
+	 * @return the number of requests which could not be answered from this cache.
+	 */
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	@Override
+	public synchronized void put(Job key, TileBitmap bitmap) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
+		}
+
+		long startTime = this.metrics.startTimer();
+		CacheEntry previousEntry = this.map.remove(key);
+		if (previousEntry != null) {
+			LOGGER.warning("overwriting cached entry: " + key);
+			this.evictionPolicy.recordRemoval(key);
+			release(previousEntry);
+		}
+
+		long tileBytes = (long) bitmap.getWidth() * bitmap.getHeight() * this.bytesPerPixel;
+		if (tileBytes <= this.maximumBytes) {
+			bitmap.incrementRefCount();
+			this.map.put(key, new CacheEntry(bitmap, tileBytes));
+			this.evictionPolicy.recordInsertion(key);
+			this.bytes += tileBytes;
+			trimToSize(this.maximumBytes);
+		}
+		// otherwise the tile would evict everything else and still not fit
+
+		this.metrics.recordPut(startTime);
+	}
+
+	/**
+	 * Sets the new maximum size of this cache. If this cache already contains more bytes than the new maximum size
+	 * allows, tiles are discarded based on the eviction policy.
+	 * 
+	 * @param maximumBytes
+	 *            the new maximum size of all tiles in this cache in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the maximum size is negative.
+	 */
+	public synchronized void setMaximumBytes(long maximumBytes) {
+		this.maximumBytes = checkMaximumBytes(maximumBytes);
+		setPolicyCapacity(estimateCapacity());
+		trimToSize(maximumBytes);
+	}
+
+	@Override
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		this.metrics = new TileCacheMetrics(metrics, name);
+	}
+
+	/**
+	 * @return the number of tiles in this cache.
+	 */
+	public synchronized int size() {
+		return this.map.size();
+	}
+
+	private int estimateCapacity() {
+		long averageBytes = this.map.isEmpty() ? (long) DEFAULT_TILE_SIZE * DEFAULT_TILE_SIZE * this.bytesPerPixel
+				: Math.max(1, this.bytes / this.map.size());
+		return (int) Math.min(Integer.MAX_VALUE, this.maximumBytes / averageBytes);
+	}
+
+	private void release(CacheEntry cacheEntry) {
+		this.bytes -= cacheEntry.bytes;
+		cacheEntry.bitmap.decrementRefCount();
+	}
+
+	private void setPolicyCapacity(int capacity) {
+		this.policyCapacity = capacity;
+		this.evictionPolicy.setCapacity(capacity);
+	}
+
+	private void trimToSize(long maximumSize) {
+		int evictions = 0;
+		while (this.bytes > maximumSize) {
+			Job key = this.evictionPolicy.evict();
+			if (key == null) {
+				throw new IllegalStateException("eviction policy has no keys, but cache has " + this.map.size());
+			}
+			CacheEntry cacheEntry = this.map.remove(key);
+			if (cacheEntry != null) {
+				release(cacheEntry);
+				++evictions;
+			}
+		}
+		this.evictionCount += evictions;
+
+		// the initial capacity assumes 256x256 pixel tiles, correct it once the actual tiles differ noticeably
+		if (!this.map.isEmpty()) {
+			int capacity = estimateCapacity();
+			if (capacity > 2L * this.policyCapacity || 2L * capacity < this.policyCapacity) {
+				setPolicyCapacity(capacity);
+			}
+		}
+
+		this.metrics.recordEvictions(evictions);
+		this.metrics.setBytes(this.bytes);
+		this.metrics.setSize(this.map.size());
+	}
+}
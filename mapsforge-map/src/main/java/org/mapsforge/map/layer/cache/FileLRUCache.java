@@ -15,30 +15,31 @@
 package org.mapsforge.map.layer.cache;
 
 import java.io.File;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.core.util.EvictingCache;
+import org.mapsforge.core.util.EvictionPolicy;
+import org.mapsforge.core.util.LruEvictionPolicy;
 
-class FileLRUCache<T> extends LRUCache<T, File> {
+class FileLRUCache<T> extends EvictingCache<T, File> {
 	private static final Logger LOGGER = Logger.getLogger(FileLRUCache.class.getName());
-	private static final long serialVersionUID = 1L;
+
+	TileCacheMetrics metrics = TileCacheMetrics.DISABLED;
 
 	FileLRUCache(int capacity) {
-		super(capacity);
+		this(capacity, new LruEvictionPolicy<T>());
+	}
+
+	FileLRUCache(int capacity, EvictionPolicy<T> evictionPolicy) {
+		super(capacity, evictionPolicy);
 	}
 
 	@Override
-	protected boolean removeEldestEntry(Map.Entry<T, File> eldest) {
-		if (size() > this.capacity) {
-			remove(eldest.getKey());
-			File file = eldest.getValue();
-			if (file.exists() && !file.delete()) {
-				LOGGER.log(Level.SEVERE, "could not delete file: " + file);
-			}
-			return true;
+	protected void onEviction(T key, File file) {
+		if (file.exists() && !file.delete()) {
+			LOGGER.log(Level.SEVERE, "could not delete file: " + file);
 		}
-		return false;
+		this.metrics.recordEvictions(1);
 	}
 }
@@ -16,26 +16,63 @@
 package org.mapsforge.map.layer.cache;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.mapsforge.core.graphics.CorruptedInputStreamException;
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.EvictionPolicy;
 import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.LruEvictionPolicy;
+import org.mapsforge.core.util.MetricsReporter;
 import org.mapsforge.map.layer.queue.Job;
 
 /**
- * A thread-safe cache for image files with a fixed size and LRU policy.
+ * A thread-safe cache for image files with a fixed size and LRU policy, or any other {@link EvictionPolicy}.
+ * <p>
+ * Tiles are identified by {@link Job#getKey()} and stored in a two-level directory fan-out below the cache directory.
+ * <p>
+ * A persistent cache keeps a journal of its index in the cache directory, so that the cached tiles together with their
+ * LRU order are still available after a restart. Reads are journaled lazily, {@link #close()} writes them before the
+ * application exits, after a crash the LRU order is only approximately restored.
  */
-public class FileSystemTileCache implements TileCache {
+public class FileSystemTileCache implements MetricsReporter, TileCache {
 	static final String FILE_EXTENSION = ".tile";
+	static final String JOURNAL_FILE_NAME = "index.journal";
+	static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	private static final FilenameFilter CACHE_FILE_FILTER = new FilenameFilter() {
+		@Override
+		public boolean accept(File directory, String fileName) {
+			return ImageFileNameFilter.INSTANCE.accept(directory, fileName)
+					|| TEMPORARY_FILE_FILTER.accept(directory, fileName);
+		}
+	};
+	private static final int FAN_OUT_DEPTH = 2;
 	private static final Logger LOGGER = Logger.getLogger(FileSystemTileCache.class.getName());
+	private static final FileFilter SUBDIRECTORY_FILTER = new FileFilter() {
+		@Override
+		public boolean accept(File file) {
+			// only the two-digit fan-out directories belong to the cache
+			return file.isDirectory() && file.getName().length() == 2;
+		}
+	};
+	private static final FilenameFilter TEMPORARY_FILE_FILTER = new FilenameFilter() {
+		@Override
+		public boolean accept(File directory, String fileName) {
+			return fileName.endsWith(TEMPORARY_FILE_EXTENSION);
+		}
+	};
 
 	private static File checkDirectory(File file) {
 		if (!file.exists() && !file.mkdirs()) {
@@ -50,9 +87,47 @@ public class FileSystemTileCache implements TileCache {
 		return file;
 	}
 
+	private static void deleteFile(File file) {
+		if (file != null && file.exists() && !file.delete()) {
+			LOGGER.log(Level.SEVERE, "could not delete file: " + file);
+		}
+	}
+
+	/**
+	 * Deletes all accepted files in the given directory and, recursively, in its subdirectories up to the fan-out
+	 * depth. Subdirectories which are empty afterwards are deleted as well.
+	 */
+	private static void deleteFiles(File directory, FilenameFilter filenameFilter, int depth) {
+		File[] filesToDelete = directory.listFiles(filenameFilter);
+		if (filesToDelete != null) {
+			for (File file : filesToDelete) {
+				deleteFile(file);
+			}
+		}
+
+		if (depth < FAN_OUT_DEPTH) {
+			File[] subdirectories = directory.listFiles(SUBDIRECTORY_FILTER);
+			if (subdirectories != null) {
+				for (File subdirectory : subdirectories) {
+					deleteFiles(subdirectory, filenameFilter, depth + 1);
+					String[] remainingFiles = subdirectory.list();
+					if (remainingFiles != null && remainingFiles.length == 0 && !subdirectory.delete()) {
+						LOGGER.log(Level.SEVERE, "could not delete directory: " + subdirectory);
+					}
+				}
+			}
+		}
+	}
+
+	private static String toHexString(int value) {
+		return value < 0x10 ? "0" + Integer.toHexString(value) : Integer.toHexString(value);
+	}
+
 	private final File cacheDirectory;
 	private final GraphicFactory graphicFactory;
-	private FileLRUCache<Integer> lruCache;
+	private TileCacheJournal journal;
+	private FileLRUCache<String> lruCache;
+	private volatile TileCacheMetrics metrics;
 
 	/**
 	 * @param capacity
@@ -63,51 +138,197 @@ public class FileSystemTileCache implements TileCache {
 	 *             if the capacity is negative.
 	 */
 	public FileSystemTileCache(int capacity, File cacheDirectory, GraphicFactory graphicFactory) {
-		this.lruCache = new FileLRUCache<>(capacity);
+		this(capacity, cacheDirectory, graphicFactory, false);
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param cacheDirectory
+	 *            the directory where cached tiles will be stored.
+	 * @param persistent
+	 *            true if the cached tiles should be reused after a restart, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public FileSystemTileCache(int capacity, File cacheDirectory, GraphicFactory graphicFactory, boolean persistent) {
+		this(capacity, cacheDirectory, graphicFactory, persistent, new LruEvictionPolicy<String>());
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param cacheDirectory
+	 *            the directory where cached tiles will be stored.
+	 * @param persistent
+	 *            true if the cached tiles should be reused after a restart, false otherwise.
+	 * @param evictionPolicy
+	 *            the policy which selects the tiles to evict. After a restart, the policy only knows the LRU order of
+	 *            the tiles.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public FileSystemTileCache(int capacity, File cacheDirectory, GraphicFactory graphicFactory, boolean persistent,
+			EvictionPolicy<String> evictionPolicy) {
+		this.lruCache = new FileLRUCache<>(capacity, evictionPolicy);
 		this.cacheDirectory = checkDirectory(cacheDirectory);
 		this.graphicFactory = graphicFactory;
+		this.metrics = TileCacheMetrics.DISABLED;
+
+		// temporary files are left behind if the application stopped while a tile was written
+		deleteFiles(this.cacheDirectory, TEMPORARY_FILE_FILTER, 0);
+		if (persistent) {
+			this.journal = new TileCacheJournal(new File(this.cacheDirectory, JOURNAL_FILE_NAME));
+			readJournal();
+		}
+	}
+
+	/**
+	 * Writes the buffered LRU order of a persistent cache to its journal and closes the journal file. The cache remains
+	 * usable, the journal file is opened again with the next change.
+	 */
+	public synchronized void close() {
+		if (this.journal != null) {
+			try {
+				this.journal.flush();
+				this.journal.close();
+			} catch (IOException e) {
+				disableJournal(e);
+			}
+		}
 	}
 
 	@Override
 	public synchronized boolean containsKey(Job key) {
-		return this.lruCache.containsKey(key.hashCode());
+		return this.lruCache.containsKey(key.getKey());
 	}
 
 	@Override
 	public synchronized void destroy() {
 		this.lruCache.clear();
+		if (this.journal != null) {
+			this.journal.delete();
+		}
 
-		File[] filesToDelete = this.cacheDirectory.listFiles(ImageFileNameFilter.INSTANCE);
-		if (filesToDelete != null) {
-			for (File file : filesToDelete) {
-				if (file.exists() && !file.delete()) {
-					LOGGER.log(Level.SEVERE, "could not delete file: " + file);
-				}
-			}
+		deleteFiles(this.cacheDirectory, CACHE_FILE_FILTER, 0);
+	}
+
+	@Override
+	public TileBitmap get(Job key) {
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		TileBitmap bitmap = read(key);
+		tileCacheMetrics.recordGet(startTime, bitmap != null);
+		return bitmap;
+	}
+
+	@Override
+	public synchronized int getCapacity() {
+		return this.lruCache.getCapacity();
+	}
+
+	@Override
+	public void put(Job key, TileBitmap bitmap) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
 		}
+
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		write(key, bitmap);
+		tileCacheMetrics.recordPut(startTime);
 	}
 
 	@Override
-	public synchronized TileBitmap get(Job key) {
-		File file = this.lruCache.get(key.hashCode());
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		this.metrics = new TileCacheMetrics(metrics, name);
+		this.lruCache.metrics = this.metrics;
+	}
 
-		if (file == null) {
-			return null;
+	/**
+	 * Compacts the journal if it has grown too much. The keys are only copied if the journal is actually compacted.
+	 */
+	private void compactJournalIfNeeded() throws IOException {
+		if (this.journal.needsCompaction(this.lruCache.size())) {
+			this.journal.compact(this.lruCache.getKeys());
+		}
+	}
+
+	private synchronized void disable() {
+		this.destroy();
+		this.lruCache = new FileLRUCache<String>(0);
+		this.lruCache.metrics = this.metrics;
+	}
+
+	private void disableJournal(IOException e) {
+		LOGGER.log(Level.SEVERE, "disabling file system cache journal", e);
+		this.journal.close();
+		this.journal = null;
+	}
+
+	/**
+	 * Returns the file for the given key. The files are spread over two levels of at most 256 subdirectories each, so
+	 * that no single directory has to hold a huge number of files.
+	 */
+	private File getOutputFile(String key) {
+		int hash = key.hashCode();
+		String directory = toHexString((hash >>> 8) & 0xff) + File.separatorChar + toHexString(hash & 0xff);
+		return new File(new File(this.cacheDirectory, directory), key + FILE_EXTENSION);
+	}
+
+	private void journalAccess(String key) {
+		if (this.journal != null) {
+			try {
+				this.journal.recordAccess(key);
+				compactJournalIfNeeded();
+			} catch (IOException e) {
+				disableJournal(e);
+			}
+		}
+	}
+
+	private void journalPut(String key) {
+		if (this.journal != null) {
+			try {
+				this.journal.recordPut(key);
+				compactJournalIfNeeded();
+			} catch (IOException e) {
+				disableJournal(e);
+			}
+		}
+	}
+
+	private TileBitmap read(Job key) {
+		String cacheKey = key.getKey();
+		File file;
+		synchronized (this) {
+			file = this.lruCache.get(cacheKey);
+			if (file == null) {
+				return null;
+			}
+			journalAccess(cacheKey);
 		}
 
+		// the image is decoded without holding the lock
 		InputStream inputStream = null;
 		try {
 			inputStream = new FileInputStream(file);
 			return this.graphicFactory.createTileBitmap(inputStream, key.tileSize, key.hasAlpha);
+		} catch (FileNotFoundException e) {
+			// the file has been evicted or replaced after the lookup, or deleted by someone else
+			remove(cacheKey, file);
+			return null;
 		} catch (CorruptedInputStreamException e) {
 			// this can happen, at least on Android, when the input stream
 			// is somehow corrupted, returning null ensures it will be loaded
 			// from another source
-			this.lruCache.remove(key.hashCode());
+			remove(cacheKey, file);
 			LOGGER.log(Level.WARNING, "input stream from file system cache invalid", e);
 			return null;
 		} catch (IOException e) {
-			this.lruCache.remove(key.hashCode());
+			remove(cacheKey, file);
 			LOGGER.log(Level.SEVERE, null, e);
 			return null;
 		} finally {
@@ -115,45 +336,92 @@ public class FileSystemTileCache implements TileCache {
 		}
 	}
 
-	@Override
-	public synchronized int getCapacity() {
-		return this.lruCache.capacity;
+	/**
+	 * Restores the entries of this cache from the journal. Only the file names are checked, no image is decoded.
+	 * Entries which exceed the capacity are evicted in LRU order and their files are deleted.
+	 */
+	private void readJournal() {
+		try {
+			List<String> keys = this.journal.read();
+			for (String key : keys) {
+				File file = getOutputFile(key);
+				if (file.exists()) {
+					this.lruCache.put(key, file);
+				}
+			}
+			compactJournalIfNeeded();
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "could not read file system cache journal", e);
+			// start with an empty journal, the existing tiles cannot be used
+			this.journal.delete();
+		}
 	}
 
-	@Override
-	public synchronized void put(Job key, TileBitmap bitmap) {
-		if (key == null) {
-			throw new IllegalArgumentException("key must not be null");
-		} else if (bitmap == null) {
-			throw new IllegalArgumentException("bitmap must not be null");
+	/**
+	 * Removes the entry for the given key and deletes its file, unless the entry no longer refers to the given file
+	 * because the tile has been evicted or written again since the file was looked up.
+	 */
+	private synchronized void remove(String key, File file) {
+		if (this.lruCache.get(key) != file) {
+			return;
 		}
 
-		if (this.lruCache.capacity == 0) {
+		this.lruCache.remove(key);
+		deleteFile(file);
+		this.metrics.setSize(this.lruCache.size());
+		if (this.journal != null) {
+			try {
+				this.journal.recordRemove(key);
+			} catch (IOException e) {
+				disableJournal(e);
+			}
+		}
+	}
+
+	private void write(Job key, TileBitmap bitmap) {
+		if (getCapacity() == 0) {
 			return;
 		}
 
+		String cacheKey = key.getKey();
+		File file = getOutputFile(cacheKey);
+		File temporaryFile = null;
 		OutputStream outputStream = null;
 		try {
-			File file = getOutputFile(key);
-			outputStream = new FileOutputStream(file);
-			bitmap.compress(outputStream);
-			if (this.lruCache.put(key.hashCode(), file) != null) {
-				LOGGER.warning("overwriting cached entry: " + key.hashCode());
+			File directory = file.getParentFile();
+			if (!directory.exists() && !directory.mkdirs()) {
+				throw new IOException("could not create directory: " + directory);
 			}
+			// compress into a temporary file without holding the lock, it is never
+			// mistaken for a tile if the application stops before it is renamed
+			temporaryFile = File.createTempFile(cacheKey + '-', TEMPORARY_FILE_EXTENSION, directory);
+			outputStream = new FileOutputStream(temporaryFile);
+			bitmap.compress(outputStream);
+			outputStream.close();
 		} catch (IOException e) {
+			IOUtils.closeQuietly(outputStream);
+			deleteFile(temporaryFile);
 			LOGGER.log(Level.SEVERE, "Disabling filesystem cache", e);
 			// most likely cause is that the disk is full, just disable the
 			// cache otherwise
 			// more and more exceptions will be thrown.
-			this.destroy();
-			this.lruCache = new FileLRUCache<Integer>(0);
-
-		} finally {
-			IOUtils.closeQuietly(outputStream);
+			disable();
+			return;
 		}
-	}
 
-	private File getOutputFile(Job job) {
-		return new File(this.cacheDirectory, job.hashCode() + FILE_EXTENSION);
+		synchronized (this) {
+			if (this.lruCache.getCapacity() == 0 || (file.exists() && !file.delete())
+					|| !temporaryFile.renameTo(file)) {
+				// the cache has been disabled or destroyed in the meantime
+				deleteFile(temporaryFile);
+				return;
+			}
+
+			if (this.lruCache.put(cacheKey, file) != null) {
+				LOGGER.warning("overwriting cached entry: " + cacheKey);
+			}
+			this.metrics.setSize(this.lruCache.size());
+			journalPut(cacheKey);
+		}
 	}
 }
@@ -14,20 +14,22 @@
  */
 package org.mapsforge.map.layer.cache;
 
-import java.util.Map;
 import java.util.logging.Logger;
 
 import org.mapsforge.core.graphics.TileBitmap;
-import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.core.util.EvictionPolicy;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.core.util.TinyLfuEvictionPolicy;
 import org.mapsforge.map.layer.queue.Job;
 
 /**
- * A thread-safe cache for tile images with a variable size and LRU policy.
+ * A thread-safe cache for tile images with a variable size and LRU policy, or any other {@link EvictionPolicy}.
  */
-public class InMemoryTileCache implements TileCache {
+public class InMemoryTileCache implements MetricsReporter, TileCache {
 	private static final Logger LOGGER = Logger.getLogger(InMemoryTileCache.class.getName());
 
-	private BitmapLRUCache lruCache;
+	private final BitmapLRUCache lruCache;
 
 	/**
 	 * @param capacity
@@ -39,6 +41,18 @@ public class InMemoryTileCache implements TileCache {
 		this.lruCache = new BitmapLRUCache(capacity);
 	}
 
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param evictionPolicy
+	 *            the policy which selects the tiles to evict, e.g. a scan-resistant {@link TinyLfuEvictionPolicy}.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public InMemoryTileCache(int capacity, EvictionPolicy<Job> evictionPolicy) {
+		this.lruCache = new BitmapLRUCache(capacity, evictionPolicy);
+	}
+
 	@Override
 	public synchronized boolean containsKey(Job key) {
 		return this.lruCache.containsKey(key);
@@ -54,16 +68,18 @@ public class InMemoryTileCache implements TileCache {
 
 	@Override
 	public synchronized TileBitmap get(Job key) {
+		long startTime = this.lruCache.metrics.startTimer();
 		TileBitmap bitmap = this.lruCache.get(key);
 		if (bitmap != null) {
 			bitmap.incrementRefCount();
 		}
+		this.lruCache.metrics.recordGet(startTime, bitmap != null);
 		return bitmap;
 	}
 
 	@Override
 	public synchronized int getCapacity() {
-		return this.lruCache.capacity;
+		return this.lruCache.getCapacity();
 	}
 
 	@Override
@@ -74,15 +90,16 @@ public class InMemoryTileCache implements TileCache {
 			throw new IllegalArgumentException("bitmap must not be null");
 		}
 
-		TileBitmap old = this.lruCache.get(key);
+		long startTime = this.lruCache.metrics.startTimer();
+		// take the reference first, the new tile may be evicted right away
+		bitmap.incrementRefCount();
+		TileBitmap old = this.lruCache.put(key, bitmap);
 		if (old != null) {
-			old.decrementRefCount();
-		}
-
-		if (this.lruCache.put(key, bitmap) != null) {
 			LOGGER.warning("overwriting cached entry: " + key);
+			old.decrementRefCount();
 		}
-		bitmap.incrementRefCount();
+		this.lruCache.metrics.setSize(this.lruCache.size());
+		this.lruCache.metrics.recordPut(startTime);
 	}
 
 	/**
@@ -95,25 +112,11 @@ public class InMemoryTileCache implements TileCache {
 	 *             if the capacity is negative.
 	 */
 	public synchronized void setCapacity(int capacity) {
-		BitmapLRUCache lruCacheNew = new BitmapLRUCache(capacity);
-		lruCacheNew.putAll(this.lruCache);
-		this.lruCache = lruCacheNew;
-	}
-}
-
-class BitmapLRUCache extends LRUCache<Job, TileBitmap> {
-	private static final long serialVersionUID = 1L;
-
-	public BitmapLRUCache(int capacity) {
-		super(capacity);
+		this.lruCache.setCapacity(capacity);
 	}
 
 	@Override
-	protected boolean removeEldestEntry(Map.Entry<Job, TileBitmap> eldest) {
-		if (size() > this.capacity) {
-			eldest.getValue().decrementRefCount();
-			return true;
-		}
-		return false;
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		this.lruCache.metrics = new TileCacheMetrics(metrics, name);
 	}
 }
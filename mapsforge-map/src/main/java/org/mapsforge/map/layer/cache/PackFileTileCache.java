@@ -0,0 +1,635 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.CorruptedInputStreamException;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * A thread-safe cache for image files with a fixed size and LRU policy which stores all tiles in a few large segment
+ * files instead of one file per tile.
+ * <p>
+ * New tiles are appended to the active segment, an in-memory index maps each {@link Job#getKey() key} to the position
+ * of its image data. Tiles are read with positional I/O. Evicted tiles leave unused space behind, a background thread
+ * copies the remaining tiles of a mostly unused segment into the active segment and deletes it. The index is rebuilt
+ * from the segment files after a restart without decoding any image.
+ */
+public class PackFileTileCache implements MetricsReporter, TileCache {
+	private static final class PackEntry {
+		final int dataLength;
+		boolean isReleased;
+		final int recordLength;
+		long recordOffset;
+		Segment segment;
+
+		PackEntry(Segment segment, long recordOffset, int recordLength, int dataLength) {
+			this.segment = segment;
+			this.recordOffset = recordOffset;
+			this.recordLength = recordLength;
+			this.dataLength = dataLength;
+		}
+
+		long getDataOffset() {
+			return this.recordOffset + this.recordLength - this.dataLength;
+		}
+	}
+
+	private final class PackIndex extends LRUCache<String, PackEntry> {
+		private static final long serialVersionUID = 1L;
+
+		PackIndex(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PackEntry> eldest) {
+			if (size() > this.capacity) {
+				release(eldest.getValue());
+				PackFileTileCache.this.metrics.recordEvictions(1);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static final class Segment {
+		final File file;
+		final FileChannel fileChannel;
+		final int id;
+		boolean isDeleted;
+		long liveBytes;
+		final RandomAccessFile randomAccessFile;
+		long size;
+
+		Segment(File file, int id) throws IOException {
+			this.file = file;
+			this.id = id;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			this.fileChannel = this.randomAccessFile.getChannel();
+			this.size = this.fileChannel.size();
+		}
+
+		long append(byte[] record) throws IOException {
+			long offset = this.size;
+			ByteBuffer byteBuffer = ByteBuffer.wrap(record);
+			while (byteBuffer.hasRemaining()) {
+				this.fileChannel.write(byteBuffer, offset + byteBuffer.position());
+			}
+			this.size += record.length;
+			return offset;
+		}
+
+		void delete() {
+			IOUtils.closeQuietly(this.randomAccessFile);
+			this.isDeleted = true;
+			if (this.file.exists() && !this.file.delete()) {
+				LOGGER.log(Level.SEVERE, "could not delete file: " + this.file);
+			}
+		}
+
+		byte[] read(long position, int length) throws IOException {
+			byte[] data = new byte[length];
+			ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+			while (byteBuffer.hasRemaining()) {
+				if (this.fileChannel.read(byteBuffer, position + byteBuffer.position()) < 0) {
+					throw new EOFException("unexpected end of segment: " + this.file);
+				}
+			}
+			return data;
+		}
+	}
+
+	static final String FILE_EXTENSION = ".pack";
+	private static final int DEFAULT_SEGMENT_SIZE = 32 * 1024 * 1024;
+	private static final Logger LOGGER = Logger.getLogger(PackFileTileCache.class.getName());
+
+	/**
+	 * Segments with a smaller fraction of live data are compacted.
+	 */
+	private static final float MINIMUM_LIVE_RATIO = 0.5f;
+
+	private static final FilenameFilter SEGMENT_FILE_FILTER = new FilenameFilter() {
+		@Override
+		public boolean accept(File directory, String fileName) {
+			return fileName.endsWith(FILE_EXTENSION) && parseSegmentId(fileName) >= 0;
+		}
+	};
+
+	private static File checkDirectory(File file) {
+		if (!file.exists() && !file.mkdirs()) {
+			throw new IllegalArgumentException("could not create directory: " + file);
+		} else if (!file.isDirectory()) {
+			throw new IllegalArgumentException("not a directory: " + file);
+		} else if (!file.canRead()) {
+			throw new IllegalArgumentException("cannot read directory: " + file);
+		} else if (!file.canWrite()) {
+			throw new IllegalArgumentException("cannot write directory: " + file);
+		}
+		return file;
+	}
+
+	private static byte[] createRecord(String key, byte[] data) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(data.length + key.length() + 8);
+		DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+		dataOutputStream.writeUTF(key);
+		dataOutputStream.writeInt(data.length);
+		dataOutputStream.write(data);
+		dataOutputStream.flush();
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	private static int parseSegmentId(String fileName) {
+		try {
+			return Integer.parseInt(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private Segment activeSegment;
+	private final File cacheDirectory;
+	private final Object compactionLock = new Object();
+	private Thread compactionThread;
+	private final GraphicFactory graphicFactory;
+	private PackIndex index;
+	private boolean isRebuilding;
+	private volatile TileCacheMetrics metrics;
+	private int nextSegmentId;
+	private final int segmentSize;
+	private final Map<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param cacheDirectory
+	 *            the directory where the segment files will be stored.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public PackFileTileCache(int capacity, File cacheDirectory, GraphicFactory graphicFactory) {
+		this(capacity, cacheDirectory, graphicFactory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param cacheDirectory
+	 *            the directory where the segment files will be stored.
+	 * @param segmentSize
+	 *            the size in bytes after which a new segment file is started.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative or the segment size is not positive.
+	 */
+	public PackFileTileCache(int capacity, File cacheDirectory, GraphicFactory graphicFactory, int segmentSize) {
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("segmentSize must be positive: " + segmentSize);
+		}
+		this.index = new PackIndex(capacity);
+		this.cacheDirectory = checkDirectory(cacheDirectory);
+		this.graphicFactory = graphicFactory;
+		this.segmentSize = segmentSize;
+		this.metrics = TileCacheMetrics.DISABLED;
+		synchronized (this) {
+			readSegments();
+		}
+	}
+
+	@Override
+	public synchronized boolean containsKey(Job key) {
+		return this.index.containsKey(key.getKey());
+	}
+
+	@Override
+	public synchronized void destroy() {
+		for (PackEntry packEntry : this.index.values()) {
+			packEntry.isReleased = true;
+		}
+		this.index.clear();
+
+		for (Segment segment : this.segments.values()) {
+			segment.delete();
+		}
+		this.segments.clear();
+		this.activeSegment = null;
+
+		// remove segments which could not be opened
+		File[] filesToDelete = this.cacheDirectory.listFiles(SEGMENT_FILE_FILTER);
+		if (filesToDelete != null) {
+			for (File file : filesToDelete) {
+				if (file.exists() && !file.delete()) {
+					LOGGER.log(Level.SEVERE, "could not delete file: " + file);
+				}
+			}
+		}
+	}
+
+	@Override
+	public TileBitmap get(Job key) {
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		TileBitmap bitmap = read(key);
+		tileCacheMetrics.recordGet(startTime, bitmap != null);
+		return bitmap;
+	}
+
+	@Override
+	public synchronized int getCapacity() {
+		return this.index.capacity;
+	}
+
+	/**
+	 * @return the number of segment files which are currently used by this cache.
+	 */
+	public synchronized int getSegmentCount() {
+		return this.segments.size();
+	}
+
+	@Override
+	public void put(Job key, TileBitmap bitmap) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
+		}
+
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		write(key, bitmap);
+		tileCacheMetrics.recordPut(startTime);
+	}
+
+	@Override
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		this.metrics = new TileCacheMetrics(metrics, name);
+	}
+
+	/**
+	 * Compacts all segments with too much unused space. This method is called by a background thread but can also be
+	 * called directly, it blocks other operations on this cache only while a single tile is moved.
+	 */
+	void compactSegments() {
+		synchronized (this.compactionLock) {
+			Segment segment;
+			while ((segment = getCompactionCandidate()) != null) {
+				compactSegment(segment);
+			}
+		}
+	}
+
+	/**
+	 * Adds the given entry to the index.
+	 * 
+	 * @return true if an existing entry has been replaced, false otherwise.
+	 */
+	private boolean addEntry(String key, PackEntry packEntry) {
+		packEntry.segment.liveBytes += packEntry.recordLength;
+		PackEntry previousEntry = this.index.put(key, packEntry);
+		if (previousEntry != null) {
+			release(previousEntry);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves all live tiles of the given segment to the active segment and deletes it.
+	 */
+	private void compactSegment(Segment segment) {
+		List<PackEntry> packEntries = new ArrayList<PackEntry>();
+		synchronized (this) {
+			for (PackEntry packEntry : this.index.values()) {
+				if (packEntry.segment == segment) {
+					packEntries.add(packEntry);
+				}
+			}
+		}
+
+		try {
+			for (PackEntry packEntry : packEntries) {
+				// the segment is not written anymore, so it can be read without holding the lock
+				byte[] record = segment.read(packEntry.recordOffset, packEntry.recordLength);
+				synchronized (this) {
+					if (segment.isDeleted) {
+						return;
+					} else if (packEntry.isReleased || packEntry.segment != segment) {
+						continue;
+					}
+					Segment newSegment = getActiveSegment();
+					packEntry.recordOffset = newSegment.append(record);
+					packEntry.segment = newSegment;
+					segment.liveBytes -= packEntry.recordLength;
+					newSegment.liveBytes += packEntry.recordLength;
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "could not compact segment: " + segment.file, e);
+			synchronized (this) {
+				// drop the tiles which could not be moved
+				removeSegment(segment);
+			}
+			return;
+		}
+
+		synchronized (this) {
+			if (!segment.isDeleted) {
+				removeSegment(segment);
+			}
+		}
+	}
+
+	private Segment createSegment() throws IOException {
+		int id = this.nextSegmentId++;
+		Segment segment = new Segment(new File(this.cacheDirectory, id + FILE_EXTENSION), id);
+		this.segments.put(Integer.valueOf(id), segment);
+		return segment;
+	}
+
+	private synchronized void disable() {
+		this.destroy();
+		this.index = new PackIndex(0);
+	}
+
+	/**
+	 * Returns the segment to which new tiles are appended, a new segment is started if the current one is full.
+	 */
+	private Segment getActiveSegment() throws IOException {
+		if (this.activeSegment == null || this.activeSegment.size >= this.segmentSize) {
+			this.activeSegment = createSegment();
+			scheduleCompaction();
+		}
+		return this.activeSegment;
+	}
+
+	private synchronized Segment getCompactionCandidate() {
+		for (Segment segment : this.segments.values()) {
+			if (isCompactionCandidate(segment)) {
+				return segment;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the size of all records in the index.
+	 */
+	private long getLiveBytes() {
+		long liveBytes = 0;
+		for (Segment segment : this.segments.values()) {
+			liveBytes += segment.liveBytes;
+		}
+		return liveBytes;
+	}
+
+	private boolean isCompactionCandidate(Segment segment) {
+		return segment != this.activeSegment && segment.liveBytes < segment.size * MINIMUM_LIVE_RATIO;
+	}
+
+	private synchronized void onCompactionFinished() {
+		this.compactionThread = null;
+		// segments might have become candidates after the last check
+		scheduleCompaction();
+	}
+
+	private TileBitmap read(Job key) {
+		String cacheKey = key.getKey();
+		PackEntry packEntry;
+		Segment segment;
+		long dataOffset;
+		synchronized (this) {
+			packEntry = this.index.get(cacheKey);
+			if (packEntry == null) {
+				return null;
+			}
+			// the entry may be moved by the compaction while it is read
+			segment = packEntry.segment;
+			dataOffset = packEntry.getDataOffset();
+		}
+
+		// the image is read and decoded without holding the lock
+		try {
+			byte[] data = segment.read(dataOffset, packEntry.dataLength);
+			return this.graphicFactory.createTileBitmap(new ByteArrayInputStream(data), key.tileSize, key.hasAlpha);
+		} catch (CorruptedInputStreamException e) {
+			remove(cacheKey, packEntry);
+			LOGGER.log(Level.WARNING, "input stream from pack file cache invalid", e);
+			return null;
+		} catch (IOException e) {
+			synchronized (this) {
+				if (packEntry.segment != segment || packEntry.isReleased) {
+					// the segment has been compacted or deleted in the meantime
+					return null;
+				}
+			}
+			remove(cacheKey, packEntry);
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the existing segment files, which are read in the order in which they were written. Only
+	 * the record headers are read, the image data is skipped.
+	 */
+	private void readSegments() {
+		String[] fileNames = this.cacheDirectory.list(SEGMENT_FILE_FILTER);
+		if (fileNames == null) {
+			return;
+		}
+
+		int[] ids = new int[fileNames.length];
+		for (int i = 0; i < fileNames.length; ++i) {
+			ids[i] = parseSegmentId(fileNames[i]);
+		}
+		Arrays.sort(ids);
+		if (ids.length > 0) {
+			// new segments must never reuse the name of an existing one
+			this.nextSegmentId = ids[ids.length - 1] + 1;
+		}
+
+		// evictions during the scan must not start the compaction, the live bytes are not known yet
+		this.isRebuilding = true;
+		try {
+			for (int id : ids) {
+				try {
+					Segment segment = new Segment(new File(this.cacheDirectory, id + FILE_EXTENSION), id);
+					this.segments.put(Integer.valueOf(id), segment);
+					readSegment(segment);
+				} catch (IOException e) {
+					LOGGER.log(Level.SEVERE, "could not read segment: " + id, e);
+				}
+			}
+		} finally {
+			this.isRebuilding = false;
+		}
+
+		// continue with a new segment, the old ones are only compacted
+		scheduleCompaction();
+	}
+
+	private void readSegment(Segment segment) throws IOException {
+		long validSize = 0;
+		DataInputStream dataInputStream = null;
+		try {
+			dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)));
+			while (validSize < segment.size) {
+				String key = dataInputStream.readUTF();
+				int dataLength = dataInputStream.readInt();
+				int headerLength = 2 + key.getBytes("UTF-8").length + 4;
+				if (dataLength < 0 || validSize + headerLength + dataLength > segment.size) {
+					break;
+				}
+				dataInputStream.skipBytes(dataLength);
+
+				int recordLength = headerLength + dataLength;
+				addEntry(key, new PackEntry(segment, validSize, recordLength, dataLength));
+				validSize += recordLength;
+			}
+		} catch (EOFException e) {
+			// incomplete record at the end of the segment
+		} finally {
+			IOUtils.closeQuietly(dataInputStream);
+		}
+
+		if (validSize < segment.size) {
+			LOGGER.warning("truncating segment " + segment.file + " to " + validSize + " bytes");
+			segment.fileChannel.truncate(validSize);
+			segment.size = validSize;
+		}
+	}
+
+	/**
+	 * Marks the space of the given entry as unused.
+	 */
+	private void release(PackEntry packEntry) {
+		packEntry.isReleased = true;
+		packEntry.segment.liveBytes -= packEntry.recordLength;
+		if (isCompactionCandidate(packEntry.segment)) {
+			scheduleCompaction();
+		}
+	}
+
+	/**
+	 * Removes the given entry from the index unless it has been replaced in the meantime.
+	 */
+	private synchronized void remove(String key, PackEntry packEntry) {
+		if (!packEntry.isReleased) {
+			this.index.remove(key);
+			release(packEntry);
+		}
+	}
+
+	/**
+	 * Deletes the given segment together with all tiles in it.
+	 */
+	private void removeSegment(Segment segment) {
+		List<String> keys = new ArrayList<String>();
+		for (Map.Entry<String, PackEntry> entry : this.index.entrySet()) {
+			if (entry.getValue().segment == segment) {
+				keys.add(entry.getKey());
+			}
+		}
+		for (String key : keys) {
+			this.index.remove(key).isReleased = true;
+		}
+
+		this.segments.remove(Integer.valueOf(segment.id));
+		if (this.activeSegment == segment) {
+			this.activeSegment = null;
+		}
+		segment.delete();
+	}
+
+	/**
+	 * Starts the background compaction if there is a segment to compact and it is not running yet.
+	 */
+	private void scheduleCompaction() {
+		if (this.isRebuilding || this.compactionThread != null || getCompactionCandidate() == null) {
+			return;
+		}
+
+		this.compactionThread = new Thread(getClass().getSimpleName()) {
+			@Override
+			public void run() {
+				try {
+					compactSegments();
+				} finally {
+					onCompactionFinished();
+				}
+			}
+		};
+		this.compactionThread.setDaemon(true);
+		this.compactionThread.start();
+	}
+
+	private void write(Job key, TileBitmap bitmap) {
+		if (getCapacity() == 0) {
+			return;
+		}
+
+		try {
+			// compress without holding the lock
+			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+			bitmap.compress(byteArrayOutputStream);
+			byte[] data = byteArrayOutputStream.toByteArray();
+			String cacheKey = key.getKey();
+			byte[] record = createRecord(cacheKey, data);
+
+			synchronized (this) {
+				if (this.index.capacity == 0) {
+					return;
+				}
+				Segment segment = getActiveSegment();
+				long recordOffset = segment.append(record);
+				if (addEntry(cacheKey, new PackEntry(segment, recordOffset, record.length, data.length))) {
+					LOGGER.warning("overwriting cached entry: " + cacheKey);
+				}
+				this.metrics.setSize(this.index.size());
+				this.metrics.setBytes(getLiveBytes());
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Disabling pack file cache", e);
+			// most likely cause is that the disk is full, just disable the
+			// cache otherwise more and more exceptions will be thrown.
+			disable();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * A thread-safe cache for tile images with a fixed size and an approximated LRU policy.
+ * <p>
+ * Unlike {@link InMemoryTileCache} the entries are spread over several independently locked stripes, each with its
+ * own LRU order and a share of the capacity, so that concurrent readers and writers rarely block each other.
+ */
+public class StripedInMemoryTileCache implements MetricsReporter, TileCache {
+	private static final int DEFAULT_NUMBER_OF_STRIPES = 16;
+	private static final Logger LOGGER = Logger.getLogger(StripedInMemoryTileCache.class.getName());
+
+	private final int capacity;
+	private final BitmapLRUCache[] stripes;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public StripedInMemoryTileCache(int capacity) {
+		this(capacity, DEFAULT_NUMBER_OF_STRIPES);
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in this cache.
+	 * @param numberOfStripes
+	 *            the number of independently locked parts of this cache, it is limited to the capacity.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative or the number of stripes is not positive.
+	 */
+	public StripedInMemoryTileCache(int capacity, int numberOfStripes) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		} else if (numberOfStripes <= 0) {
+			throw new IllegalArgumentException("numberOfStripes must be positive: " + numberOfStripes);
+		}
+
+		this.capacity = capacity;
+		int stripeCount = Math.max(1, Math.min(capacity, numberOfStripes));
+		this.stripes = new BitmapLRUCache[stripeCount];
+		for (int i = 0; i < stripeCount; ++i) {
+			// distribute the remainder, so that the capacities of all stripes add up to the total capacity
+			this.stripes[i] = new BitmapLRUCache(capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0));
+		}
+	}
+
+	@Override
+	public boolean containsKey(Job key) {
+		BitmapLRUCache stripe = getStripe(key);
+		synchronized (stripe) {
+			return stripe.containsKey(key);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		for (BitmapLRUCache stripe : this.stripes) {
+			synchronized (stripe) {
+				for (TileBitmap bitmap : stripe.values()) {
+					bitmap.decrementRefCount();
+				}
+				stripe.clear();
+			}
+		}
+	}
+
+	@Override
+	public TileBitmap get(Job key) {
+		BitmapLRUCache stripe = getStripe(key);
+		synchronized (stripe) {
+			long startTime = stripe.metrics.startTimer();
+			TileBitmap bitmap = stripe.get(key);
+			if (bitmap != null) {
+				bitmap.incrementRefCount();
+			}
+			stripe.metrics.recordGet(startTime, bitmap != null);
+			return bitmap;
+		}
+	}
+
+	@Override
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public void put(Job key, TileBitmap bitmap) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
+		}
+
+		BitmapLRUCache stripe = getStripe(key);
+		synchronized (stripe) {
+			long startTime = stripe.metrics.startTimer();
+			// take the reference first, the new tile may be evicted right away
+			bitmap.incrementRefCount();
+			TileBitmap old = stripe.put(key, bitmap);
+			if (old != null) {
+				LOGGER.warning("overwriting cached entry: " + key);
+				old.decrementRefCount();
+			}
+			stripe.metrics.recordPut(startTime);
+		}
+	}
+
+	/**
+	 * Sets the metrics which this cache reports to. The size is not reported, since it would require all locks.
+	 */
+	@Override
+	public void setMetrics(Metrics metrics, String name) {
+		TileCacheMetrics tileCacheMetrics = new TileCacheMetrics(metrics, name);
+		for (BitmapLRUCache stripe : this.stripes) {
+			synchronized (stripe) {
+				stripe.metrics = tileCacheMetrics;
+			}
+		}
+	}
+
+	private BitmapLRUCache getStripe(Job key) {
+		int hash = key.hashCode();
+		// spread the higher bits, neighbouring tiles differ mostly in the lower ones
+		hash ^= (hash >>> 16);
+		return this.stripes[(hash & 0x7fffffff) % this.stripes.length];
+	}
+}
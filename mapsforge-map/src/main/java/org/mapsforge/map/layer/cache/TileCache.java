@@ -17,10 +17,14 @@ package org.mapsforge.map.layer.cache;
 import java.util.Map;
 
 import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.MetricsReporter;
 import org.mapsforge.map.layer.queue.Job;
 
 /**
  * Interface for tile image caches.
+ * <p>
+ * Caches which implement {@link MetricsReporter} report their activity under the names described in
+ * {@link TileCacheMetrics}, caches which consist of other caches report them under the given name with a suffix.
  */
 public interface TileCache {
 	/**
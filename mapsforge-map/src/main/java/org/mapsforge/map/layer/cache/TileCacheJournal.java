@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mapsforge.core.util.IOUtils;
+
+/**
+ * An append-only journal which records all changes of the index of a {@link FileSystemTileCache}.
+ * <p>
+ * Every insertion, access and removal of a cache entry is appended as a small record. Replaying the
+ * journal restores the entries together with their LRU order without touching any image file. Accesses are buffered
+ * and only written together with the next insertion or removal, or when many of them have accumulated, so that a
+ * crash may lose some of the LRU order but never an entry. Since LRU is a stack
+ * algorithm, the entries which survive with a given capacity are simply the most recently used ones, so evictions do
+ * not need to be recorded. The journal is rewritten in compact form whenever it has grown too much.
+ */
+class TileCacheJournal {
+	/**
+	 * Magic number at the beginning of every journal file.
+	 */
+	private static final int MAGIC = 0x4d46544a;
+
+	/**
+	 * Maximum number of buffered accesses before they are written.
+	 */
+	private static final int MAXIMUM_BUFFERED_ACCESSES = 128;
+
+	/**
+	 * Minimum number of records before a journal is compacted.
+	 */
+	private static final int MINIMUM_COMPACTION_RECORDS = 1024;
+
+	private static final byte RECORD_ACCESS = 2;
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_REMOVE = 3;
+
+	/**
+	 * Version of the journal format, must be increased whenever the format of the records changes.
+	 */
+	private static final int VERSION = 2;
+
+	private final Set<String> accessedKeys;
+	private final File journalFile;
+	private DataOutputStream outputStream;
+	private int records;
+
+	/**
+	 * @param journalFile
+	 *            the file which contains the journal, it is created with the first record.
+	 */
+	TileCacheJournal(File journalFile) {
+		this.journalFile = journalFile;
+		this.accessedKeys = new LinkedHashSet<String>();
+	}
+
+	/**
+	 * Closes the journal file and deletes it.
+	 */
+	void delete() {
+		close();
+		if (this.journalFile.exists() && !this.journalFile.delete()) {
+			throw new IllegalStateException("could not delete journal: " + this.journalFile);
+		}
+		this.accessedKeys.clear();
+		this.records = 0;
+	}
+
+	/**
+	 * Reads the journal and returns the keys of all cache entries ordered from the least to the most recently used.
+	 * An incomplete record at the end of the journal, caused for example by a crash, is ignored.
+	 * 
+	 * @return the keys of all entries in LRU order.
+	 * @throws IOException
+	 *             if the journal could not be read or is invalid.
+	 */
+	List<String> read() throws IOException {
+		Map<String, Boolean> entries = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
+		if (this.journalFile.exists()) {
+			DataInputStream inputStream = null;
+			try {
+				inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)));
+				if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+					throw new IOException("invalid journal: " + this.journalFile);
+				}
+
+				while (true) {
+					byte type = inputStream.readByte();
+					String key = inputStream.readUTF();
+					++this.records;
+
+					if (type == RECORD_PUT) {
+						entries.put(key, Boolean.TRUE);
+					} else if (type == RECORD_ACCESS) {
+						entries.get(key);
+					} else if (type == RECORD_REMOVE) {
+						entries.remove(key);
+					} else {
+						throw new IOException("invalid journal record: " + type);
+					}
+				}
+			} catch (EOFException e) {
+				// end of the journal
+			} finally {
+				IOUtils.closeQuietly(inputStream);
+			}
+		}
+		return new ArrayList<String>(entries.keySet());
+	}
+
+	/**
+	 * Records that the entry with the given key has been read. The access is buffered, repeated accesses of the same
+	 * entry are merged into the most recent one.
+	 */
+	void recordAccess(String key) throws IOException {
+		this.accessedKeys.remove(key);
+		this.accessedKeys.add(key);
+		if (this.accessedKeys.size() >= MAXIMUM_BUFFERED_ACCESSES) {
+			flush();
+		}
+	}
+
+	/**
+	 * Records that the entry with the given key has been inserted or replaced.
+	 */
+	void recordPut(String key) throws IOException {
+		append(RECORD_PUT, key);
+	}
+
+	/**
+	 * Records that the entry with the given key has been removed.
+	 */
+	void recordRemove(String key) throws IOException {
+		append(RECORD_REMOVE, key);
+	}
+
+	/**
+	 * @param size
+	 *            the number of entries in the cache.
+	 * @return true if the journal contains many more records than there are entries in the cache, false otherwise.
+	 */
+	boolean needsCompaction(int size) {
+		return this.records >= Math.max(MINIMUM_COMPACTION_RECORDS, 2 * size);
+	}
+
+	/**
+	 * Rewrites the journal so that it contains exactly one record per cache entry.
+	 * 
+	 * @param keys
+	 *            the keys of all current cache entries ordered from the least to the most recently used.
+	 */
+	void compact(Collection<String> keys) throws IOException {
+		close();
+		File temporaryFile = new File(this.journalFile.getPath() + ".tmp");
+		DataOutputStream temporaryStream = null;
+		try {
+			temporaryStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+			writeHeader(temporaryStream);
+			for (String key : keys) {
+				temporaryStream.writeByte(RECORD_PUT);
+				temporaryStream.writeUTF(key);
+			}
+		} finally {
+			IOUtils.closeQuietly(temporaryStream);
+		}
+
+		if ((this.journalFile.exists() && !this.journalFile.delete()) || !temporaryFile.renameTo(this.journalFile)) {
+			throw new IOException("could not replace journal: " + this.journalFile);
+		}
+		// the compacted journal already contains the current LRU order
+		this.accessedKeys.clear();
+		this.records = keys.size();
+	}
+
+	/**
+	 * Closes the journal file, it will be opened again with the next record. Buffered accesses are kept.
+	 */
+	void close() {
+		IOUtils.closeQuietly(this.outputStream);
+		this.outputStream = null;
+	}
+
+	/**
+	 * Writes all buffered accesses to the journal file.
+	 */
+	void flush() throws IOException {
+		if (!this.accessedKeys.isEmpty()) {
+			writeAccesses();
+			this.outputStream.flush();
+		}
+	}
+
+	private void append(byte type, String key) throws IOException {
+		// the buffered accesses happened before this record
+		writeAccesses();
+		write(type, key);
+		// flush every insertion and removal, so that a crash loses at most the last one
+		this.outputStream.flush();
+	}
+
+	private void write(byte type, String key) throws IOException {
+		if (this.outputStream == null) {
+			boolean newJournal = !this.journalFile.exists() || this.journalFile.length() == 0;
+			this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile,
+					true)));
+			if (newJournal) {
+				writeHeader(this.outputStream);
+			}
+		}
+
+		this.outputStream.writeByte(type);
+		this.outputStream.writeUTF(key);
+		++this.records;
+	}
+
+	private void writeAccesses() throws IOException {
+		for (String key : this.accessedKeys) {
+			write(RECORD_ACCESS, key);
+		}
+		this.accessedKeys.clear();
+	}
+
+	private static void writeHeader(DataOutputStream dataOutputStream) throws IOException {
+		dataOutputStream.writeInt(MAGIC);
+		dataOutputStream.writeInt(VERSION);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import org.mapsforge.core.util.DisabledMetrics;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsUtils;
+
+/**
+ * Reports the activity of a {@link TileCache} to {@link Metrics} under names with a common prefix:
+ * <ul>
+ * <li>{@code <name>.get}: latency of all reads, {@code <name>.hits} and {@code <name>.misses}: counters of reads.</li>
+ * <li>{@code <name>.put}: latency of all writes.</li>
+ * <li>{@code <name>.evictions}: counter of tiles which were removed to make room for others.</li>
+ * <li>{@code <name>.size} and {@code <name>.bytes}: gauges of the number and size of the stored tiles.</li>
+ * </ul>
+ * All methods do nothing if the metrics are disabled.
+ */
+public final class TileCacheMetrics {
+	/**
+	 * An instance which reports nothing.
+	 */
+	public static final TileCacheMetrics DISABLED = new TileCacheMetrics(DisabledMetrics.INSTANCE, "");
+
+	private final String bytesName;
+	private final String evictionsName;
+	private final String getName;
+	private final String hitsName;
+	private final boolean isEnabled;
+	private final Metrics metrics;
+	private final String missesName;
+	private final String putName;
+	private final String sizeName;
+
+	/**
+	 * @param metrics
+	 *            the metrics to report to.
+	 * @param name
+	 *            the prefix of all metric names.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	public TileCacheMetrics(Metrics metrics, String name) {
+		MetricsUtils.checkMetrics(metrics, name);
+
+		this.metrics = metrics;
+		this.isEnabled = metrics.isEnabled();
+		this.bytesName = name + ".bytes";
+		this.evictionsName = name + ".evictions";
+		this.getName = name + ".get";
+		this.hitsName = name + ".hits";
+		this.missesName = name + ".misses";
+		this.putName = name + ".put";
+		this.sizeName = name + ".size";
+	}
+
+	/**
+	 * Records that the given number of tiles have been evicted.
+	 */
+	public void recordEvictions(int evictions) {
+		if (this.isEnabled && evictions > 0) {
+			this.metrics.increment(this.evictionsName, evictions);
+		}
+	}
+
+	/**
+	 * Records a read which has been started at the given time.
+	 * 
+	 * @param startTime
+	 *            the result of {@link #startTimer()} before the read.
+	 * @param hit
+	 *            true if the tile has been found, false otherwise.
+	 */
+	public void recordGet(long startTime, boolean hit) {
+		if (this.isEnabled) {
+			this.metrics.recordLatency(this.getName, System.nanoTime() - startTime);
+			this.metrics.increment(hit ? this.hitsName : this.missesName, 1);
+		}
+	}
+
+	/**
+	 * Records a write which has been started at the given time.
+	 * 
+	 * @param startTime
+	 *            the result of {@link #startTimer()} before the write.
+	 */
+	public void recordPut(long startTime) {
+		if (this.isEnabled) {
+			this.metrics.recordLatency(this.putName, System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * Reports the current size of the stored tiles in bytes.
+	 */
+	public void setBytes(long bytes) {
+		if (this.isEnabled) {
+			this.metrics.setGauge(this.bytesName, bytes);
+		}
+	}
+
+	/**
+	 * Reports the current number of stored tiles.
+	 */
+	public void setSize(int size) {
+		if (this.isEnabled) {
+			this.metrics.setGauge(this.sizeName, size);
+		}
+	}
+
+	/**
+	 * @return the start time of an operation, or zero without reading the clock if the metrics are disabled.
+	 */
+	public long startTimer() {
+		return this.isEnabled ? System.nanoTime() : 0;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.CorruptedInputStreamException;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * A thread-safe cache which stores tiles in the directory layout of a tile server, {@code <zoom>/<x>/<y>.png} below
+ * the cache directory, without any size limit.
+ * <p>
+ * Tiles are identified by their {@link Tile} only, so a directory must only be used for tiles of one source. Tiles
+ * are written to a temporary file first, so that the directory never contains partially written tiles. All tiles
+ * in the directory are available after a restart.
+ */
+public class TileDirectoryCache implements MetricsReporter, TileCache {
+	static final String FILE_EXTENSION = ".png";
+	private static final Logger LOGGER = Logger.getLogger(TileDirectoryCache.class.getName());
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+	private static void deleteFile(File file) {
+		if (file != null && file.exists() && !file.delete()) {
+			LOGGER.log(Level.SEVERE, "could not delete file: " + file);
+		}
+	}
+
+	/**
+	 * Deletes all files and subdirectories in the given directory.
+	 */
+	private static void deleteTiles(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory()) {
+					deleteTiles(file);
+				}
+				deleteFile(file);
+			}
+		}
+	}
+
+	private final File cacheDirectory;
+	private final GraphicFactory graphicFactory;
+	private volatile TileCacheMetrics metrics;
+
+	/**
+	 * @param cacheDirectory
+	 *            the directory where the tiles will be stored.
+	 * @throws IllegalArgumentException
+	 *             if the cache directory cannot be created or is not writable.
+	 */
+	public TileDirectoryCache(File cacheDirectory, GraphicFactory graphicFactory) {
+		if (!cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+			throw new IllegalArgumentException("could not create directory: " + cacheDirectory);
+		} else if (!cacheDirectory.isDirectory()) {
+			throw new IllegalArgumentException("not a directory: " + cacheDirectory);
+		} else if (!cacheDirectory.canWrite()) {
+			throw new IllegalArgumentException("cannot write directory: " + cacheDirectory);
+		}
+
+		this.cacheDirectory = cacheDirectory;
+		this.graphicFactory = graphicFactory;
+		this.metrics = TileCacheMetrics.DISABLED;
+	}
+
+	@Override
+	public boolean containsKey(Job key) {
+		return getFile(key.tile).exists();
+	}
+
+	/**
+	 * Deletes all tiles in the cache directory.
+	 */
+	@Override
+	public synchronized void destroy() {
+		deleteTiles(this.cacheDirectory);
+	}
+
+	@Override
+	public TileBitmap get(Job key) {
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		TileBitmap bitmap = read(key);
+		tileCacheMetrics.recordGet(startTime, bitmap != null);
+		return bitmap;
+	}
+
+	/**
+	 * @return {@link Integer#MAX_VALUE}, the number of tiles in the directory is not limited.
+	 */
+	@Override
+	public int getCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @return the file of the given tile below the cache directory.
+	 */
+	public File getFile(Tile tile) {
+		File directory = new File(new File(this.cacheDirectory, Byte.toString(tile.zoomLevel)),
+				Long.toString(tile.tileX));
+		return new File(directory, tile.tileY + FILE_EXTENSION);
+	}
+
+	@Override
+	public void put(Job key, TileBitmap bitmap) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
+		}
+
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		write(key, bitmap);
+		tileCacheMetrics.recordPut(startTime);
+	}
+
+	@Override
+	public void setMetrics(Metrics metrics, String name) {
+		this.metrics = new TileCacheMetrics(metrics, name);
+	}
+
+	private TileBitmap read(Job key) {
+		File file = getFile(key.tile);
+		if (!file.exists()) {
+			return null;
+		}
+
+		InputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			return this.graphicFactory.createTileBitmap(inputStream, key.tileSize, key.hasAlpha);
+		} catch (CorruptedInputStreamException e) {
+			// the tile is rendered again instead
+			LOGGER.log(Level.WARNING, "invalid tile file: " + file, e);
+			deleteFile(file);
+			return null;
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	private void write(Job key, TileBitmap bitmap) {
+		File file = getFile(key.tile);
+		File temporaryFile = null;
+		OutputStream outputStream = null;
+		try {
+			File directory = file.getParentFile();
+			if (!directory.exists() && !directory.mkdirs() && !directory.isDirectory()) {
+				throw new IOException("could not create directory: " + directory);
+			}
+			temporaryFile = File.createTempFile("tile-" + key.tile.tileY + '-', TEMPORARY_FILE_EXTENSION, directory);
+			outputStream = new FileOutputStream(temporaryFile);
+			bitmap.compress(outputStream);
+			outputStream.close();
+
+			synchronized (this) {
+				if ((file.exists() && !file.delete()) || !temporaryFile.renameTo(file)) {
+					throw new IOException("could not rename file: " + temporaryFile);
+				}
+			}
+		} catch (IOException e) {
+			IOUtils.closeQuietly(outputStream);
+			deleteFile(temporaryFile);
+			LOGGER.log(Level.SEVERE, "could not write tile: " + file, e);
+		}
+	}
+}
@@ -14,74 +14,114 @@
  */
 package org.mapsforge.map.layer.cache;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
 import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
 import org.mapsforge.map.layer.queue.Job;
 
-public class TwoLevelTileCache implements TileCache {
+/**
+ * A thread-safe combination of a fast first-level cache and a larger second-level cache.
+ * <p>
+ * Both caches must be thread-safe themselves, no lock is held while the second-level cache is accessed. If several
+ * threads request the same tile at the same time, only one of them loads it from the second-level cache while the
+ * others wait for the result.
+ * <p>
+ * The metrics of the two caches are reported with the suffixes {@code .firstLevel} and {@code .secondLevel}.
+ */
+public class TwoLevelTileCache implements MetricsReporter, TileCache {
 	private final TileCache firstLevelTileCache;
+	private final ConcurrentMap<Job, CountDownLatch> loadingJobs;
+	private volatile TileCacheMetrics metrics;
 	private final TileCache secondLevelTileCache;
 
 	public TwoLevelTileCache(TileCache firstLevelTileCache, TileCache secondLevelTileCache) {
 		this.firstLevelTileCache = firstLevelTileCache;
 		this.secondLevelTileCache = secondLevelTileCache;
+		this.loadingJobs = new ConcurrentHashMap<Job, CountDownLatch>();
+		this.metrics = TileCacheMetrics.DISABLED;
 	}
 
 	@Override
 	public boolean containsKey(Job key) {
-		synchronized (this.firstLevelTileCache) {
-			if (this.firstLevelTileCache.containsKey(key)) {
-				return true;
-			}
-		}
-
-		synchronized (this.secondLevelTileCache) {
-			return this.secondLevelTileCache.containsKey(key);
-		}
+		return this.firstLevelTileCache.containsKey(key) || this.secondLevelTileCache.containsKey(key);
 	}
 
 	@Override
 	public void destroy() {
-		synchronized (this.firstLevelTileCache) {
-			synchronized (this.secondLevelTileCache) {
-				this.firstLevelTileCache.destroy();
-				this.secondLevelTileCache.destroy();
-			}
-		}
+		this.firstLevelTileCache.destroy();
+		this.secondLevelTileCache.destroy();
 	}
 
 	@Override
 	public TileBitmap get(Job key) {
-		synchronized (this.firstLevelTileCache) {
-			TileBitmap returnBitmap = this.firstLevelTileCache.get(key);
-			if (returnBitmap != null) {
-				return returnBitmap;
-			}
-
-			synchronized (this.secondLevelTileCache) {
-				returnBitmap = this.secondLevelTileCache.get(key);
-				if (returnBitmap != null) {
-					this.firstLevelTileCache.put(key, returnBitmap);
-					return returnBitmap;
-				}
-
-				return null;
-			}
-		}
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		TileBitmap bitmap = load(key);
+		tileCacheMetrics.recordGet(startTime, bitmap != null);
+		return bitmap;
 	}
 
 	@Override
 	public int getCapacity() {
-		synchronized (this.firstLevelTileCache) {
-			synchronized (this.secondLevelTileCache) {
-				return Math.max(this.firstLevelTileCache.getCapacity(), this.secondLevelTileCache.getCapacity());
-			}
-		}
+		return Math.max(this.firstLevelTileCache.getCapacity(), this.secondLevelTileCache.getCapacity());
 	}
 
 	@Override
 	public void put(Job key, TileBitmap bitmap) {
-		synchronized (this.secondLevelTileCache) {
-			this.secondLevelTileCache.put(key, bitmap);
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		this.secondLevelTileCache.put(key, bitmap);
+		tileCacheMetrics.recordPut(startTime);
+	}
+
+	@Override
+	public void setMetrics(Metrics metrics, String name) {
+		this.metrics = new TileCacheMetrics(metrics, name);
+		if (this.firstLevelTileCache instanceof MetricsReporter) {
+			((MetricsReporter) this.firstLevelTileCache).setMetrics(metrics, name + ".firstLevel");
+		}
+		if (this.secondLevelTileCache instanceof MetricsReporter) {
+			((MetricsReporter) this.secondLevelTileCache).setMetrics(metrics, name + ".secondLevel");
+		}
+	}
+
+	private TileBitmap load(Job key) {
+		TileBitmap returnBitmap = this.firstLevelTileCache.get(key);
+		if (returnBitmap != null) {
+			return returnBitmap;
+		}
+
+		CountDownLatch loadingLatch = new CountDownLatch(1);
+		CountDownLatch existingLatch = this.loadingJobs.putIfAbsent(key, loadingLatch);
+		if (existingLatch != null) {
+			// another thread is already loading this tile, wait for it and use its result
+			try {
+				existingLatch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			returnBitmap = this.firstLevelTileCache.get(key);
+			if (returnBitmap == null) {
+				// the first-level cache might not have kept the tile
+				returnBitmap = this.secondLevelTileCache.get(key);
+			}
+			return returnBitmap;
+		}
+
+		try {
+			returnBitmap = this.secondLevelTileCache.get(key);
+			if (returnBitmap != null) {
+				this.firstLevelTileCache.put(key, returnBitmap);
+			}
+			return returnBitmap;
+		} finally {
+			this.loadingJobs.remove(key);
+			loadingLatch.countDown();
 		}
 	}
 }
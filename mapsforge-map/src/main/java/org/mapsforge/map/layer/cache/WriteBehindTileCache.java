@@ -0,0 +1,346 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.map.layer.queue.Job;
+
+/**
+ * A thread-safe {@link TileCache} which writes tiles asynchronously into another, usually slow, cache such as a
+ * {@link FileSystemTileCache}.
+ * <p>
+ * A put only queues the tile, which is then written by a pool of background threads. Queued tiles are returned by
+ * {@link #get(Job)} until they have been written. If the queue is full, the {@link OverflowPolicy} decides whether the
+ * caller waits or a tile is discarded. {@link #close()} writes all queued tiles and keeps the underlying cache, while
+ * {@link #destroy()} discards them before it destroys the underlying cache.
+ * <p>
+ * The number of queued tiles is reported as size and discarded tiles as evictions, the underlying cache reports its
+ * metrics with the suffix {@code .delegate}.
+ */
+public class WriteBehindTileCache implements MetricsReporter, TileCache {
+	/**
+	 * Defines what happens if a tile is added while the queue is full.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * The caller waits until there is space in the queue.
+		 */
+		BLOCK,
+
+		/**
+		 * The new tile is not written.
+		 */
+		DISCARD_NEW,
+
+		/**
+		 * The oldest queued tile is not written.
+		 */
+		DISCARD_OLDEST
+	}
+
+	private final class WriterThread extends Thread {
+		WriterThread(int number) {
+			super(WriteBehindTileCache.class.getSimpleName() + '-' + number);
+		}
+
+		@Override
+		public void run() {
+			Map.Entry<Job, TileBitmap> entry;
+			while ((entry = takeEntry()) != null) {
+				write(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(WriteBehindTileCache.class.getName());
+
+	private long discardedTiles;
+	private final Map<Job, TileBitmap> inFlightTiles;
+	private boolean isShutdown;
+	private volatile TileCacheMetrics metrics;
+	private final OverflowPolicy overflowPolicy;
+	private final LinkedHashMap<Job, TileBitmap> queuedTiles;
+	private final int queueSize;
+	private final TileCache tileCache;
+	private final WriterThread[] writerThreads;
+
+	/**
+	 * @param tileCache
+	 *            the cache into which the tiles are written.
+	 * @param queueSize
+	 *            the maximum number of tiles which wait to be written.
+	 * @param numberOfThreads
+	 *            the number of background threads which write the tiles.
+	 * @param overflowPolicy
+	 *            what happens if a tile is added while the queue is full.
+	 * @throws IllegalArgumentException
+	 *             if the queue size or the number of threads is not positive.
+	 */
+	public WriteBehindTileCache(TileCache tileCache, int queueSize, int numberOfThreads,
+			OverflowPolicy overflowPolicy) {
+		if (tileCache == null) {
+			throw new IllegalArgumentException("tileCache must not be null");
+		} else if (queueSize <= 0) {
+			throw new IllegalArgumentException("queueSize must be positive: " + queueSize);
+		} else if (numberOfThreads <= 0) {
+			throw new IllegalArgumentException("numberOfThreads must be positive: " + numberOfThreads);
+		} else if (overflowPolicy == null) {
+			throw new IllegalArgumentException("overflowPolicy must not be null");
+		}
+
+		this.tileCache = tileCache;
+		this.queueSize = queueSize;
+		this.overflowPolicy = overflowPolicy;
+		this.inFlightTiles = new HashMap<Job, TileBitmap>();
+		this.queuedTiles = new LinkedHashMap<Job, TileBitmap>();
+		this.metrics = TileCacheMetrics.DISABLED;
+
+		this.writerThreads = new WriterThread[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; ++i) {
+			this.writerThreads[i] = new WriterThread(i);
+			this.writerThreads[i].setDaemon(true);
+			this.writerThreads[i].start();
+		}
+	}
+
+	/**
+	 * Writes all queued tiles and stops the background threads without destroying the underlying cache. Tiles which
+	 * are added afterwards are written synchronously.
+	 */
+	public void close() {
+		synchronized (this) {
+			waitForWrites();
+			this.isShutdown = true;
+			notifyAll();
+		}
+		joinWriterThreads();
+	}
+
+	@Override
+	public boolean containsKey(Job key) {
+		synchronized (this) {
+			if (this.queuedTiles.containsKey(key) || this.inFlightTiles.containsKey(key)) {
+				return true;
+			}
+		}
+		return this.tileCache.containsKey(key);
+	}
+
+	/**
+	 * Discards all queued tiles and stops the background threads, then destroys the underlying cache. Tiles which are
+	 * added afterwards are written synchronously.
+	 */
+	@Override
+	public void destroy() {
+		synchronized (this) {
+			for (TileBitmap bitmap : this.queuedTiles.values()) {
+				bitmap.decrementRefCount();
+			}
+			this.queuedTiles.clear();
+			this.metrics.setSize(0);
+			this.isShutdown = true;
+			notifyAll();
+		}
+		joinWriterThreads();
+		this.tileCache.destroy();
+	}
+
+	/**
+	 * Blocks until all tiles which have been added so far are written.
+	 */
+	public synchronized void flush() {
+		waitForWrites();
+	}
+
+	@Override
+	public TileBitmap get(Job key) {
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		TileBitmap bitmap;
+		synchronized (this) {
+			bitmap = this.queuedTiles.get(key);
+			if (bitmap == null) {
+				bitmap = this.inFlightTiles.get(key);
+			}
+			if (bitmap != null) {
+				bitmap.incrementRefCount();
+			}
+		}
+		if (bitmap == null) {
+			bitmap = this.tileCache.get(key);
+		}
+		tileCacheMetrics.recordGet(startTime, bitmap != null);
+		return bitmap;
+	}
+
+	@Override
+	public int getCapacity() {
+		return this.tileCache.getCapacity();
+	}
+
+	/**
+	 * @return the number of tiles which have been discarded because the queue was full.
+	 */
+	public synchronized long getDiscardedTiles() {
+		return this.discardedTiles;
+	}
+
+	@Override
+	public void put(Job key, TileBitmap bitmap) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		} else if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
+		}
+
+		TileCacheMetrics tileCacheMetrics = this.metrics;
+		long startTime = tileCacheMetrics.startTimer();
+		synchronized (this) {
+			if (!this.isShutdown) {
+				enqueue(key, bitmap);
+				tileCacheMetrics.setSize(this.queuedTiles.size());
+				tileCacheMetrics.recordPut(startTime);
+				return;
+			}
+		}
+		this.tileCache.put(key, bitmap);
+		tileCacheMetrics.recordPut(startTime);
+	}
+
+	@Override
+	public void setMetrics(Metrics metrics, String name) {
+		this.metrics = new TileCacheMetrics(metrics, name);
+		if (this.tileCache instanceof MetricsReporter) {
+			((MetricsReporter) this.tileCache).setMetrics(metrics, name + ".delegate");
+		}
+	}
+
+	private void discard() {
+		++this.discardedTiles;
+		this.metrics.recordEvictions(1);
+	}
+
+	private void enqueue(Job key, TileBitmap bitmap) {
+		TileBitmap previousBitmap = this.queuedTiles.remove(key);
+		if (previousBitmap != null) {
+			previousBitmap.decrementRefCount();
+		}
+
+		while (this.queuedTiles.size() >= this.queueSize) {
+			if (this.overflowPolicy == OverflowPolicy.DISCARD_NEW) {
+				discard();
+				return;
+			} else if (this.overflowPolicy == OverflowPolicy.DISCARD_OLDEST) {
+				Iterator<TileBitmap> iterator = this.queuedTiles.values().iterator();
+				iterator.next().decrementRefCount();
+				iterator.remove();
+				discard();
+			} else {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					discard();
+					return;
+				}
+				if (this.isShutdown) {
+					// destroy() has discarded the queue, never enqueue without a writer
+					discard();
+					return;
+				}
+			}
+		}
+
+		bitmap.incrementRefCount();
+		this.queuedTiles.put(key, bitmap);
+		notifyAll();
+	}
+
+	private void joinWriterThreads() {
+		for (WriterThread writerThread : this.writerThreads) {
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the oldest queued tile which is not being written by another thread and marks it as in flight.
+	 * 
+	 * @return the tile to write or null if the writer thread should terminate.
+	 */
+	private synchronized Map.Entry<Job, TileBitmap> takeEntry() {
+		while (true) {
+			for (Iterator<Map.Entry<Job, TileBitmap>> iterator = this.queuedTiles.entrySet().iterator(); iterator
+					.hasNext();) {
+				Map.Entry<Job, TileBitmap> entry = iterator.next();
+				// tiles for the same job are written one after another to keep their order
+				if (!this.inFlightTiles.containsKey(entry.getKey())) {
+					iterator.remove();
+					this.inFlightTiles.put(entry.getKey(), entry.getValue());
+					this.metrics.setSize(this.queuedTiles.size());
+					notifyAll();
+					return entry;
+				}
+			}
+
+			if (this.isShutdown) {
+				return null;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				return null;
+			}
+		}
+	}
+
+	private void waitForWrites() {
+		while (!this.queuedTiles.isEmpty() || !this.inFlightTiles.isEmpty()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void write(Job key, TileBitmap bitmap) {
+		try {
+			this.tileCache.put(key, bitmap);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.SEVERE, "could not write tile: " + key, e);
+		} finally {
+			synchronized (this) {
+				this.inFlightTiles.remove(key);
+				notifyAll();
+			}
+			bitmap.decrementRefCount();
+		}
+	}
+}
@@ -51,4 +51,9 @@ public class DownloadJob extends Job {
 		result = prime * result + this.tileSource.hashCode();
 		return result;
 	}
+
+	@Override
+	protected String getSourceDescription() {
+		return this.tileSource.getClass().getName() + ':' + this.tileSource.hashCode();
+	}
 }
@@ -56,7 +56,7 @@ class TileDownloadThread extends PausableThread {
 		DownloadJob downloadJob = this.jobQueue.get();
 
 		try {
-			if (!this.tileCache.containsKey(downloadJob)) {
+			if (!downloadJob.isCancelled() && !this.tileCache.containsKey(downloadJob)) {
 				downloadTile(downloadJob);
 			}
 		} catch (IOException e) {
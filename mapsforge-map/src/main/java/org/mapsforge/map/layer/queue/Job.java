@@ -18,9 +18,25 @@ package org.mapsforge.map.layer.queue;
 import org.mapsforge.core.model.Tile;
 
 public class Job {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * Calculates the 64-bit FNV-1a hash of the given string, which is stable across restarts and platforms.
+	 */
+	private static long fingerprint(String string) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < string.length(); ++i) {
+			hash ^= string.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
 	public final boolean hasAlpha;
 	public final Tile tile;
 	public final int tileSize;
+	private volatile boolean cancelled;
 
 	protected Job(Tile tile, int tileSize, boolean hasAlpha) {
 		if (tile == null) {
@@ -49,8 +65,50 @@ public class Job {
 		return this.tile.equals(other.tile);
 	}
 
+	/**
+	 * Returns a key which identifies the image of this job, e.g. in a persistent cache. Unlike {@link #hashCode()} the
+	 * key contains the full tile coordinates, the tile size and the alpha flag, together with a 64-bit fingerprint of
+	 * the {@link #getSourceDescription() source}. The key is stable across restarts and can be used as file name.
+	 * 
+	 * @return the key of this job.
+	 */
+	public String getKey() {
+		StringBuilder stringBuilder = new StringBuilder(48);
+		stringBuilder.append(this.tile.zoomLevel).append('_').append(this.tile.tileX).append('_')
+				.append(this.tile.tileY).append('_').append(this.tileSize);
+		if (this.hasAlpha) {
+			stringBuilder.append("_a");
+		}
+		stringBuilder.append('_').append(Long.toHexString(fingerprint(getSourceDescription())));
+		return stringBuilder.toString();
+	}
+
 	@Override
 	public int hashCode() {
 		return 31 * this.tile.hashCode() + this.tileSize;
 	}
+
+	/**
+	 * Returns whether this job has been cancelled by its {@link JobQueue} because its tile is no longer needed. A worker
+	 * which processes a cancelled job may stop at any time and drop the result.
+	 * 
+	 * @return true if this job has been cancelled, false otherwise.
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	void cancel() {
+		this.cancelled = true;
+	}
+
+	/**
+	 * Returns a description of everything besides the tile which determines the image of this job, e.g. the map file
+	 * and the render theme. The description must be stable across restarts.
+	 * 
+	 * @return the description of the source of this job.
+	 */
+	protected String getSourceDescription() {
+		return "";
+	}
 }
@@ -15,83 +15,391 @@
  */
 package org.mapsforge.map.layer.queue;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.DisabledMetrics;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.core.util.MetricsUtils;
 import org.mapsforge.map.model.DisplayModel;
 import org.mapsforge.map.model.MapViewPosition;
 
-public class JobQueue<T extends Job> {
+/**
+ * A queue of jobs which are ordered by the distance of their tiles to the current map position.
+ * <p>
+ * The waiting jobs are kept in a binary heap and indexed by a hash map, so that adding a job, detecting a duplicate
+ * and removing the most important job are possible in O(log n) or better. The priorities of all waiting jobs are only
+ * recalculated when the map position has changed since the last calculation. If the zoom level of the map has
+ * changed, all waiting jobs for tiles of other zoom levels are cancelled, as they are no longer visible.
+ * <p>
+ * Layers report their visible tiles via {@link #setVisibleTiles}. Whenever they change, all waiting and assigned jobs
+ * for tiles of another zoom level or further than {@link #CANCELLATION_MARGIN} tiles outside of the visible tiles are
+ * cancelled. Waiting jobs are removed, assigned jobs are flagged, see {@link Job#isCancelled()}, so that their
+ * workers can stop early.
+ * <p>
+ * Jobs for tiles which are likely to become visible soon can be queued via {@link #setPrefetchJobs}. Prefetch jobs
+ * are always less important than all other jobs and at most {@link #MAXIMUM_ASSIGNED_PREFETCH_JOBS} of them are
+ * assigned at the same time, so that they never delay visible tiles by more than one job per worker.
+ */
+public class JobQueue<T extends Job> implements MetricsReporter {
+	/**
+	 * The number of tiles around the visible tiles for which jobs are not cancelled.
+	 */
+	public static final int CANCELLATION_MARGIN = 1;
+	/**
+	 * The maximum number of prefetch jobs which are processed at the same time.
+	 */
+	public static final int MAXIMUM_ASSIGNED_PREFETCH_JOBS = 1;
 	private static final int QUEUE_CAPACITY = 128;
 
-	private final List<T> assignedJobs = new LinkedList<T>();
+	private final Set<T> assignedJobs = new HashSet<T>();
+	private final Set<T> assignedPrefetchJobs = new HashSet<T>();
+	private String cancelledMetricName;
+	private String depthMetricName;
 	private final DisplayModel displayModel;
+	private String droppedMetricName;
+	private double mapPixelX;
+	private double mapPixelY;
+	private MapPosition mapPosition;
 	private final MapViewPosition mapViewPosition;
-	private final List<QueueItem<T>> queueItems = new LinkedList<QueueItem<T>>();
-	private boolean scheduleNeeded;
+	private Metrics metrics = DisabledMetrics.INSTANCE;
+	private String prefetchedMetricName;
+	private final QueueItemHeap<T> queueItemHeap = new QueueItemHeap<T>();
+	private final Map<T, QueueItem<T>> queueItems = new HashMap<T, QueueItem<T>>();
+	private int tileSize;
+	private Tile visibleLowerRight;
+	private Tile visibleUpperLeft;
+	private String waitMetricName;
 
 	public JobQueue(MapViewPosition mapViewPosition, DisplayModel displayModel) {
 		this.mapViewPosition = mapViewPosition;
 		this.displayModel = displayModel;
 	}
 
+	/**
+	 * Adds the given job to this queue, unless an equal job is already waiting or assigned. An equal waiting prefetch
+	 * job becomes a regular job. A cancelled job is never added again.
+	 */
 	public synchronized void add(T job) {
-		if (!this.assignedJobs.contains(job)) {
-			QueueItem<T> queueItem = new QueueItem<T>(job);
-			if (!this.queueItems.contains(queueItem)) {
-				this.queueItems.add(queueItem);
-				this.scheduleNeeded = true;
+		if (job.isCancelled() || this.assignedJobs.contains(job) || this.assignedPrefetchJobs.contains(job)) {
+			return;
+		}
+
+		QueueItem<T> queueItem = this.queueItems.get(job);
+		if (queueItem == null) {
+			queueItem = new QueueItem<T>(job);
+			if (this.metrics.isEnabled()) {
+				queueItem.addedTime = System.nanoTime();
 			}
+			this.queueItems.put(job, queueItem);
+		} else if (queueItem.prefetch) {
+			this.queueItemHeap.remove(queueItem);
+			queueItem.prefetch = false;
+		} else {
+			return;
+		}
+
+		if (this.mapPosition != null) {
+			// the map position of the last scheduling is a good estimate, get() reschedules if the map has moved
+			queueItem.setPriority(QueueItemScheduler.calculatePriority(job.tile, this.mapPixelX, this.mapPixelY,
+					this.mapPosition.zoomLevel, this.tileSize));
+		}
+		this.queueItemHeap.add(queueItem);
+
+		if (this.queueItemHeap.size() > 2 * QUEUE_CAPACITY && this.mapPosition != null) {
+			// trimming is amortized over many insertions
+			schedule(this.mapPosition, this.tileSize);
+		}
+		if (this.metrics.isEnabled()) {
+			this.metrics.setGauge(this.depthMetricName, this.queueItemHeap.size());
 		}
 	}
 
 	/**
-	 * Returns the most important entry from this queue. The method blocks while this queue is empty.
+	 * Returns the most important entry from this queue. The method blocks while this queue is empty or only contains
+	 * prefetch jobs while {@link #MAXIMUM_ASSIGNED_PREFETCH_JOBS} prefetch jobs are assigned.
 	 */
 	public synchronized T get() throws InterruptedException {
-		while (this.queueItems.isEmpty()) {
+		while (true) {
+			if (!this.queueItemHeap.isEmpty()) {
+				MapPosition currentMapPosition = this.mapViewPosition.getMapPosition();
+				int currentTileSize = this.displayModel.getTileSize();
+				if (!currentMapPosition.equals(this.mapPosition) || currentTileSize != this.tileSize) {
+					schedule(currentMapPosition, currentTileSize);
+				}
+
+				// all waiting jobs might have been cancelled
+				if (!this.queueItemHeap.isEmpty() && (!this.queueItemHeap.peek().prefetch
+						|| this.assignedPrefetchJobs.size() < MAXIMUM_ASSIGNED_PREFETCH_JOBS)) {
+					break;
+				}
+			}
 			this.wait();
 		}
 
-		if (this.scheduleNeeded) {
-			this.scheduleNeeded = false;
-			schedule(displayModel.getTileSize());
+		QueueItem<T> queueItem = this.queueItemHeap.poll();
+		this.queueItems.remove(queueItem.object);
+		if (this.metrics.isEnabled()) {
+			// the time is unknown if the job has been added before the metrics were enabled
+			if (queueItem.addedTime != 0) {
+				this.metrics.recordLatency(this.waitMetricName, System.nanoTime() - queueItem.addedTime);
+			}
+			this.metrics.setGauge(this.depthMetricName, this.queueItemHeap.size());
+			if (queueItem.prefetch) {
+				this.metrics.increment(this.prefetchedMetricName, 1);
+			}
 		}
-
-		T job = this.queueItems.remove(0).object;
-		this.assignedJobs.add(job);
-		return job;
+		if (queueItem.prefetch) {
+			this.assignedPrefetchJobs.add(queueItem.object);
+		} else {
+			this.assignedJobs.add(queueItem.object);
+		}
+		return queueItem.object;
 	}
 
 	public synchronized void notifyWorkers() {
 		this.notifyAll();
 	}
 
+	/**
+	 * Removes the given job which has been returned by {@link #get()} after it has been processed.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the given job is not assigned.
+	 */
 	public synchronized void remove(T job) {
-		if (!this.assignedJobs.remove(job)) {
+		if (job.isCancelled()) {
+			// cancelled jobs are no longer tracked, an equal job might have been assigned in the meantime
+			return;
+		} else if (this.assignedPrefetchJobs.remove(job)) {
+			// a worker might wait for a free prefetch slot
+			this.notifyAll();
+		} else if (!this.assignedJobs.remove(job)) {
 			throw new IllegalArgumentException("job not assigned: " + job);
 		}
 	}
 
+	/**
+	 * Sets the metrics which this queue reports to: the time which jobs wait in this queue as {@code <name>.wait}, the
+	 * number of waiting jobs as {@code <name>.depth}, the number of jobs which were dropped because this queue was full
+	 * as {@code <name>.dropped}, the number of waiting or assigned jobs which were cancelled because their tiles were
+	 * no longer visible as {@code <name>.cancelled} and the number of assigned prefetch jobs as
+	 * {@code <name>.prefetched}.
+	 * 
+	 * @param metrics
+	 *            the metrics to report to, {@link DisabledMetrics#INSTANCE} stops the reporting.
+	 * @param name
+	 *            the prefix of all metric names of this queue.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	@Override
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		MetricsUtils.checkMetrics(metrics, name);
+
+		this.metrics = metrics;
+		this.cancelledMetricName = name + ".cancelled";
+		this.depthMetricName = name + ".depth";
+		this.droppedMetricName = name + ".dropped";
+		this.prefetchedMetricName = name + ".prefetched";
+		this.waitMetricName = name + ".wait";
+	}
+
+	/**
+	 * Replaces all waiting prefetch jobs with the given jobs. Jobs which are equal to a waiting or assigned job are
+	 * ignored. The prefetch jobs are processed in the given order after all other jobs, they are not cancelled by
+	 * {@link #setVisibleTiles} but only replaced by the next call of this method.
+	 * 
+	 * @param jobs
+	 *            the new prefetch jobs, ordered by their importance.
+	 * @throws IllegalArgumentException
+	 *             if the jobs are null.
+	 */
+	public synchronized void setPrefetchJobs(List<T> jobs) {
+		if (jobs == null) {
+			throw new IllegalArgumentException("jobs must not be null");
+		}
+
+		Set<T> newJobs = new HashSet<T>(jobs);
+		List<QueueItem<T>> oldItems = new ArrayList<QueueItem<T>>();
+		for (QueueItem<T> queueItem : this.queueItems.values()) {
+			if (queueItem.prefetch && !newJobs.contains(queueItem.object)) {
+				oldItems.add(queueItem);
+			}
+		}
+		for (QueueItem<T> queueItem : oldItems) {
+			this.queueItemHeap.remove(queueItem);
+			this.queueItems.remove(queueItem.object);
+		}
+
+		for (int i = 0; i < jobs.size(); ++i) {
+			T job = jobs.get(i);
+			if (job.isCancelled() || this.assignedJobs.contains(job) || this.assignedPrefetchJobs.contains(job)) {
+				continue;
+			}
+
+			QueueItem<T> queueItem = this.queueItems.get(job);
+			if (queueItem == null) {
+				queueItem = new QueueItem<T>(job);
+				queueItem.prefetch = true;
+				if (this.metrics.isEnabled()) {
+					queueItem.addedTime = System.nanoTime();
+				}
+				this.queueItems.put(job, queueItem);
+			} else if (queueItem.prefetch) {
+				this.queueItemHeap.remove(queueItem);
+			} else {
+				continue;
+			}
+
+			// the priority of a prefetch job is its position in the given list
+			queueItem.setPriority(i);
+			this.queueItemHeap.add(queueItem);
+		}
+
+		if (this.metrics.isEnabled()) {
+			this.metrics.setGauge(this.depthMetricName, this.queueItemHeap.size());
+		}
+	}
+
+	/**
+	 * Sets the tiles which are currently visible and cancels all waiting and assigned jobs for tiles which are neither
+	 * visible nor within {@link #CANCELLATION_MARGIN} tiles around them. Prefetch jobs are not affected.
+	 * 
+	 * @param upperLeft
+	 *            the upper left visible tile.
+	 * @param lowerRight
+	 *            the lower right visible tile, must have the same zoom level as the upper left one.
+	 * @return true if the visible tiles have changed, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if any of the tiles is null or their zoom levels differ.
+	 */
+	public synchronized boolean setVisibleTiles(Tile upperLeft, Tile lowerRight) {
+		if (upperLeft == null) {
+			throw new IllegalArgumentException("upperLeft must not be null");
+		} else if (lowerRight == null) {
+			throw new IllegalArgumentException("lowerRight must not be null");
+		} else if (upperLeft.zoomLevel != lowerRight.zoomLevel) {
+			throw new IllegalArgumentException("different zoom levels: " + upperLeft + ", " + lowerRight);
+		}
+
+		if (upperLeft.equals(this.visibleUpperLeft) && lowerRight.equals(this.visibleLowerRight)) {
+			return false;
+		}
+		this.visibleUpperLeft = upperLeft;
+		this.visibleLowerRight = lowerRight;
+
+		List<QueueItem<T>> staleItems = new ArrayList<QueueItem<T>>();
+		for (QueueItem<T> queueItem : this.queueItems.values()) {
+			if (!queueItem.prefetch && isStale(queueItem.object.tile)) {
+				staleItems.add(queueItem);
+			}
+		}
+		for (QueueItem<T> queueItem : staleItems) {
+			this.queueItemHeap.remove(queueItem);
+			cancel(queueItem);
+		}
+
+		for (Iterator<T> iterator = this.assignedJobs.iterator(); iterator.hasNext();) {
+			T job = iterator.next();
+			if (isStale(job.tile)) {
+				iterator.remove();
+				job.cancel();
+				if (this.metrics.isEnabled()) {
+					this.metrics.increment(this.cancelledMetricName, 1);
+				}
+			}
+		}
+
+		if (this.metrics.isEnabled()) {
+			this.metrics.setGauge(this.depthMetricName, this.queueItemHeap.size());
+		}
+		return true;
+	}
+
 	/**
 	 * @return the current number of entries in this queue.
 	 */
 	public synchronized int size() {
-		return this.queueItems.size();
+		return this.queueItemHeap.size();
 	}
 
-	private void schedule(int tileSize) {
-		QueueItemScheduler.schedule(this.queueItems, this.mapViewPosition.getMapPosition(), tileSize);
-		Collections.sort(this.queueItems, QueueItemComparator.INSTANCE);
-		trimToSize();
+	/**
+	 * Removes the given waiting item, which must no longer be part of the heap, because its tile is no longer visible.
+	 */
+	private void cancel(QueueItem<T> queueItem) {
+		this.queueItems.remove(queueItem.object);
+		if (this.metrics.isEnabled()) {
+			this.metrics.increment(this.cancelledMetricName, 1);
+		}
+	}
+
+	/**
+	 * Removes the given waiting item, which must no longer be part of the heap, because this queue is full.
+	 */
+	private void drop(QueueItem<T> queueItem) {
+		this.queueItems.remove(queueItem.object);
+		if (this.metrics.isEnabled()) {
+			this.metrics.increment(this.droppedMetricName, 1);
+		}
 	}
 
-	private void trimToSize() {
-		int queueSize = this.queueItems.size();
+	private boolean isStale(Tile tile) {
+		return tile.zoomLevel != this.visibleUpperLeft.zoomLevel
+				|| tile.tileX < this.visibleUpperLeft.tileX - CANCELLATION_MARGIN
+				|| tile.tileY < this.visibleUpperLeft.tileY - CANCELLATION_MARGIN
+				|| tile.tileX > this.visibleLowerRight.tileX + CANCELLATION_MARGIN
+				|| tile.tileY > this.visibleLowerRight.tileY + CANCELLATION_MARGIN;
+	}
 
-		while (queueSize > QUEUE_CAPACITY) {
-			this.queueItems.remove(--queueSize);
+	/**
+	 * Recalculates the priorities of all waiting jobs for the given map position, cancels jobs for tiles of another
+	 * zoom level and trims this queue to its capacity.
+	 */
+	private void schedule(MapPosition newMapPosition, int newTileSize) {
+		List<QueueItem<T>> items = this.queueItemHeap.removeAll();
+
+		if (this.mapPosition != null && this.mapPosition.zoomLevel != newMapPosition.zoomLevel) {
+			for (Iterator<QueueItem<T>> iterator = items.iterator(); iterator.hasNext();) {
+				QueueItem<T> queueItem = iterator.next();
+				if (!queueItem.prefetch && queueItem.object.tile.zoomLevel != newMapPosition.zoomLevel) {
+					iterator.remove();
+					cancel(queueItem);
+				}
+			}
+		}
+
+		LatLong latLong = newMapPosition.latLong;
+		this.mapPixelX = MercatorProjection.longitudeToPixelX(latLong.longitude, newMapPosition.zoomLevel, newTileSize);
+		this.mapPixelY = MercatorProjection.latitudeToPixelY(latLong.latitude, newMapPosition.zoomLevel, newTileSize);
+		this.mapPosition = newMapPosition;
+		this.tileSize = newTileSize;
+		for (QueueItem<T> queueItem : items) {
+			// prefetch jobs keep their order
+			if (!queueItem.prefetch) {
+				queueItem.setPriority(QueueItemScheduler.calculatePriority(queueItem.object.tile, this.mapPixelX,
+						this.mapPixelY, newMapPosition.zoomLevel, newTileSize));
+			}
+		}
+
+		if (items.size() > QUEUE_CAPACITY) {
+			// a sorted list is also a valid heap
+			Collections.sort(items, QueueItemComparator.INSTANCE);
+			while (items.size() > QUEUE_CAPACITY) {
+				drop(items.remove(items.size() - 1));
+			}
 		}
+		this.queueItemHeap.addAll(items);
 	}
 }
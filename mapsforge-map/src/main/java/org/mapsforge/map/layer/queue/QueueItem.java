@@ -15,7 +15,20 @@
 package org.mapsforge.map.layer.queue;
 
 class QueueItem<T extends Job> {
+	/**
+	 * The time when this item has been added to the queue in nanoseconds, only set if metrics are enabled.
+	 */
+	long addedTime;
+	/**
+	 * The position of this item in its {@link QueueItemHeap}, -1 if it is not part of a heap.
+	 */
+	int index = -1;
 	final T object;
+	/**
+	 * True if this item has been added by {@link JobQueue#setPrefetchJobs}, prefetch items are always less important
+	 * than other items.
+	 */
+	boolean prefetch;
 	private double priority;
 
 	QueueItem(T object) {
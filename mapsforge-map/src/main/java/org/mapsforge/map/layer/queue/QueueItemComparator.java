@@ -27,6 +27,9 @@ final class QueueItemComparator implements Comparator<QueueItem<?>>, Serializabl
 
 	@Override
 	public int compare(QueueItem<?> queueItem1, QueueItem<?> queueItem2) {
+		if (queueItem1.prefetch != queueItem2.prefetch) {
+			return queueItem1.prefetch ? 1 : -1;
+		}
 		if (queueItem1.getPriority() < queueItem2.getPriority()) {
 			return -1;
 		} else if (queueItem1.getPriority() > queueItem2.getPriority()) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.queue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A binary min-heap of queue items ordered by their priority. Every item knows its position in the heap, so that the
+ * most important item can be removed in O(log n) and new items can be added in O(log n).
+ */
+class QueueItemHeap<T extends Job> {
+	private static boolean isLess(QueueItem<?> queueItem1, QueueItem<?> queueItem2) {
+		return QueueItemComparator.INSTANCE.compare(queueItem1, queueItem2) < 0;
+	}
+
+	private final List<QueueItem<T>> queueItems = new ArrayList<QueueItem<T>>();
+
+	void add(QueueItem<T> queueItem) {
+		queueItem.index = this.queueItems.size();
+		this.queueItems.add(queueItem);
+		siftUp(queueItem.index);
+	}
+
+	/**
+	 * Adds all given items and restores the heap order in O(n).
+	 */
+	void addAll(Collection<QueueItem<T>> queueItems) {
+		for (QueueItem<T> queueItem : queueItems) {
+			queueItem.index = this.queueItems.size();
+			this.queueItems.add(queueItem);
+		}
+		for (int i = this.queueItems.size() / 2 - 1; i >= 0; --i) {
+			siftDown(i);
+		}
+	}
+
+	boolean isEmpty() {
+		return this.queueItems.isEmpty();
+	}
+
+	/**
+	 * @return the item with the smallest priority value, without removing it from this heap.
+	 */
+	QueueItem<T> peek() {
+		return this.queueItems.get(0);
+	}
+
+	/**
+	 * Removes the item with the smallest priority value from this heap.
+	 * 
+	 * @return the removed item.
+	 */
+	QueueItem<T> poll() {
+		QueueItem<T> first = this.queueItems.get(0);
+		remove(first);
+		return first;
+	}
+
+	/**
+	 * Removes the given item from this heap.
+	 */
+	void remove(QueueItem<T> queueItem) {
+		int index = queueItem.index;
+		QueueItem<T> last = this.queueItems.remove(this.queueItems.size() - 1);
+		if (last != queueItem) {
+			set(index, last);
+			siftDown(index);
+			siftUp(last.index);
+		}
+		queueItem.index = -1;
+	}
+
+	/**
+	 * Removes all items from this heap.
+	 * 
+	 * @return the removed items in no particular order.
+	 */
+	List<QueueItem<T>> removeAll() {
+		List<QueueItem<T>> removedItems = new ArrayList<QueueItem<T>>(this.queueItems);
+		for (QueueItem<T> queueItem : removedItems) {
+			queueItem.index = -1;
+		}
+		this.queueItems.clear();
+		return removedItems;
+	}
+
+	int size() {
+		return this.queueItems.size();
+	}
+
+	private void set(int index, QueueItem<T> queueItem) {
+		this.queueItems.set(index, queueItem);
+		queueItem.index = index;
+	}
+
+	private void siftDown(int index) {
+		QueueItem<T> queueItem = this.queueItems.get(index);
+		int size = this.queueItems.size();
+		int currentIndex = index;
+		while (true) {
+			int childIndex = 2 * currentIndex + 1;
+			if (childIndex >= size) {
+				break;
+			}
+			if (childIndex + 1 < size && isLess(this.queueItems.get(childIndex + 1), this.queueItems.get(childIndex))) {
+				++childIndex;
+			}
+			QueueItem<T> child = this.queueItems.get(childIndex);
+			if (!isLess(child, queueItem)) {
+				break;
+			}
+			set(currentIndex, child);
+			currentIndex = childIndex;
+		}
+		set(currentIndex, queueItem);
+	}
+
+	private void siftUp(int index) {
+		QueueItem<T> queueItem = this.queueItems.get(index);
+		int currentIndex = index;
+		while (currentIndex > 0) {
+			int parentIndex = (currentIndex - 1) / 2;
+			QueueItem<T> parent = this.queueItems.get(parentIndex);
+			if (!isLess(queueItem, parent)) {
+				break;
+			}
+			set(currentIndex, parent);
+			currentIndex = parentIndex;
+		}
+		set(currentIndex, queueItem);
+	}
+}
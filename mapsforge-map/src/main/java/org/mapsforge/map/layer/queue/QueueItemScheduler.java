@@ -15,38 +15,24 @@
  */
 package org.mapsforge.map.layer.queue;
 
-import java.util.Collection;
-
-import org.mapsforge.core.model.LatLong;
-import org.mapsforge.core.model.MapPosition;
 import org.mapsforge.core.model.Tile;
-import org.mapsforge.core.util.MercatorProjection;
 
 final class QueueItemScheduler {
 	static final double PENALTY_PER_ZOOM_LEVEL = 10;
 
-	static <T extends Job> void schedule(Collection<QueueItem<T>> queueItems, MapPosition mapPosition, int tileSize) {
-		for (QueueItem<T> queueItem : queueItems) {
-			queueItem.setPriority(calculatePriority(queueItem.object.tile, mapPosition, tileSize));
-		}
-	}
-
-	private static double calculatePriority(Tile tile, MapPosition mapPosition, int tileSize) {
-		double tileLatitude = MercatorProjection.tileYToLatitude(tile.tileY, tile.zoomLevel);
-		double tileLongitude = MercatorProjection.tileXToLongitude(tile.tileX, tile.zoomLevel);
+	/**
+	 * Calculates the priority of the given tile as the distance in pixels between its center and the map center, plus
+	 * a penalty for each zoom level by which they differ.
+	 */
+	static double calculatePriority(Tile tile, double mapPixelX, double mapPixelY, byte mapZoomLevel, int tileSize) {
+		// the pixel coordinates of the top left corner of the tile at the zoom level of the map
+		double scaleFactor = Math.scalb(1d, mapZoomLevel - tile.zoomLevel);
+		double tilePixelX = tile.tileX * (double) tileSize * scaleFactor;
+		double tilePixelY = tile.tileY * (double) tileSize * scaleFactor;
 
 		int halfTileSize = tileSize / 2;
-		double tilePixelX = MercatorProjection.longitudeToPixelX(tileLongitude, mapPosition.zoomLevel, tileSize)
-				+ halfTileSize;
-		double tilePixelY = MercatorProjection.latitudeToPixelY(tileLatitude, mapPosition.zoomLevel, tileSize)
-				+ halfTileSize;
-
-		LatLong latLong = mapPosition.latLong;
-		double mapPixelX = MercatorProjection.longitudeToPixelX(latLong.longitude, mapPosition.zoomLevel, tileSize);
-		double mapPixelY = MercatorProjection.latitudeToPixelY(latLong.latitude, mapPosition.zoomLevel, tileSize);
-
-		double diffPixel = Math.hypot(tilePixelX - mapPixelX, tilePixelY - mapPixelY);
-		int diffZoom = Math.abs(tile.zoomLevel - mapPosition.zoomLevel);
+		double diffPixel = Math.hypot(tilePixelX + halfTileSize - mapPixelX, tilePixelY + halfTileSize - mapPixelY);
+		int diffZoom = Math.abs(tile.zoomLevel - mapZoomLevel);
 
 		return diffPixel + PENALTY_PER_ZOOM_LEVEL * tileSize * diffZoom;
 	}
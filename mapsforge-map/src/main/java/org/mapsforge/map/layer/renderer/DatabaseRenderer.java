@@ -35,23 +35,41 @@ import org.mapsforge.core.graphics.TileBitmap;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Point;
 import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.util.DisabledMetrics;
 import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.core.util.Metrics;
 import org.mapsforge.map.model.DisplayModel;
 import org.mapsforge.map.reader.MapDatabase;
-import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.MapDataSink;
 import org.mapsforge.map.reader.PointOfInterest;
 import org.mapsforge.map.reader.Way;
 import org.mapsforge.map.reader.header.MapFileInfo;
 import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 import org.mapsforge.map.rendertheme.rule.RenderTheme;
-import org.mapsforge.map.rendertheme.rule.RenderThemeHandler;
+import org.mapsforge.map.rendertheme.rule.RenderThemeCache;
 import org.xml.sax.SAXException;
 
 /**
  * A DatabaseRenderer renders map tiles by reading from a {@link MapDatabase}.
  */
 public class DatabaseRenderer implements RenderCallback {
+	private static final class RenderMetrics {
+		final String drawName;
+		final boolean isEnabled;
+		final String matchName;
+		final Metrics metrics;
+		final String readName;
+
+		RenderMetrics(Metrics metrics, String name) {
+			this.metrics = metrics;
+			this.isEnabled = metrics.isEnabled();
+			this.drawName = name + ".draw";
+			this.matchName = name + ".match";
+			this.readName = name + ".read";
+		}
+	}
 
 	private static final Byte DEFAULT_START_ZOOM_LEVEL = Byte.valueOf((byte) 12);
 	private static final byte LAYERS = 11;
@@ -61,6 +79,14 @@ public class DatabaseRenderer implements RenderCallback {
 	private static final Tag TAG_NATURAL_WATER = new Tag("natural", "water");
 	private static final byte ZOOM_MAX = 22;
 
+	/**
+	 * @return the stroke scale factor for the given zoom level.
+	 */
+	private static float getStrokeScaleFactor(byte zoomLevel) {
+		int zoomLevelDiff = Math.max(zoomLevel - STROKE_MIN_ZOOM_LEVEL, 0);
+		return (float) Math.pow(STROKE_INCREASE, zoomLevelDiff);
+	}
+
 	private static Point[][] getTilePixelCoordinates(int tileSize) {
 		Point point1 = new Point(0, 0);
 		Point point2 = new Point(tileSize, 0);
@@ -85,15 +111,18 @@ public class DatabaseRenderer implements RenderCallback {
 	private RendererJob currentRendererJob;
 	private List<List<ShapePaintContainer>> drawingLayers;
 	private final GraphicFactory graphicFactory;
+	private boolean isMatchTimed;
 
 	private final LabelPlacement labelPlacement;
 	private final MapDatabase mapDatabase;
+	private final MapDataSink mapDataSink;
+	private long matchTime;
 	private List<PointTextContainer> nodes;
 	private final List<SymbolContainer> pointSymbols;
 	private Point poiPosition;
 	private XmlRenderTheme previousJobTheme;
-	private float previousTextScale;
-	private byte previousZoomLevel;
+	private RenderContext renderContext;
+	private volatile RenderMetrics renderMetrics;
 	private RenderTheme renderTheme;
 	private ShapeContainer shapeContainer;
 	private final List<WayTextContainer> wayNames;
@@ -119,6 +148,26 @@ public class DatabaseRenderer implements RenderCallback {
 		this.areaLabels = new ArrayList<PointTextContainer>(64);
 		this.waySymbols = new ArrayList<SymbolContainer>(64);
 		this.pointSymbols = new ArrayList<SymbolContainer>(64);
+		this.renderMetrics = new RenderMetrics(DisabledMetrics.INSTANCE, "");
+
+		this.mapDataSink = new MapDataSink() {
+			@Override
+			public void addPointOfInterest(PointOfInterest pointOfInterest) {
+				renderPointOfInterest(pointOfInterest);
+			}
+
+			@Override
+			public void addWay(Way way) {
+				renderWay(way);
+			}
+
+			@Override
+			public void setWater(boolean isWater) {
+				if (isWater) {
+					renderWaterBackground();
+				}
+			}
+		};
 	}
 
 	public void destroy() {
@@ -136,16 +185,22 @@ public class DatabaseRenderer implements RenderCallback {
 	}
 
 	/**
-	 * Called when a job needs to be executed.
+	 * Called when a job needs to be executed. The job is checked for cancellation before its map data is read, while
+	 * the read elements are matched against the render theme and before the tile is drawn.
 	 * 
 	 * @param rendererJob
 	 *            the job that should be executed.
+	 * @return the rendered tile, or null if the job has been cancelled or the render theme could not be loaded.
 	 */
 	public TileBitmap executeJob(RendererJob rendererJob) {
 		this.currentRendererJob = rendererJob;
 
 		XmlRenderTheme jobTheme = rendererJob.xmlRenderTheme;
 		if (!jobTheme.equals(this.previousJobTheme)) {
+			if (this.renderTheme != null) {
+				// release the previous render theme, it stays in the shared cache for a while
+				this.renderTheme.destroy();
+			}
 			this.renderTheme = getRenderTheme(jobTheme, rendererJob.displayModel);
 			if (this.renderTheme == null) {
 				this.previousJobTheme = null;
@@ -153,26 +208,31 @@ public class DatabaseRenderer implements RenderCallback {
 			}
 			createWayLists();
 			this.previousJobTheme = jobTheme;
-			this.previousZoomLevel = Byte.MIN_VALUE;
 		}
 
 		byte zoomLevel = rendererJob.tile.zoomLevel;
-		if (zoomLevel != this.previousZoomLevel) {
-			setScaleStrokeWidth(zoomLevel);
-			this.previousZoomLevel = zoomLevel;
-		}
+		this.renderContext = this.renderTheme.getRenderContext(zoomLevel, getStrokeScaleFactor(zoomLevel),
+				rendererJob.textScale);
 
-		float textScale = rendererJob.textScale;
-		if (Float.compare(textScale, this.previousTextScale) != 0) {
-			this.renderTheme.scaleTextSize(textScale);
-			this.previousTextScale = textScale;
+		if (rendererJob.isCancelled()) {
+			return null;
 		}
 
+		RenderMetrics currentRenderMetrics = this.renderMetrics;
+		this.isMatchTimed = currentRenderMetrics.isEnabled;
+		this.matchTime = 0;
+		long readStartTime = currentRenderMetrics.isEnabled ? System.nanoTime() : 0;
 		if (this.mapDatabase != null) {
-			MapReadResult mapReadResult = this.mapDatabase.readMapData(rendererJob.tile);
-			processReadMapData(mapReadResult);
+			// render each element as soon as it has been read
+			this.mapDatabase.readMapData(rendererJob.tile, this.mapDataSink);
+		}
+
+		if (rendererJob.isCancelled()) {
+			clearLists();
+			return null;
 		}
 
+		long drawStartTime = currentRenderMetrics.isEnabled ? System.nanoTime() : 0;
 		this.nodes = this.labelPlacement.placeLabels(this.nodes, this.pointSymbols, this.areaLabels, rendererJob.tile,
 				rendererJob.displayModel);
 
@@ -189,6 +249,14 @@ public class DatabaseRenderer implements RenderCallback {
 		this.canvasRasterer.drawNodes(this.nodes, rendererJob.displayModel);
 		this.canvasRasterer.drawNodes(this.areaLabels, rendererJob.displayModel);
 
+		if (currentRenderMetrics.isEnabled) {
+			// matching happens while the map data is read, so its time is not counted twice
+			Metrics metrics = currentRenderMetrics.metrics;
+			metrics.recordLatency(currentRenderMetrics.readName, drawStartTime - readStartTime - this.matchTime);
+			metrics.recordLatency(currentRenderMetrics.matchName, this.matchTime);
+			metrics.recordLatency(currentRenderMetrics.drawName, System.nanoTime() - drawStartTime);
+		}
+
 		clearLists();
 		return bitmap;
 	}
@@ -298,6 +366,19 @@ public class DatabaseRenderer implements RenderCallback {
 		WayDecorator.renderText(textKey, dy, fill, stroke, this.coordinates, this.wayNames);
 	}
 
+	/**
+	 * Sets the metrics which this renderer reports the time per tile to: reading the map data as {@code <name>.read},
+	 * matching the render theme rules as {@code <name>.match} and drawing the tile as {@code <name>.draw}.
+	 * 
+	 * @param metrics
+	 *            the metrics to report to, {@link DisabledMetrics#INSTANCE} stops the reporting.
+	 * @param name
+	 *            the prefix of all metric names of this renderer.
+	 */
+	public void setMetrics(Metrics metrics, String name) {
+		this.renderMetrics = new RenderMetrics(metrics, name);
+	}
+
 	private void clearLists() {
 		for (int i = this.ways.size() - 1; i >= 0; --i) {
 			List<List<ShapePaintContainer>> innerWayList = this.ways.get(i);
@@ -328,7 +409,7 @@ public class DatabaseRenderer implements RenderCallback {
 
 	private RenderTheme getRenderTheme(XmlRenderTheme jobTheme, DisplayModel displayModel) {
 		try {
-			return RenderThemeHandler.getRenderTheme(this.graphicFactory, displayModel, jobTheme);
+			return RenderThemeCache.INSTANCE.getRenderTheme(this.graphicFactory, displayModel, jobTheme);
 		} catch (ParserConfigurationException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 		} catch (SAXException e) {
@@ -339,38 +420,31 @@ public class DatabaseRenderer implements RenderCallback {
 		return null;
 	}
 
-	private void processReadMapData(MapReadResult mapReadResult) {
-		if (mapReadResult == null) {
+	private void renderPointOfInterest(PointOfInterest pointOfInterest) {
+		if (this.currentRendererJob.isCancelled()) {
+			// the remaining map data of a cancelled job is read, but no longer matched
 			return;
 		}
-
-		for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
-			renderPointOfInterest(pointOfInterest);
-		}
-
-		for (Way way : mapReadResult.ways) {
-			renderWay(way);
-		}
-
-		if (mapReadResult.isWater) {
-			renderWaterBackground();
-		}
-	}
-
-	private void renderPointOfInterest(PointOfInterest pointOfInterest) {
 		this.drawingLayers = this.ways.get(getValidLayer(pointOfInterest.layer));
 		this.poiPosition = scaleLatLong(pointOfInterest.position, this.currentRendererJob.displayModel.getTileSize());
-		this.renderTheme.matchNode(this, pointOfInterest.tags, this.currentRendererJob.tile.zoomLevel);
+		long startTime = startMatchTimer();
+		this.renderTheme.matchNode(this, this.renderContext, pointOfInterest.tags, pointOfInterest.tagIds);
+		stopMatchTimer(startTime);
 	}
 
 	private void renderWaterBackground() {
 		this.drawingLayers = this.ways.get(0);
 		this.coordinates = getTilePixelCoordinates(this.currentRendererJob.displayModel.getTileSize());
 		this.shapeContainer = new PolylineContainer(this.coordinates);
-		this.renderTheme.matchClosedWay(this, Arrays.asList(TAG_NATURAL_WATER), this.currentRendererJob.tile.zoomLevel);
+		long startTime = startMatchTimer();
+		this.renderTheme.matchClosedWay(this, this.renderContext, Arrays.asList(TAG_NATURAL_WATER));
+		stopMatchTimer(startTime);
 	}
 
 	private void renderWay(Way way) {
+		if (this.currentRendererJob.isCancelled()) {
+			return;
+		}
 		this.drawingLayers = this.ways.get(getValidLayer(way.layer));
 		// TODO what about the label position?
 
@@ -388,11 +462,13 @@ public class DatabaseRenderer implements RenderCallback {
 		}
 		this.shapeContainer = new PolylineContainer(this.coordinates);
 
+		long startTime = startMatchTimer();
 		if (GeometryUtils.isClosedWay(this.coordinates[0])) {
-			this.renderTheme.matchClosedWay(this, way.tags, this.currentRendererJob.tile.zoomLevel);
+			this.renderTheme.matchClosedWay(this, this.renderContext, way.tags, way.tagIds);
 		} else {
-			this.renderTheme.matchLinearWay(this, way.tags, this.currentRendererJob.tile.zoomLevel);
+			this.renderTheme.matchLinearWay(this, this.renderContext, way.tags, way.tagIds);
 		}
+		stopMatchTimer(startTime);
 	}
 
 	/**
@@ -411,14 +487,13 @@ public class DatabaseRenderer implements RenderCallback {
 		return new Point((float) pixelX, (float) pixelY);
 	}
 
-	/**
-	 * Sets the scale stroke factor for the given zoom level.
-	 * 
-	 * @param zoomLevel
-	 *            the zoom level for which the scale stroke factor should be set.
-	 */
-	private void setScaleStrokeWidth(byte zoomLevel) {
-		int zoomLevelDiff = Math.max(zoomLevel - STROKE_MIN_ZOOM_LEVEL, 0);
-		this.renderTheme.scaleStrokeWidth((float) Math.pow(STROKE_INCREASE, zoomLevelDiff));
+	private long startMatchTimer() {
+		return this.isMatchTimed ? System.nanoTime() : 0;
+	}
+
+	private void stopMatchTimer(long startTime) {
+		if (startTime != 0) {
+			this.matchTime += System.nanoTime() - startTime;
+		}
 	}
 }
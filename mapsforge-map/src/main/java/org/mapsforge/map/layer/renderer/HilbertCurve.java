@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+/**
+ * Maps two-dimensional coordinates to their position on a Hilbert curve.
+ * <p>
+ * Consecutive positions on the curve are neighbours in the plane, and every aligned square of 2^k x 2^k coordinates
+ * is covered by a contiguous range of positions. Coordinates which are ordered by their position therefore stay
+ * close together, which is what the caches of the map reader need.
+ */
+final class HilbertCurve {
+	/**
+	 * @param order
+	 *            the number of bits of the coordinates, the curve covers 2^order x 2^order coordinates.
+	 * @param x
+	 *            the x coordinate, must be less than 2^order.
+	 * @param y
+	 *            the y coordinate, must be less than 2^order.
+	 * @return the position of the given coordinates on the curve.
+	 */
+	static long getIndex(int order, long x, long y) {
+		long index = 0;
+		long currentX = x;
+		long currentY = y;
+		for (long s = (1L << order) >>> 1; s > 0; s >>>= 1) {
+			int rx = (currentX & s) == 0 ? 0 : 1;
+			int ry = (currentY & s) == 0 ? 0 : 1;
+			index += s * s * ((3 * rx) ^ ry);
+
+			// rotate the quadrant, so that the sub-curve is traversed in the right direction
+			if (ry == 0) {
+				if (rx == 1) {
+					currentX = s - 1 - (currentX & (s - 1));
+					currentY = s - 1 - (currentY & (s - 1));
+				}
+				long swap = currentX;
+				currentX = currentY;
+				currentY = swap;
+			}
+		}
+		return index;
+	}
+
+	private HilbertCurve() {
+		throw new IllegalStateException();
+	}
+}
@@ -15,40 +15,30 @@
  */
 package org.mapsforge.map.layer.renderer;
 
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.util.DisabledMetrics;
+import org.mapsforge.core.util.Metrics;
+import org.mapsforge.core.util.MetricsReporter;
+import org.mapsforge.core.util.MetricsUtils;
 import org.mapsforge.map.layer.Layer;
 import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.layer.queue.JobQueue;
 import org.mapsforge.map.util.PausableThread;
 
-public class MapWorker extends PausableThread {
-	private static final boolean DEBUG_TIMING = false;
-	private static final Logger LOGGER = Logger.getLogger(MapWorker.class.getName());
-
+public class MapWorker extends PausableThread implements MetricsReporter {
+	private String cancelledMetricName;
 	private final DatabaseRenderer databaseRenderer;
 	private final JobQueue<RendererJob> jobQueue;
 	private final Layer layer;
+	private volatile Metrics metrics;
+	private String renderMetricName;
+	private String skippedMetricName;
 	private final TileCache tileCache;
 
-	private final AtomicLong totalExecutions;
-	// for timing only
-	private final AtomicLong totalTime;
-
 	public MapWorker(TileCache tileCache, JobQueue<RendererJob> jobQueue, DatabaseRenderer databaseRenderer, Layer layer) {
 		super();
 
-		if (DEBUG_TIMING) {
-			totalTime = new AtomicLong();
-			totalExecutions = new AtomicLong();
-		} else {
-			totalTime = null;
-			totalExecutions = null;
-		}
-
+		this.metrics = DisabledMetrics.INSTANCE;
 		this.tileCache = tileCache;
 		this.jobQueue = jobQueue;
 		this.databaseRenderer = databaseRenderer;
@@ -61,12 +51,39 @@ public class MapWorker extends PausableThread {
 		try {
 			if (!this.tileCache.containsKey(rendererJob)) {
 				renderTile(rendererJob);
+			} else if (this.metrics.isEnabled()) {
+				this.metrics.increment(this.skippedMetricName, 1);
 			}
 		} finally {
 			this.jobQueue.remove(rendererJob);
 		}
 	}
 
+	/**
+	 * Sets the metrics which this worker reports to: the total time per rendered tile as {@code <name>.render}, its
+	 * parts as described in {@link DatabaseRenderer#setMetrics} with the prefix {@code <name>.render}, the number of
+	 * jobs which were skipped because their tile had been cached in the meantime as {@code <name>.skipped} and the
+	 * number of renderings which were aborted because their job had been cancelled as {@code <name>.cancelled}.
+	 * 
+	 * @param metrics
+	 *            the metrics to report to, {@link DisabledMetrics#INSTANCE} stops the reporting.
+	 * @param name
+	 *            the prefix of all metric names of this worker.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	@Override
+	public void setMetrics(Metrics metrics, String name) {
+		MetricsUtils.checkMetrics(metrics, name);
+
+		this.cancelledMetricName = name + ".cancelled";
+		this.renderMetricName = name + ".render";
+		this.skippedMetricName = name + ".skipped";
+		// the names are written first, so that they are visible together with the metrics
+		this.metrics = metrics;
+		this.databaseRenderer.setMetrics(metrics, this.renderMetricName);
+	}
+
 	@Override
 	protected ThreadPriority getThreadPriority() {
 		return ThreadPriority.BELOW_NORMAL;
@@ -78,19 +95,16 @@ public class MapWorker extends PausableThread {
 	}
 
 	private void renderTile(RendererJob rendererJob) {
-		long start;
-		if (DEBUG_TIMING) {
-			start = System.currentTimeMillis();
-		}
+		Metrics currentMetrics = this.metrics;
+		long startTime = currentMetrics.isEnabled() ? System.nanoTime() : 0;
 
 		TileBitmap bitmap = this.databaseRenderer.executeJob(rendererJob);
 
-		if (DEBUG_TIMING) {
-			long end = System.currentTimeMillis();
-			long te = this.totalExecutions.incrementAndGet();
-			long tt = this.totalTime.addAndGet(end - start);
-			if (te % 10 == 0) {
-				LOGGER.log(Level.INFO, "TIMING " + Long.toString(te) + " " + Double.toString(tt / te));
+		if (currentMetrics.isEnabled()) {
+			if (bitmap == null && rendererJob.isCancelled()) {
+				currentMetrics.increment(this.cancelledMetricName, 1);
+			} else {
+				currentMetrics.recordLatency(this.renderMetricName, System.nanoTime() - startTime);
 			}
 		}
 
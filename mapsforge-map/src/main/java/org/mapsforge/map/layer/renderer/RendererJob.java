@@ -20,14 +20,29 @@ import java.io.File;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.map.layer.queue.Job;
 import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
 import org.mapsforge.map.rendertheme.XmlRenderTheme;
 
 public class RendererJob extends Job {
+	/**
+	 * @return true if the given object has a value based hash code, false if it uses the identity hash code which
+	 *         changes with every start.
+	 */
+	private static boolean hasValueHashCode(Object object) {
+		try {
+			return object.getClass().getMethod("hashCode").getDeclaringClass() != Object.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
 	public final DisplayModel displayModel;
 	public final File mapFile;
 	public final float textScale;
 	public final XmlRenderTheme xmlRenderTheme;
 	private final int hashCodeValue;
+	private final long mapFileLastModified;
+	private final long mapFileSize;
 
 	public RendererJob(Tile tile, File mapFile, XmlRenderTheme xmlRenderTheme, DisplayModel displayModel,
 			float textScale, boolean isTransparent) {
@@ -43,6 +58,8 @@ public class RendererJob extends Job {
 
 		this.displayModel = displayModel;
 		this.mapFile = mapFile;
+		this.mapFileLastModified = mapFile.lastModified();
+		this.mapFileSize = mapFile.length();
 		this.xmlRenderTheme = xmlRenderTheme;
 		this.textScale = textScale;
 
@@ -76,6 +93,29 @@ public class RendererJob extends Job {
 		return this.hashCodeValue;
 	}
 
+	@Override
+	protected String getSourceDescription() {
+		// the map file version is part of the key so that tiles of a replaced map file are not served any more
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append(this.mapFile.getAbsolutePath()).append(':').append(this.mapFileLastModified).append(':')
+				.append(this.mapFileSize).append(':').append(this.textScale).append(':')
+				.append(this.xmlRenderTheme.getClass().getName()).append(':');
+		if (this.xmlRenderTheme instanceof Enum) {
+			// the hash code of an enum constant changes with every start
+			stringBuilder.append(((Enum<?>) this.xmlRenderTheme).name());
+		} else if (this.xmlRenderTheme instanceof ExternalRenderTheme) {
+			ExternalRenderTheme externalRenderTheme = (ExternalRenderTheme) this.xmlRenderTheme;
+			stringBuilder.append(externalRenderTheme.getRenderThemeFile().getAbsolutePath()).append(':')
+					.append(externalRenderTheme.getLastModifiedTime());
+		} else {
+			stringBuilder.append(this.xmlRenderTheme.getRelativePathPrefix());
+			if (hasValueHashCode(this.xmlRenderTheme)) {
+				stringBuilder.append(':').append(this.xmlRenderTheme.hashCode());
+			}
+		}
+		return stringBuilder.toString();
+	}
+
 	private int calculateHashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
@@ -20,6 +20,7 @@ import java.io.File;
 
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.Metrics;
 import org.mapsforge.map.layer.TileLayer;
 import org.mapsforge.map.layer.cache.TileCache;
 import org.mapsforge.map.model.DisplayModel;
@@ -30,31 +31,66 @@ import org.mapsforge.map.rendertheme.XmlRenderTheme;
 
 public class TileRendererLayer extends TileLayer<RendererJob> {
 
-	private final DatabaseRenderer databaseRenderer;
-	private final MapDatabase mapDatabase;
+	private final DatabaseRenderer[] databaseRenderers;
+	private final MapDatabase[] mapDatabases;
 	private File mapFile;
-	private MapWorker mapWorker;
+	private final MapWorker[] mapWorkers;
 	private float textScale;
 	private XmlRenderTheme xmlRenderTheme;
 
 	public TileRendererLayer(TileCache tileCache, MapViewPosition mapViewPosition, boolean isTransparent,
 			GraphicFactory graphicFactory) {
+		this(tileCache, mapViewPosition, isTransparent, graphicFactory, 1);
+	}
+
+	/**
+	 * Creates a layer whose tiles are rendered by the given number of threads in parallel. The threads take their
+	 * jobs from the shared job queue of this layer, but every thread has its own {@link MapDatabase} and
+	 * {@link DatabaseRenderer}, as both hold the state of the job being rendered. The map databases share the index
+	 * cache, see {@link MapDatabase#getIndexCache()}.
+	 * 
+	 * @param renderThreads
+	 *            the number of rendering threads, each of them needs its own parsed render theme.
+	 * @throws IllegalArgumentException
+	 *             if the number of rendering threads is not positive.
+	 */
+	public TileRendererLayer(TileCache tileCache, MapViewPosition mapViewPosition, boolean isTransparent,
+			GraphicFactory graphicFactory, int renderThreads) {
 		super(tileCache, mapViewPosition, graphicFactory.createMatrix(), isTransparent);
 
-		this.mapDatabase = new MapDatabase();
-		this.databaseRenderer = new DatabaseRenderer(this.mapDatabase, graphicFactory);
+		if (renderThreads <= 0) {
+			throw new IllegalArgumentException("renderThreads must be positive: " + renderThreads);
+		}
+
+		this.mapDatabases = new MapDatabase[renderThreads];
+		this.databaseRenderers = new DatabaseRenderer[renderThreads];
+		this.mapWorkers = new MapWorker[renderThreads];
+		for (int i = 0; i < renderThreads; ++i) {
+			this.mapDatabases[i] = new MapDatabase();
+			this.databaseRenderers[i] = new DatabaseRenderer(this.mapDatabases[i], graphicFactory);
+		}
 
 		this.textScale = 1;
 	}
 
+	/**
+	 * @return the map database of the first rendering thread, all rendering threads have the same map file opened.
+	 */
 	public MapDatabase getMapDatabase() {
-		return mapDatabase;
+		return this.mapDatabases[0];
 	}
 
 	public File getMapFile() {
 		return this.mapFile;
 	}
 
+	/**
+	 * @return the number of threads which render the tiles of this layer.
+	 */
+	public int getRenderThreads() {
+		return this.mapWorkers.length;
+	}
+
 	public float getTextScale() {
 		return this.textScale;
 	}
@@ -65,29 +101,50 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 
 	@Override
 	public void onDestroy() {
-		new DestroyThread(this.mapWorker, this.mapDatabase, this.databaseRenderer).start();
+		for (int i = 0; i < this.mapWorkers.length; ++i) {
+			new DestroyThread(this.mapWorkers[i], this.mapDatabases[i], this.databaseRenderers[i]).start();
+		}
 		super.onDestroy();
 	}
 
 	@Override
 	public synchronized void setDisplayModel(DisplayModel displayModel) {
 		super.setDisplayModel(displayModel);
-		if (displayModel != null) {
-			this.mapWorker = new MapWorker(this.tileCache, this.jobQueue, this.databaseRenderer, this);
-			this.mapWorker.start();
-		} else {
-			// if we do not have a displayModel any more we can stop rendering.
-			if (this.mapWorker != null) {
-				this.mapWorker.interrupt();
+		for (int i = 0; i < this.mapWorkers.length; ++i) {
+			if (displayModel != null) {
+				this.mapWorkers[i] = new MapWorker(this.tileCache, this.jobQueue, this.databaseRenderers[i], this);
+				this.mapWorkers[i].setMetrics(this.metrics, this.metricsName);
+				this.mapWorkers[i].start();
+			} else {
+				// if we do not have a displayModel any more we can stop rendering.
+				if (this.mapWorkers[i] != null) {
+					this.mapWorkers[i].interrupt();
+				}
 			}
 		}
 	}
 
 	public void setMapFile(File mapFile) {
 		this.mapFile = mapFile;
-		FileOpenResult result = this.mapDatabase.openFile(mapFile);
-		if (!result.isSuccess()) {
-			throw new IllegalArgumentException(result.getErrorMessage());
+		for (MapDatabase mapDatabase : this.mapDatabases) {
+			FileOpenResult result = mapDatabase.openFile(mapFile);
+			if (!result.isSuccess()) {
+				throw new IllegalArgumentException(result.getErrorMessage());
+			}
+		}
+	}
+
+	/**
+	 * Sets the metrics which the job queue and the map workers of this layer report to, see
+	 * {@link MapWorker#setMetrics}. All map workers report to the same metric names.
+	 */
+	@Override
+	public synchronized void setMetrics(Metrics metrics, String name) {
+		super.setMetrics(metrics, name);
+		for (MapWorker mapWorker : this.mapWorkers) {
+			if (mapWorker != null) {
+				mapWorker.setMetrics(metrics, name);
+			}
 		}
 	}
 
@@ -107,13 +164,17 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 
 	@Override
 	protected void onAdd() {
-		this.mapWorker.proceed();
+		for (MapWorker mapWorker : this.mapWorkers) {
+			mapWorker.proceed();
+		}
 		super.onAdd();
 	}
 
 	@Override
 	protected void onRemove() {
-		this.mapWorker.pause();
+		for (MapWorker mapWorker : this.mapWorkers) {
+			mapWorker.pause();
+		}
 		super.onRemove();
 	}
 }
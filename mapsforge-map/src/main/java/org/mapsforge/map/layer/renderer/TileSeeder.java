@@ -0,0 +1,398 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+
+/**
+ * Renders all tiles of a region into a {@link TileCache} without a map view, for example to pre-render the tiles of
+ * a tile server.
+ * <p>
+ * Every thread renders with its own {@link MapDatabase} and {@link DatabaseRenderer}. The tiles of a zoom level are
+ * rendered in the order of a Hilbert curve and handed out to the threads in blocks of {@value #BLOCK_SIZE} x
+ * {@value #BLOCK_SIZE} tiles, so that each thread keeps reading from the same part of the map file.
+ * <p>
+ * Tiles which are already in the tile cache are skipped, so that a seeding run which has been stopped or interrupted
+ * can be resumed by seeding the same region into the same persistent cache again.
+ */
+public class TileSeeder {
+	private static final class Block {
+		final long index;
+		final long tileXMax;
+		final long tileXMin;
+		final long tileYMax;
+		final long tileYMin;
+		final byte zoomLevel;
+
+		Block(long blockX, long blockY, long[] tileRange, byte zoomLevel) {
+			this.tileXMin = Math.max(blockX * BLOCK_SIZE, tileRange[0]);
+			this.tileXMax = Math.min(blockX * BLOCK_SIZE + BLOCK_SIZE - 1, tileRange[1]);
+			this.tileYMin = Math.max(blockY * BLOCK_SIZE, tileRange[2]);
+			this.tileYMax = Math.min(blockY * BLOCK_SIZE + BLOCK_SIZE - 1, tileRange[3]);
+			this.zoomLevel = zoomLevel;
+			this.index = HilbertCurve.getIndex(Math.max(zoomLevel - BLOCK_ORDER, 0), blockX, blockY);
+		}
+
+		/**
+		 * @return the tiles of this block in the order of the Hilbert curve of their zoom level.
+		 */
+		List<Tile> getTiles() {
+			// a block covers a contiguous range of positions on the curve, the lowest bits are the position in it
+			Tile[] tiles = new Tile[BLOCK_SIZE * BLOCK_SIZE];
+			for (long tileY = this.tileYMin; tileY <= this.tileYMax; ++tileY) {
+				for (long tileX = this.tileXMin; tileX <= this.tileXMax; ++tileX) {
+					long index = HilbertCurve.getIndex(this.zoomLevel, tileX, tileY);
+					tiles[(int) (index & (tiles.length - 1))] = new Tile(tileX, tileY, this.zoomLevel);
+				}
+			}
+
+			List<Tile> result = new ArrayList<Tile>(tiles.length);
+			for (Tile tile : tiles) {
+				if (tile != null) {
+					result.add(tile);
+				}
+			}
+			return result;
+		}
+	}
+
+	private final class SeedThread extends Thread {
+		private final DatabaseRenderer databaseRenderer;
+		private boolean hasRendered;
+		private final MapDatabase mapDatabase;
+
+		SeedThread(MapDatabase mapDatabase) {
+			super();
+
+			this.mapDatabase = mapDatabase;
+			this.databaseRenderer = new DatabaseRenderer(mapDatabase, TileSeeder.this.graphicFactory);
+		}
+
+		@Override
+		public void run() {
+			try {
+				Block block;
+				while (!TileSeeder.this.isStopped && (block = nextBlock()) != null) {
+					for (Tile tile : block.getTiles()) {
+						if (TileSeeder.this.isStopped) {
+							break;
+						}
+						seedTile(tile);
+					}
+				}
+			} finally {
+				// a renderer which has never rendered has no render theme to destroy
+				if (this.hasRendered) {
+					this.databaseRenderer.destroy();
+				}
+				this.mapDatabase.closeFile();
+			}
+		}
+
+		private void seedTile(Tile tile) {
+			RendererJob rendererJob = new RendererJob(tile, TileSeeder.this.mapFile, TileSeeder.this.xmlRenderTheme,
+					TileSeeder.this.displayModel, 1, false);
+			if (TileSeeder.this.tileCache.containsKey(rendererJob)) {
+				TileSeeder.this.skippedTiles.incrementAndGet();
+				return;
+			}
+
+			this.hasRendered = true;
+			TileBitmap bitmap = this.databaseRenderer.executeJob(rendererJob);
+			if (bitmap == null) {
+				TileSeeder.this.failedTiles.incrementAndGet();
+				return;
+			}
+			TileSeeder.this.tileCache.put(rendererJob, bitmap);
+			bitmap.decrementRefCount();
+			TileSeeder.this.renderedTiles.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The number of tiles per side of the blocks which are handed out to the rendering threads.
+	 */
+	public static final int BLOCK_SIZE = 8;
+
+	private static final Comparator<Block> BLOCK_COMPARATOR = new Comparator<Block>() {
+		@Override
+		public int compare(Block block1, Block block2) {
+			return block1.index < block2.index ? -1 : (block1.index == block2.index ? 0 : 1);
+		}
+	};
+	private static final int BLOCK_ORDER = 3;
+	private static final Logger LOGGER = Logger.getLogger(TileSeeder.class.getName());
+	private static final long REPORT_INTERVAL = 10000;
+
+	/**
+	 * @return the number of tiles which cover the given bounding box on the given zoom level.
+	 */
+	static long countTiles(BoundingBox boundingBox, byte zoomLevel) {
+		long[] tileRange = getTileRange(boundingBox, zoomLevel);
+		return (tileRange[1] - tileRange[0] + 1) * (tileRange[3] - tileRange[2] + 1);
+	}
+
+	/**
+	 * @return the tiles which cover the given bounding box on the given zoom level, in the order in which they are
+	 *         seeded.
+	 */
+	static List<Tile> getTiles(BoundingBox boundingBox, byte zoomLevel) {
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (Block block : getBlocks(boundingBox, zoomLevel)) {
+			tiles.addAll(block.getTiles());
+		}
+		return tiles;
+	}
+
+	private static List<Block> getBlocks(BoundingBox boundingBox, byte zoomLevel) {
+		long[] tileRange = getTileRange(boundingBox, zoomLevel);
+		List<Block> blocks = new ArrayList<Block>();
+		for (long blockY = tileRange[2] / BLOCK_SIZE; blockY <= tileRange[3] / BLOCK_SIZE; ++blockY) {
+			for (long blockX = tileRange[0] / BLOCK_SIZE; blockX <= tileRange[1] / BLOCK_SIZE; ++blockX) {
+				blocks.add(new Block(blockX, blockY, tileRange, zoomLevel));
+			}
+		}
+		Collections.sort(blocks, BLOCK_COMPARATOR);
+		return blocks;
+	}
+
+	/**
+	 * @return the minimum and maximum tile X number and the minimum and maximum tile Y number.
+	 */
+	private static long[] getTileRange(BoundingBox boundingBox, byte zoomLevel) {
+		return new long[] { MercatorProjection.longitudeToTileX(boundingBox.minLongitude, zoomLevel),
+				MercatorProjection.longitudeToTileX(boundingBox.maxLongitude, zoomLevel),
+				MercatorProjection.latitudeToTileY(boundingBox.maxLatitude, zoomLevel),
+				MercatorProjection.latitudeToTileY(boundingBox.minLatitude, zoomLevel) };
+	}
+
+	private static MapDatabase openMapDatabase(File mapFile) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		if (!fileOpenResult.isSuccess()) {
+			throw new IllegalArgumentException("could not open map file: " + fileOpenResult.getErrorMessage());
+		}
+		return mapDatabase;
+	}
+
+	private List<Block> blocks;
+	private BoundingBox boundingBox;
+	private final DisplayModel displayModel;
+	private final AtomicLong failedTiles;
+	private final GraphicFactory graphicFactory;
+	private volatile boolean isStopped;
+	private final File mapFile;
+	private int nextBlock;
+	private final AtomicLong renderedTiles;
+	private final AtomicLong skippedTiles;
+	private final TileCache tileCache;
+	private final XmlRenderTheme xmlRenderTheme;
+	private byte zoomLevel;
+	private byte zoomLevelMax;
+
+	/**
+	 * @param mapFile
+	 *            the map file from which the tiles are rendered.
+	 * @param xmlRenderTheme
+	 *            the render theme which is used to render the tiles.
+	 * @param displayModel
+	 *            the display model which defines the tile size.
+	 * @param tileCache
+	 *            the cache into which the rendered tiles are written.
+	 * @throws IllegalArgumentException
+	 *             if any of the parameters is null.
+	 */
+	public TileSeeder(File mapFile, XmlRenderTheme xmlRenderTheme, DisplayModel displayModel, TileCache tileCache,
+			GraphicFactory graphicFactory) {
+		if (mapFile == null) {
+			throw new IllegalArgumentException("mapFile must not be null");
+		} else if (xmlRenderTheme == null) {
+			throw new IllegalArgumentException("xmlRenderTheme must not be null");
+		} else if (displayModel == null) {
+			throw new IllegalArgumentException("displayModel must not be null");
+		} else if (tileCache == null) {
+			throw new IllegalArgumentException("tileCache must not be null");
+		} else if (graphicFactory == null) {
+			throw new IllegalArgumentException("graphicFactory must not be null");
+		}
+
+		this.mapFile = mapFile;
+		this.xmlRenderTheme = xmlRenderTheme;
+		this.displayModel = displayModel;
+		this.tileCache = tileCache;
+		this.graphicFactory = graphicFactory;
+		this.failedTiles = new AtomicLong();
+		this.renderedTiles = new AtomicLong();
+		this.skippedTiles = new AtomicLong();
+	}
+
+	/**
+	 * @return the number of tiles of the last seeding run which could not be rendered.
+	 */
+	public long getFailedTiles() {
+		return this.failedTiles.get();
+	}
+
+	/**
+	 * @return the number of tiles which have been rendered in the last seeding run.
+	 */
+	public long getRenderedTiles() {
+		return this.renderedTiles.get();
+	}
+
+	/**
+	 * @return the number of tiles of the last seeding run which were skipped because they had already been cached.
+	 */
+	public long getSkippedTiles() {
+		return this.skippedTiles.get();
+	}
+
+	/**
+	 * Renders all tiles which cover the given bounding box on the given zoom levels and are not cached yet, starting
+	 * with the lowest zoom level. The progress and the number of rendered tiles per second are logged periodically.
+	 * This method must not be called again before it has returned.
+	 * 
+	 * @param boundingBox
+	 *            the region which should be rendered.
+	 * @param zoomLevelMin
+	 *            the lowest zoom level which should be rendered.
+	 * @param zoomLevelMax
+	 *            the highest zoom level which should be rendered.
+	 * @param threads
+	 *            the number of rendering threads.
+	 * @return true if all tiles have been seeded, false if the seeding has been stopped.
+	 * @throws IllegalArgumentException
+	 *             if the map file cannot be opened or any of the parameters is invalid.
+	 * @throws InterruptedException
+	 *             if the calling thread has been interrupted, the rendering threads are stopped before.
+	 */
+	public boolean seed(BoundingBox boundingBox, byte zoomLevelMin, byte zoomLevelMax, int threads)
+			throws InterruptedException {
+		if (boundingBox == null) {
+			throw new IllegalArgumentException("boundingBox must not be null");
+		} else if (zoomLevelMin < 0) {
+			throw new IllegalArgumentException("zoomLevelMin must not be negative: " + zoomLevelMin);
+		} else if (zoomLevelMax < zoomLevelMin) {
+			throw new IllegalArgumentException("zoomLevelMax must not be less than zoomLevelMin: " + zoomLevelMax);
+		} else if (threads <= 0) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+
+		long totalTiles = 0;
+		for (byte zoomLevel = zoomLevelMin; zoomLevel <= zoomLevelMax; ++zoomLevel) {
+			totalTiles += countTiles(boundingBox, zoomLevel);
+		}
+
+		SeedThread[] seedThreads = new SeedThread[threads];
+		try {
+			for (int i = 0; i < threads; ++i) {
+				seedThreads[i] = new SeedThread(openMapDatabase(this.mapFile));
+			}
+		} catch (IllegalArgumentException e) {
+			for (SeedThread seedThread : seedThreads) {
+				if (seedThread != null) {
+					seedThread.mapDatabase.closeFile();
+				}
+			}
+			throw e;
+		}
+
+		synchronized (this) {
+			this.boundingBox = boundingBox;
+			this.blocks = getBlocks(boundingBox, zoomLevelMin);
+			this.nextBlock = 0;
+			this.zoomLevel = zoomLevelMin;
+			this.zoomLevelMax = zoomLevelMax;
+		}
+		this.isStopped = false;
+		this.failedTiles.set(0);
+		this.renderedTiles.set(0);
+		this.skippedTiles.set(0);
+
+		long startTime = System.currentTimeMillis();
+		for (SeedThread seedThread : seedThreads) {
+			seedThread.start();
+		}
+		try {
+			for (SeedThread seedThread : seedThreads) {
+				while (seedThread.isAlive()) {
+					seedThread.join(REPORT_INTERVAL);
+					if (seedThread.isAlive()) {
+						logProgress(totalTiles, startTime);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			stop();
+			for (SeedThread seedThread : seedThreads) {
+				seedThread.join();
+			}
+			throw e;
+		}
+
+		logProgress(totalTiles, startTime);
+		return !this.isStopped;
+	}
+
+	/**
+	 * Stops a running seeding run after the tiles which are being rendered at the moment.
+	 */
+	public void stop() {
+		this.isStopped = true;
+	}
+
+	private void logProgress(long totalTiles, long startTime) {
+		long elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1);
+		long renderedTiles = getRenderedTiles();
+		long skippedTiles = getSkippedTiles();
+		long failedTiles = getFailedTiles();
+		String tilesPerSecond = String.format("%.1f", Double.valueOf(renderedTiles * 1000.0 / elapsedTime));
+		LOGGER.info("seeded " + (renderedTiles + skippedTiles + failedTiles) + " of " + totalTiles + " tiles ("
+				+ renderedTiles + " rendered, " + skippedTiles + " skipped, " + failedTiles + " failed), "
+				+ tilesPerSecond + " tiles/s");
+	}
+
+	/**
+	 * @return the next block to render, or null if all blocks have been handed out.
+	 */
+	private synchronized Block nextBlock() {
+		while (this.nextBlock == this.blocks.size()) {
+			if (this.zoomLevel >= this.zoomLevelMax) {
+				return null;
+			}
+			++this.zoomLevel;
+			this.blocks = getBlocks(this.boundingBox, this.zoomLevel);
+			this.nextBlock = 0;
+		}
+		return this.blocks.get(this.nextBlock++);
+	}
+}
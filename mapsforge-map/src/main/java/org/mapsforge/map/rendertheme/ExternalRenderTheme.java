@@ -85,6 +85,13 @@ public class ExternalRenderTheme implements XmlRenderTheme {
 		return true;
 	}
 
+	/**
+	 * @return the last modified time of the XML render theme file when this render theme was created.
+	 */
+	public long getLastModifiedTime() {
+		return this.lastModifiedTime;
+	}
+
 	@Override
 	public XmlRenderThemeMenuCallback getMenuCallback() {
 		return this.menuCallback;
@@ -100,6 +107,13 @@ public class ExternalRenderTheme implements XmlRenderTheme {
 		return new FileInputStream(this.renderThemeFile);
 	}
 
+	/**
+	 * @return the XML render theme file.
+	 */
+	public File getRenderThemeFile() {
+		return this.renderThemeFile;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
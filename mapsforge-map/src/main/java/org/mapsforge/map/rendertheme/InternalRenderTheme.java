@@ -25,14 +25,16 @@ public enum InternalRenderTheme implements XmlRenderTheme {
 	 * 
 	 * @see <a href="http://wiki.openstreetmap.org/wiki/Osmarender">Osmarender</a>
 	 */
-	OSMARENDER("/osmarender/", "osmarender.xml");
+	OSMARENDER("/osmarender/", "osmarender.xml", "osmarender.bin");
 
 	private final String absolutePath;
 	private final String file;
+	private final String precompiledFile;
 
-	private InternalRenderTheme(String absolutePath, String file) {
+	private InternalRenderTheme(String absolutePath, String file, String precompiledFile) {
 		this.absolutePath = absolutePath;
 		this.file = file;
+		this.precompiledFile = precompiledFile;
 	}
 
 	@Override
@@ -47,6 +49,14 @@ public enum InternalRenderTheme implements XmlRenderTheme {
 		return this.absolutePath;
 	}
 
+	/**
+	 * @return an InputStream to read the precompiled render theme from, or null if there is none.
+	 * @see org.mapsforge.map.rendertheme.rule.PrecompiledRenderTheme
+	 */
+	public InputStream getPrecompiledRenderThemeAsStream() {
+		return InternalRenderTheme.class.getResourceAsStream(this.absolutePath + this.precompiledFile);
+	}
+
 	@Override
 	public InputStream getRenderThemeAsStream() {
 		return Thread.currentThread().getClass().getResourceAsStream(this.absolutePath + this.file);
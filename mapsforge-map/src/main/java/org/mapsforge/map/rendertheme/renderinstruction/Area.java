@@ -20,6 +20,7 @@ import java.util.List;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * Represents a closed polygon on the map.
@@ -29,8 +30,7 @@ public class Area extends RenderInstruction {
 	private final float height;
 	private final int level;
 	private final RenderInstructionBuilder.ResourceScaling scaling;
-	private final Paint stroke;
-	private final float strokeWidth;
+	private final ScaledPaints strokes;
 	private final float width;
 
 	Area(AreaBuilder areaBuilder) {
@@ -39,8 +39,12 @@ public class Area extends RenderInstruction {
 		this.height = areaBuilder.height;
 		this.level = areaBuilder.level;
 		this.scaling = areaBuilder.scaling;
-		this.stroke = areaBuilder.stroke;
-		this.strokeWidth = areaBuilder.strokeWidth;
+		if (areaBuilder.stroke == null) {
+			this.strokes = null;
+		} else {
+			this.strokes = new ScaledPaints(areaBuilder.graphicFactory, areaBuilder.stroke, areaBuilder.strokeWidth,
+					false);
+		}
 		this.width = areaBuilder.width;
 	}
 
@@ -50,25 +54,17 @@ public class Area extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
-		renderCallback.renderArea(this.fill, this.stroke, this.level);
-	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		if (this.stroke != null) {
-			this.stroke.setStrokeWidth(this.strokeWidth * scaleFactor);
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
+		Paint stroke = null;
+		if (this.strokes != null) {
+			stroke = this.strokes.get(renderContext.strokeIndex, renderContext.strokeScaleFactor);
 		}
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
+		renderCallback.renderArea(this.fill, stroke, this.level);
 	}
 
 }
@@ -40,6 +40,7 @@ public class AreaBuilder extends RenderInstructionBuilder {
 
 	public AreaBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes, int level, String relativePathPrefix) throws IOException, SAXException {
+		this.graphicFactory = graphicFactory;
 
 		this.level = level;
 
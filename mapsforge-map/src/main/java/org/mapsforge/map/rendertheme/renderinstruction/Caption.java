@@ -20,6 +20,7 @@ import org.mapsforge.core.graphics.Position;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 import java.util.List;
 
@@ -36,10 +37,9 @@ public class Caption extends RenderInstruction {
 	private final Bitmap bitmap;
 	private final Position position;
 	private final float dy;
-	private final Paint fill;
-	private final float fontSize;
+	private final ScaledPaints fills;
 	private final float gap;
-	private final Paint stroke;
+	private final ScaledPaints strokes;
 	private final TextKey textKey;
 
 	Caption(CaptionBuilder captionBuilder) {
@@ -48,9 +48,10 @@ public class Caption extends RenderInstruction {
 		this.position = captionBuilder.position;
 		this.gap = captionBuilder.gap;
 		this.dy = captionBuilder.dy;
-		this.fill = captionBuilder.fill;
-		this.fontSize = captionBuilder.fontSize;
-		this.stroke = captionBuilder.stroke;
+		this.fills = new ScaledPaints(captionBuilder.graphicFactory, captionBuilder.fill, captionBuilder.fontSize,
+				true);
+		this.strokes = new ScaledPaints(captionBuilder.graphicFactory, captionBuilder.stroke, captionBuilder.fontSize,
+				true);
 		this.textKey = captionBuilder.textKey;
 	}
 
@@ -60,61 +61,55 @@ public class Caption extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		String caption = this.textKey.getValue(tags);
 		if (caption == null) {
 			return;
 		}
 
+		Paint fill = this.fills.get(renderContext.textIndex, renderContext.textScaleFactor);
+		Paint stroke = this.strokes.get(renderContext.textIndex, renderContext.textScaleFactor);
 		float horizontalOffset = 0f;
 		float verticalOffset = this.dy;
 
 		if (this.bitmap != null) {
-			horizontalOffset = computeHorizontalOffset(caption);
-			verticalOffset = computeVerticalOffset(caption);
+			horizontalOffset = computeHorizontalOffset(caption, fill, stroke);
+			verticalOffset = computeVerticalOffset(caption, fill, stroke);
 		}
 
-		renderCallback.renderPointOfInterestCaption(caption, horizontalOffset, verticalOffset, this.fill, this.stroke, this.position);
+		renderCallback.renderPointOfInterestCaption(caption, horizontalOffset, verticalOffset, fill, stroke,
+				this.position);
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		String caption = this.textKey.getValue(tags);
 		if (caption == null) {
 			return;
 		}
 
+		Paint fill = this.fills.get(renderContext.textIndex, renderContext.textScaleFactor);
+		Paint stroke = this.strokes.get(renderContext.textIndex, renderContext.textScaleFactor);
 		float horizontalOffset = 0f;
 		float verticalOffset = this.dy;
 
 		if (this.bitmap != null) {
-			horizontalOffset = computeHorizontalOffset(caption);
-			verticalOffset = computeVerticalOffset(caption);
+			horizontalOffset = computeHorizontalOffset(caption, fill, stroke);
+			verticalOffset = computeVerticalOffset(caption, fill, stroke);
 		}
 
-		renderCallback.renderAreaCaption(caption, horizontalOffset, verticalOffset, this.fill, this.stroke, this.position);
+		renderCallback.renderAreaCaption(caption, horizontalOffset, verticalOffset, fill, stroke, this.position);
 	}
 
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		this.fill.setTextSize(this.fontSize * scaleFactor);
-		this.stroke.setTextSize(this.fontSize * scaleFactor);
-	}
-
-	private float computeHorizontalOffset(String caption) {
+	private float computeHorizontalOffset(String caption, Paint fill, Paint stroke) {
 		float horizontalOffset = 0f;
 
 		if (Position.RIGHT == this.position || Position.LEFT == this.position) {
 			float textWidth;
-			if (this.stroke != null) {
-				textWidth = this.stroke.getTextWidth(caption) / 2f;
+			if (stroke != null) {
+				textWidth = stroke.getTextWidth(caption) / 2f;
 			} else {
-				textWidth = this.fill.getTextWidth(caption) / 2f;
+				textWidth = fill.getTextWidth(caption) / 2f;
 			}
 			horizontalOffset = this.bitmap.getWidth() / 2f + this.gap + textWidth;
 			if (Position.LEFT == this.position) {
@@ -124,14 +119,14 @@ public class Caption extends RenderInstruction {
 		return horizontalOffset;
 	}
 
-	private float computeVerticalOffset(String caption) {
+	private float computeVerticalOffset(String caption, Paint fill, Paint stroke) {
 		float verticalOffset = this.dy;
 
 		float textHeight;
-		if (this.stroke != null) {
-			textHeight = this.stroke.getTextHeight(caption);
+		if (stroke != null) {
+			textHeight = stroke.getTextHeight(caption);
 		} else {
-			textHeight = this.fill.getTextHeight(caption);
+			textHeight = fill.getTextHeight(caption);
 		}
 
 		if (Position.RIGHT == this.position || Position.LEFT == this.position) {
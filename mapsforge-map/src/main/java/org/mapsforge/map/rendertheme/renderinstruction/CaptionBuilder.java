@@ -52,6 +52,7 @@ public class CaptionBuilder extends RenderInstructionBuilder {
 
 	public CaptionBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 	                            Attributes attributes, HashMap<String, Symbol> symbols) throws SAXException {
+		this.graphicFactory = graphicFactory;
 		this.fill = graphicFactory.createPaint();
 		this.fill.setColor(Color.BLACK);
 		this.fill.setStyle(Style.FILL);
@@ -20,6 +20,7 @@ import java.util.List;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * Represents a round area on the map.
@@ -28,10 +29,9 @@ public class Circle extends RenderInstruction {
 	private final Paint fill;
 	private final int level;
 	private final float radius;
-	private float renderRadius;
 	private final boolean scaleRadius;
 	private final Paint stroke;
-	private final float strokeWidth;
+	private final ScaledPaints strokes;
 
 	Circle(CircleBuilder circleBuilder) {
 		super(circleBuilder.getCategory());
@@ -40,12 +40,14 @@ public class Circle extends RenderInstruction {
 		this.radius = circleBuilder.radius.floatValue();
 		this.scaleRadius = circleBuilder.scaleRadius;
 		this.stroke = circleBuilder.stroke;
-		this.strokeWidth = circleBuilder.strokeWidth;
 
-		if (!this.scaleRadius) {
-			this.renderRadius = this.radius;
+		if (this.scaleRadius && this.stroke != null) {
+			this.strokes = new ScaledPaints(circleBuilder.graphicFactory, this.stroke, circleBuilder.strokeWidth,
+					false);
+		} else {
+			this.strokes = null;
 			if (this.stroke != null) {
-				this.stroke.setStrokeWidth(this.strokeWidth);
+				this.stroke.setStrokeWidth(circleBuilder.strokeWidth);
 			}
 		}
 	}
@@ -56,27 +58,23 @@ public class Circle extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
-		renderCallback.renderPointOfInterestCircle(this.renderRadius, this.fill, this.stroke, this.level);
-	}
-
-	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
-		// do nothing
-	}
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
+		if (!this.scaleRadius) {
+			renderCallback.renderPointOfInterestCircle(this.radius, this.fill, this.stroke, this.level);
+			return;
+		}
 
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		if (this.scaleRadius) {
-			this.renderRadius = this.radius * scaleFactor;
-			if (this.stroke != null) {
-				this.stroke.setStrokeWidth(this.strokeWidth * scaleFactor);
-			}
+		Paint stroke = this.stroke;
+		if (this.strokes != null) {
+			stroke = this.strokes.get(renderContext.strokeIndex, renderContext.strokeScaleFactor);
 		}
+		renderCallback.renderPointOfInterestCircle(this.radius * renderContext.strokeScaleFactor, this.fill, stroke,
+				this.level);
 	}
 
 	@Override
-	public void scaleTextSize(float scaleFactor) {
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		// do nothing
 	}
+
 }
@@ -38,6 +38,7 @@ public class CircleBuilder extends RenderInstructionBuilder{
 
 	public CircleBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes, int level) throws SAXException {
+		this.graphicFactory = graphicFactory;
 		this.level = level;
 
 		this.fill = graphicFactory.createPaint();
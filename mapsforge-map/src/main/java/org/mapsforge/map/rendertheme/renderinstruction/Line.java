@@ -20,6 +20,7 @@ import java.util.List;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * Represents a polyline on the map.
@@ -27,15 +28,13 @@ import org.mapsforge.map.rendertheme.RenderCallback;
 public class Line extends RenderInstruction {
 	private final float dy;
 	private final int level;
-	private final Paint stroke;
-	private final float strokeWidth;
+	private final ScaledPaints strokes;
 
 	Line(LineBuilder lineBuilder) {
 		super(lineBuilder.getCategory());
 		this.dy = lineBuilder.dy;
 		this.level = lineBuilder.level;
-		this.stroke = lineBuilder.stroke;
-		this.strokeWidth = lineBuilder.strokeWidth;
+		this.strokes = new ScaledPaints(lineBuilder.graphicFactory, lineBuilder.stroke, lineBuilder.strokeWidth, false);
 	}
 
 	@Override
@@ -44,22 +43,14 @@ public class Line extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
-		renderCallback.renderWay(this.stroke, this.dy, this.level);
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
+		Paint stroke = this.strokes.get(renderContext.strokeIndex, renderContext.strokeScaleFactor);
+		renderCallback.renderWay(stroke, this.dy, this.level);
 	}
 
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		this.stroke.setStrokeWidth(this.strokeWidth * scaleFactor);
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
-	}
 }
@@ -53,6 +53,7 @@ public class LineBuilder extends RenderInstructionBuilder {
 
 	public LineBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes, int level, String relativePathPrefix) throws IOException, SAXException {
+		this.graphicFactory = graphicFactory;
 		this.level = level;
 
 		this.stroke = graphicFactory.createPaint();
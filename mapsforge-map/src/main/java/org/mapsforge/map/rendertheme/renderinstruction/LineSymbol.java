@@ -20,6 +20,7 @@ import java.util.List;
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * Represents an icon along a polyline on the map.
@@ -50,23 +51,14 @@ public class LineSymbol extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		renderCallback.renderWaySymbol(this.bitmap, this.dy, this.alignCenter,
 				this.repeat, this.repeatGap, this.repeatStart, this.rotate);
 	}
 
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
-	}
 }
@@ -20,23 +20,24 @@ import java.util.List;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * Represents a text along a polyline on the map.
  */
 public class PathText extends RenderInstruction {
 	private final float dy;
-	private final Paint fill;
-	private final float fontSize;
-	private final Paint stroke;
+	private final ScaledPaints fills;
+	private final ScaledPaints strokes;
 	private final TextKey textKey;
 
 	PathText(PathTextBuilder pathTextBuilder) {
 		super(pathTextBuilder.getCategory());
 		this.dy = pathTextBuilder.dy;
-		this.fill = pathTextBuilder.fill;
-		this.fontSize = pathTextBuilder.fontSize;
-		this.stroke = pathTextBuilder.stroke;
+		this.fills = new ScaledPaints(pathTextBuilder.graphicFactory, pathTextBuilder.fill, pathTextBuilder.fontSize,
+				true);
+		this.strokes = new ScaledPaints(pathTextBuilder.graphicFactory, pathTextBuilder.stroke,
+				pathTextBuilder.fontSize, true);
 		this.textKey = pathTextBuilder.textKey;
 	}
 
@@ -46,27 +47,19 @@ public class PathText extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		String caption = this.textKey.getValue(tags);
 		if (caption == null) {
 			return;
 		}
-		renderCallback.renderWayText(caption, this.dy, this.fill, this.stroke);
+		Paint fill = this.fills.get(renderContext.textIndex, renderContext.textScaleFactor);
+		Paint stroke = this.strokes.get(renderContext.textIndex, renderContext.textScaleFactor);
+		renderCallback.renderWayText(caption, this.dy, fill, stroke);
 	}
 
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		this.fill.setTextSize(this.fontSize * scaleFactor);
-		this.stroke.setTextSize(this.fontSize * scaleFactor);
-	}
 }
@@ -42,6 +42,7 @@ public class PathTextBuilder extends RenderInstructionBuilder {
 
 	public PathTextBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes) throws SAXException {
+		this.graphicFactory = graphicFactory;
 		this.fill = graphicFactory.createPaint();
 		this.fill.setColor(Color.BLACK);
 		this.fill.setStyle(Style.FILL);
@@ -19,6 +19,7 @@ import java.util.List;
 
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * A RenderInstruction is a basic graphical primitive to draw a map.
@@ -40,32 +41,21 @@ public abstract class RenderInstruction {
 	/**
 	 * @param renderCallback
 	 *            a reference to the receiver of all render callbacks.
+	 * @param renderContext
+	 *            the scale factors with which the node is rendered.
 	 * @param tags
 	 *            the tags of the node.
 	 */
-	public abstract void renderNode(RenderCallback renderCallback, List<Tag> tags);
+	public abstract void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags);
 
 	/**
 	 * @param renderCallback
 	 *            a reference to the receiver of all render callbacks.
+	 * @param renderContext
+	 *            the scale factors with which the way is rendered.
 	 * @param tags
 	 *            the tags of the way.
 	 */
-	public abstract void renderWay(RenderCallback renderCallback, List<Tag> tags);
+	public abstract void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags);
 
-	/**
-	 * Scales the stroke width of this RenderInstruction by the given factor.
-	 * 
-	 * @param scaleFactor
-	 *            the factor by which the stroke width should be scaled.
-	 */
-	public abstract void scaleStrokeWidth(float scaleFactor);
-
-	/**
-	 * Scales the text size of this RenderInstruction by the given factor.
-	 * 
-	 * @param scaleFactor
-	 *            the factor by which the text size should be scaled.
-	 */
-	public abstract void scaleTextSize(float scaleFactor);
 }
@@ -62,6 +62,7 @@ public class RenderInstructionBuilder {
 
 	String cat;
 	String elementName;
+	GraphicFactory graphicFactory;
 	float height;
 	int percent = 100;
 	ResourceScaling scaling;
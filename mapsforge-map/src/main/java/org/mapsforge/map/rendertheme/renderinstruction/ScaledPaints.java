@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.renderinstruction;
+
+import java.util.Arrays;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+
+/**
+ * Copies of a paint whose stroke width or text size is scaled with the scale factors of a
+ * {@link org.mapsforge.map.rendertheme.rule.RenderContext}.
+ * <p>
+ * A copy is created when a scale factor is used for the first time and is never modified afterwards, neither is the
+ * original paint. All copies can therefore be used by several threads at the same time.
+ */
+final class ScaledPaints {
+	private static final Paint[] EMPTY = new Paint[0];
+
+	private final GraphicFactory graphicFactory;
+	private final boolean isTextSize;
+	private final Paint paint;
+	private volatile Paint[] scaledPaints;
+	private final float size;
+
+	/**
+	 * @param graphicFactory
+	 *            the factory which copies the paint.
+	 * @param paint
+	 *            the paint to be copied.
+	 * @param size
+	 *            the unscaled stroke width or text size of the paint.
+	 * @param isTextSize
+	 *            true if the text size should be scaled, false if the stroke width should be scaled.
+	 */
+	ScaledPaints(GraphicFactory graphicFactory, Paint paint, float size, boolean isTextSize) {
+		this.graphicFactory = graphicFactory;
+		this.paint = paint;
+		this.size = size;
+		this.isTextSize = isTextSize;
+		this.scaledPaints = EMPTY;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the scale factor in the render context.
+	 * @param scaleFactor
+	 *            the scale factor with this index.
+	 * @return the copy of the paint for the given scale factor.
+	 */
+	Paint get(int index, float scaleFactor) {
+		Paint[] paints = this.scaledPaints;
+		if (index < paints.length && paints[index] != null) {
+			return paints[index];
+		}
+		return create(index, scaleFactor);
+	}
+
+	private synchronized Paint create(int index, float scaleFactor) {
+		Paint[] paints = this.scaledPaints;
+		if (index < paints.length && paints[index] != null) {
+			// another thread has been faster
+			return paints[index];
+		}
+
+		Paint scaledPaint = this.graphicFactory.createPaint(this.paint);
+		if (this.isTextSize) {
+			scaledPaint.setTextSize(this.size * scaleFactor);
+		} else {
+			scaledPaint.setStrokeWidth(this.size * scaleFactor);
+		}
+
+		// the array is replaced, so that unsynchronized readers always see fully initialized paints
+		Paint[] newPaints = Arrays.copyOf(paints, Math.max(paints.length, index + 1));
+		newPaints[index] = scaledPaint;
+		this.scaledPaints = newPaints;
+		return scaledPaint;
+	}
+}
@@ -20,6 +20,7 @@ import java.util.List;
 import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.rule.RenderContext;
 
 /**
  * Represents an icon on the map.
@@ -48,23 +49,13 @@ public class Symbol extends RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		renderCallback.renderPointOfInterestSymbol(this.bitmap);
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
 		renderCallback.renderAreaSymbol(this.bitmap);
 	}
 
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
-	}
-
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+
+/**
+ * A thread-safe cache for the render instructions which match an element, keyed by the tag IDs of the element in its
+ * map file.
+ * <p>
+ * The matching result only depends on the tag IDs, the zoom level and the element type, as long as the tags without
+ * ID, like the name, do not have a value to which a rule refers. The keys of these tags are part of the cache key
+ * if a rule refers to them. Looking up an element neither allocates a key object nor compares strings for the tags
+ * with ID: the hash code is calculated from the IDs and the tags are compared by identity, which also separates the
+ * tag tables of different map files.
+ * <p>
+ * The cache is a fixed-size hash table in which every key may be stored in one of two adjacent slots. The entries are
+ * immutable and the table is accessed without locks. A thread may therefore miss an entry which another thread has
+ * just stored or overwrite it, in which case the element is simply matched again.
+ */
+final class MatchingCache {
+	private static final class Entry {
+		final int elementType;
+		final int hash;
+		final Tag[] idTags;
+		final RenderInstruction[] renderInstructions;
+		final String[] ruleKeys;
+		final byte zoomLevel;
+
+		Entry(int hash, Tag[] idTags, String[] ruleKeys, byte zoomLevel, int elementType,
+				RenderInstruction[] renderInstructions) {
+			this.hash = hash;
+			this.idTags = idTags;
+			this.ruleKeys = ruleKeys;
+			this.zoomLevel = zoomLevel;
+			this.elementType = elementType;
+			this.renderInstructions = renderInstructions;
+		}
+	}
+
+	private static final RenderInstruction[] EMPTY = new RenderInstruction[0];
+
+	private final Entry[] entries;
+	private final int mask;
+	private final RuleIndex ruleIndex;
+
+	/**
+	 * @param ruleIndex
+	 *            the rules against which the elements are matched.
+	 * @param capacity
+	 *            the maximum number of entries, must be a power of two and at least two.
+	 */
+	MatchingCache(RuleIndex ruleIndex, int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+		}
+		this.ruleIndex = ruleIndex;
+		this.entries = new Entry[capacity];
+		this.mask = capacity - 1;
+	}
+
+	void clear() {
+		Arrays.fill(this.entries, null);
+	}
+
+	/**
+	 * Returns the render instructions which match the given element, in the order of the rule tree.
+	 * 
+	 * @param tags
+	 *            the tags of the element, the tags with ID first.
+	 * @param tagIds
+	 *            the sorted IDs of the first {@code tagIds.length} tags.
+	 * @param zoomLevel
+	 *            the zoom level at which the element should be matched.
+	 * @param elementType
+	 *            {@link RuleIndex#NODE}, {@link RuleIndex#LINEAR_WAY} or {@link RuleIndex#CLOSED_WAY}.
+	 * @return the matching render instructions, the array must not be modified.
+	 */
+	RenderInstruction[] match(List<Tag> tags, int[] tagIds, byte zoomLevel, int elementType) {
+		int hash = 31 * elementType + zoomLevel;
+		for (int i = 0; i < tagIds.length; ++i) {
+			hash = 31 * hash + tagIds[i];
+		}
+		for (int i = tagIds.length, n = tags.size(); i < n; ++i) {
+			Tag tag = tags.get(i);
+			if (this.ruleIndex.isValue(tag.value)) {
+				// the value is not part of the cache key
+				return matchRules(tags, zoomLevel, elementType);
+			} else if (this.ruleIndex.isKey(tag.key)) {
+				hash = 31 * hash + tag.key.hashCode();
+			}
+		}
+		hash ^= hash >>> 16;
+
+		int index = hash & this.mask & ~1;
+		Entry entry = this.entries[index];
+		if (entry != null && matches(entry, hash, tags, tagIds.length, zoomLevel, elementType)) {
+			return entry.renderInstructions;
+		}
+		Entry secondEntry = this.entries[index + 1];
+		if (secondEntry != null && matches(secondEntry, hash, tags, tagIds.length, zoomLevel, elementType)) {
+			return secondEntry.renderInstructions;
+		}
+
+		// cache miss, the most recently stored entry moves into the first slot
+		RenderInstruction[] renderInstructions = matchRules(tags, zoomLevel, elementType);
+		Entry newEntry = new Entry(hash, getIdTags(tags, tagIds.length), getRuleKeys(tags, tagIds.length),
+				zoomLevel, elementType, renderInstructions);
+		if (entry != null) {
+			this.entries[index + 1] = entry;
+		}
+		this.entries[index] = newEntry;
+		return renderInstructions;
+	}
+
+	private Tag[] getIdTags(List<Tag> tags, int numberOfIdTags) {
+		Tag[] idTags = new Tag[numberOfIdTags];
+		for (int i = 0; i < numberOfIdTags; ++i) {
+			idTags[i] = tags.get(i);
+		}
+		return idTags;
+	}
+
+	private String[] getRuleKeys(List<Tag> tags, int numberOfIdTags) {
+		List<String> ruleKeys = new ArrayList<String>();
+		for (int i = numberOfIdTags, n = tags.size(); i < n; ++i) {
+			String key = tags.get(i).key;
+			if (this.ruleIndex.isKey(key)) {
+				ruleKeys.add(key);
+			}
+		}
+		return ruleKeys.toArray(new String[ruleKeys.size()]);
+	}
+
+	private RenderInstruction[] matchRules(List<Tag> tags, byte zoomLevel, int elementType) {
+		List<RenderInstruction> matchingList = new ArrayList<RenderInstruction>();
+		this.ruleIndex.match(tags, zoomLevel, elementType, matchingList);
+		if (matchingList.isEmpty()) {
+			return EMPTY;
+		}
+		return matchingList.toArray(new RenderInstruction[matchingList.size()]);
+	}
+
+	private boolean matches(Entry entry, int hash, List<Tag> tags, int numberOfIdTags, byte zoomLevel,
+			int elementType) {
+		if (entry.hash != hash || entry.zoomLevel != zoomLevel || entry.elementType != elementType
+				|| entry.idTags.length != numberOfIdTags) {
+			return false;
+		}
+		for (int i = 0; i < numberOfIdTags; ++i) {
+			if (entry.idTags[i] != tags.get(i)) {
+				return false;
+			}
+		}
+
+		int ruleKey = 0;
+		for (int i = numberOfIdTags, n = tags.size(); i < n; ++i) {
+			String key = tags.get(i).key;
+			if (this.ruleIndex.isKey(key)) {
+				if (ruleKey == entry.ruleKeys.length || !entry.ruleKeys[ruleKey].equals(key)) {
+					return false;
+				}
+				++ruleKey;
+			}
+		}
+		return ruleKey == entry.ruleKeys.length;
+	}
+}
@@ -19,8 +19,8 @@ import java.util.List;
 import org.mapsforge.core.model.Tag;
 
 class NegativeMatcher implements AttributeMatcher {
-	private final List<String> keyList;
-	private final List<String> valueList;
+	final List<String> keyList;
+	final List<String> valueList;
 
 	NegativeMatcher(List<String> keyList, List<String> valueList) {
 		this.keyList = keyList;
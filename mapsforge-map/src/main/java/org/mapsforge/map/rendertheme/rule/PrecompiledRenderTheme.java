@@ -0,0 +1,607 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.renderinstruction.AreaBuilder;
+import org.mapsforge.map.rendertheme.renderinstruction.CaptionBuilder;
+import org.mapsforge.map.rendertheme.renderinstruction.CircleBuilder;
+import org.mapsforge.map.rendertheme.renderinstruction.LineBuilder;
+import org.mapsforge.map.rendertheme.renderinstruction.LineSymbolBuilder;
+import org.mapsforge.map.rendertheme.renderinstruction.PathTextBuilder;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+import org.mapsforge.map.rendertheme.renderinstruction.Symbol;
+import org.mapsforge.map.rendertheme.renderinstruction.SymbolBuilder;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Writes render themes in a compact binary form and reads them without parsing XML.
+ * <p>
+ * The binary form contains the rule tree after it has been optimized by the {@link RuleOptimizer}. The render
+ * instructions are stored with the attributes of their XML elements and are built again when the render theme is
+ * read, because their paints and bitmaps depend on the graphic factory and the display model. Symbols therefore
+ * remain references to their resources. The CRC32 checksum of the XML file is stored as well, a precompiled render
+ * theme is not read if its XML file has changed since.
+ * <p>
+ * Render themes with a style menu cannot be precompiled.
+ */
+public final class PrecompiledRenderTheme {
+	/**
+	 * The render instructions and sub-rules of a rule element in the XML file.
+	 */
+	private static final class RuleSource {
+		final List<Integer> renderInstructions = new ArrayList<Integer>();
+		final List<RuleSource> subRules = new ArrayList<RuleSource>();
+	}
+
+	/**
+	 * Collects the elements of an XML render theme in document order.
+	 */
+	private static final class SourceHandler extends DefaultHandler {
+		final List<String[]> renderInstructions = new ArrayList<String[]>();
+		String[] renderTheme;
+		final List<RuleSource> rules = new ArrayList<RuleSource>();
+		private final Stack<RuleSource> ruleStack = new Stack<RuleSource>();
+
+		SourceHandler() {
+			super();
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if (ELEMENT_NAME_RULE.equals(qName)) {
+				this.ruleStack.pop();
+			}
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+				throws SAXException {
+			if (ELEMENT_NAME_RENDER_THEME.equals(qName)) {
+				this.renderTheme = toElement(qName, attributes);
+			} else if (ELEMENT_NAME_RULE.equals(qName)) {
+				RuleSource ruleSource = new RuleSource();
+				if (this.ruleStack.empty()) {
+					this.rules.add(ruleSource);
+				} else {
+					this.ruleStack.peek().subRules.add(ruleSource);
+				}
+				this.ruleStack.push(ruleSource);
+			} else if (ELEMENT_NAME_STYLE_MENU.equals(qName)) {
+				throw new SAXException("render themes with a style menu cannot be precompiled");
+			} else if (!this.ruleStack.empty()) {
+				// all other elements within a rule are render instructions
+				this.ruleStack.peek().renderInstructions.add(Integer.valueOf(this.renderInstructions.size()));
+				this.renderInstructions.add(toElement(qName, attributes));
+			}
+		}
+	}
+
+	private static final byte CLOSED_ANY = 0;
+	private static final byte CLOSED_NO = 2;
+	private static final byte CLOSED_YES = 1;
+	private static final byte ELEMENT_ANY = 0;
+	private static final String ELEMENT_NAME_RENDER_THEME = "rendertheme";
+	private static final String ELEMENT_NAME_RULE = "rule";
+	private static final String ELEMENT_NAME_STYLE_MENU = "stylemenu";
+	private static final byte ELEMENT_NODE = 1;
+	private static final byte ELEMENT_WAY = 2;
+	private static final int FORMAT_VERSION = 1;
+	private static final Logger LOGGER = Logger.getLogger(PrecompiledRenderTheme.class.getName());
+	private static final String MAGIC = "mapsforge precompiled render theme";
+	private static final byte MATCHER_ANY = 0;
+	private static final byte MATCHER_KEYS = 1;
+	private static final byte MATCHER_VALUES = 2;
+	private static final int NO_STRING = 0xffff;
+	private static final byte RULE_NEGATIVE = 1;
+	private static final byte RULE_POSITIVE = 0;
+
+	/**
+	 * Reads a render theme which has been written by {@link #write}. The input stream is closed afterwards.
+	 * 
+	 * @param graphicFactory
+	 *            the graphic factory which creates the paints and bitmaps of the render theme.
+	 * @param displayModel
+	 *            the display model whose scale factor and tiling size are used by the render theme.
+	 * @param xmlRenderTheme
+	 *            the XML render theme which has been precompiled, it provides the prefix for all relative resource
+	 *            paths and the data for the checksum.
+	 * @param inputStream
+	 *            the precompiled render theme (may be null).
+	 * @return the render theme, or null if the input stream is null, the precompiled render theme has been written in
+	 *         another format version or the XML file has changed since.
+	 * @throws SAXException
+	 *             if a render instruction has an invalid attribute.
+	 * @throws IOException
+	 *             if an error occurs while reading the data.
+	 */
+	public static RenderTheme read(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme, InputStream inputStream) throws SAXException, IOException {
+		if (inputStream == null) {
+			return null;
+		}
+
+		try {
+			DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
+			if (!MAGIC.equals(dataInputStream.readUTF())) {
+				throw new IOException("not a precompiled render theme");
+			}
+			int formatVersion = dataInputStream.readInt();
+			if (formatVersion != FORMAT_VERSION) {
+				LOGGER.warning("unsupported format version: " + formatVersion);
+				return null;
+			}
+			long checksum = dataInputStream.readLong();
+			if (checksum != getChecksum(xmlRenderTheme)) {
+				LOGGER.warning("the precompiled render theme is outdated");
+				return null;
+			}
+
+			String[] strings = new String[dataInputStream.readUnsignedShort()];
+			for (int i = 0; i < strings.length; ++i) {
+				strings[i] = dataInputStream.readUTF();
+			}
+
+			return new PrecompiledRenderTheme(graphicFactory, displayModel, xmlRenderTheme.getRelativePathPrefix(),
+					dataInputStream, strings).readRenderTheme();
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	/**
+	 * Parses the given XML render theme and writes it in the binary form to the given output stream, which is not
+	 * closed afterwards.
+	 * 
+	 * @param graphicFactory
+	 *            the graphic factory with which the render theme is parsed.
+	 * @param renderThemeFile
+	 *            the XML render theme file.
+	 * @param outputStream
+	 *            the stream to which the precompiled render theme is written.
+	 * @throws SAXException
+	 *             if an error occurs while parsing the render theme XML or if it has a style menu.
+	 * @throws ParserConfigurationException
+	 *             if an error occurs while creating the XML parser.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static void write(GraphicFactory graphicFactory, File renderThemeFile, OutputStream outputStream)
+			throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(renderThemeFile);
+
+		// the rule tree is written with the matchers which have been optimized while parsing
+		RenderTheme renderTheme = RenderThemeHandler.getRenderTheme(graphicFactory, new DisplayModel(),
+				xmlRenderTheme);
+		InputStream inputStream = null;
+		try {
+			// the render instructions are written with the attributes of their XML elements
+			SourceHandler sourceHandler = new SourceHandler();
+			inputStream = xmlRenderTheme.getRenderThemeAsStream();
+			SAXParserFactory.newInstance().newSAXParser().parse(inputStream, sourceHandler);
+
+			Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			writeBody(new DataOutputStream(body), strings, renderTheme, sourceHandler);
+
+			DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+			dataOutputStream.writeUTF(MAGIC);
+			dataOutputStream.writeInt(FORMAT_VERSION);
+			dataOutputStream.writeLong(getChecksum(xmlRenderTheme));
+			dataOutputStream.writeShort(strings.size());
+			for (String string : strings.keySet()) {
+				dataOutputStream.writeUTF(string);
+			}
+			body.writeTo(dataOutputStream);
+			dataOutputStream.flush();
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+			renderTheme.destroy();
+		}
+	}
+
+	private static long getChecksum(XmlRenderTheme xmlRenderTheme) throws IOException {
+		InputStream inputStream = null;
+		try {
+			inputStream = xmlRenderTheme.getRenderThemeAsStream();
+			if (inputStream == null) {
+				throw new FileNotFoundException("render theme not found: " + xmlRenderTheme);
+			}
+			CRC32 crc32 = new CRC32();
+			byte[] buffer = new byte[8192];
+			int bytesRead;
+			while ((bytesRead = inputStream.read(buffer)) != -1) {
+				crc32.update(buffer, 0, bytesRead);
+			}
+			return crc32.getValue();
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	private static String[] toElement(String elementName, Attributes attributes) {
+		String[] element = new String[1 + attributes.getLength() * 2];
+		element[0] = elementName;
+		for (int i = 0; i < attributes.getLength(); ++i) {
+			element[1 + i * 2] = attributes.getQName(i);
+			element[2 + i * 2] = attributes.getValue(i);
+		}
+		return element;
+	}
+
+	private static void writeAttributeMatcher(DataOutputStream dataOutputStream, Map<String, Integer> strings,
+			AttributeMatcher attributeMatcher) throws IOException {
+		if (attributeMatcher instanceof AnyMatcher) {
+			dataOutputStream.writeByte(MATCHER_ANY);
+		} else if (attributeMatcher instanceof KeyMatcher) {
+			dataOutputStream.writeByte(MATCHER_KEYS);
+			writeStrings(dataOutputStream, strings, ((KeyMatcher) attributeMatcher).keys);
+		} else if (attributeMatcher instanceof ValueMatcher) {
+			dataOutputStream.writeByte(MATCHER_VALUES);
+			writeStrings(dataOutputStream, strings, ((ValueMatcher) attributeMatcher).values);
+		} else {
+			throw new IllegalArgumentException("unknown AttributeMatcher: " + attributeMatcher);
+		}
+	}
+
+	private static void writeBody(DataOutputStream dataOutputStream, Map<String, Integer> strings,
+			RenderTheme renderTheme, SourceHandler sourceHandler) throws IOException {
+		writeElement(dataOutputStream, strings, sourceHandler.renderTheme);
+		dataOutputStream.writeInt(renderTheme.getLevels());
+
+		dataOutputStream.writeInt(sourceHandler.renderInstructions.size());
+		for (String[] element : sourceHandler.renderInstructions) {
+			writeElement(dataOutputStream, strings, element);
+		}
+
+		writeRules(dataOutputStream, strings, renderTheme.rulesList, sourceHandler.rules);
+	}
+
+	private static void writeElement(DataOutputStream dataOutputStream, Map<String, Integer> strings,
+			String[] element) throws IOException {
+		writeString(dataOutputStream, strings, element[0]);
+		dataOutputStream.writeShort(element.length / 2);
+		for (int i = 1; i < element.length; ++i) {
+			writeString(dataOutputStream, strings, element[i]);
+		}
+	}
+
+	private static void writeRule(DataOutputStream dataOutputStream, Map<String, Integer> strings, Rule rule,
+			RuleSource ruleSource) throws IOException {
+		if (rule instanceof NegativeRule) {
+			dataOutputStream.writeByte(RULE_NEGATIVE);
+		} else {
+			dataOutputStream.writeByte(RULE_POSITIVE);
+		}
+
+		if (rule.elementMatcher instanceof ElementNodeMatcher) {
+			dataOutputStream.writeByte(ELEMENT_NODE);
+		} else if (rule.elementMatcher instanceof ElementWayMatcher) {
+			dataOutputStream.writeByte(ELEMENT_WAY);
+		} else {
+			dataOutputStream.writeByte(ELEMENT_ANY);
+		}
+
+		if (rule.closedMatcher instanceof ClosedWayMatcher) {
+			dataOutputStream.writeByte(CLOSED_YES);
+		} else if (rule.closedMatcher instanceof LinearWayMatcher) {
+			dataOutputStream.writeByte(CLOSED_NO);
+		} else {
+			dataOutputStream.writeByte(CLOSED_ANY);
+		}
+
+		dataOutputStream.writeByte(rule.zoomMin);
+		dataOutputStream.writeByte(rule.zoomMax);
+		writeString(dataOutputStream, strings, rule.cat);
+
+		if (rule instanceof NegativeRule) {
+			NegativeMatcher negativeMatcher = (NegativeMatcher) ((NegativeRule) rule).attributeMatcher;
+			writeStrings(dataOutputStream, strings, negativeMatcher.keyList);
+			writeStrings(dataOutputStream, strings, negativeMatcher.valueList);
+		} else {
+			PositiveRule positiveRule = (PositiveRule) rule;
+			writeAttributeMatcher(dataOutputStream, strings, positiveRule.keyMatcher);
+			writeAttributeMatcher(dataOutputStream, strings, positiveRule.valueMatcher);
+		}
+
+		dataOutputStream.writeInt(ruleSource.renderInstructions.size());
+		for (Integer renderInstruction : ruleSource.renderInstructions) {
+			dataOutputStream.writeInt(renderInstruction.intValue());
+		}
+
+		writeRules(dataOutputStream, strings, rule.subRules, ruleSource.subRules);
+	}
+
+	private static void writeRules(DataOutputStream dataOutputStream, Map<String, Integer> strings, List<Rule> rules,
+			List<RuleSource> ruleSources) throws IOException {
+		if (rules.size() != ruleSources.size()) {
+			throw new IllegalStateException("the rule tree does not match the XML file");
+		}
+		dataOutputStream.writeInt(rules.size());
+		for (int i = 0, n = rules.size(); i < n; ++i) {
+			writeRule(dataOutputStream, strings, rules.get(i), ruleSources.get(i));
+		}
+	}
+
+	private static void writeString(DataOutputStream dataOutputStream, Map<String, Integer> strings, String string)
+			throws IOException {
+		if (string == null) {
+			dataOutputStream.writeShort(NO_STRING);
+			return;
+		}
+
+		Integer index = strings.get(string);
+		if (index == null) {
+			if (strings.size() >= NO_STRING) {
+				throw new IllegalArgumentException("too many distinct strings: " + strings.size());
+			}
+			index = Integer.valueOf(strings.size());
+			strings.put(string, index);
+		}
+		dataOutputStream.writeShort(index.intValue());
+	}
+
+	private static void writeStrings(DataOutputStream dataOutputStream, Map<String, Integer> strings,
+			List<String> list) throws IOException {
+		dataOutputStream.writeShort(list.size());
+		for (String string : list) {
+			writeString(dataOutputStream, strings, string);
+		}
+	}
+
+	private final DataInputStream dataInputStream;
+	private final DisplayModel displayModel;
+	private final GraphicFactory graphicFactory;
+	private final Map<List<String>, AttributeMatcher> keyMatchers = new HashMap<List<String>, AttributeMatcher>();
+	private int level;
+	private final String relativePathPrefix;
+	private RenderInstruction[] renderInstructions;
+	private final String[] strings;
+	private final HashMap<String, Symbol> symbols = new HashMap<String, Symbol>();
+	private final Map<List<String>, AttributeMatcher> valueMatchers = new HashMap<List<String>, AttributeMatcher>();
+
+	private PrecompiledRenderTheme(GraphicFactory graphicFactory, DisplayModel displayModel,
+			String relativePathPrefix, DataInputStream dataInputStream, String[] strings) {
+		this.graphicFactory = graphicFactory;
+		this.displayModel = displayModel;
+		this.relativePathPrefix = relativePathPrefix;
+		this.dataInputStream = dataInputStream;
+		this.strings = strings;
+	}
+
+	private RenderInstruction createRenderInstruction(String elementName, Attributes attributes)
+			throws IOException, SAXException {
+		// the same builders as in the RenderThemeHandler, in the same order, so that levels and symbol IDs match
+		if ("area".equals(elementName)) {
+			return new AreaBuilder(this.graphicFactory, this.displayModel, elementName, attributes, this.level++,
+					this.relativePathPrefix).build();
+		} else if ("caption".equals(elementName)) {
+			return new CaptionBuilder(this.graphicFactory, this.displayModel, elementName, attributes, this.symbols)
+					.build();
+		} else if ("circle".equals(elementName)) {
+			return new CircleBuilder(this.graphicFactory, this.displayModel, elementName, attributes, this.level++)
+					.build();
+		} else if ("line".equals(elementName)) {
+			return new LineBuilder(this.graphicFactory, this.displayModel, elementName, attributes, this.level++,
+					this.relativePathPrefix).build();
+		} else if ("lineSymbol".equals(elementName)) {
+			return new LineSymbolBuilder(this.graphicFactory, this.displayModel, elementName, attributes,
+					this.relativePathPrefix).build();
+		} else if ("pathText".equals(elementName)) {
+			return new PathTextBuilder(this.graphicFactory, this.displayModel, elementName, attributes).build();
+		} else if ("symbol".equals(elementName)) {
+			Symbol symbol = new SymbolBuilder(this.graphicFactory, this.displayModel, elementName, attributes,
+					this.relativePathPrefix).build();
+			if (symbol.getId() != null) {
+				this.symbols.put(symbol.getId(), symbol);
+			}
+			return symbol;
+		}
+		throw new SAXException("unknown element: " + elementName);
+	}
+
+	private AttributeMatcher readAttributeMatcher() throws IOException {
+		byte type = this.dataInputStream.readByte();
+		switch (type) {
+			case MATCHER_ANY:
+				return AnyMatcher.INSTANCE;
+			case MATCHER_KEYS:
+				List<String> keys = readStrings();
+				AttributeMatcher keyMatcher = this.keyMatchers.get(keys);
+				if (keyMatcher == null) {
+					keyMatcher = new KeyMatcher(keys);
+					this.keyMatchers.put(keys, keyMatcher);
+				}
+				return keyMatcher;
+			case MATCHER_VALUES:
+				List<String> values = readStrings();
+				AttributeMatcher valueMatcher = this.valueMatchers.get(values);
+				if (valueMatcher == null) {
+					valueMatcher = new ValueMatcher(values);
+					this.valueMatchers.put(values, valueMatcher);
+				}
+				return valueMatcher;
+			default:
+				throw new IOException("invalid attribute matcher: " + type);
+		}
+	}
+
+	private Attributes readAttributes() throws IOException {
+		AttributesImpl attributes = new AttributesImpl();
+		for (int i = this.dataInputStream.readUnsignedShort(); i > 0; --i) {
+			String name = readString();
+			attributes.addAttribute("", name, name, "CDATA", readString());
+		}
+		return attributes;
+	}
+
+	private ClosedMatcher readClosedMatcher() throws IOException {
+		byte closed = this.dataInputStream.readByte();
+		switch (closed) {
+			case CLOSED_ANY:
+				return AnyMatcher.INSTANCE;
+			case CLOSED_NO:
+				return LinearWayMatcher.INSTANCE;
+			case CLOSED_YES:
+				return ClosedWayMatcher.INSTANCE;
+			default:
+				throw new IOException("invalid closed value: " + closed);
+		}
+	}
+
+	private ElementMatcher readElementMatcher() throws IOException {
+		byte element = this.dataInputStream.readByte();
+		switch (element) {
+			case ELEMENT_ANY:
+				return AnyMatcher.INSTANCE;
+			case ELEMENT_NODE:
+				return ElementNodeMatcher.INSTANCE;
+			case ELEMENT_WAY:
+				return ElementWayMatcher.INSTANCE;
+			default:
+				throw new IOException("invalid element value: " + element);
+		}
+	}
+
+	private RenderTheme readRenderTheme() throws IOException, SAXException {
+		String elementName = readString();
+		RenderTheme renderTheme = new RenderThemeBuilder(this.graphicFactory, elementName, readAttributes()).build();
+		int levels = this.dataInputStream.readInt();
+
+		this.renderInstructions = new RenderInstruction[this.dataInputStream.readInt()];
+		boolean success = false;
+		try {
+			for (int i = 0; i < this.renderInstructions.length; ++i) {
+				elementName = readString();
+				Attributes attributes = readAttributes();
+				try {
+					this.renderInstructions[i] = createRenderInstruction(elementName, attributes);
+				} catch (IOException e) {
+					// like the RenderThemeHandler, skip render instructions with a missing resource
+					LOGGER.warning("Rendertheme missing or invalid resource " + e.getMessage());
+				}
+			}
+
+			for (Rule rule : readRules()) {
+				renderTheme.addRule(rule);
+			}
+			renderTheme.setLevels(levels);
+			renderTheme.complete();
+			success = true;
+			return renderTheme;
+		} finally {
+			if (!success) {
+				for (RenderInstruction renderInstruction : this.renderInstructions) {
+					if (renderInstruction != null) {
+						renderInstruction.destroy();
+					}
+				}
+			}
+		}
+	}
+
+	private Rule readRule() throws IOException {
+		byte type = this.dataInputStream.readByte();
+		ElementMatcher elementMatcher = readElementMatcher();
+		ClosedMatcher closedMatcher = readClosedMatcher();
+		byte zoomMin = this.dataInputStream.readByte();
+		byte zoomMax = this.dataInputStream.readByte();
+		RuleBuilder ruleBuilder = new RuleBuilder(readString(), elementMatcher, closedMatcher, zoomMin, zoomMax);
+
+		Rule rule;
+		if (type == RULE_NEGATIVE) {
+			List<String> keyList = readStrings();
+			rule = new NegativeRule(ruleBuilder, new NegativeMatcher(keyList, readStrings()));
+		} else if (type == RULE_POSITIVE) {
+			AttributeMatcher keyMatcher = readAttributeMatcher();
+			rule = new PositiveRule(ruleBuilder, keyMatcher, readAttributeMatcher());
+		} else {
+			throw new IOException("invalid rule type: " + type);
+		}
+
+		for (int i = this.dataInputStream.readInt(); i > 0; --i) {
+			int index = this.dataInputStream.readInt();
+			if (index < 0 || index >= this.renderInstructions.length) {
+				throw new IOException("invalid render instruction index: " + index);
+			} else if (this.renderInstructions[index] != null) {
+				rule.addRenderingInstruction(this.renderInstructions[index]);
+			}
+		}
+
+		for (Rule subRule : readRules()) {
+			rule.addSubRule(subRule);
+		}
+		return rule;
+	}
+
+	private List<Rule> readRules() throws IOException {
+		int size = this.dataInputStream.readInt();
+		if (size < 0) {
+			throw new IOException("invalid number of rules: " + size);
+		}
+		List<Rule> rules = new ArrayList<Rule>(size);
+		for (int i = 0; i < size; ++i) {
+			rules.add(readRule());
+		}
+		return rules;
+	}
+
+	private String readString() throws IOException {
+		int index = this.dataInputStream.readUnsignedShort();
+		if (index == NO_STRING) {
+			return null;
+		} else if (index >= this.strings.length) {
+			throw new IOException("invalid string index: " + index);
+		}
+		return this.strings[index];
+	}
+
+	private List<String> readStrings() throws IOException {
+		int size = this.dataInputStream.readUnsignedShort();
+		List<String> list = new ArrayList<String>(size);
+		for (int i = 0; i < size; ++i) {
+			list.add(readString());
+		}
+		return list;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+/**
+ * The zoom level and the scale factors with which the elements of a tile are matched and rendered. Instances are
+ * immutable and obtained from {@link RenderTheme#getRenderContext(byte, float, float)}, so that several threads can
+ * render tiles with different scale factors using the same {@link RenderTheme}.
+ */
+public final class RenderContext {
+	/**
+	 * The index of the stroke scale factor among all stroke scale factors which have been used with the render theme.
+	 */
+	public final int strokeIndex;
+
+	/**
+	 * The factor by which the stroke widths are scaled, including the base stroke width of the render theme.
+	 */
+	public final float strokeScaleFactor;
+
+	/**
+	 * The index of the text scale factor among all text scale factors which have been used with the render theme.
+	 */
+	public final int textIndex;
+
+	/**
+	 * The factor by which the text sizes are scaled, including the base text size of the render theme.
+	 */
+	public final float textScaleFactor;
+
+	/**
+	 * The zoom level at which the elements are matched.
+	 */
+	public final byte zoomLevel;
+
+	RenderContext(byte zoomLevel, int strokeIndex, float strokeScaleFactor, int textIndex, float textScaleFactor) {
+		this.zoomLevel = zoomLevel;
+		this.strokeIndex = strokeIndex;
+		this.strokeScaleFactor = strokeScaleFactor;
+		this.textIndex = textIndex;
+		this.textScaleFactor = textScaleFactor;
+	}
+}
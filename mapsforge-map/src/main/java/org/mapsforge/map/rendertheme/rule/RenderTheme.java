@@ -19,30 +19,46 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mapsforge.core.model.Tag;
-import org.mapsforge.core.util.LRUCache;
 import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
 
 /**
  * A RenderTheme defines how ways and nodes are drawn.
+ * <p>
+ * Matching and rendering do not modify a RenderTheme, so one instance can be used by several threads at the same
+ * time, each of them with the {@link RenderContext} of the tile it renders.
  */
 public class RenderTheme {
-	private static final int MATCHING_CACHE_SIZE = 512;
+	private static final int MATCHING_CACHE_SIZE = 4096;
+	private static final int[] NO_TAG_IDS = new int[0];
 
+	/**
+	 * @return the index of the given scale factor in the given list, to which it is added if necessary.
+	 */
+	private static int getIndex(List<Float> scaleFactors, float scaleFactor) {
+		int index = scaleFactors.indexOf(Float.valueOf(scaleFactor));
+		if (index < 0) {
+			scaleFactors.add(Float.valueOf(scaleFactor));
+			return scaleFactors.size() - 1;
+		}
+		return index;
+	}
+
+	final ArrayList<Rule> rulesList; // NOPMD we need specific interface
 	private final float baseStrokeWidth;
 	private final float baseTextSize;
 	private int levels;
 	private final int mapBackground;
-	private final LRUCache<MatchingCacheKey, List<RenderInstruction>> matchingCache;
+	private MatchingCache matchingCache;
 	private final AtomicInteger refCount = new AtomicInteger();
-	private final ArrayList<Rule> rulesList; // NOPMD we need specific interface
+	private final List<Float> strokeScaleFactors = new ArrayList<Float>();
+	private final List<Float> textScaleFactors = new ArrayList<Float>();
 
 	RenderTheme(RenderThemeBuilder renderThemeBuilder) {
 		this.baseStrokeWidth = renderThemeBuilder.baseStrokeWidth;
 		this.baseTextSize = renderThemeBuilder.baseTextSize;
 		this.mapBackground = renderThemeBuilder.mapBackground;
 		this.rulesList = new ArrayList<>();
-		this.matchingCache = new LRUCache<>(MATCHING_CACHE_SIZE);
 	}
 
 	/**
@@ -50,7 +66,9 @@ public class RenderTheme {
 	 */
 	public void destroy() {
 		if (this.refCount.decrementAndGet() < 0) {
-			this.matchingCache.clear();
+			if (this.matchingCache != null) {
+				this.matchingCache.clear();
+			}
 			for (Rule r : this.rulesList) {
 				r.destroy();
 			}
@@ -71,6 +89,25 @@ public class RenderTheme {
 		return this.mapBackground;
 	}
 
+	/**
+	 * Returns the context for rendering the elements of a tile with this RenderTheme. The scaled paints of every
+	 * distinct combination of scale factors are created once and shared by all threads which render with it.
+	 * 
+	 * @param zoomLevel
+	 *            the zoom level at which the elements should be matched.
+	 * @param strokeScaleFactor
+	 *            the factor by which the stroke widths should be scaled.
+	 * @param textScaleFactor
+	 *            the factor by which the text sizes should be scaled.
+	 * @return the render context.
+	 */
+	public synchronized RenderContext getRenderContext(byte zoomLevel, float strokeScaleFactor, float textScaleFactor) {
+		float strokeScale = strokeScaleFactor * this.baseStrokeWidth;
+		float textScale = textScaleFactor * this.baseTextSize;
+		return new RenderContext(zoomLevel, getIndex(this.strokeScaleFactors, strokeScale), strokeScale, getIndex(
+				this.textScaleFactors, textScale), textScale);
+	}
+
 	public void incrementRefCount() {
 		this.refCount.incrementAndGet();
 	}
@@ -80,13 +117,30 @@ public class RenderTheme {
 	 * 
 	 * @param renderCallback
 	 *            the callback implementation which will be executed on each match.
+	 * @param renderContext
+	 *            the zoom level and the scale factors with which the way should be matched and rendered.
 	 * @param tags
 	 *            the tags of the way.
-	 * @param zoomLevel
-	 *            the zoom level at which the way should be matched.
 	 */
-	public void matchClosedWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		matchWay(renderCallback, tags, zoomLevel, Closed.YES);
+	public void matchClosedWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
+		matchClosedWay(renderCallback, renderContext, tags, NO_TAG_IDS);
+	}
+
+	/**
+	 * Matches a closed way with the given parameters against this RenderTheme.
+	 * 
+	 * @param renderCallback
+	 *            the callback implementation which will be executed on each match.
+	 * @param renderContext
+	 *            the zoom level and the scale factors with which the way should be matched and rendered.
+	 * @param tags
+	 *            the tags of the way, the tags with ID first.
+	 * @param tagIds
+	 *            the sorted IDs of the first {@code tagIds.length} tags in the tag table of the map file.
+	 */
+	public void matchClosedWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags,
+			int[] tagIds) {
+		matchWay(renderCallback, renderContext, tags, tagIds, RuleIndex.CLOSED_WAY);
 	}
 
 	/**
@@ -94,52 +148,65 @@ public class RenderTheme {
 	 * 
 	 * @param renderCallback
 	 *            the callback implementation which will be executed on each match.
+	 * @param renderContext
+	 *            the zoom level and the scale factors with which the way should be matched and rendered.
 	 * @param tags
 	 *            the tags of the way.
-	 * @param zoomLevel
-	 *            the zoom level at which the way should be matched.
 	 */
-	public void matchLinearWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		matchWay(renderCallback, tags, zoomLevel, Closed.NO);
+	public void matchLinearWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
+		matchLinearWay(renderCallback, renderContext, tags, NO_TAG_IDS);
 	}
 
 	/**
-	 * Matches a node with the given parameters against this RenderTheme.
+	 * Matches a linear way with the given parameters against this RenderTheme.
 	 * 
 	 * @param renderCallback
 	 *            the callback implementation which will be executed on each match.
+	 * @param renderContext
+	 *            the zoom level and the scale factors with which the way should be matched and rendered.
 	 * @param tags
-	 *            the tags of the node.
-	 * @param zoomLevel
-	 *            the zoom level at which the node should be matched.
+	 *            the tags of the way, the tags with ID first.
+	 * @param tagIds
+	 *            the sorted IDs of the first {@code tagIds.length} tags in the tag table of the map file.
 	 */
-	public void matchNode(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).matchNode(renderCallback, tags, zoomLevel);
-		}
+	public void matchLinearWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags,
+			int[] tagIds) {
+		matchWay(renderCallback, renderContext, tags, tagIds, RuleIndex.LINEAR_WAY);
 	}
 
 	/**
-	 * Scales the stroke width of this RenderTheme by the given factor.
+	 * Matches a node with the given parameters against this RenderTheme.
 	 * 
-	 * @param scaleFactor
-	 *            the factor by which the stroke width should be scaled.
+	 * @param renderCallback
+	 *            the callback implementation which will be executed on each match.
+	 * @param renderContext
+	 *            the zoom level and the scale factors with which the node should be matched and rendered.
+	 * @param tags
+	 *            the tags of the node.
 	 */
-	public void scaleStrokeWidth(float scaleFactor) {
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).scaleStrokeWidth(scaleFactor * this.baseStrokeWidth);
-		}
+	public void matchNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags) {
+		matchNode(renderCallback, renderContext, tags, NO_TAG_IDS);
 	}
 
 	/**
-	 * Scales the text size of this RenderTheme by the given factor.
+	 * Matches a node with the given parameters against this RenderTheme.
+	 * <p>
+	 * The tag IDs allow to cache the matching result, elements of the same map file with the same tag IDs must share
+	 * the same {@link Tag} objects.
 	 * 
-	 * @param scaleFactor
-	 *            the factor by which the text size should be scaled.
+	 * @param renderCallback
+	 *            the callback implementation which will be executed on each match.
+	 * @param renderContext
+	 *            the zoom level and the scale factors with which the node should be matched and rendered.
+	 * @param tags
+	 *            the tags of the node, the tags with ID first.
+	 * @param tagIds
+	 *            the sorted IDs of the first {@code tagIds.length} tags in the tag table of the map file.
 	 */
-	public void scaleTextSize(float scaleFactor) {
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).scaleTextSize(scaleFactor * this.baseTextSize);
+	public void matchNode(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags, int[] tagIds) {
+		RenderInstruction[] renderInstructions = match(tags, tagIds, renderContext.zoomLevel, RuleIndex.NODE);
+		for (int i = 0; i < renderInstructions.length; ++i) {
+			renderInstructions[i].renderNode(renderCallback, renderContext, tags);
 		}
 	}
 
@@ -152,30 +219,25 @@ public class RenderTheme {
 		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
 			this.rulesList.get(i).onComplete();
 		}
+		this.matchingCache = new MatchingCache(new RuleIndex(this.rulesList), MATCHING_CACHE_SIZE);
 	}
 
 	void setLevels(int levels) {
 		this.levels = levels;
 	}
 
-	private void matchWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, Closed closed) {
-		MatchingCacheKey matchingCacheKey = new MatchingCacheKey(tags, zoomLevel, closed);
-
-		List<RenderInstruction> matchingList = this.matchingCache.get(matchingCacheKey);
-		if (matchingList != null) {
-			// cache hit
-			for (int i = 0, n = matchingList.size(); i < n; ++i) {
-				matchingList.get(i).renderWay(renderCallback, tags);
-			}
-			return;
+	private RenderInstruction[] match(List<Tag> tags, int[] tagIds, byte zoomLevel, int elementType) {
+		if (tagIds.length > tags.size()) {
+			throw new IllegalArgumentException("more tag IDs than tags: " + tagIds.length);
 		}
+		return this.matchingCache.match(tags, tagIds, zoomLevel, elementType);
+	}
 
-		// cache miss
-		matchingList = new ArrayList<RenderInstruction>();
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).matchWay(renderCallback, tags, zoomLevel, closed, matchingList);
+	private void matchWay(RenderCallback renderCallback, RenderContext renderContext, List<Tag> tags, int[] tagIds,
+			int elementType) {
+		RenderInstruction[] renderInstructions = match(tags, tagIds, renderContext.zoomLevel, elementType);
+		for (int i = 0; i < renderInstructions.length; ++i) {
+			renderInstructions[i].renderWay(renderCallback, renderContext, tags);
 		}
-
-		this.matchingCache.put(matchingCacheKey, matchingList);
 	}
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.util.EvictingCache;
+import org.mapsforge.core.util.LruEvictionPolicy;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderThemeMenuCallback;
+import org.mapsforge.map.rendertheme.XmlRenderThemeStyleMenu;
+import org.xml.sax.SAXException;
+
+/**
+ * A thread-safe cache for parsed render themes, so that several renderers which use the same render theme share one
+ * {@link RenderTheme} instance and its symbol bitmaps instead of parsing the XML file again.
+ * <p>
+ * A render theme is identified by its {@link XmlRenderTheme} (compared with {@code equals}, an
+ * {@link org.mapsforge.map.rendertheme.ExternalRenderTheme} also compares the modification time of its file), the
+ * graphic factory and the scale factor and tiling size of the display model. If the render theme has a style menu,
+ * the menu callback is asked for the selected categories again and the render theme is only reused if they have not
+ * changed. An {@link InternalRenderTheme} is read from its {@link PrecompiledRenderTheme precompiled form} if it
+ * has one which is up to date.
+ * <p>
+ * The cache holds one reference to each of the most recently used render themes, every call to
+ * {@link #getRenderTheme} acquires another one which must be released with {@link RenderTheme#destroy()}.
+ */
+public final class RenderThemeCache {
+	private static final class Entry {
+		final Set<String> categories;
+		final RenderTheme renderTheme;
+		final XmlRenderThemeStyleMenu renderThemeStyleMenu;
+
+		Entry(RenderTheme renderTheme) {
+			this.categories = null;
+			this.renderTheme = renderTheme;
+			this.renderThemeStyleMenu = null;
+		}
+
+		Entry(RenderThemeHandler renderThemeHandler) {
+			this.categories = renderThemeHandler.getCategories();
+			this.renderTheme = renderThemeHandler.getRenderTheme();
+			this.renderThemeStyleMenu = renderThemeHandler.getRenderThemeStyleMenu();
+		}
+	}
+
+	private static final class Key {
+		private final GraphicFactory graphicFactory;
+		private final float scaleFactor;
+		private final int tilingSize;
+		private final XmlRenderTheme xmlRenderTheme;
+
+		Key(GraphicFactory graphicFactory, DisplayModel displayModel, XmlRenderTheme xmlRenderTheme) {
+			this.graphicFactory = graphicFactory;
+			this.scaleFactor = displayModel.getScaleFactor();
+			this.tilingSize = displayModel.getTilingSize();
+			this.xmlRenderTheme = xmlRenderTheme;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			if (this.graphicFactory != other.graphicFactory) {
+				return false;
+			} else if (Float.floatToIntBits(this.scaleFactor) != Float.floatToIntBits(other.scaleFactor)) {
+				return false;
+			} else if (this.tilingSize != other.tilingSize) {
+				return false;
+			}
+			return this.xmlRenderTheme.equals(other.xmlRenderTheme);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + System.identityHashCode(this.graphicFactory);
+			result = prime * result + Float.floatToIntBits(this.scaleFactor);
+			result = prime * result + this.tilingSize;
+			result = prime * result + this.xmlRenderTheme.hashCode();
+			return result;
+		}
+	}
+
+	private static final class RenderThemeLRUCache extends EvictingCache<Key, Entry> {
+		RenderThemeLRUCache(int capacity) {
+			super(capacity, new LruEvictionPolicy<Key>());
+		}
+
+		@Override
+		protected void onEviction(Key key, Entry entry) {
+			// the render theme is only destroyed once all renderers have released it as well
+			entry.renderTheme.destroy();
+		}
+	}
+
+	/**
+	 * The number of render themes which are kept by the shared instance while no renderer uses them.
+	 */
+	private static final int DEFAULT_CAPACITY = 4;
+	private static final Logger LOGGER = Logger.getLogger(RenderThemeCache.class.getName());
+
+	/**
+	 * The render theme cache which is shared by all renderers of this process.
+	 */
+	public static final RenderThemeCache INSTANCE = new RenderThemeCache(DEFAULT_CAPACITY);
+
+	private static Entry createEntry(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
+		if (xmlRenderTheme instanceof InternalRenderTheme) {
+			// internal render themes may be shipped precompiled, which avoids parsing the XML file
+			try {
+				RenderTheme renderTheme = PrecompiledRenderTheme.read(graphicFactory, displayModel, xmlRenderTheme,
+						((InternalRenderTheme) xmlRenderTheme).getPrecompiledRenderThemeAsStream());
+				if (renderTheme != null) {
+					return new Entry(renderTheme);
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "could not read precompiled render theme: " + xmlRenderTheme, e);
+			} catch (SAXException e) {
+				LOGGER.log(Level.WARNING, "could not read precompiled render theme: " + xmlRenderTheme, e);
+			}
+		}
+		return new Entry(RenderThemeHandler.parse(graphicFactory, displayModel, xmlRenderTheme));
+	}
+
+	private static boolean isSameSelection(Entry entry, XmlRenderThemeMenuCallback menuCallback) {
+		if (menuCallback == null || entry.renderThemeStyleMenu == null) {
+			// without a callback or a style menu all categories are visible
+			return entry.categories == null;
+		}
+		Set<String> categories = menuCallback.getCategories(entry.renderThemeStyleMenu);
+		if (categories == null) {
+			return entry.categories == null;
+		}
+		return categories.equals(entry.categories);
+	}
+
+	private final RenderThemeLRUCache lruCache;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of render themes in this cache.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	RenderThemeCache(int capacity) {
+		this.lruCache = new RenderThemeLRUCache(capacity);
+	}
+
+	/**
+	 * Releases all render themes of this cache. Render themes which are still used by a renderer stay valid until it
+	 * releases them.
+	 */
+	public synchronized void clear() {
+		for (Entry entry : this.lruCache.values()) {
+			entry.renderTheme.destroy();
+		}
+		this.lruCache.clear();
+	}
+
+	/**
+	 * Returns the parsed render theme for the given parameters, which is only parsed if it is not in this cache yet.
+	 * The caller must call {@link RenderTheme#destroy()} when it no longer uses the returned render theme.
+	 * 
+	 * @param graphicFactory
+	 *            the graphic factory which creates the paints and bitmaps of the render theme.
+	 * @param displayModel
+	 *            the display model whose scale factor and tiling size are used by the render theme.
+	 * @param xmlRenderTheme
+	 *            the XML render theme.
+	 * @return the render theme.
+	 * @throws SAXException
+	 *             if an error occurs while parsing the render theme XML.
+	 * @throws ParserConfigurationException
+	 *             if an error occurs while creating the XML parser.
+	 * @throws IOException
+	 *             if an I/O error occurs while reading a resource.
+	 */
+	public synchronized RenderTheme getRenderTheme(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
+		Key key = new Key(graphicFactory, displayModel, xmlRenderTheme);
+		Entry entry = this.lruCache.get(key);
+		if (entry == null || !isSameSelection(entry, xmlRenderTheme.getMenuCallback())) {
+			Entry newEntry = createEntry(graphicFactory, displayModel, xmlRenderTheme);
+			if (entry != null) {
+				// the style menu selection has changed, the cache releases the outdated render theme
+				entry.renderTheme.destroy();
+			}
+			// take the reference for the caller first, the new render theme may be evicted right away
+			newEntry.renderTheme.incrementRefCount();
+			this.lruCache.put(key, newEntry);
+			return newEntry.renderTheme;
+		}
+
+		entry.renderTheme.incrementRefCount();
+		return entry.renderTheme;
+	}
+
+	/**
+	 * @return the number of render themes in this cache.
+	 */
+	public synchronized int size() {
+		return this.lruCache.size();
+	}
+}
@@ -69,6 +69,15 @@ public final class RenderThemeHandler extends DefaultHandler {
 
 	public static RenderTheme getRenderTheme(GraphicFactory graphicFactory, DisplayModel displayModel,
 			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
+		return parse(graphicFactory, displayModel, xmlRenderTheme).getRenderTheme();
+	}
+
+	/**
+	 * Parses the given render theme like {@link #getRenderTheme}, but returns the handler so that the style menu and
+	 * the selected categories can be inspected afterwards.
+	 */
+	static RenderThemeHandler parse(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
 		RenderThemeHandler renderThemeHandler = new RenderThemeHandler(graphicFactory, displayModel,
 				xmlRenderTheme.getRelativePathPrefix(), xmlRenderTheme);
 		XMLReader xmlReader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
@@ -78,7 +87,7 @@ public final class RenderThemeHandler extends DefaultHandler {
 			inputStream = xmlRenderTheme.getRenderThemeAsStream();
 			xmlReader.parse(new InputSource(inputStream));
 			renderThemeHandler.renderTheme.incrementRefCount();
-			return renderThemeHandler.renderTheme;
+			return renderThemeHandler;
 		} finally {
 			if (renderThemeHandler.renderTheme != null) {
 				renderThemeHandler.renderTheme.destroy();
@@ -301,6 +310,24 @@ public final class RenderThemeHandler extends DefaultHandler {
 		LOGGER.log(Level.SEVERE, null, exception);
 	}
 
+	/**
+	 * @return the categories which have been selected by the menu callback, or null if all categories are visible.
+	 */
+	Set<String> getCategories() {
+		return this.categories;
+	}
+
+	RenderTheme getRenderTheme() {
+		return this.renderTheme;
+	}
+
+	/**
+	 * @return the style menu of the parsed render theme, or null if it has none.
+	 */
+	XmlRenderThemeStyleMenu getRenderThemeStyleMenu() {
+		return this.renderThemeStyleMenu;
+	}
+
 	private void checkElement(String elementName, Element element) throws SAXException {
 		switch (element) {
 			case RENDER_THEME:
@@ -15,26 +15,28 @@
 package org.mapsforge.map.rendertheme.rule;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mapsforge.core.model.Tag;
-import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
 
 abstract class Rule {
 
-	static final Map<List<String>, AttributeMatcher> MATCHERS_CACHE_KEY = new HashMap<List<String>, AttributeMatcher>();
-	static final Map<List<String>, AttributeMatcher> MATCHERS_CACHE_VALUE = new HashMap<List<String>, AttributeMatcher>();
+	// render themes may be parsed by several rendering threads at the same time
+	static final Map<List<String>, AttributeMatcher> MATCHERS_CACHE_KEY =
+			new ConcurrentHashMap<List<String>, AttributeMatcher>();
+	static final Map<List<String>, AttributeMatcher> MATCHERS_CACHE_VALUE =
+			new ConcurrentHashMap<List<String>, AttributeMatcher>();
 
 	String cat;
 	final ClosedMatcher closedMatcher;
 	final ElementMatcher elementMatcher;
+	final ArrayList<RenderInstruction> renderInstructions; // NOPMD we need specific interface
+	final ArrayList<Rule> subRules; // NOPMD we need specific interface
 	final byte zoomMax;
 	final byte zoomMin;
-	private final ArrayList<RenderInstruction> renderInstructions; // NOPMD we need specific interface
-	private final ArrayList<Rule> subRules; // NOPMD we need specific interface
 
 	Rule(RuleBuilder ruleBuilder) {
 		this.cat = ruleBuilder.cat;
@@ -68,30 +70,6 @@ abstract class Rule {
 
 	abstract boolean matchesWay(List<Tag> tags, byte zoomLevel, Closed closed);
 
-	void matchNode(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		if (matchesNode(tags, zoomLevel)) {
-			for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-				this.renderInstructions.get(i).renderNode(renderCallback, tags);
-			}
-			for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-				this.subRules.get(i).matchNode(renderCallback, tags, zoomLevel);
-			}
-		}
-	}
-
-	void matchWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, Closed closed,
-			List<RenderInstruction> matchingList) {
-		if (matchesWay(tags, zoomLevel, closed)) {
-			for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-				this.renderInstructions.get(i).renderWay(renderCallback, tags);
-				matchingList.add(this.renderInstructions.get(i));
-			}
-			for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-				this.subRules.get(i).matchWay(renderCallback, tags, zoomLevel, closed, matchingList);
-			}
-		}
-	}
-
 	void onComplete() {
 		MATCHERS_CACHE_KEY.clear();
 		MATCHERS_CACHE_VALUE.clear();
@@ -103,21 +81,4 @@ abstract class Rule {
 		}
 	}
 
-	void scaleStrokeWidth(float scaleFactor) {
-		for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-			this.renderInstructions.get(i).scaleStrokeWidth(scaleFactor);
-		}
-		for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-			this.subRules.get(i).scaleStrokeWidth(scaleFactor);
-		}
-	}
-
-	void scaleTextSize(float scaleFactor) {
-		for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-			this.renderInstructions.get(i).scaleTextSize(scaleFactor);
-		}
-		for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-			this.subRules.get(i).scaleTextSize(scaleFactor);
-		}
-	}
 }
@@ -116,6 +116,18 @@ public class RuleBuilder {
 		extractValues(elementName, attributes);
 	}
 
+	/**
+	 * Creates a builder for a rule whose matchers have already been optimized, see {@link PrecompiledRenderTheme}.
+	 */
+	RuleBuilder(String cat, ElementMatcher elementMatcher, ClosedMatcher closedMatcher, byte zoomMin, byte zoomMax) {
+		this.ruleStack = null;
+		this.cat = cat;
+		this.elementMatcher = elementMatcher;
+		this.closedMatcher = closedMatcher;
+		this.zoomMin = zoomMin;
+		this.zoomMax = zoomMax;
+	}
+
 	/**
 	 * @return a new {@code Rule} instance.
 	 */
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+
+/**
+ * The compiled rules of a {@link RenderTheme}, which replace the walk over the whole rule tree for every element.
+ * <p>
+ * Every rule gets an ID in the order of the rule tree. For every key and value of the rules, the IDs of the rules
+ * which refer to it are stored as a bit set, so that the tags of an element are translated with one hash lookup per
+ * tag into the rules whose key and value conditions they fulfil. For every element type and every range of zoom
+ * levels in which the zoom level conditions of the rules do not change, the rules whose zoom level, element and
+ * closed conditions are fulfilled are flattened into an array in the order of the rule tree. Matching walks this
+ * array and skips the sub-rules of every rule which does not match, so it finds the same render instructions in the
+ * same order as the walk over the rule tree.
+ */
+final class RuleIndex {
+	static final int CLOSED_WAY = 2;
+	static final int LINEAR_WAY = 1;
+	static final int NODE = 0;
+	private static final int ELEMENT_TYPES = 3;
+	private static final int ZOOM_LEVELS = Byte.MAX_VALUE + 1;
+
+	private static void addRule(Map<String, long[]> ruleSets, List<String> strings, int ruleId, int words) {
+		for (int i = 0, n = strings.size(); i < n; ++i) {
+			long[] ruleSet = ruleSets.get(strings.get(i));
+			if (ruleSet == null) {
+				ruleSet = new long[words];
+				ruleSets.put(strings.get(i), ruleSet);
+			}
+			ruleSet[ruleId >>> 6] |= 1L << ruleId;
+		}
+	}
+
+	private static void addRuleSet(long[] ruleSet, long[] result) {
+		if (ruleSet != null) {
+			for (int i = 0; i < ruleSet.length; ++i) {
+				result[i] |= ruleSet[i];
+			}
+		}
+	}
+
+	private static void addRules(Rule rule, List<Rule> rules) {
+		rules.add(rule);
+		for (int i = 0, n = rule.subRules.size(); i < n; ++i) {
+			addRules(rule.subRules.get(i), rules);
+		}
+	}
+
+	private static boolean contains(long[] ruleSet, int ruleId) {
+		return (ruleSet[ruleId >>> 6] & (1L << ruleId)) != 0;
+	}
+
+	private static boolean matchesStatically(Rule rule, byte zoomLevel, int elementType) {
+		if (rule.zoomMin > zoomLevel || rule.zoomMax < zoomLevel) {
+			return false;
+		} else if (elementType == NODE) {
+			return rule.elementMatcher.matches(Element.NODE);
+		}
+		return rule.elementMatcher.matches(Element.WAY)
+				&& rule.closedMatcher.matches(elementType == CLOSED_WAY ? Closed.YES : Closed.NO);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; ++i) {
+			array[i] = list.get(i).intValue();
+		}
+		return array;
+	}
+
+	private final boolean[] isNegative;
+	private final Map<String, long[]> keyRules;
+	private final boolean[] matchesAnyKey;
+	private final boolean[] matchesAnyValue;
+	private final RenderInstruction[][] renderInstructions;
+	private final int[][][] ruleIds;
+	private final int[][][] skipIndexes;
+	private final Map<String, long[]> valueRules;
+	private final int words;
+	private final int[] zoomLevelRanges;
+
+	RuleIndex(List<Rule> rootRules) {
+		List<Rule> rules = new ArrayList<Rule>();
+		for (int i = 0, n = rootRules.size(); i < n; ++i) {
+			addRules(rootRules.get(i), rules);
+		}
+
+		this.words = Math.max((rules.size() + 63) >>> 6, 1);
+		this.isNegative = new boolean[rules.size()];
+		this.matchesAnyKey = new boolean[rules.size()];
+		this.matchesAnyValue = new boolean[rules.size()];
+		this.renderInstructions = new RenderInstruction[rules.size()][];
+		this.keyRules = new HashMap<String, long[]>();
+		this.valueRules = new HashMap<String, long[]>();
+		Map<Rule, Integer> ruleIdMap = new HashMap<Rule, Integer>();
+		TreeSet<Integer> zoomLevelBounds = new TreeSet<Integer>();
+		zoomLevelBounds.add(Integer.valueOf(0));
+		for (int ruleId = 0; ruleId < rules.size(); ++ruleId) {
+			Rule rule = rules.get(ruleId);
+			ruleIdMap.put(rule, Integer.valueOf(ruleId));
+			this.renderInstructions[ruleId] = rule.renderInstructions.toArray(
+					new RenderInstruction[rule.renderInstructions.size()]);
+			zoomLevelBounds.add(Integer.valueOf(rule.zoomMin));
+			zoomLevelBounds.add(Integer.valueOf(rule.zoomMax + 1));
+			indexAttributes(rule, ruleId);
+		}
+
+		// the zoom levels between two bounds share the same rules
+		this.zoomLevelRanges = new int[ZOOM_LEVELS];
+		List<Integer> rangeStarts = new ArrayList<Integer>(zoomLevelBounds.headSet(Integer.valueOf(ZOOM_LEVELS)));
+		for (int range = 0; range < rangeStarts.size(); ++range) {
+			int end = range + 1 < rangeStarts.size() ? rangeStarts.get(range + 1).intValue() : ZOOM_LEVELS;
+			for (int zoomLevel = rangeStarts.get(range).intValue(); zoomLevel < end; ++zoomLevel) {
+				this.zoomLevelRanges[zoomLevel] = range;
+			}
+		}
+
+		this.ruleIds = new int[ELEMENT_TYPES][rangeStarts.size()][];
+		this.skipIndexes = new int[ELEMENT_TYPES][rangeStarts.size()][];
+		for (int elementType = 0; elementType < ELEMENT_TYPES; ++elementType) {
+			for (int range = 0; range < rangeStarts.size(); ++range) {
+				byte zoomLevel = rangeStarts.get(range).byteValue();
+				List<Integer> rangeRuleIds = new ArrayList<Integer>();
+				List<Integer> rangeSkipIndexes = new ArrayList<Integer>();
+				for (int i = 0, n = rootRules.size(); i < n; ++i) {
+					flatten(rootRules.get(i), ruleIdMap, zoomLevel, elementType, rangeRuleIds, rangeSkipIndexes);
+				}
+				this.ruleIds[elementType][range] = toArray(rangeRuleIds);
+				this.skipIndexes[elementType][range] = toArray(rangeSkipIndexes);
+			}
+		}
+	}
+
+	/**
+	 * @return true if at least one rule refers to the given key, false otherwise.
+	 */
+	boolean isKey(String key) {
+		return this.keyRules.containsKey(key);
+	}
+
+	/**
+	 * @return true if at least one rule refers to the given value, false otherwise.
+	 */
+	boolean isValue(String value) {
+		return this.valueRules.containsKey(value);
+	}
+
+	/**
+	 * Adds the render instructions of all rules which match the given element to the given list, in the order of the
+	 * rule tree.
+	 * 
+	 * @param tags
+	 *            the tags of the element.
+	 * @param zoomLevel
+	 *            the zoom level at which the element should be matched.
+	 * @param elementType
+	 *            {@link #NODE}, {@link #LINEAR_WAY} or {@link #CLOSED_WAY}.
+	 * @param matchingList
+	 *            the list to which the matching render instructions are added.
+	 */
+	void match(List<Tag> tags, byte zoomLevel, int elementType, List<RenderInstruction> matchingList) {
+		if (zoomLevel < 0) {
+			return;
+		}
+
+		long[] keyMatches = new long[this.words];
+		long[] valueMatches = new long[this.words];
+		for (int i = 0, n = tags.size(); i < n; ++i) {
+			Tag tag = tags.get(i);
+			addRuleSet(this.keyRules.get(tag.key), keyMatches);
+			addRuleSet(this.valueRules.get(tag.value), valueMatches);
+		}
+
+		int range = this.zoomLevelRanges[zoomLevel];
+		int[] rangeRuleIds = this.ruleIds[elementType][range];
+		int[] rangeSkipIndexes = this.skipIndexes[elementType][range];
+		int i = 0;
+		while (i < rangeRuleIds.length) {
+			int ruleId = rangeRuleIds[i];
+			if (matches(ruleId, keyMatches, valueMatches)) {
+				RenderInstruction[] ruleInstructions = this.renderInstructions[ruleId];
+				for (int j = 0; j < ruleInstructions.length; ++j) {
+					matchingList.add(ruleInstructions[j]);
+				}
+				++i;
+			} else {
+				i = rangeSkipIndexes[i];
+			}
+		}
+	}
+
+	/**
+	 * Adds the given rule and its sub-rules to the flattened rules if it can match elements of the given type at the
+	 * given zoom level. The skip index of a rule is the index behind its last sub-rule.
+	 */
+	private void flatten(Rule rule, Map<Rule, Integer> ruleIdMap, byte zoomLevel, int elementType,
+			List<Integer> rangeRuleIds, List<Integer> rangeSkipIndexes) {
+		if (!matchesStatically(rule, zoomLevel, elementType)) {
+			return;
+		}
+
+		int index = rangeRuleIds.size();
+		rangeRuleIds.add(ruleIdMap.get(rule));
+		rangeSkipIndexes.add(null);
+		for (int i = 0, n = rule.subRules.size(); i < n; ++i) {
+			flatten(rule.subRules.get(i), ruleIdMap, zoomLevel, elementType, rangeRuleIds, rangeSkipIndexes);
+		}
+		rangeSkipIndexes.set(index, Integer.valueOf(rangeRuleIds.size()));
+	}
+
+	private void indexAttributes(Rule rule, int ruleId) {
+		if (rule instanceof NegativeRule) {
+			NegativeMatcher negativeMatcher = (NegativeMatcher) ((NegativeRule) rule).attributeMatcher;
+			this.isNegative[ruleId] = true;
+			addRule(this.keyRules, negativeMatcher.keyList, ruleId, this.words);
+			addRule(this.valueRules, negativeMatcher.valueList, ruleId, this.words);
+			return;
+		}
+
+		PositiveRule positiveRule = (PositiveRule) rule;
+		if (positiveRule.keyMatcher instanceof KeyMatcher) {
+			addRule(this.keyRules, ((KeyMatcher) positiveRule.keyMatcher).keys, ruleId, this.words);
+		} else if (positiveRule.keyMatcher instanceof AnyMatcher) {
+			this.matchesAnyKey[ruleId] = true;
+		} else {
+			throw new IllegalArgumentException("unknown AttributeMatcher: " + positiveRule.keyMatcher);
+		}
+
+		if (positiveRule.valueMatcher instanceof ValueMatcher) {
+			addRule(this.valueRules, ((ValueMatcher) positiveRule.valueMatcher).values, ruleId, this.words);
+		} else if (positiveRule.valueMatcher instanceof AnyMatcher) {
+			this.matchesAnyValue[ruleId] = true;
+		} else {
+			throw new IllegalArgumentException("unknown AttributeMatcher: " + positiveRule.valueMatcher);
+		}
+	}
+
+	private boolean matches(int ruleId, long[] keyMatches, long[] valueMatches) {
+		if (this.isNegative[ruleId]) {
+			return !contains(keyMatches, ruleId) || contains(valueMatches, ruleId);
+		}
+		return (this.matchesAnyKey[ruleId] || contains(keyMatches, ruleId))
+				&& (this.matchesAnyValue[ruleId] || contains(valueMatches, ruleId));
+	}
+}
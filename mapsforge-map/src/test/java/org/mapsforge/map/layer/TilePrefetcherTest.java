@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.model.FixedTileSizeDisplayModel;
+import org.mapsforge.map.model.MapViewPosition;
+
+public class TilePrefetcherTest {
+	private static final int TILE_SIZE = 256;
+	private static final byte ZOOM_LEVEL = 10;
+	private static final Tile LOWER_RIGHT = new Tile(512, 512, ZOOM_LEVEL);
+	private static final Tile UPPER_LEFT = new Tile(511, 511, ZOOM_LEVEL);
+
+	private static MapViewPosition createMapViewPosition() {
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(TILE_SIZE));
+		mapViewPosition.setCenter(new LatLong(0, 0));
+		mapViewPosition.setZoomLevel(ZOOM_LEVEL);
+		return mapViewPosition;
+	}
+
+	private static int countTiles(List<Tile> tiles, byte zoomLevel) {
+		int count = 0;
+		for (Tile tile : tiles) {
+			if (tile.zoomLevel == zoomLevel) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void movementTest() {
+		MapViewPosition mapViewPosition = createMapViewPosition();
+		TilePrefetcher tilePrefetcher = new TilePrefetcher(mapViewPosition);
+		tilePrefetcher.update(TILE_SIZE, 1000);
+
+		// a smoothed velocity of two tiles per lookahead time to the east
+		double velocity = 2d * TILE_SIZE / TilePrefetcher.LOOKAHEAD_TIME;
+		double pixelX = MercatorProjection.longitudeToPixelX(0, ZOOM_LEVEL, TILE_SIZE) + 2 * velocity * 100;
+		mapViewPosition.setCenter(new LatLong(0, MercatorProjection.pixelXToLongitude(pixelX, ZOOM_LEVEL, TILE_SIZE)));
+		tilePrefetcher.update(TILE_SIZE, 1100);
+
+		List<Tile> tiles = tilePrefetcher.getPrefetchTiles(UPPER_LEFT, LOWER_RIGHT, TILE_SIZE);
+		Assert.assertEquals(new Tile(513, 511, ZOOM_LEVEL), tiles.get(0));
+		Assert.assertEquals(new Tile(513, 512, ZOOM_LEVEL), tiles.get(1));
+		Assert.assertEquals(new Tile(514, 511, ZOOM_LEVEL), tiles.get(2));
+		Assert.assertEquals(new Tile(514, 512, ZOOM_LEVEL), tiles.get(3));
+
+		// the map is at rest after some time without movement
+		tilePrefetcher.update(TILE_SIZE, 2000);
+		tiles = tilePrefetcher.getPrefetchTiles(UPPER_LEFT, LOWER_RIGHT, TILE_SIZE);
+		Assert.assertFalse(tiles.contains(new Tile(514, 511, ZOOM_LEVEL)));
+	}
+
+	@Test
+	public void restTest() {
+		MapViewPosition mapViewPosition = createMapViewPosition();
+		TilePrefetcher tilePrefetcher = new TilePrefetcher(mapViewPosition);
+		tilePrefetcher.update(TILE_SIZE, 1000);
+
+		List<Tile> tiles = tilePrefetcher.getPrefetchTiles(UPPER_LEFT, LOWER_RIGHT, TILE_SIZE);
+		Assert.assertEquals(16, tiles.size());
+		Assert.assertEquals(12, countTiles(tiles, ZOOM_LEVEL));
+		Assert.assertEquals(4, countTiles(tiles, (byte) (ZOOM_LEVEL + 1)));
+		Assert.assertFalse(tiles.contains(UPPER_LEFT));
+		Assert.assertFalse(tiles.contains(LOWER_RIGHT));
+		Assert.assertTrue(tiles.contains(new Tile(510, 510, ZOOM_LEVEL)));
+		Assert.assertTrue(tiles.contains(new Tile(1024, 1024, (byte) (ZOOM_LEVEL + 1))));
+	}
+
+	@Test
+	public void zoomTest() {
+		MapViewPosition mapViewPosition = createMapViewPosition();
+		TilePrefetcher tilePrefetcher = new TilePrefetcher(mapViewPosition);
+		tilePrefetcher.update(TILE_SIZE, 1000);
+
+		// after zooming out, the tiles of the next lower zoom level are prefetched
+		mapViewPosition.zoomOut();
+		tilePrefetcher.update(TILE_SIZE, 1100);
+		Tile upperLeft = new Tile(255, 255, (byte) (ZOOM_LEVEL - 1));
+		Tile lowerRight = new Tile(256, 256, (byte) (ZOOM_LEVEL - 1));
+		List<Tile> tiles = tilePrefetcher.getPrefetchTiles(upperLeft, lowerRight, TILE_SIZE);
+		Assert.assertEquals(12, countTiles(tiles, (byte) (ZOOM_LEVEL - 1)));
+		Assert.assertEquals(4, countTiles(tiles, (byte) (ZOOM_LEVEL - 2)));
+
+		// no tiles beyond the maximum zoom level
+		mapViewPosition = createMapViewPosition();
+		mapViewPosition.setZoomLevelMax(ZOOM_LEVEL);
+		tilePrefetcher = new TilePrefetcher(mapViewPosition);
+		tilePrefetcher.update(TILE_SIZE, 1000);
+		tiles = tilePrefetcher.getPrefetchTiles(UPPER_LEFT, LOWER_RIGHT, TILE_SIZE);
+		Assert.assertEquals(12, tiles.size());
+	}
+}
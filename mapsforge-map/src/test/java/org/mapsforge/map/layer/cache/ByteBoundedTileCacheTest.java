@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.EvictionPolicy;
+import org.mapsforge.core.util.LruEvictionPolicy;
+import org.mapsforge.core.util.TwoQueueEvictionPolicy;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.download.DownloadJob;
+import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+import org.mapsforge.map.layer.queue.Job;
+
+public class ByteBoundedTileCacheTest {
+	private static final class CapacityEvictionPolicy extends LruEvictionPolicy<Job> {
+		int capacity;
+
+		@Override
+		public void setCapacity(int capacity) {
+			super.setCapacity(capacity);
+			this.capacity = capacity;
+		}
+	}
+
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+
+	private static Job createJob(int tileX, int tileSize) {
+		return new DownloadJob(new Tile(tileX, 0, (byte) 10), tileSize, OpenStreetMapMapnik.INSTANCE);
+	}
+
+	private static void verifyInvalidConstructor(long maximumBytes, int bytesPerPixel,
+			EvictionPolicy<Job> evictionPolicy) {
+		try {
+			new ByteBoundedTileCache(maximumBytes, bytesPerPixel, evictionPolicy);
+			Assert.fail("maximumBytes: " + maximumBytes + ", bytesPerPixel: " + bytesPerPixel + ", evictionPolicy: "
+					+ evictionPolicy);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void byteBoundedTileCacheTest() {
+		// room for exactly four 256px tiles or one 512px tile
+		ByteBoundedTileCache tileCache = new ByteBoundedTileCache(4 * 256 * 256 * 4);
+		Assert.assertEquals(4, tileCache.getCapacity());
+
+		for (int tileX = 0; tileX < 4; ++tileX) {
+			tileCache.put(createJob(tileX, 256), GRAPHIC_FACTORY.createTileBitmap(256, false));
+		}
+		Assert.assertEquals(4, tileCache.size());
+		Assert.assertEquals(4 * 256 * 256 * 4, tileCache.getBytes());
+		Assert.assertNotNull(tileCache.get(createJob(0, 256)));
+
+		// a large tile evicts all but the most recently used one
+		tileCache.put(createJob(4, 512), GRAPHIC_FACTORY.createTileBitmap(512, false));
+		Assert.assertEquals(1, tileCache.size());
+		Assert.assertEquals(4, tileCache.getEvictionCount());
+		Assert.assertTrue(tileCache.containsKey(createJob(4, 512)));
+
+		Assert.assertNull(tileCache.get(createJob(0, 256)));
+		Assert.assertEquals(1, tileCache.getHitCount());
+		Assert.assertEquals(1, tileCache.getMissCount());
+		Assert.assertEquals(0.5, tileCache.getHitRatio(), 0);
+
+		tileCache.destroy();
+		Assert.assertEquals(0, tileCache.size());
+		Assert.assertEquals(0, tileCache.getBytes());
+	}
+
+	@Test
+	public void evictionPolicyTest() {
+		ByteBoundedTileCache tileCache = new ByteBoundedTileCache(4 * 256 * 256 * 4, 4,
+				new TwoQueueEvictionPolicy<Job>());
+		for (int tileX = 0; tileX < 4; ++tileX) {
+			tileCache.put(createJob(tileX, 256), GRAPHIC_FACTORY.createTileBitmap(256, false));
+		}
+		Assert.assertNotNull(tileCache.get(createJob(0, 256)));
+
+		// new tiles are evicted in FIFO order, unlike with the default LRU policy
+		tileCache.put(createJob(4, 256), GRAPHIC_FACTORY.createTileBitmap(256, false));
+		Assert.assertEquals(4, tileCache.size());
+		Assert.assertFalse(tileCache.containsKey(createJob(0, 256)));
+		Assert.assertTrue(tileCache.containsKey(createJob(1, 256)));
+	}
+
+	@Test
+	public void evictionPolicyCapacityTest() {
+		CapacityEvictionPolicy evictionPolicy = new CapacityEvictionPolicy();
+		ByteBoundedTileCache tileCache = new ByteBoundedTileCache(16 * 256 * 256 * 4, 4, evictionPolicy);
+		Assert.assertEquals(16, evictionPolicy.capacity);
+
+		// the policy capacity follows the actual size of the tiles
+		tileCache.put(createJob(0, 512), GRAPHIC_FACTORY.createTileBitmap(512, false));
+		Assert.assertEquals(4, evictionPolicy.capacity);
+		Assert.assertEquals(4, tileCache.getCapacity());
+		for (int tileX = 1; tileX < 6; ++tileX) {
+			tileCache.put(createJob(tileX, 512), GRAPHIC_FACTORY.createTileBitmap(512, false));
+		}
+		Assert.assertEquals(4, tileCache.size());
+		Assert.assertEquals(4, evictionPolicy.capacity);
+
+		// small variations of the average tile size do not change it
+		tileCache.put(createJob(6, 256), GRAPHIC_FACTORY.createTileBitmap(256, false));
+		Assert.assertEquals(4, evictionPolicy.capacity);
+
+		tileCache.setMaximumBytes(8 * 512 * 512 * 4);
+		Assert.assertEquals(tileCache.getCapacity(), evictionPolicy.capacity);
+	}
+
+	@Test
+	public void invalidConstructorTest() {
+		verifyInvalidConstructor(-1, 4, new LruEvictionPolicy<Job>());
+		verifyInvalidConstructor(1024, 0, new LruEvictionPolicy<Job>());
+		verifyInvalidConstructor(1024, 4, null);
+	}
+
+	@Test
+	public void setMaximumBytesTest() {
+		ByteBoundedTileCache tileCache = new ByteBoundedTileCache(10 * 256 * 256 * 4);
+		for (int tileX = 0; tileX < 10; ++tileX) {
+			tileCache.put(createJob(tileX, 256), GRAPHIC_FACTORY.createTileBitmap(256, false));
+		}
+		Assert.assertEquals(10, tileCache.size());
+
+		tileCache.setMaximumBytes(3 * 256 * 256 * 4);
+		Assert.assertEquals(3, tileCache.size());
+		for (int tileX = 7; tileX < 10; ++tileX) {
+			Assert.assertTrue(tileCache.containsKey(createJob(tileX, 256)));
+		}
+
+		// a tile which is larger than the whole cache is not stored
+		tileCache.setMaximumBytes(256 * 256 * 4 - 1);
+		Assert.assertEquals(0, tileCache.size());
+		TileBitmap bitmap = GRAPHIC_FACTORY.createTileBitmap(256, false);
+		tileCache.put(createJob(0, 256), bitmap);
+		Assert.assertFalse(tileCache.containsKey(createJob(0, 256)));
+
+		try {
+			tileCache.setMaximumBytes(-1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+}
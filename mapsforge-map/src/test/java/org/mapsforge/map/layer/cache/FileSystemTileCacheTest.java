@@ -16,7 +16,9 @@
 package org.mapsforge.map.layer.cache;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -40,10 +42,32 @@ public class FileSystemTileCacheTest {
 	private static final int[] TILE_SIZES = { 256, 128, 376, 512, 100 };
 	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
 
+	private static int countTiles(File directory) {
+		int tiles = 0;
+		for (File file : directory.listFiles()) {
+			if (file.isDirectory()) {
+				tiles += countTiles(file);
+			} else if (file.getName().endsWith(FileSystemTileCache.FILE_EXTENSION)) {
+				++tiles;
+			}
+		}
+		return tiles;
+	}
+
 	private static TileCache createNewTileCache(int capacity, File cacheDirectory) {
 		return new FileSystemTileCache(capacity, cacheDirectory, GRAPHIC_FACTORY);
 	}
 
+	private static File findTile(File directory) {
+		for (File file : directory.listFiles()) {
+			File tile = file.isDirectory() ? findTile(file) : file;
+			if (tile != null && tile.getName().endsWith(FileSystemTileCache.FILE_EXTENSION)) {
+				return tile;
+			}
+		}
+		return null;
+	}
+
 	private static void verifyEquals(Bitmap bitmap1, Bitmap bitmap2) {
 		Assert.assertEquals(bitmap1.getWidth(), bitmap2.getWidth());
 		Assert.assertEquals(bitmap1.getHeight(), bitmap2.getHeight());
@@ -76,6 +100,30 @@ public class FileSystemTileCacheTest {
 		}
 	}
 
+	@Test
+	public void bufferedAccessTest() {
+		int tileSize = TILE_SIZES[0];
+		Job job = new DownloadJob(new Tile(0, 0, (byte) 1), tileSize, OpenStreetMapMapnik.INSTANCE);
+		FileSystemTileCache tileCache = new FileSystemTileCache(1, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		tileCache.put(job, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		File journalFile = new File(this.cacheDirectory, FileSystemTileCache.JOURNAL_FILE_NAME);
+		long journalLength = journalFile.length();
+
+		// reads are not written to the journal until the cache is closed
+		for (int i = 0; i < 10; ++i) {
+			Assert.assertNotNull(tileCache.get(job));
+		}
+		Assert.assertEquals(journalLength, journalFile.length());
+
+		// repeated reads of the same tile are written as a single record
+		tileCache.close();
+		long accessLength = journalFile.length() - journalLength;
+		Assert.assertTrue(accessLength > 0);
+		Assert.assertTrue(accessLength < journalLength);
+
+		tileCache.destroy();
+	}
+
 	@Test
 	public void capacityZeroTest() {
 		for (int tileSize : TILE_SIZES) {
@@ -94,6 +142,31 @@ public class FileSystemTileCacheTest {
 		}
 	}
 
+	@Test
+	public void corruptedFileTest() throws IOException {
+		int tileSize = TILE_SIZES[0];
+		Job job = new DownloadJob(new Tile(0, 0, (byte) 1), tileSize, OpenStreetMapMapnik.INSTANCE);
+		TileCache tileCache = new FileSystemTileCache(1, this.cacheDirectory, GRAPHIC_FACTORY);
+
+		// a corrupted file is a miss and gets deleted
+		tileCache.put(job, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		File file = findTile(this.cacheDirectory);
+		OutputStream outputStream = new FileOutputStream(file);
+		outputStream.write(new byte[] { 1, 2, 3 });
+		outputStream.close();
+		Assert.assertNull(tileCache.get(job));
+		Assert.assertFalse(tileCache.containsKey(job));
+		Assert.assertFalse(file.exists());
+
+		// a missing file is a miss as well
+		tileCache.put(job, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		Assert.assertTrue(findTile(this.cacheDirectory).delete());
+		Assert.assertNull(tileCache.get(job));
+		Assert.assertFalse(tileCache.containsKey(job));
+
+		tileCache.destroy();
+	}
+
 	@Test
 	public void existingFilesTest() throws IOException {
 		Assert.assertTrue(this.cacheDirectory.mkdirs());
@@ -195,4 +268,67 @@ public class FileSystemTileCacheTest {
 					OpenStreetMapMapnik.INSTANCE), null);
 		}
 	}
+
+	@Test
+	public void persistentTest() {
+		int tileSize = TILE_SIZES[0];
+		TileSource tileSource = OpenStreetMapMapnik.INSTANCE;
+		Job job1 = new DownloadJob(new Tile(0, 0, (byte) 1), tileSize, tileSource);
+		Job job2 = new DownloadJob(new Tile(1, 0, (byte) 1), tileSize, tileSource);
+		Job job3 = new DownloadJob(new Tile(0, 1, (byte) 1), tileSize, tileSource);
+
+		FileSystemTileCache tileCache = new FileSystemTileCache(3, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		tileCache.put(job1, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		tileCache.put(job2, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		tileCache.put(job3, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		Assert.assertNotNull(tileCache.get(job1));
+		tileCache.close();
+
+		// all entries must survive a restart
+		tileCache = new FileSystemTileCache(3, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		Assert.assertTrue(tileCache.containsKey(job1));
+		Assert.assertTrue(tileCache.containsKey(job2));
+		Assert.assertTrue(tileCache.containsKey(job3));
+		verifyEquals(GRAPHIC_FACTORY.createTileBitmap(tileSize, false), tileCache.get(job3));
+		tileCache.close();
+
+		// a smaller capacity must evict the least recently used entries
+		tileCache = new FileSystemTileCache(2, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		Assert.assertTrue(tileCache.containsKey(job1));
+		Assert.assertFalse(tileCache.containsKey(job2));
+		Assert.assertTrue(tileCache.containsKey(job3));
+		Assert.assertEquals(2, countTiles(this.cacheDirectory));
+
+		tileCache.destroy();
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+
+		tileCache = new FileSystemTileCache(2, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		Assert.assertFalse(tileCache.containsKey(job1));
+		Assert.assertFalse(tileCache.containsKey(job3));
+	}
+
+	@Test
+	public void temporaryFilesTest() throws IOException {
+		File directory = new File(new File(this.cacheDirectory, "ab"), "cd");
+		Assert.assertTrue(directory.mkdirs());
+		File temporaryFile = new File(directory, "key-1" + FileSystemTileCache.TEMPORARY_FILE_EXTENSION);
+		Assert.assertTrue(temporaryFile.createNewFile());
+
+		// files of an interrupted write are removed on startup
+		FileSystemTileCache tileCache = new FileSystemTileCache(1, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		Assert.assertFalse(temporaryFile.exists());
+		Assert.assertEquals(0, countTiles(this.cacheDirectory));
+
+		int tileSize = TILE_SIZES[0];
+		Job job = new DownloadJob(new Tile(0, 0, (byte) 1), tileSize, OpenStreetMapMapnik.INSTANCE);
+		tileCache.put(job, GRAPHIC_FACTORY.createTileBitmap(tileSize, false));
+		Assert.assertEquals(1, countTiles(this.cacheDirectory));
+
+		// and by destroy()
+		File tile = findTile(this.cacheDirectory);
+		temporaryFile = new File(tile.getParentFile(), "key-2" + FileSystemTileCache.TEMPORARY_FILE_EXTENSION);
+		Assert.assertTrue(temporaryFile.createNewFile());
+		tileCache.destroy();
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
 }
@@ -22,6 +22,7 @@ import org.junit.Test;
 import org.mapsforge.core.graphics.GraphicFactory;
 import org.mapsforge.core.graphics.TileBitmap;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.InMemoryMetrics;
 import org.mapsforge.map.awt.AwtGraphicFactory;
 import org.mapsforge.map.layer.download.DownloadJob;
 import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
@@ -136,4 +137,27 @@ public class InMemoryTileCacheTest {
 			verifyInvalidCapacity(inMemoryTileCache, -1);
 		}
 	}
+
+	@Test
+	public void metricsTest() {
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		InMemoryTileCache tileCache = new InMemoryTileCache(1);
+		tileCache.setMetrics(metrics, "memory");
+
+		Job job1 = new DownloadJob(new Tile(0, 0, (byte) 0), 256, OpenStreetMapMapnik.INSTANCE);
+		Job job2 = new DownloadJob(new Tile(1, 0, (byte) 1), 256, OpenStreetMapMapnik.INSTANCE);
+		Assert.assertNull(tileCache.get(job1));
+		tileCache.put(job1, GRAPHIC_FACTORY.createTileBitmap(256, false));
+		Assert.assertNotNull(tileCache.get(job1));
+		tileCache.put(job2, GRAPHIC_FACTORY.createTileBitmap(256, false));
+
+		Assert.assertEquals(1, metrics.getCounter("memory.hits"));
+		Assert.assertEquals(1, metrics.getCounter("memory.misses"));
+		Assert.assertEquals(1, metrics.getCounter("memory.evictions"));
+		Assert.assertEquals(1, metrics.getGauge("memory.size"));
+		Assert.assertEquals(2, metrics.getHistogram("memory.get").getCount());
+		Assert.assertEquals(2, metrics.getHistogram("memory.put").getCount());
+
+		tileCache.destroy();
+	}
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.download.DownloadJob;
+import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+import org.mapsforge.map.layer.queue.Job;
+
+public class PackFileTileCacheTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final int TILE_SIZE = 256;
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+
+	private static Job createJob(int tileX) {
+		return new DownloadJob(new Tile(tileX, 0, (byte) 10), TILE_SIZE, OpenStreetMapMapnik.INSTANCE);
+	}
+
+	private static void verifyInvalidConstructor(int capacity, File cacheDirectory, int segmentSize) {
+		try {
+			new PackFileTileCache(capacity, cacheDirectory, GRAPHIC_FACTORY, segmentSize);
+			Assert.fail("capacity: " + capacity + ", cacheDirectory: " + cacheDirectory + ", segmentSize: "
+					+ segmentSize);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	private final File cacheDirectory = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis());
+
+	@After
+	public void afterTest() {
+		if (this.cacheDirectory.exists() && !this.cacheDirectory.delete()) {
+			throw new IllegalStateException("could not delete cache directory: " + this.cacheDirectory);
+		}
+	}
+
+	@Test
+	public void capacityZeroTest() {
+		PackFileTileCache tileCache = new PackFileTileCache(0, this.cacheDirectory, GRAPHIC_FACTORY);
+		Job job = createJob(0);
+		tileCache.put(job, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+		Assert.assertFalse(tileCache.containsKey(job));
+		Assert.assertNull(tileCache.get(job));
+
+		tileCache.destroy();
+	}
+
+	@Test
+	public void compactionTest() {
+		// small segments, so that every few tiles a new segment is started
+		PackFileTileCache tileCache = new PackFileTileCache(4, this.cacheDirectory, GRAPHIC_FACTORY, 1);
+		for (int tileX = 0; tileX < 20; ++tileX) {
+			tileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		}
+		tileCache.compactSegments();
+
+		// segments without live tiles must have been deleted
+		Assert.assertTrue(tileCache.getSegmentCount() <= 5);
+		for (int tileX = 0; tileX < 20; ++tileX) {
+			Assert.assertEquals(tileX >= 16, tileCache.containsKey(createJob(tileX)));
+		}
+		for (int tileX = 16; tileX < 20; ++tileX) {
+			TileBitmap bitmap = tileCache.get(createJob(tileX));
+			Assert.assertNotNull(bitmap);
+			Assert.assertEquals(TILE_SIZE, bitmap.getWidth());
+		}
+
+		tileCache.destroy();
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
+
+	@Test
+	public void invalidConstructorTest() {
+		verifyInvalidConstructor(-1, this.cacheDirectory, 1);
+		verifyInvalidConstructor(1, this.cacheDirectory, 0);
+	}
+
+	@Test
+	public void packFileTileCacheTest() {
+		PackFileTileCache tileCache = new PackFileTileCache(2, this.cacheDirectory, GRAPHIC_FACTORY);
+		Assert.assertEquals(2, tileCache.getCapacity());
+		Job job1 = createJob(1);
+		Job job2 = createJob(2);
+		Job job3 = createJob(3);
+
+		tileCache.put(job1, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		tileCache.put(job2, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		Assert.assertNotNull(tileCache.get(job1));
+		tileCache.put(job3, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+
+		Assert.assertTrue(tileCache.containsKey(job1));
+		Assert.assertFalse(tileCache.containsKey(job2));
+		Assert.assertTrue(tileCache.containsKey(job3));
+		Assert.assertNull(tileCache.get(job2));
+		Assert.assertEquals(1, tileCache.getSegmentCount());
+
+		tileCache.destroy();
+		Assert.assertFalse(tileCache.containsKey(job1));
+		Assert.assertNull(tileCache.get(job3));
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
+
+	@Test
+	public void restartTest() {
+		PackFileTileCache tileCache = new PackFileTileCache(3, this.cacheDirectory, GRAPHIC_FACTORY);
+		for (int tileX = 0; tileX < 3; ++tileX) {
+			tileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		}
+
+		tileCache = new PackFileTileCache(2, this.cacheDirectory, GRAPHIC_FACTORY);
+		Assert.assertFalse(tileCache.containsKey(createJob(0)));
+		Assert.assertTrue(tileCache.containsKey(createJob(1)));
+		Assert.assertTrue(tileCache.containsKey(createJob(2)));
+		Assert.assertNotNull(tileCache.get(createJob(2)));
+
+		tileCache.destroy();
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
+
+	@Test
+	public void restartWithEvictionsTest() {
+		// two segments which hold more tiles than the capacity after the restart
+		PackFileTileCache tileCache = new PackFileTileCache(20, this.cacheDirectory, GRAPHIC_FACTORY);
+		for (int tileX = 0; tileX < 10; ++tileX) {
+			tileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		}
+		tileCache = new PackFileTileCache(20, this.cacheDirectory, GRAPHIC_FACTORY);
+		for (int tileX = 10; tileX < 20; ++tileX) {
+			tileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		}
+		Assert.assertEquals(2, tileCache.getSegmentCount());
+
+		tileCache = new PackFileTileCache(4, this.cacheDirectory, GRAPHIC_FACTORY);
+		tileCache.put(createJob(20), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		tileCache.compactSegments();
+		for (int tileX = 0; tileX < 21; ++tileX) {
+			Assert.assertEquals(tileX >= 17, tileCache.containsKey(createJob(tileX)));
+		}
+		for (int tileX = 17; tileX < 21; ++tileX) {
+			Assert.assertNotNull(tileCache.get(createJob(tileX)));
+		}
+
+		// the compacted tiles must survive another restart
+		tileCache = new PackFileTileCache(4, this.cacheDirectory, GRAPHIC_FACTORY);
+		for (int tileX = 17; tileX < 21; ++tileX) {
+			Assert.assertNotNull(tileCache.get(createJob(tileX)));
+		}
+
+		tileCache.destroy();
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.download.DownloadJob;
+import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+import org.mapsforge.map.layer.queue.Job;
+
+public class StripedInMemoryTileCacheTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final int TILE_SIZE = 256;
+
+	private static Job createJob(int tileX) {
+		return new DownloadJob(new Tile(tileX, 0, (byte) 10), TILE_SIZE, OpenStreetMapMapnik.INSTANCE);
+	}
+
+	private static void verifyInvalidConstructor(int capacity, int numberOfStripes) {
+		try {
+			new StripedInMemoryTileCache(capacity, numberOfStripes);
+			Assert.fail("capacity: " + capacity + ", numberOfStripes: " + numberOfStripes);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void capacityTest() {
+		TileCache tileCache = new StripedInMemoryTileCache(10, 4);
+		Assert.assertEquals(10, tileCache.getCapacity());
+
+		for (int tileX = 0; tileX < 100; ++tileX) {
+			tileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, true));
+		}
+
+		int entries = 0;
+		for (int tileX = 0; tileX < 100; ++tileX) {
+			if (tileCache.containsKey(createJob(tileX))) {
+				++entries;
+			}
+		}
+		Assert.assertTrue(entries <= 10);
+
+		tileCache.destroy();
+		for (int tileX = 0; tileX < 100; ++tileX) {
+			Assert.assertFalse(tileCache.containsKey(createJob(tileX)));
+		}
+	}
+
+	@Test
+	public void invalidConstructorTest() {
+		verifyInvalidConstructor(-1, 1);
+		verifyInvalidConstructor(1, 0);
+	}
+
+	@Test
+	public void stripedInMemoryTileCacheTest() {
+		TileCache tileCache = new StripedInMemoryTileCache(1);
+		Assert.assertEquals(1, tileCache.getCapacity());
+		Job job1 = createJob(1);
+		Job job2 = createJob(2);
+
+		TileBitmap bitmap1 = GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, true);
+		tileCache.put(job1, bitmap1);
+		Assert.assertTrue(tileCache.containsKey(job1));
+		Assert.assertEquals(bitmap1, tileCache.get(job1));
+
+		TileBitmap bitmap2 = GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, true);
+		tileCache.put(job2, bitmap2);
+		Assert.assertFalse(tileCache.containsKey(job1));
+		Assert.assertEquals(bitmap2, tileCache.get(job2));
+
+		tileCache.destroy();
+		Assert.assertNull(tileCache.get(job2));
+	}
+}
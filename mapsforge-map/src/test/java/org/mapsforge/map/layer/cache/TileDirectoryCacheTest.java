@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.download.DownloadJob;
+import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+import org.mapsforge.map.layer.queue.Job;
+
+public class TileDirectoryCacheTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final int TILE_SIZE = 256;
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+
+	private static Job createJob(int tileX, int tileY, byte zoomLevel) {
+		return new DownloadJob(new Tile(tileX, tileY, zoomLevel), TILE_SIZE, OpenStreetMapMapnik.INSTANCE);
+	}
+
+	private static void verifyInvalidPut(TileCache tileCache, Job job, TileBitmap bitmap) {
+		try {
+			tileCache.put(job, bitmap);
+			Assert.fail("job: " + job + ", bitmap: " + bitmap);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	private final File cacheDirectory = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis());
+
+	@After
+	public void afterTest() {
+		if (this.cacheDirectory.exists() && !this.cacheDirectory.delete()) {
+			throw new IllegalStateException("could not delete cache directory: " + this.cacheDirectory);
+		}
+	}
+
+	@Test
+	public void invalidPutTest() {
+		TileCache tileCache = new TileDirectoryCache(this.cacheDirectory, GRAPHIC_FACTORY);
+		verifyInvalidPut(tileCache, null, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		verifyInvalidPut(tileCache, createJob(0, 0, (byte) 0), null);
+		tileCache.destroy();
+	}
+
+	@Test
+	public void tileDirectoryCacheTest() {
+		TileDirectoryCache tileCache = new TileDirectoryCache(this.cacheDirectory, GRAPHIC_FACTORY);
+		Assert.assertEquals(Integer.MAX_VALUE, tileCache.getCapacity());
+		Job job1 = createJob(1, 2, (byte) 3);
+		Job job2 = createJob(2, 1, (byte) 3);
+
+		Assert.assertFalse(tileCache.containsKey(job1));
+		Assert.assertNull(tileCache.get(job1));
+
+		tileCache.put(job1, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		Assert.assertTrue(tileCache.containsKey(job1));
+		Assert.assertFalse(tileCache.containsKey(job2));
+		Assert.assertEquals(new File(this.cacheDirectory, "3" + File.separator + "1" + File.separator + "2.png"),
+				tileCache.getFile(job1.tile));
+		Assert.assertTrue(tileCache.getFile(job1.tile).isFile());
+		Assert.assertEquals(1, tileCache.getFile(job1.tile).getParentFile().list().length);
+
+		// the tiles are still available after a restart
+		tileCache.put(job2, GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		tileCache = new TileDirectoryCache(this.cacheDirectory, GRAPHIC_FACTORY);
+		Assert.assertTrue(tileCache.containsKey(job1));
+		Assert.assertTrue(tileCache.containsKey(job2));
+		TileBitmap bitmap = tileCache.get(job2);
+		Assert.assertNotNull(bitmap);
+		Assert.assertEquals(TILE_SIZE, bitmap.getWidth());
+
+		tileCache.destroy();
+		Assert.assertFalse(tileCache.containsKey(job1));
+		Assert.assertNull(tileCache.get(job2));
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
+}
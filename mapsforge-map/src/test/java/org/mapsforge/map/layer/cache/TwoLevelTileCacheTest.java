@@ -14,6 +14,9 @@
  */
 package org.mapsforge.map.layer.cache;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.mapsforge.core.graphics.GraphicFactory;
@@ -26,9 +29,76 @@ import org.mapsforge.map.layer.download.tilesource.TileSource;
 import org.mapsforge.map.layer.queue.Job;
 
 public class TwoLevelTileCacheTest {
+	/**
+	 * A second-level cache which counts its reads and blocks them until it is released.
+	 */
+	private static final class BlockingTileCache extends InMemoryTileCache {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final AtomicInteger gets = new AtomicInteger();
+		final CountDownLatch released = new CountDownLatch(1);
+
+		BlockingTileCache(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		public TileBitmap get(Job key) {
+			this.gets.incrementAndGet();
+			this.entered.countDown();
+			try {
+				this.released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.get(key);
+		}
+	}
+
+	private static final class GetThread extends Thread {
+		private volatile TileBitmap bitmap;
+		private final Job job;
+		private final TileCache tileCache;
+
+		GetThread(TileCache tileCache, Job job) {
+			this.tileCache = tileCache;
+			this.job = job;
+		}
+
+		@Override
+		public void run() {
+			this.bitmap = this.tileCache.get(this.job);
+		}
+	}
+
 	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
 	private static final int[] TILE_SIZES = { 256, 128, 376, 512, 100 };
 
+	@Test
+	public void loadOnceTest() throws InterruptedException {
+		BlockingTileCache secondLevelTileCache = new BlockingTileCache(1);
+		TwoLevelTileCache twoLevelTileCache = new TwoLevelTileCache(new InMemoryTileCache(1), secondLevelTileCache);
+		Job job = new DownloadJob(new Tile(0, 0, (byte) 0), 256, OpenStreetMapMapnik.INSTANCE);
+		twoLevelTileCache.put(job, GRAPHIC_FACTORY.createTileBitmap(256, false));
+
+		GetThread getThread1 = new GetThread(twoLevelTileCache, job);
+		getThread1.start();
+		secondLevelTileCache.entered.await();
+
+		GetThread getThread2 = new GetThread(twoLevelTileCache, job);
+		getThread2.start();
+		// the second thread must wait for the first one instead of reading the tile again
+		while (getThread2.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		secondLevelTileCache.released.countDown();
+		getThread1.join();
+		getThread2.join();
+
+		Assert.assertEquals(1, secondLevelTileCache.gets.get());
+		Assert.assertNotNull(getThread1.bitmap);
+		Assert.assertSame(getThread1.bitmap, getThread2.bitmap);
+	}
+
 	@Test
 	public void twoLevelTileCacheTest() {
 		for (int tileSize : TILE_SIZES) {
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.download.DownloadJob;
+import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+import org.mapsforge.map.layer.queue.Job;
+
+public class WriteBehindTileCacheTest {
+	/**
+	 * A cache which blocks all writes until it is released.
+	 */
+	private static final class BlockingTileCache extends InMemoryTileCache {
+		final CountDownLatch entered = new CountDownLatch(1);
+		int puts;
+		final CountDownLatch released = new CountDownLatch(1);
+
+		BlockingTileCache(int capacity) {
+			super(capacity);
+		}
+
+		@Override
+		public void put(Job key, TileBitmap bitmap) {
+			this.entered.countDown();
+			try {
+				this.released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.put(key, bitmap);
+			synchronized (this) {
+				++this.puts;
+			}
+		}
+	}
+
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+	private static final int TILE_SIZE = 256;
+
+	private static Job createJob(int tileX) {
+		return new DownloadJob(new Tile(tileX, 0, (byte) 10), TILE_SIZE, OpenStreetMapMapnik.INSTANCE);
+	}
+
+	private static void verifyInvalidConstructor(TileCache tileCache, int queueSize, int numberOfThreads,
+			WriteBehindTileCache.OverflowPolicy overflowPolicy) {
+		try {
+			new WriteBehindTileCache(tileCache, queueSize, numberOfThreads, overflowPolicy);
+			Assert.fail("tileCache: " + tileCache + ", queueSize: " + queueSize + ", numberOfThreads: "
+					+ numberOfThreads + ", overflowPolicy: " + overflowPolicy);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	/**
+	 * Puts three tiles into a cache with a queue size of one while the first tile is blocked in the writer thread.
+	 */
+	private static BlockingTileCache putWithFullQueue(WriteBehindTileCache.OverflowPolicy overflowPolicy)
+			throws InterruptedException {
+		BlockingTileCache blockingTileCache = new BlockingTileCache(10);
+		WriteBehindTileCache writeBehindTileCache = new WriteBehindTileCache(blockingTileCache, 1, 1, overflowPolicy);
+
+		writeBehindTileCache.put(createJob(1), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		blockingTileCache.entered.await();
+		writeBehindTileCache.put(createJob(2), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		writeBehindTileCache.put(createJob(3), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		Assert.assertEquals(1, writeBehindTileCache.getDiscardedTiles());
+
+		blockingTileCache.released.countDown();
+		writeBehindTileCache.flush();
+		Assert.assertTrue(blockingTileCache.containsKey(createJob(1)));
+		return blockingTileCache;
+	}
+
+	private final File cacheDirectory = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis());
+
+	@After
+	public void afterTest() {
+		if (this.cacheDirectory.exists() && !this.cacheDirectory.delete()) {
+			throw new IllegalStateException("could not delete cache directory: " + this.cacheDirectory);
+		}
+	}
+
+	@Test
+	public void closeTest() {
+		TileCache tileCache = new FileSystemTileCache(10, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		WriteBehindTileCache writeBehindTileCache = new WriteBehindTileCache(tileCache, 10, 2,
+				WriteBehindTileCache.OverflowPolicy.BLOCK);
+		for (int tileX = 0; tileX < 5; ++tileX) {
+			writeBehindTileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		}
+		writeBehindTileCache.close();
+
+		// the queued tiles must survive a restart
+		tileCache = new FileSystemTileCache(10, this.cacheDirectory, GRAPHIC_FACTORY, true);
+		for (int tileX = 0; tileX < 5; ++tileX) {
+			Assert.assertTrue(tileCache.containsKey(createJob(tileX)));
+		}
+		tileCache.destroy();
+	}
+
+	@Test
+	public void destroyTest() throws InterruptedException {
+		final BlockingTileCache blockingTileCache = new BlockingTileCache(10);
+		final WriteBehindTileCache writeBehindTileCache = new WriteBehindTileCache(blockingTileCache, 10, 1,
+				WriteBehindTileCache.OverflowPolicy.BLOCK);
+		writeBehindTileCache.put(createJob(1), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		blockingTileCache.entered.await();
+		writeBehindTileCache.put(createJob(2), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		writeBehindTileCache.put(createJob(3), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+
+		Thread destroyThread = new Thread() {
+			@Override
+			public void run() {
+				writeBehindTileCache.destroy();
+			}
+		};
+		destroyThread.start();
+		while (writeBehindTileCache.containsKey(createJob(2))) {
+			Thread.sleep(1);
+		}
+		blockingTileCache.released.countDown();
+		destroyThread.join();
+
+		// only the tile which was already being written has reached the underlying cache
+		Assert.assertEquals(1, blockingTileCache.puts);
+		Assert.assertFalse(writeBehindTileCache.containsKey(createJob(3)));
+	}
+
+	@Test
+	public void discardNewTest() throws InterruptedException {
+		TileCache tileCache = putWithFullQueue(WriteBehindTileCache.OverflowPolicy.DISCARD_NEW);
+		Assert.assertTrue(tileCache.containsKey(createJob(2)));
+		Assert.assertFalse(tileCache.containsKey(createJob(3)));
+	}
+
+	@Test
+	public void discardOldestTest() throws InterruptedException {
+		TileCache tileCache = putWithFullQueue(WriteBehindTileCache.OverflowPolicy.DISCARD_OLDEST);
+		Assert.assertFalse(tileCache.containsKey(createJob(2)));
+		Assert.assertTrue(tileCache.containsKey(createJob(3)));
+	}
+
+	@Test
+	public void invalidConstructorTest() {
+		TileCache tileCache = new InMemoryTileCache(1);
+		verifyInvalidConstructor(null, 1, 1, WriteBehindTileCache.OverflowPolicy.BLOCK);
+		verifyInvalidConstructor(tileCache, 0, 1, WriteBehindTileCache.OverflowPolicy.BLOCK);
+		verifyInvalidConstructor(tileCache, 1, 0, WriteBehindTileCache.OverflowPolicy.BLOCK);
+		verifyInvalidConstructor(tileCache, 1, 1, null);
+	}
+
+	@Test
+	public void writeBehindTileCacheTest() {
+		BlockingTileCache blockingTileCache = new BlockingTileCache(10);
+		WriteBehindTileCache writeBehindTileCache = new WriteBehindTileCache(blockingTileCache, 10, 2,
+				WriteBehindTileCache.OverflowPolicy.BLOCK);
+		Assert.assertEquals(10, writeBehindTileCache.getCapacity());
+
+		TileBitmap bitmap = GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false);
+		writeBehindTileCache.put(createJob(1), bitmap);
+
+		// the tile is available before it has been written
+		Assert.assertTrue(writeBehindTileCache.containsKey(createJob(1)));
+		Assert.assertSame(bitmap, writeBehindTileCache.get(createJob(1)));
+		Assert.assertFalse(blockingTileCache.containsKey(createJob(1)));
+
+		blockingTileCache.released.countDown();
+		for (int tileX = 2; tileX < 10; ++tileX) {
+			writeBehindTileCache.put(createJob(tileX), GRAPHIC_FACTORY.createTileBitmap(TILE_SIZE, false));
+		}
+		writeBehindTileCache.flush();
+		for (int tileX = 1; tileX < 10; ++tileX) {
+			Assert.assertTrue(blockingTileCache.containsKey(createJob(tileX)));
+		}
+
+		writeBehindTileCache.destroy();
+		Assert.assertFalse(writeBehindTileCache.containsKey(createJob(1)));
+		Assert.assertNull(writeBehindTileCache.get(createJob(1)));
+
+		// after destroy the tiles are written synchronously
+		writeBehindTileCache.put(createJob(1), bitmap);
+		Assert.assertTrue(blockingTileCache.containsKey(createJob(1)));
+	}
+}
@@ -15,9 +15,12 @@
  */
 package org.mapsforge.map.layer.queue;
 
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.InMemoryMetrics;
 import org.mapsforge.map.model.FixedTileSizeDisplayModel;
 import org.mapsforge.map.model.MapViewPosition;
 
@@ -31,6 +34,68 @@ public class JobQueueTest {
 		}
 	}
 
+	private static void verifyInvalidVisibleTiles(JobQueue<Job> jobQueue, Tile upperLeft, Tile lowerRight) {
+		try {
+			jobQueue.setVisibleTiles(upperLeft, lowerRight);
+			Assert.fail("upperLeft: " + upperLeft + ", lowerRight: " + lowerRight);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void cancellationTest() throws InterruptedException {
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
+		mapViewPosition.setZoomLevel((byte) 10);
+		JobQueue<Job> jobQueue = new JobQueue<Job>(mapViewPosition, new FixedTileSizeDisplayModel(256));
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		jobQueue.setMetrics(metrics, "queue");
+
+		Job job1 = new Job(new Tile(512, 512, (byte) 10), 1, false);
+		Job job2 = new Job(new Tile(513, 512, (byte) 10), 1, false);
+		Job job3 = new Job(new Tile(522, 512, (byte) 10), 1, false);
+		jobQueue.add(job1);
+		jobQueue.add(job2);
+		jobQueue.add(job3);
+		Job assignedJob = jobQueue.get();
+		Assert.assertEquals(job1, assignedJob);
+		Assert.assertFalse(assignedJob.isCancelled());
+
+		// all jobs within the margin must be kept
+		jobQueue.setVisibleTiles(new Tile(513, 513, (byte) 10), new Tile(521, 513, (byte) 10));
+		Assert.assertEquals(2, jobQueue.size());
+		Assert.assertEquals(0, metrics.getCounter("queue.cancelled"));
+
+		// the waiting and the assigned job far away from the visible tiles must be cancelled
+		jobQueue.setVisibleTiles(new Tile(520, 512, (byte) 10), new Tile(522, 512, (byte) 10));
+		Assert.assertEquals(1, jobQueue.size());
+		Assert.assertEquals(2, metrics.getCounter("queue.cancelled"));
+		Assert.assertTrue(assignedJob.isCancelled());
+
+		// a cancelled job is never added again, but an equal new job is
+		jobQueue.add(assignedJob);
+		Assert.assertEquals(1, jobQueue.size());
+		Job newJob = new Job(assignedJob.tile, 1, false);
+		jobQueue.add(newJob);
+		Assert.assertEquals(2, jobQueue.size());
+
+		// removing the cancelled job must not affect the equal new job
+		jobQueue.remove(assignedJob);
+		jobQueue.setVisibleTiles(new Tile(512, 512, (byte) 10), new Tile(522, 512, (byte) 10));
+		Assert.assertEquals(2, jobQueue.size());
+		Assert.assertEquals(2, metrics.getCounter("queue.cancelled"));
+	}
+
+	@Test
+	public void invalidVisibleTilesTest() {
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
+		JobQueue<Job> jobQueue = new JobQueue<Job>(mapViewPosition, new FixedTileSizeDisplayModel(256));
+		Tile tile = new Tile(0, 0, (byte) 1);
+		verifyInvalidVisibleTiles(jobQueue, null, tile);
+		verifyInvalidVisibleTiles(jobQueue, tile, null);
+		verifyInvalidVisibleTiles(jobQueue, tile, new Tile(0, 0, (byte) 2));
+	}
+
 	@Test
 	public void jobQueueTest() throws InterruptedException {
 		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
@@ -68,4 +133,89 @@ public class JobQueueTest {
 		verifyInvalidRemove(jobQueue, job2);
 		verifyInvalidRemove(jobQueue, job3);
 	}
+
+	@Test
+	public void metricsTest() throws InterruptedException {
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
+		JobQueue<Job> jobQueue = new JobQueue<Job>(mapViewPosition, new FixedTileSizeDisplayModel(256));
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		jobQueue.setMetrics(metrics, "queue");
+
+		jobQueue.add(new Job(new Tile(0, 0, (byte) 0), 1, false));
+		jobQueue.add(new Job(new Tile(0, 0, (byte) 1), 1, false));
+		Assert.assertEquals(2, metrics.getGauge("queue.depth"));
+
+		jobQueue.get();
+		Assert.assertEquals(1, metrics.getGauge("queue.depth"));
+		Assert.assertEquals(1, metrics.getHistogram("queue.wait").getCount());
+		Assert.assertEquals(0, metrics.getCounter("queue.dropped"));
+	}
+
+	@Test
+	public void prefetchTest() throws InterruptedException {
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
+		JobQueue<Job> jobQueue = new JobQueue<Job>(mapViewPosition, new FixedTileSizeDisplayModel(256));
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		jobQueue.setMetrics(metrics, "queue");
+
+		Job job1 = new Job(new Tile(3, 3, (byte) 3), 1, false);
+		Job prefetchJob1 = new Job(new Tile(0, 0, (byte) 1), 1, false);
+		Job prefetchJob2 = new Job(new Tile(1, 0, (byte) 1), 1, false);
+		Job prefetchJob3 = new Job(new Tile(0, 1, (byte) 1), 1, false);
+		jobQueue.setPrefetchJobs(Arrays.asList(prefetchJob3, prefetchJob1));
+		jobQueue.setPrefetchJobs(Arrays.asList(prefetchJob1, prefetchJob2));
+		jobQueue.add(job1);
+		Assert.assertEquals(3, jobQueue.size());
+
+		// visible jobs come first, prefetch jobs in the given order
+		Assert.assertEquals(job1, jobQueue.get());
+		Assert.assertEquals(prefetchJob1, jobQueue.get());
+		Assert.assertEquals(1, metrics.getCounter("queue.prefetched"));
+
+		// prefetch jobs are not cancelled with the visible tiles
+		jobQueue.setVisibleTiles(new Tile(7, 7, (byte) 3), new Tile(7, 7, (byte) 3));
+		Assert.assertEquals(1, jobQueue.size());
+		Assert.assertFalse(prefetchJob1.isCancelled());
+
+		// a waiting prefetch job becomes a regular job when it is added
+		jobQueue.add(new Job(prefetchJob2.tile, 1, false));
+		Assert.assertEquals(1, jobQueue.size());
+		Assert.assertEquals(prefetchJob2, jobQueue.get());
+		Assert.assertEquals(1, metrics.getCounter("queue.prefetched"));
+
+		jobQueue.remove(job1);
+		jobQueue.remove(prefetchJob1);
+		jobQueue.remove(prefetchJob2);
+		verifyInvalidRemove(jobQueue, prefetchJob1);
+	}
+
+	@Test
+	public void staleJobsTest() throws InterruptedException {
+		MapViewPosition mapViewPosition = new MapViewPosition(new FixedTileSizeDisplayModel(256));
+		JobQueue<Job> jobQueue = new JobQueue<Job>(mapViewPosition, new FixedTileSizeDisplayModel(256));
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		jobQueue.setMetrics(metrics, "queue");
+
+		Job job1 = new Job(new Tile(0, 0, (byte) 0), 1, false);
+		Job job2 = new Job(new Tile(0, 0, (byte) 1), 1, false);
+		Job job3 = new Job(new Tile(1, 1, (byte) 1), 1, false);
+		jobQueue.add(job1);
+		jobQueue.add(job2);
+		jobQueue.add(job3);
+		Assert.assertEquals(job1, jobQueue.get());
+		jobQueue.remove(job1);
+
+		// after zooming in, the waiting job for zoom level 0 must be cancelled
+		jobQueue.add(job1);
+		mapViewPosition.setZoomLevel((byte) 1);
+		Job job = jobQueue.get();
+		Assert.assertTrue(job == job2 || job == job3);
+		Assert.assertEquals(1, jobQueue.size());
+		Assert.assertEquals(1, metrics.getCounter("queue.cancelled"));
+		Assert.assertEquals(0, metrics.getCounter("queue.dropped"));
+
+		// a cancelled waiting job can be added again
+		jobQueue.add(job1);
+		Assert.assertEquals(2, jobQueue.size());
+	}
 }
@@ -38,6 +38,11 @@ public class QueueItemComparatorTest {
 			queueItem2.setPriority(2);
 			Assert.assertTrue(queueItemComparator.compare(queueItem1, queueItem2) < 0);
 			Assert.assertTrue(queueItemComparator.compare(queueItem2, queueItem1) > 0);
+
+			// prefetch items are always less important
+			queueItem1.prefetch = true;
+			Assert.assertTrue(queueItemComparator.compare(queueItem1, queueItem2) > 0);
+			Assert.assertTrue(queueItemComparator.compare(queueItem2, queueItem1) < 0);
 		}
 	}
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+
+public class QueueItemHeapTest {
+	private static QueueItem<Job> createQueueItem(int tileX, double priority) {
+		QueueItem<Job> queueItem = new QueueItem<Job>(new Job(new Tile(tileX, 0, (byte) 20), 256, false));
+		queueItem.setPriority(priority);
+		return queueItem;
+	}
+
+	private static void verifyOrder(QueueItemHeap<Job> queueItemHeap) {
+		double lastPriority = -1;
+		while (!queueItemHeap.isEmpty()) {
+			QueueItem<Job> queueItem = queueItemHeap.poll();
+			Assert.assertTrue(queueItem.getPriority() >= lastPriority);
+			Assert.assertEquals(-1, queueItem.index);
+			lastPriority = queueItem.getPriority();
+		}
+	}
+
+	@Test
+	public void addAllTest() {
+		Random random = new Random(42);
+		List<QueueItem<Job>> queueItems = new ArrayList<QueueItem<Job>>();
+		for (int i = 0; i < 100; ++i) {
+			queueItems.add(createQueueItem(i, random.nextInt(50)));
+		}
+
+		QueueItemHeap<Job> queueItemHeap = new QueueItemHeap<Job>();
+		queueItemHeap.add(createQueueItem(100, 25));
+		queueItemHeap.addAll(queueItems);
+		Assert.assertEquals(101, queueItemHeap.size());
+		verifyOrder(queueItemHeap);
+	}
+
+	@Test
+	public void queueItemHeapTest() {
+		QueueItemHeap<Job> queueItemHeap = new QueueItemHeap<Job>();
+		Assert.assertTrue(queueItemHeap.isEmpty());
+
+		QueueItem<Job> queueItem1 = createQueueItem(1, 3);
+		QueueItem<Job> queueItem2 = createQueueItem(2, 1);
+		QueueItem<Job> queueItem3 = createQueueItem(3, 2);
+		queueItemHeap.add(queueItem1);
+		queueItemHeap.add(queueItem2);
+		queueItemHeap.add(queueItem3);
+		Assert.assertEquals(3, queueItemHeap.size());
+
+		Assert.assertSame(queueItem2, queueItemHeap.poll());
+		Assert.assertSame(queueItem3, queueItemHeap.poll());
+		Assert.assertSame(queueItem1, queueItemHeap.poll());
+		Assert.assertTrue(queueItemHeap.isEmpty());
+	}
+
+	@Test
+	public void removeTest() {
+		Random random = new Random(42);
+		QueueItemHeap<Job> queueItemHeap = new QueueItemHeap<Job>();
+		List<QueueItem<Job>> queueItems = new ArrayList<QueueItem<Job>>();
+		for (int i = 0; i < 100; ++i) {
+			QueueItem<Job> queueItem = createQueueItem(i, random.nextDouble());
+			queueItems.add(queueItem);
+			queueItemHeap.add(queueItem);
+		}
+
+		for (int i = 0; i < 100; i += 3) {
+			queueItemHeap.remove(queueItems.get(i));
+			Assert.assertEquals(-1, queueItems.get(i).index);
+		}
+		Assert.assertEquals(66, queueItemHeap.size());
+		verifyOrder(queueItemHeap);
+
+		queueItemHeap.add(createQueueItem(0, 1));
+		Assert.assertEquals(1, queueItemHeap.removeAll().size());
+		Assert.assertTrue(queueItemHeap.isEmpty());
+	}
+}
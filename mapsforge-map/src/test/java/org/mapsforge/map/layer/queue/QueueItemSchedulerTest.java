@@ -15,51 +15,43 @@
  */
 package org.mapsforge.map.layer.queue;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
 import org.junit.Assert;
 import org.junit.Test;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.MapPosition;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
 
 public class QueueItemSchedulerTest {
 
 	private static final int[] TILE_SIZES = { 256, 128, 376, 512, 100 };
 
-	private static <T extends Job> Collection<QueueItem<T>> createCollection(QueueItem<T> queueItem) {
-		Collection<QueueItem<T>> queueItems = new ArrayList<QueueItem<T>>();
-		queueItems.add(queueItem);
-		return queueItems;
+	private static double calculatePriority(Tile tile, MapPosition mapPosition, int tileSize) {
+		LatLong latLong = mapPosition.latLong;
+		double mapPixelX = MercatorProjection.longitudeToPixelX(latLong.longitude, mapPosition.zoomLevel, tileSize);
+		double mapPixelY = MercatorProjection.latitudeToPixelY(latLong.latitude, mapPosition.zoomLevel, tileSize);
+		return QueueItemScheduler.calculatePriority(tile, mapPixelX, mapPixelY, mapPosition.zoomLevel, tileSize);
 	}
 
 	@Test
-	public void scheduleTest() {
+	public void calculatePriorityTest() {
 		for (int tileSize : TILE_SIZES) {
 			Tile tile0 = new Tile(0, 0, (byte) 0);
-			Job job = new Job(tile0, tileSize, false);
-			QueueItem<Job> queueItem = new QueueItem<Job>(job);
-			Assert.assertEquals(0, queueItem.getPriority(), 0);
 
 			MapPosition mapPosition = new MapPosition(new LatLong(0, 0), (byte) 0);
-			QueueItemScheduler.schedule(createCollection(queueItem), mapPosition, tileSize);
-			Assert.assertEquals(0, queueItem.getPriority(), 0);
+			Assert.assertEquals(0, calculatePriority(tile0, mapPosition, tileSize), 0);
 
 			mapPosition = new MapPosition(new LatLong(0, 180), (byte) 0);
-			QueueItemScheduler.schedule(createCollection(queueItem), mapPosition, tileSize);
 			int halfTileSize = tileSize / 2;
-			Assert.assertEquals(halfTileSize, queueItem.getPriority(), 0);
+			Assert.assertEquals(halfTileSize, calculatePriority(tile0, mapPosition, tileSize), 0);
 
 			mapPosition = new MapPosition(new LatLong(0, -180), (byte) 0);
-			QueueItemScheduler.schedule(createCollection(queueItem), mapPosition, tileSize);
-			Assert.assertEquals(halfTileSize, queueItem.getPriority(), 0);
+			Assert.assertEquals(halfTileSize, calculatePriority(tile0, mapPosition, tileSize), 0);
 
 			mapPosition = new MapPosition(new LatLong(0, 0), (byte) 1);
-			QueueItemScheduler.schedule(createCollection(queueItem), mapPosition, tileSize);
 			double expectedPriority = Math.hypot(halfTileSize, halfTileSize)
 					+ QueueItemScheduler.PENALTY_PER_ZOOM_LEVEL * tileSize;
-			Assert.assertEquals(expectedPriority, queueItem.getPriority(), 0);
+			Assert.assertEquals(expectedPriority, calculatePriority(tile0, mapPosition, tileSize), 0);
 		}
 	}
 }
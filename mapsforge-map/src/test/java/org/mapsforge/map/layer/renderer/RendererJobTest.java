@@ -15,6 +15,9 @@
 package org.mapsforge.map.layer.renderer;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -24,16 +27,27 @@ import org.mapsforge.map.layer.download.DownloadJob;
 import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
 import org.mapsforge.map.layer.download.tilesource.TileSource;
 import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
 import org.mapsforge.map.rendertheme.InternalRenderTheme;
 import org.mapsforge.map.rendertheme.XmlRenderTheme;
 
 public class RendererJobTest {
 	private static final String MAP_FILE = "map.file";
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
 
 	private static RendererJob create(Tile tile, File mapFile, XmlRenderTheme xmlRenderTheme, float textScale) {
 		return new RendererJob(tile, mapFile, xmlRenderTheme, new DisplayModel(), textScale, false);
 	}
 
+	private static void write(File file, int length) throws IOException {
+		OutputStream outputStream = new FileOutputStream(file);
+		try {
+			outputStream.write(new byte[length]);
+		} finally {
+			outputStream.close();
+		}
+	}
+
 	private static void verifyInvalidConstructor(Tile tile, File mapFile, XmlRenderTheme xmlRenderTheme, float textScale) {
 		try {
 			create(tile, mapFile, xmlRenderTheme, textScale);
@@ -81,4 +95,56 @@ public class RendererJobTest {
 		TileSource tileSource = OpenStreetMapMapnik.INSTANCE;
 		Assert.assertNotEquals(rendererJob1, new DownloadJob(tile, 1, tileSource));
 	}
+
+	@Test
+	public void keyTest() {
+		File mapFile = new File(MAP_FILE);
+		XmlRenderTheme xmlRenderTheme = InternalRenderTheme.OSMARENDER;
+
+		Tile tile1 = new Tile(1, 31, (byte) 5);
+		Tile tile2 = new Tile(2, 0, (byte) 5);
+		RendererJob rendererJob1 = create(tile1, mapFile, xmlRenderTheme, 1);
+		RendererJob rendererJob2 = create(tile2, mapFile, xmlRenderTheme, 1);
+
+		// the hash codes collide, the keys must not
+		Assert.assertEquals(rendererJob1.hashCode(), rendererJob2.hashCode());
+		Assert.assertNotEquals(rendererJob1.getKey(), rendererJob2.getKey());
+
+		Assert.assertEquals(rendererJob1.getKey(), create(tile1, mapFile, xmlRenderTheme, 1).getKey());
+		Assert.assertNotEquals(rendererJob1.getKey(), create(tile1, mapFile, xmlRenderTheme, 2).getKey());
+		Assert.assertNotEquals(rendererJob1.getKey(), create(tile1, new File("other.map"), xmlRenderTheme, 1).getKey());
+		Assert.assertNotEquals(rendererJob1.getKey(), new DownloadJob(tile1, rendererJob1.tileSize,
+				OpenStreetMapMapnik.INSTANCE).getKey());
+	}
+
+	@Test
+	public void sourceVersionKeyTest() throws IOException {
+		File mapFile = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis() + ".map");
+		File renderThemeFile = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis() + ".xml");
+		try {
+			write(mapFile, 1);
+			write(renderThemeFile, 1);
+			Tile tile = new Tile(0, 0, (byte) 0);
+
+			String key = create(tile, mapFile, new ExternalRenderTheme(renderThemeFile), 1).getKey();
+			Assert.assertEquals(key, create(tile, mapFile, new ExternalRenderTheme(renderThemeFile), 1).getKey());
+
+			Assert.assertTrue(renderThemeFile.setLastModified(renderThemeFile.lastModified() - 10000));
+			ExternalRenderTheme xmlRenderTheme = new ExternalRenderTheme(renderThemeFile);
+			Assert.assertNotEquals(key, create(tile, mapFile, xmlRenderTheme, 1).getKey());
+
+			key = create(tile, mapFile, xmlRenderTheme, 1).getKey();
+			long lastModified = mapFile.lastModified();
+			write(mapFile, 2);
+			Assert.assertTrue(mapFile.setLastModified(lastModified));
+			Assert.assertNotEquals(key, create(tile, mapFile, xmlRenderTheme, 1).getKey());
+
+			key = create(tile, mapFile, xmlRenderTheme, 1).getKey();
+			Assert.assertTrue(mapFile.setLastModified(lastModified - 10000));
+			Assert.assertNotEquals(key, create(tile, mapFile, xmlRenderTheme, 1).getKey());
+		} finally {
+			Assert.assertTrue(mapFile.delete());
+			Assert.assertTrue(renderThemeFile.delete());
+		}
+	}
 }
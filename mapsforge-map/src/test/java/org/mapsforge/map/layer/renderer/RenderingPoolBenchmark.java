@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.graphics.Canvas;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.MapPosition;
+import org.mapsforge.core.model.Point;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.InMemoryMetrics;
+import org.mapsforge.core.util.LatencyHistogram;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.Layer;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.queue.JobQueue;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.model.MapViewPosition;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+
+/**
+ * Renders the same tiles of a map file with an increasing number of rendering threads, set up in the same way as
+ * {@link TileRendererLayer} does it, and prints the throughput in tiles per second.
+ * <p>
+ * The tiles are a square around the center of the map file. Every renderer has parsed its render theme before the
+ * time is measured.
+ * <p>
+ * Usage: {@code RenderingPoolBenchmark <mapFile> [zoomLevel] [maximumThreads] [renderThemeFile]}
+ */
+public final class RenderingPoolBenchmark {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String METRIC_NAME = "benchmark";
+	private static final int ROUNDS = 3;
+	private static final int TILES_PER_SIDE = 10;
+
+	public static void main(String[] args) throws FileNotFoundException, InterruptedException {
+		if (args.length == 0) {
+			throw new IllegalArgumentException("missing argument: <mapFile>");
+		}
+		File mapFile = new File(args[0]);
+		byte zoomLevel = args.length > 1 ? Byte.parseByte(args[1]) : 14;
+		int maximumThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		XmlRenderTheme xmlRenderTheme = args.length > 3 ? new ExternalRenderTheme(new File(args[3]))
+				: InternalRenderTheme.OSMARENDER;
+
+		MapDatabase mapDatabase = openMapDatabase(mapFile);
+		BoundingBox boundingBox = mapDatabase.getMapFileInfo().boundingBox;
+		mapDatabase.closeFile();
+		MapPosition mapPosition = new MapPosition(boundingBox.getCenterPoint(), zoomLevel);
+		List<Tile> tiles = createTiles(mapPosition.latLong, zoomLevel);
+
+		System.out.println("tiles: " + tiles.size() + ", zoom level: " + zoomLevel);
+		System.out.println(String.format("%10s %12s %10s", "threads", "tiles/sec", "speedup"));
+		double singleThreadThroughput = 0;
+		for (int threads = 1; threads <= maximumThreads; threads = nextThreadCount(threads, maximumThreads)) {
+			double throughput = 0;
+			for (int round = 0; round < ROUNDS; ++round) {
+				throughput = Math.max(throughput, render(mapFile, xmlRenderTheme, mapPosition, tiles, threads));
+			}
+			if (threads == 1) {
+				singleThreadThroughput = throughput;
+			}
+			System.out.println(String.format("%10d %12.1f %9.2fx", Integer.valueOf(threads),
+					Double.valueOf(throughput), Double.valueOf(throughput / singleThreadThroughput)));
+		}
+	}
+
+	private static List<Tile> createTiles(LatLong center, byte zoomLevel) {
+		long maximumTileNumber = (1L << zoomLevel) - 1;
+		long centerX = MercatorProjection.longitudeToTileX(center.longitude, zoomLevel);
+		long centerY = MercatorProjection.latitudeToTileY(center.latitude, zoomLevel);
+
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (long tileY = centerY - TILES_PER_SIDE / 2; tileY < centerY + TILES_PER_SIDE / 2; ++tileY) {
+			for (long tileX = centerX - TILES_PER_SIDE / 2; tileX < centerX + TILES_PER_SIDE / 2; ++tileX) {
+				if (tileX >= 0 && tileY >= 0 && tileX <= maximumTileNumber && tileY <= maximumTileNumber) {
+					tiles.add(new Tile(tileX, tileY, zoomLevel));
+				}
+			}
+		}
+		return tiles;
+	}
+
+	private static long getRenderedTiles(InMemoryMetrics metrics) {
+		LatencyHistogram histogram = metrics.getHistogram(METRIC_NAME + ".render");
+		return histogram == null ? 0 : histogram.getCount();
+	}
+
+	private static int nextThreadCount(int threads, int maximumThreads) {
+		if (threads == maximumThreads) {
+			return maximumThreads + 1;
+		}
+		return Math.min(threads * 2, maximumThreads);
+	}
+
+	private static MapDatabase openMapDatabase(File mapFile) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult result = mapDatabase.openFile(mapFile);
+		if (!result.isSuccess()) {
+			throw new IllegalArgumentException(result.getErrorMessage());
+		}
+		return mapDatabase;
+	}
+
+	/**
+	 * @return the number of rendered tiles per second.
+	 */
+	private static double render(File mapFile, XmlRenderTheme xmlRenderTheme, MapPosition mapPosition, List<Tile> tiles,
+			int threads) throws InterruptedException {
+		DisplayModel displayModel = new DisplayModel();
+		MapViewPosition mapViewPosition = new MapViewPosition(displayModel);
+		mapViewPosition.setMapPosition(mapPosition);
+		JobQueue<RendererJob> jobQueue = new JobQueue<RendererJob>(mapViewPosition, displayModel);
+		TileCache tileCache = new InMemoryTileCache(tiles.size());
+		InMemoryMetrics metrics = new InMemoryMetrics();
+		Layer layer = new Layer() {
+			@Override
+			public void draw(BoundingBox boundingBox, byte zoomLevel, Canvas canvas, Point topLeftPoint) {
+				// do nothing
+			}
+		};
+
+		MapDatabase[] mapDatabases = new MapDatabase[threads];
+		DatabaseRenderer[] databaseRenderers = new DatabaseRenderer[threads];
+		MapWorker[] mapWorkers = new MapWorker[threads];
+		for (int i = 0; i < threads; ++i) {
+			mapDatabases[i] = openMapDatabase(mapFile);
+			databaseRenderers[i] = new DatabaseRenderer(mapDatabases[i], GRAPHIC_FACTORY);
+
+			// parse the render theme outside of the measured time
+			TileBitmap bitmap = databaseRenderers[i].executeJob(new RendererJob(tiles.get(0), mapFile, xmlRenderTheme,
+					displayModel, 1, false));
+			bitmap.decrementRefCount();
+
+			mapWorkers[i] = new MapWorker(tileCache, jobQueue, databaseRenderers[i], layer);
+			mapWorkers[i].setMetrics(metrics, METRIC_NAME);
+			mapWorkers[i].start();
+		}
+
+		long startTime = System.nanoTime();
+		for (Tile tile : tiles) {
+			jobQueue.add(new RendererJob(tile, mapFile, xmlRenderTheme, displayModel, 1, false));
+		}
+		jobQueue.notifyWorkers();
+		while (getRenderedTiles(metrics) < tiles.size()) {
+			Thread.sleep(1);
+		}
+		long duration = System.nanoTime() - startTime;
+
+		for (int i = 0; i < threads; ++i) {
+			mapWorkers[i].interrupt();
+			mapWorkers[i].join();
+			databaseRenderers[i].destroy();
+			mapDatabases[i].closeFile();
+		}
+		tileCache.destroy();
+		mapViewPosition.destroy();
+
+		return tiles.size() / (duration / 1e9);
+	}
+
+	private RenderingPoolBenchmark() {
+		throw new IllegalStateException();
+	}
+}
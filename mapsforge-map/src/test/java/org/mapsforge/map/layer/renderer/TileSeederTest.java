@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.renderer;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+
+public class TileSeederTest {
+	private static final BoundingBox WORLD = new BoundingBox(MercatorProjection.LATITUDE_MIN, -180,
+			MercatorProjection.LATITUDE_MAX, 180);
+
+	private static TileSeeder createTileSeeder() {
+		return new TileSeeder(new File("map.file"), InternalRenderTheme.OSMARENDER, new DisplayModel(),
+				new InMemoryTileCache(1), AwtGraphicFactory.INSTANCE);
+	}
+
+	private static void verifyInvalidSeed(TileSeeder tileSeeder, BoundingBox boundingBox, byte zoomLevelMin,
+			byte zoomLevelMax, int threads) throws InterruptedException {
+		try {
+			tileSeeder.seed(boundingBox, zoomLevelMin, zoomLevelMax, threads);
+			Assert.fail("boundingBox: " + boundingBox + ", zoomLevelMin: " + zoomLevelMin + ", zoomLevelMax: "
+					+ zoomLevelMax + ", threads: " + threads);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void hilbertCurveTest() {
+		// every position is taken exactly once and consecutive positions are neighbours
+		int order = 4;
+		int size = 1 << order;
+		long[][] points = new long[size * size][];
+		for (int y = 0; y < size; ++y) {
+			for (int x = 0; x < size; ++x) {
+				int index = (int) HilbertCurve.getIndex(order, x, y);
+				Assert.assertNull(points[index]);
+				points[index] = new long[] { x, y };
+			}
+		}
+		for (int i = 1; i < points.length; ++i) {
+			long distance = Math.abs(points[i][0] - points[i - 1][0]) + Math.abs(points[i][1] - points[i - 1][1]);
+			Assert.assertEquals(1, distance);
+		}
+
+		// the curve of a lower order is the curve of the aligned squares of a higher order
+		for (int y = 0; y < size; ++y) {
+			for (int x = 0; x < size; ++x) {
+				Assert.assertEquals(HilbertCurve.getIndex(order - 2, x >> 2, y >> 2),
+						HilbertCurve.getIndex(order, x, y) >> 4);
+			}
+		}
+	}
+
+	@Test
+	public void invalidSeedTest() throws InterruptedException {
+		TileSeeder tileSeeder = createTileSeeder();
+		verifyInvalidSeed(tileSeeder, null, (byte) 0, (byte) 0, 1);
+		verifyInvalidSeed(tileSeeder, WORLD, (byte) -1, (byte) 0, 1);
+		verifyInvalidSeed(tileSeeder, WORLD, (byte) 2, (byte) 1, 1);
+		verifyInvalidSeed(tileSeeder, WORLD, (byte) 0, (byte) 0, 0);
+		// the map file does not exist
+		verifyInvalidSeed(tileSeeder, WORLD, (byte) 0, (byte) 0, 1);
+	}
+
+	@Test
+	public void tileOrderTest() {
+		// on the whole world, the tiles of all blocks form one continuous curve
+		byte zoomLevel = 5;
+		List<Tile> tiles = TileSeeder.getTiles(WORLD, zoomLevel);
+		Assert.assertEquals(1024, tiles.size());
+		Assert.assertEquals(1024, TileSeeder.countTiles(WORLD, zoomLevel));
+		Assert.assertEquals(1024, new HashSet<Tile>(tiles).size());
+		for (int i = 1; i < tiles.size(); ++i) {
+			Tile tile1 = tiles.get(i - 1);
+			Tile tile2 = tiles.get(i);
+			Assert.assertEquals(1, Math.abs(tile1.tileX - tile2.tileX) + Math.abs(tile1.tileY - tile2.tileY));
+		}
+
+		// a bounding box which is not aligned to the blocks
+		BoundingBox boundingBox = new BoundingBox(10, 10, 40, 60);
+		tiles = TileSeeder.getTiles(boundingBox, zoomLevel);
+		Set<Tile> expectedTiles = new HashSet<Tile>();
+		for (long tileY = MercatorProjection.latitudeToTileY(40, zoomLevel); tileY <= MercatorProjection
+				.latitudeToTileY(10, zoomLevel); ++tileY) {
+			for (long tileX = MercatorProjection.longitudeToTileX(10, zoomLevel); tileX <= MercatorProjection
+					.longitudeToTileX(60, zoomLevel); ++tileX) {
+				expectedTiles.add(new Tile(tileX, tileY, zoomLevel));
+			}
+		}
+		Assert.assertEquals(expectedTiles.size(), tiles.size());
+		Assert.assertEquals(expectedTiles.size(), TileSeeder.countTiles(boundingBox, zoomLevel));
+		Assert.assertEquals(expectedTiles, new HashSet<Tile>(tiles));
+	}
+}
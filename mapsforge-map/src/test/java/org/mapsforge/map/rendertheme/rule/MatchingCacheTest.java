@@ -0,0 +1,150 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+import org.xml.sax.SAXException;
+
+public class MatchingCacheTest {
+	private static final int[] ELEMENT_TYPES = { RuleIndex.NODE, RuleIndex.LINEAR_WAY, RuleIndex.CLOSED_WAY };
+	private static final String OSMARENDER = "src/main/resources/osmarender/osmarender.xml";
+	private static final String RESOURCE_FOLDER = "src/test/resources/rendertheme/";
+
+	private static RenderTheme getRenderTheme(File file) throws SAXException, ParserConfigurationException,
+			IOException {
+		return RenderThemeHandler.getRenderTheme(AwtGraphicFactory.INSTANCE, new DisplayModel(),
+				new ExternalRenderTheme(file));
+	}
+
+	private static void verifyInvalidConstructor(RuleIndex ruleIndex, int capacity) {
+		try {
+			new MatchingCache(ruleIndex, capacity);
+			Assert.fail("capacity: " + capacity);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	private static void verifyMatches(MatchingCache matchingCache, List<Rule> rules, List<Tag> tags, int[] tagIds,
+			byte zoomLevel, int elementType) {
+		List<RenderInstruction> expected = new ArrayList<RenderInstruction>();
+		RuleTreeMatcher.match(rules, tags, zoomLevel, elementType, expected);
+		String message = "tags: " + tags + ", zoomLevel: " + zoomLevel + ", elementType: " + elementType;
+		Assert.assertEquals(message, expected, Arrays.asList(matchingCache.match(tags, tagIds, zoomLevel,
+				elementType)));
+	}
+
+	@Test
+	public void invalidConstructorTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = getRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		RuleIndex ruleIndex = new RuleIndex(renderTheme.rulesList);
+		verifyInvalidConstructor(ruleIndex, 0);
+		verifyInvalidConstructor(ruleIndex, 1);
+		verifyInvalidConstructor(ruleIndex, 3);
+		renderTheme.destroy();
+	}
+
+	@Test
+	public void osmarenderTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = getRenderTheme(new File(OSMARENDER));
+		List<Rule> rules = renderTheme.rulesList;
+		// a small cache, so that entries get replaced
+		MatchingCache matchingCache = new MatchingCache(new RuleIndex(rules), 64);
+
+		// tags without ID, the value of the last one is referred to by a rule
+		Tag[] extraTags = { new Tag("name", "Foo"), new Tag("ref", "A 1"), new Tag("name", "residential") };
+
+		Map<Tag, Tag> tagTable = new HashMap<Tag, Tag>();
+		List<Tag> tagTableList = new ArrayList<Tag>();
+		Random random = new Random(0);
+		for (List<Tag> randomTags : RuleTreeMatcher.createTagLists(rules, 300, random)) {
+			// simulate a map file whose tag table shares its tag instances
+			LinkedHashSet<Tag> distinctTags = new LinkedHashSet<Tag>(randomTags);
+			int[] tagIds = new int[distinctTags.size()];
+			int i = 0;
+			for (Tag tag : distinctTags) {
+				if (!tagTable.containsKey(tag)) {
+					tagTable.put(tag, tag);
+					tagTableList.add(tag);
+				}
+				tagIds[i++] = tagTableList.indexOf(tagTable.get(tag));
+			}
+			Arrays.sort(tagIds);
+			List<Tag> tags = new ArrayList<Tag>();
+			for (int tagId : tagIds) {
+				tags.add(tagTableList.get(tagId));
+			}
+			int extraTag = random.nextInt(extraTags.length + 1);
+			if (extraTag < extraTags.length) {
+				tags.add(extraTags[extraTag]);
+			}
+
+			for (byte zoomLevel = 10; zoomLevel <= 18; ++zoomLevel) {
+				for (int elementType : ELEMENT_TYPES) {
+					// a miss and probably a hit
+					verifyMatches(matchingCache, rules, tags, tagIds, zoomLevel, elementType);
+					verifyMatches(matchingCache, rules, tags, tagIds, zoomLevel, elementType);
+				}
+			}
+		}
+
+		renderTheme.destroy();
+	}
+
+	@Test
+	public void tagTableTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = getRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		MatchingCache matchingCache = new MatchingCache(new RuleIndex(renderTheme.rulesList), 16);
+
+		// the same tag ID in the tag tables of two map files
+		int[] tagIds = { 0 };
+		List<Tag> primary = Arrays.asList(new Tag("highway", "primary"));
+		List<Tag> city = Arrays.asList(new Tag("place", "city"));
+
+		for (int i = 0; i < 2; ++i) {
+			Assert.assertEquals(2, matchingCache.match(primary, tagIds, (byte) 15, RuleIndex.LINEAR_WAY).length);
+			Assert.assertEquals(0, matchingCache.match(city, tagIds, (byte) 15, RuleIndex.LINEAR_WAY).length);
+			Assert.assertEquals(0, matchingCache.match(primary, tagIds, (byte) 15, RuleIndex.NODE).length);
+			Assert.assertEquals(1, matchingCache.match(city, tagIds, (byte) 15, RuleIndex.NODE).length);
+		}
+
+		// equal tags which are not shared by a tag table are matched as well
+		List<Tag> primaryCopy = Arrays.asList(new Tag("highway", "primary"));
+		Assert.assertEquals(2, matchingCache.match(primaryCopy, tagIds, (byte) 15, RuleIndex.LINEAR_WAY).length);
+
+		matchingCache.clear();
+		Assert.assertEquals(2, matchingCache.match(primary, tagIds, (byte) 15, RuleIndex.LINEAR_WAY).length);
+
+		renderTheme.destroy();
+	}
+}
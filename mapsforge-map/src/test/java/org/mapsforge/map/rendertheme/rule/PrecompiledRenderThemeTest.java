@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.xml.sax.SAXException;
+
+public class PrecompiledRenderThemeTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String OSMARENDER = "src/main/resources/osmarender/osmarender.xml";
+	private static final String RESOURCE_FOLDER = "src/test/resources/rendertheme/";
+
+	private static RenderTheme read(XmlRenderTheme xmlRenderTheme, byte[] data) throws SAXException, IOException {
+		return PrecompiledRenderTheme.read(GRAPHIC_FACTORY, new DisplayModel(), xmlRenderTheme,
+				new ByteArrayInputStream(data));
+	}
+
+	private static void verifyEquals(AttributeMatcher expected, AttributeMatcher actual) {
+		Assert.assertEquals(expected.getClass(), actual.getClass());
+		if (expected instanceof KeyMatcher) {
+			Assert.assertEquals(((KeyMatcher) expected).keys, ((KeyMatcher) actual).keys);
+		} else if (expected instanceof ValueMatcher) {
+			Assert.assertEquals(((ValueMatcher) expected).values, ((ValueMatcher) actual).values);
+		} else if (expected instanceof NegativeMatcher) {
+			Assert.assertEquals(((NegativeMatcher) expected).keyList, ((NegativeMatcher) actual).keyList);
+			Assert.assertEquals(((NegativeMatcher) expected).valueList, ((NegativeMatcher) actual).valueList);
+		}
+	}
+
+	private static void verifyEquals(List<Rule> expected, List<Rule> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			Rule expectedRule = expected.get(i);
+			Rule actualRule = actual.get(i);
+			Assert.assertEquals(expectedRule.getClass(), actualRule.getClass());
+			Assert.assertEquals(expectedRule.cat, actualRule.cat);
+			Assert.assertSame(expectedRule.closedMatcher, actualRule.closedMatcher);
+			Assert.assertSame(expectedRule.elementMatcher, actualRule.elementMatcher);
+			Assert.assertEquals(expectedRule.zoomMax, actualRule.zoomMax);
+			Assert.assertEquals(expectedRule.zoomMin, actualRule.zoomMin);
+
+			if (expectedRule instanceof PositiveRule) {
+				verifyEquals(((PositiveRule) expectedRule).keyMatcher, ((PositiveRule) actualRule).keyMatcher);
+				verifyEquals(((PositiveRule) expectedRule).valueMatcher, ((PositiveRule) actualRule).valueMatcher);
+			} else {
+				verifyEquals(((NegativeRule) expectedRule).attributeMatcher,
+						((NegativeRule) actualRule).attributeMatcher);
+			}
+
+			Assert.assertEquals(expectedRule.renderInstructions.size(), actualRule.renderInstructions.size());
+			for (int j = 0; j < expectedRule.renderInstructions.size(); ++j) {
+				Assert.assertEquals(expectedRule.renderInstructions.get(j).getClass(), actualRule.renderInstructions
+						.get(j).getClass());
+			}
+			verifyEquals(expectedRule.subRules, actualRule.subRules);
+		}
+	}
+
+	private static void verifyPrecompiled(File file) throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(file);
+		RenderTheme expected = RenderThemeHandler.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme);
+		RenderTheme actual = read(xmlRenderTheme, write(file));
+
+		Assert.assertEquals(expected.getLevels(), actual.getLevels());
+		Assert.assertEquals(expected.getMapBackground(), actual.getMapBackground());
+		verifyEquals(expected.rulesList, actual.rulesList);
+
+		expected.destroy();
+		actual.destroy();
+	}
+
+	private static byte[] write(File file) throws SAXException, ParserConfigurationException, IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		PrecompiledRenderTheme.write(GRAPHIC_FACTORY, file, outputStream);
+		return outputStream.toByteArray();
+	}
+
+	@Test
+	public void invalidDataTest() throws SAXException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		Assert.assertNull(PrecompiledRenderTheme.read(GRAPHIC_FACTORY, new DisplayModel(), xmlRenderTheme, null));
+
+		try {
+			read(xmlRenderTheme, new byte[] { 0, 3, 'x', 'y', 'z' });
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void osmarenderTest() throws SAXException, ParserConfigurationException, IOException {
+		verifyPrecompiled(new File(OSMARENDER));
+	}
+
+	@Test
+	public void outdatedTest() throws SAXException, ParserConfigurationException, IOException {
+		byte[] data = write(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		XmlRenderTheme otherRenderTheme = new ExternalRenderTheme(new File(RESOURCE_FOLDER,
+				"empty-render-theme.xml"));
+		Assert.assertNull(read(otherRenderTheme, data));
+	}
+
+	@Test
+	public void styleMenuTest() throws ParserConfigurationException, IOException {
+		try {
+			write(new File(RESOURCE_FOLDER, "stylemenu-render-theme.xml"));
+			Assert.fail();
+		} catch (SAXException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void testRenderThemeTest() throws SAXException, ParserConfigurationException, IOException {
+		verifyPrecompiled(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderThemeMenuCallback;
+import org.mapsforge.map.rendertheme.XmlRenderThemeStyleMenu;
+import org.xml.sax.SAXException;
+
+public class RenderThemeCacheTest {
+	private static final class DummyMenuCallback implements XmlRenderThemeMenuCallback {
+		Set<String> categories;
+
+		DummyMenuCallback(Set<String> categories) {
+			this.categories = categories;
+		}
+
+		@Override
+		public Set<String> getCategories(XmlRenderThemeStyleMenu style) {
+			return this.categories;
+		}
+	}
+
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String RESOURCE_FOLDER = "src/test/resources/rendertheme/";
+
+	private static void verifyInvalidConstructor(int capacity) {
+		try {
+			new RenderThemeCache(capacity);
+			Assert.fail("capacity: " + capacity);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void capacityTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderThemeCache renderThemeCache = new RenderThemeCache(1);
+		XmlRenderTheme xmlRenderTheme1 = new ExternalRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		XmlRenderTheme xmlRenderTheme2 = new ExternalRenderTheme(new File(RESOURCE_FOLDER,
+				"stylemenu-render-theme.xml"));
+
+		RenderTheme renderTheme1 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme1);
+		RenderTheme renderTheme2 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme2);
+		Assert.assertEquals(1, renderThemeCache.size());
+
+		// the first render theme has been evicted and must be parsed again
+		RenderTheme renderTheme3 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme1);
+		Assert.assertNotSame(renderTheme1, renderTheme3);
+		Assert.assertEquals(1, renderThemeCache.size());
+
+		renderTheme1.destroy();
+		renderTheme2.destroy();
+		renderTheme3.destroy();
+		renderThemeCache.clear();
+		Assert.assertEquals(0, renderThemeCache.size());
+	}
+
+	@Test
+	public void invalidConstructorTest() {
+		verifyInvalidConstructor(-1);
+	}
+
+	@Test
+	public void renderThemeCacheTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderThemeCache renderThemeCache = new RenderThemeCache(2);
+		File file = new File(RESOURCE_FOLDER, "test-render-theme.xml");
+
+		RenderTheme renderTheme1 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				new ExternalRenderTheme(file));
+		RenderTheme renderTheme2 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				new ExternalRenderTheme(file));
+		Assert.assertSame(renderTheme1, renderTheme2);
+		Assert.assertEquals(1, renderThemeCache.size());
+
+		// a different tiling size requires differently scaled resources
+		DisplayModel displayModel = new DisplayModel();
+		displayModel.setFixedTileSize(512);
+		RenderTheme renderTheme3 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, displayModel,
+				new ExternalRenderTheme(file));
+		Assert.assertNotSame(renderTheme1, renderTheme3);
+		Assert.assertEquals(2, renderThemeCache.size());
+
+		renderTheme1.destroy();
+		renderTheme2.destroy();
+		renderTheme3.destroy();
+		renderThemeCache.clear();
+		Assert.assertEquals(0, renderThemeCache.size());
+	}
+
+	@Test
+	public void styleMenuTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderThemeCache renderThemeCache = new RenderThemeCache(2);
+		DummyMenuCallback menuCallback = new DummyMenuCallback(Collections.singleton("parking"));
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RESOURCE_FOLDER,
+				"stylemenu-render-theme.xml"), menuCallback);
+
+		RenderTheme renderTheme1 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme);
+		Assert.assertEquals(2, renderTheme1.rulesList.size());
+		Assert.assertSame(renderTheme1, renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme));
+
+		// a different selection replaces the cached render theme
+		menuCallback.categories = Collections.<String> emptySet();
+		RenderTheme renderTheme2 = renderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				xmlRenderTheme);
+		Assert.assertNotSame(renderTheme1, renderTheme2);
+		Assert.assertEquals(1, renderTheme2.rulesList.size());
+		Assert.assertEquals(1, renderThemeCache.size());
+
+		renderTheme1.destroy();
+		renderTheme1.destroy();
+		renderTheme2.destroy();
+		renderThemeCache.clear();
+	}
+}
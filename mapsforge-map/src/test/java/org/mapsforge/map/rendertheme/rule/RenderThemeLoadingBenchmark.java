@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.reader.MapDatabase;
+import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.PointOfInterest;
+import org.mapsforge.map.reader.Way;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.xml.sax.SAXException;
+
+/**
+ * Measures the time until the map data of the first tile has been rendered with a render theme which is loaded
+ * either from its XML file or from its precompiled form, see {@link PrecompiledRenderTheme}. Only the render theme
+ * loading differs, so the drawing of the tile is left out.
+ * <p>
+ * The benchmark is meant to be started in a new JVM for every measurement, because most of the difference is caused
+ * by the classes and the XML parser which are loaded on the first use.
+ * <p>
+ * Usage: {@code RenderThemeLoadingBenchmark <mapFile> <renderThemeFile> [precompiledRenderThemeFile]}
+ */
+public final class RenderThemeLoadingBenchmark {
+	private static final byte ZOOM_LEVEL = 14;
+
+	public static void main(String[] args) throws SAXException, ParserConfigurationException, IOException {
+		System.setProperty("java.awt.headless", "true");
+		long startTime = System.nanoTime();
+
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(args[1]));
+		RenderTheme renderTheme;
+		if (args.length > 2) {
+			renderTheme = PrecompiledRenderTheme.read(AwtGraphicFactory.INSTANCE, new DisplayModel(),
+					xmlRenderTheme, new FileInputStream(args[2]));
+		} else {
+			renderTheme = RenderThemeHandler.getRenderTheme(AwtGraphicFactory.INSTANCE, new DisplayModel(),
+					xmlRenderTheme);
+		}
+		long loadTime = System.nanoTime();
+
+		MapDatabase mapDatabase = new MapDatabase();
+		mapDatabase.openFile(new File(args[0]));
+		LatLong center = mapDatabase.getMapFileInfo().boundingBox.getCenterPoint();
+		Tile tile = new Tile(MercatorProjection.longitudeToTileX(center.longitude, ZOOM_LEVEL),
+				MercatorProjection.latitudeToTileY(center.latitude, ZOOM_LEVEL), ZOOM_LEVEL);
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+
+		RenderCallback renderCallback = new DummyRenderCallback();
+		RenderContext renderContext = renderTheme.getRenderContext(ZOOM_LEVEL, 1, 1);
+		for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
+			renderTheme.matchNode(renderCallback, renderContext, pointOfInterest.tags, pointOfInterest.tagIds);
+		}
+		for (Way way : mapReadResult.ways) {
+			LatLong[] latLongs = way.latLongs[0];
+			if (latLongs[0].equals(latLongs[latLongs.length - 1])) {
+				renderTheme.matchClosedWay(renderCallback, renderContext, way.tags, way.tagIds);
+			} else {
+				renderTheme.matchLinearWay(renderCallback, renderContext, way.tags, way.tagIds);
+			}
+		}
+		long endTime = System.nanoTime();
+
+		System.out.println(String.format("%s: render theme loaded after %.1f ms, first tile after %.1f ms",
+				args.length > 2 ? "precompiled" : "XML", Double.valueOf((loadTime - startTime) / 1e6),
+				Double.valueOf((endTime - startTime) / 1e6)));
+
+		mapDatabase.closeFile();
+		renderTheme.destroy();
+	}
+
+	private RenderThemeLoadingBenchmark() {
+		throw new IllegalStateException();
+	}
+}
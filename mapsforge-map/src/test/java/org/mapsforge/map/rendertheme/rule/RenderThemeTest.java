@@ -63,9 +63,6 @@ public class RenderThemeTest {
 
 		Assert.assertEquals(3, renderTheme.getLevels());
 
-		renderTheme.scaleStrokeWidth(12.34f);
-		renderTheme.scaleTextSize(56.78f);
-
 		RenderCallback renderCallback = new DummyRenderCallback();
 
 		List<Tag> closedWayTags = Arrays.asList(new Tag("amenity", "parking"));
@@ -73,11 +70,18 @@ public class RenderThemeTest {
 		List<Tag> nodeTags = Arrays.asList(new Tag("place", "city"), new Tag("highway", "turning_circle"));
 
 		for (byte zoomLevel = 0; zoomLevel < 25; ++zoomLevel) {
-			renderTheme.matchClosedWay(renderCallback, closedWayTags, zoomLevel);
-			renderTheme.matchLinearWay(renderCallback, linearWayTags, zoomLevel);
-			renderTheme.matchNode(renderCallback, nodeTags, zoomLevel);
+			RenderContext renderContext = renderTheme.getRenderContext(zoomLevel, 12.34f, 56.78f);
+			renderTheme.matchClosedWay(renderCallback, renderContext, closedWayTags);
+			renderTheme.matchLinearWay(renderCallback, renderContext, linearWayTags);
+			renderTheme.matchNode(renderCallback, renderContext, nodeTags);
 		}
 
+		RenderContext renderContext1 = renderTheme.getRenderContext((byte) 10, 1, 1);
+		RenderContext renderContext2 = renderTheme.getRenderContext((byte) 11, 1, 2);
+		Assert.assertEquals(renderContext1.strokeIndex, renderContext2.strokeIndex);
+		Assert.assertNotEquals(renderContext1.textIndex, renderContext2.textIndex);
+		Assert.assertEquals(11, renderContext2.zoomLevel);
+
 		renderTheme.destroy();
 	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+import org.xml.sax.SAXException;
+
+public class RuleIndexTest {
+	private static final int[] ELEMENT_TYPES = { RuleIndex.NODE, RuleIndex.LINEAR_WAY, RuleIndex.CLOSED_WAY };
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String OSMARENDER = "src/main/resources/osmarender/osmarender.xml";
+	private static final String RESOURCE_FOLDER = "src/test/resources/rendertheme/";
+
+	private static RenderTheme getRenderTheme(File file) throws SAXException, ParserConfigurationException,
+			IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(file);
+		return RenderThemeHandler.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(), xmlRenderTheme);
+	}
+
+	private static List<RenderInstruction> match(RuleIndex ruleIndex, List<Tag> tags, byte zoomLevel,
+			int elementType) {
+		List<RenderInstruction> matchingList = new ArrayList<RenderInstruction>();
+		ruleIndex.match(tags, zoomLevel, elementType, matchingList);
+		return matchingList;
+	}
+
+	private static void verifyMatches(List<Rule> rules, List<Tag> tags, byte zoomLevel, int elementType,
+			RuleIndex ruleIndex) {
+		List<RenderInstruction> expected = new ArrayList<RenderInstruction>();
+		RuleTreeMatcher.match(rules, tags, zoomLevel, elementType, expected);
+		Assert.assertEquals("tags: " + tags + ", zoomLevel: " + zoomLevel + ", elementType: " + elementType,
+				expected, match(ruleIndex, tags, zoomLevel, elementType));
+	}
+
+	@Test
+	public void osmarenderTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = getRenderTheme(new File(OSMARENDER));
+		RuleIndex ruleIndex = new RuleIndex(renderTheme.rulesList);
+
+		int matches = 0;
+		for (List<Tag> tags : RuleTreeMatcher.createTagLists(renderTheme.rulesList, 1000, new Random(0))) {
+			for (byte zoomLevel = 0; zoomLevel <= 22; ++zoomLevel) {
+				for (int elementType : ELEMENT_TYPES) {
+					verifyMatches(renderTheme.rulesList, tags, zoomLevel, elementType, ruleIndex);
+					if (!match(ruleIndex, tags, zoomLevel, elementType).isEmpty()) {
+						++matches;
+					}
+				}
+			}
+		}
+		// make sure that not only empty results have been compared
+		Assert.assertTrue(matches > 1000);
+
+		renderTheme.destroy();
+	}
+
+	@Test
+	public void ruleIndexTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = getRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		RuleIndex ruleIndex = new RuleIndex(renderTheme.rulesList);
+		List<Tag> primary = Arrays.asList(new Tag("highway", "primary"));
+		List<Tag> primaryOneway = Arrays.asList(new Tag("highway", "primary"), new Tag("oneway", "yes"));
+		List<Tag> primaryTunnel = Arrays.asList(new Tag("highway", "primary"), new Tag("tunnel", "yes"));
+
+		// line and path text of the negative rule
+		Assert.assertEquals(2, match(ruleIndex, primary, (byte) 15, RuleIndex.LINEAR_WAY).size());
+		Assert.assertEquals(1, match(ruleIndex, primaryTunnel, (byte) 15, RuleIndex.LINEAR_WAY).size());
+		Assert.assertEquals(0, match(ruleIndex, primary, (byte) 15, RuleIndex.CLOSED_WAY).size());
+		Assert.assertEquals(0, match(ruleIndex, primary, (byte) 15, RuleIndex.NODE).size());
+		// the line symbol needs zoom level 16
+		Assert.assertEquals(2, match(ruleIndex, primaryOneway, (byte) 15, RuleIndex.LINEAR_WAY).size());
+		Assert.assertEquals(3, match(ruleIndex, primaryOneway, (byte) 16, RuleIndex.LINEAR_WAY).size());
+		Assert.assertEquals(3, match(ruleIndex, primaryOneway, Byte.MAX_VALUE, RuleIndex.LINEAR_WAY).size());
+
+		List<Tag> city = Arrays.asList(new Tag("place", "city"));
+		Assert.assertEquals(1, match(ruleIndex, city, (byte) 15, RuleIndex.NODE).size());
+		Assert.assertEquals(0, match(ruleIndex, city, (byte) 16, RuleIndex.NODE).size());
+		Assert.assertEquals(0, match(ruleIndex, new ArrayList<Tag>(), (byte) 15, RuleIndex.NODE).size());
+
+		renderTheme.destroy();
+	}
+}
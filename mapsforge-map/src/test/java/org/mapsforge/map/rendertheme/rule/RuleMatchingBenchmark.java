@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.InternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+import org.xml.sax.SAXException;
+
+/**
+ * Matches random tag lists against a render theme, once by walking the whole rule tree and once with the
+ * {@link RuleIndex}, and prints the number of matched elements per second.
+ * <p>
+ * The tag lists are built from the keys and values of the theme, see {@link RuleTreeMatcher#createTagLists}. Every
+ * tag list is matched as node, linear way and closed way on the zoom levels 10 to 18.
+ * <p>
+ * Usage: {@code RuleMatchingBenchmark [renderThemeFile]}
+ */
+public final class RuleMatchingBenchmark {
+	private static final int[] ELEMENT_TYPES = { RuleIndex.NODE, RuleIndex.LINEAR_WAY, RuleIndex.CLOSED_WAY };
+	private static final int ROUNDS = 5;
+	private static final int TAG_LISTS = 2000;
+	private static final byte ZOOM_LEVEL_MAX = 18;
+	private static final byte ZOOM_LEVEL_MIN = 10;
+
+	public static void main(String[] args) throws FileNotFoundException, SAXException, ParserConfigurationException,
+			IOException {
+		XmlRenderTheme xmlRenderTheme = args.length > 0 ? new ExternalRenderTheme(new File(args[0]))
+				: InternalRenderTheme.OSMARENDER;
+		RenderTheme renderTheme = RenderThemeHandler.getRenderTheme(AwtGraphicFactory.INSTANCE, new DisplayModel(),
+				xmlRenderTheme);
+		List<Rule> rules = renderTheme.rulesList;
+		List<List<Tag>> tagLists = RuleTreeMatcher.createTagLists(rules, TAG_LISTS, new Random(0));
+
+		long startTime = System.nanoTime();
+		RuleIndex ruleIndex = new RuleIndex(rules);
+		double buildTime = (System.nanoTime() - startTime) / 1e6;
+		System.out.println(String.format("index built in %.1f ms", Double.valueOf(buildTime)));
+
+		System.out.println(String.format("%10s %16s %16s %10s", "round", "tree walk/sec", "index/sec", "speedup"));
+		for (int round = 1; round <= ROUNDS; ++round) {
+			double treeWalkThroughput = matchRuleTree(rules, tagLists);
+			double indexThroughput = matchRuleIndex(ruleIndex, tagLists);
+			System.out.println(String.format("%10d %16.0f %16.0f %9.2fx", Integer.valueOf(round),
+					Double.valueOf(treeWalkThroughput), Double.valueOf(indexThroughput),
+					Double.valueOf(indexThroughput / treeWalkThroughput)));
+		}
+
+		renderTheme.destroy();
+	}
+
+	private static double getThroughput(long startTime, long matches, int instructions) {
+		// make sure that the matching cannot be optimized away
+		if (instructions < 0) {
+			throw new IllegalStateException();
+		}
+		return matches / ((System.nanoTime() - startTime) / 1e9);
+	}
+
+	/**
+	 * @return the number of matched elements per second.
+	 */
+	private static double matchRuleIndex(RuleIndex ruleIndex, List<List<Tag>> tagLists) {
+		List<RenderInstruction> matchingList = new ArrayList<RenderInstruction>();
+		long matches = 0;
+		int instructions = 0;
+		long startTime = System.nanoTime();
+		for (List<Tag> tags : tagLists) {
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				for (int elementType : ELEMENT_TYPES) {
+					matchingList.clear();
+					ruleIndex.match(tags, zoomLevel, elementType, matchingList);
+					instructions += matchingList.size();
+					++matches;
+				}
+			}
+		}
+		return getThroughput(startTime, matches, instructions);
+	}
+
+	/**
+	 * @return the number of matched elements per second.
+	 */
+	private static double matchRuleTree(List<Rule> rules, List<List<Tag>> tagLists) {
+		List<RenderInstruction> matchingList = new ArrayList<RenderInstruction>();
+		long matches = 0;
+		int instructions = 0;
+		long startTime = System.nanoTime();
+		for (List<Tag> tags : tagLists) {
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				for (int elementType : ELEMENT_TYPES) {
+					matchingList.clear();
+					RuleTreeMatcher.match(rules, tags, zoomLevel, elementType, matchingList);
+					instructions += matchingList.size();
+					++matches;
+				}
+			}
+		}
+		return getThroughput(startTime, matches, instructions);
+	}
+
+	private RuleMatchingBenchmark() {
+		throw new IllegalStateException();
+	}
+}
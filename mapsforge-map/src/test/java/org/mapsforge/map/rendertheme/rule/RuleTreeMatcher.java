@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010, 2011, 2012, 2013 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+
+/**
+ * Matches elements by walking the whole rule tree, the way a {@link RenderTheme} did it before it had a
+ * {@link RuleIndex}.
+ */
+final class RuleTreeMatcher {
+	/**
+	 * Creates random tag lists from the keys and values of the given rules, mostly with combinations of a key and a
+	 * value which belong to the same rule.
+	 */
+	static List<List<Tag>> createTagLists(List<Rule> rules, int count, Random random) {
+		List<List<String>> keyLists = new ArrayList<List<String>>();
+		List<List<String>> valueLists = new ArrayList<List<String>>();
+		for (Rule rule : rules) {
+			addAttributes(rule, keyLists, valueLists);
+		}
+
+		List<List<Tag>> tagLists = new ArrayList<List<Tag>>(count);
+		for (int i = 0; i < count; ++i) {
+			int tags = random.nextInt(5);
+			List<Tag> tagList = new ArrayList<Tag>(tags);
+			for (int j = 0; j < tags; ++j) {
+				int rule = random.nextInt(keyLists.size());
+				String key = getRandomString(keyLists.get(rule), random);
+				String value = getRandomString(valueLists.get(random.nextInt(4) == 0 ? random.nextInt(valueLists
+						.size()) : rule), random);
+				tagList.add(new Tag(key, value));
+			}
+			tagLists.add(tagList);
+		}
+		return tagLists;
+	}
+
+	static void match(List<Rule> rules, List<Tag> tags, byte zoomLevel, int elementType,
+			List<RenderInstruction> matchingList) {
+		for (int i = 0, n = rules.size(); i < n; ++i) {
+			match(rules.get(i), tags, zoomLevel, elementType, matchingList);
+		}
+	}
+
+	private static void addAttributes(Rule rule, List<List<String>> keyLists, List<List<String>> valueLists) {
+		List<String> keys = new ArrayList<String>();
+		List<String> values = new ArrayList<String>();
+		if (rule instanceof NegativeRule) {
+			NegativeMatcher negativeMatcher = (NegativeMatcher) ((NegativeRule) rule).attributeMatcher;
+			keys.addAll(negativeMatcher.keyList);
+			values.addAll(negativeMatcher.valueList);
+		} else {
+			PositiveRule positiveRule = (PositiveRule) rule;
+			if (positiveRule.keyMatcher instanceof KeyMatcher) {
+				keys.addAll(((KeyMatcher) positiveRule.keyMatcher).keys);
+			}
+			if (positiveRule.valueMatcher instanceof ValueMatcher) {
+				values.addAll(((ValueMatcher) positiveRule.valueMatcher).values);
+			}
+		}
+		// tags which no rule refers to
+		keys.add("unknown");
+		values.add("unknown");
+
+		keyLists.add(keys);
+		valueLists.add(values);
+		for (Rule subRule : rule.subRules) {
+			addAttributes(subRule, keyLists, valueLists);
+		}
+	}
+
+	private static String getRandomString(List<String> strings, Random random) {
+		return strings.get(random.nextInt(strings.size()));
+	}
+
+	private static void match(Rule rule, List<Tag> tags, byte zoomLevel, int elementType,
+			List<RenderInstruction> matchingList) {
+		boolean matches;
+		if (elementType == RuleIndex.NODE) {
+			matches = rule.matchesNode(tags, zoomLevel);
+		} else {
+			matches = rule.matchesWay(tags, zoomLevel, elementType == RuleIndex.CLOSED_WAY ? Closed.YES : Closed.NO);
+		}
+
+		if (matches) {
+			matchingList.addAll(rule.renderInstructions);
+			for (int i = 0, n = rule.subRules.size(); i < n; ++i) {
+				match(rule.subRules.get(i), tags, zoomLevel, elementType, matchingList);
+			}
+		}
+	}
+
+	private RuleTreeMatcher() {
+		throw new IllegalStateException();
+	}
+}